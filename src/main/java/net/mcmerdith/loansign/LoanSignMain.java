@@ -1,21 +1,50 @@
 package net.mcmerdith.loansign;
 
+import net.mcmerdith.loansign.analytics.ActivityIndex;
+import net.mcmerdith.loansign.analytics.LoanAnalytics;
+import net.mcmerdith.loansign.cache.OfflinePlayerCache;
+import net.mcmerdith.loansign.cache.PlayerSummaryCache;
+import net.mcmerdith.loansign.cache.SignTermsCache;
 import net.mcmerdith.loansign.command.LoanCommand;
+import net.mcmerdith.loansign.consolidation.LoanConsolidator;
+import net.mcmerdith.loansign.credit.CreditScores;
+import net.mcmerdith.loansign.event.LoanEventBus;
+import net.mcmerdith.loansign.io.EconomyGateway;
+import net.mcmerdith.loansign.io.IoExecutor;
+import net.mcmerdith.loansign.limit.RateLimiter;
+import net.mcmerdith.loansign.listener.PlayerListener;
+import net.mcmerdith.loansign.listener.SignListener;
+import net.mcmerdith.loansign.message.MessageTemplates;
+import net.mcmerdith.loansign.model.InterestFactors;
+import net.mcmerdith.loansign.notification.NotificationDispatcher;
 import net.mcmerdith.loansign.operations.loanPlayerMoney;
+import net.mcmerdith.loansign.profiler.LoanProfiler;
+import net.mcmerdith.loansign.runnable.LoanExecutor;
+import net.mcmerdith.loansign.storage.DataStore;
 import net.mcmerdith.loansign.storage.FlatFileDataStore;
+import net.mcmerdith.loansign.storage.LoanArchive;
+import net.mcmerdith.loansign.storage.LoanArchiver;
 import net.mcmerdith.loansign.storage.LoanData;
+import net.mcmerdith.loansign.storage.LoanVerifier;
+import net.mcmerdith.loansign.storage.ShardedFileDataStore;
+import net.mcmerdith.loansign.storage.SharedDataStore;
 import net.mcmerdith.mcmpluginlib.McmPluginLogger;
 import net.milkbowl.vault.economy.Economy;
 import org.bstats.bukkit.Metrics;
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.wargamer2010.signshop.configuration.SignShopConfig;
 import org.wargamer2010.signshop.configuration.configUtil;
 
+import java.io.File;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 public class LoanSignMain extends JavaPlugin {
     private static final McmPluginLogger logger = McmPluginLogger.classInstance(LoanSignMain.class);
@@ -38,6 +67,13 @@ public class LoanSignMain extends JavaPlugin {
             return;
         }
 
+        // Loans are paid through the Vault economy
+        if (!setupEconomy(pm)) {
+            logger.error("Vault or an economy plugin is not loaded, can not continue.");
+            pm.disablePlugin(this);
+            return;
+        }
+
         // Create our working directory if it doesn't already exist
         createDir();
 
@@ -45,12 +81,35 @@ public class LoanSignMain extends JavaPlugin {
         FileConfiguration ymlThing = configUtil.loadYMLFromPluginFolder(this, filename);
         configUtil.loadYMLFromJar(this, LoanSignMain.class, ymlThing, filename);
 
+        LoanProfiler.instance().configure(ymlThing.getConfigurationSection("profiler"));
+        InterestFactors.instance().configure(ymlThing.getConfigurationSection("interest"));
+        PlayerSummaryCache.instance().configure(ymlThing.getConfigurationSection("summary-cache"));
+        SignTermsCache.instance().configure(ymlThing.getConfigurationSection("sign-cache"));
+        OfflinePlayerCache.instance().configure(ymlThing.getConfigurationSection("player-cache"));
+        LoanEventBus.instance().configure(ymlThing.getConfigurationSection("events"));
+        IoExecutor.instance().configure(ymlThing.getConfigurationSection("io"));
+        EconomyGateway.instance().configure(ymlThing.getConfigurationSection("io"));
+        PlayerSummaryCache.instance().subscribe(LoanEventBus.instance());
+        LoanAnalytics.instance().subscribe(LoanEventBus.instance());
+        ActivityIndex.instance().configure(ymlThing.getConfigurationSection("activity"));
+        ActivityIndex.instance().subscribe(LoanEventBus.instance());
+        CreditScores.instance().configure(ymlThing.getConfigurationSection("credit"));
+        CreditScores.instance().subscribe(LoanEventBus.instance());
+        LoanExecutor.configure(ymlThing.getConfigurationSection("collection"));
+        LoanConsolidator.instance().configure(ymlThing.getConfigurationSection("consolidation"));
+        NotificationDispatcher.instance().configure(ymlThing.getConfigurationSection("notifications"));
+        NotificationDispatcher.instance().start(LoanEventBus.instance());
+        RateLimiter.instance().configure(ymlThing.getConfigurationSection("rate-limit"));
+        RateLimiter.instance().start();
+
         SignShopConfig.registerExternalOperation(new loanPlayerMoney());
         SignShopConfig.setupOperations(configUtil.fetchStringStringHashMap("signs", ymlThing), "net.mcmerdith.loansign.operations");
         SignShopConfig.registerErrorMessages(configUtil.fetchStringStringHashMap("errors", ymlThing));
-        for (Map.Entry<String, HashMap<String, String>> entry : configUtil.fetchHasmapInHashmap("messages", ymlThing).entrySet()) {
+        HashMap<String, HashMap<String, String>> messages = configUtil.fetchHasmapInHashmap("messages", ymlThing);
+        for (Map.Entry<String, HashMap<String, String>> entry : messages.entrySet()) {
             SignShopConfig.registerMessages(entry.getKey(), entry.getValue());
         }
+        MessageTemplates.instance().configure(messages);
 
         if (SignShopConfig.metricsEnabled()) {
 //            Metrics metrics =
@@ -58,9 +117,18 @@ public class LoanSignMain extends JavaPlugin {
             logger.info("Thank you for enabling metrics!");
         }
 
-        LoanData.instance().enable(new FlatFileDataStore());
-
-        new LoanCommand().setExecutorFor(getCommand("loan"));
+        LoanData.instance().setArchiver(LoanArchiver.fromConfig(
+                new LoanArchive(new File(getDataFolder(), "archive.ndjson.gz")),
+                ymlThing.getConfigurationSection("archive")));
+        LoanData.instance().setVerifier(LoanVerifier.fromConfig(
+                new File(getDataFolder(), "quarantine.ndjson"),
+                ymlThing.getConfigurationSection("verification")));
+        LoanData.instance().enable(createDataStore(ymlThing.getConfigurationSection("storage")));
+
+        LoanCommand command = new LoanCommand();
+        command.setExecutorFor(getCommand("loan"));
+        pm.registerEvents(new PlayerListener(command), this);
+        pm.registerEvents(new SignListener(), this);
         getLogger();
         logger.info("Enabled");
     }
@@ -70,6 +138,57 @@ public class LoanSignMain extends JavaPlugin {
         super.onDisable();
 
         LoanData.instance().disable();
+        LoanEventBus.instance().shutdown();
+        NotificationDispatcher.instance().stop();
+        RateLimiter.instance().stop();
+        IoExecutor.instance().shutdown();
+    }
+
+    /**
+     * Create the data store selected in the config
+     *
+     * @param config The {@code storage} section of the config, may be null
+     * @return The data store
+     */
+    private DataStore createDataStore(ConfigurationSection config) {
+        String type = config == null ? "flat" : config.getString("type", "flat");
+        if (type.equalsIgnoreCase("sharded")) {
+            return new ShardedFileDataStore(getDataFolder(), config.getInt("shards", 16), config.getInt("load-threads", 0));
+        }
+        if (type.equalsIgnoreCase("shared")) {
+            String folder = config.getString("shared-folder", "");
+            String node = config.getString("node-id", "");
+            if (folder.isEmpty()) {
+                logger.error("storage.shared-folder is not set, using flat file storage");
+                return createFlatFileDataStore(config);
+            }
+            if (node.isEmpty()) node = UUID.randomUUID().toString();
+            return new SharedDataStore(new File(folder), node,
+                    config.getInt("shards", 16),
+                    Duration.ofSeconds(Math.max(1, config.getInt("sync-seconds", 5))),
+                    Duration.ofSeconds(Math.max(5, config.getInt("lease-seconds", 30))));
+        }
+
+        return createFlatFileDataStore(config);
+    }
+
+    private DataStore createFlatFileDataStore(ConfigurationSection config) {
+        if (config == null) return new FlatFileDataStore();
+        return new FlatFileDataStore(getDataFolder(), config.getBoolean("compression", false), config.getInt("block-size", 1000));
+    }
+
+    /**
+     * Look up the economy registered with Vault
+     *
+     * @param pm The plugin manager
+     * @return If an economy was found
+     */
+    private boolean setupEconomy(PluginManager pm) {
+        if (!pm.isPluginEnabled("Vault")) return false;
+        RegisteredServiceProvider<Economy> provider = getServer().getServicesManager().getRegistration(Economy.class);
+        if (provider == null) return false;
+        economy = provider.getProvider();
+        return economy != null;
     }
 
     /***
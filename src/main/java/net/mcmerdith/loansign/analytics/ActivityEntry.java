@@ -0,0 +1,17 @@
+package net.mcmerdith.loansign.analytics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A payment, fee or default on a loan
+ *
+ * @param type   What happened
+ * @param loanID The {@link UUID} of the loan
+ * @param date   When it happened
+ * @param units  The amount in minor units, 0 for defaults
+ */
+public record ActivityEntry(@NotNull ActivityType type, @NotNull UUID loanID, @NotNull Instant date, long units) {
+}
@@ -0,0 +1,360 @@
+package net.mcmerdith.loansign.analytics;
+
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventBus;
+import net.mcmerdith.loansign.event.LoanEventType;
+import net.mcmerdith.loansign.model.Fee;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import net.mcmerdith.loansign.storage.LoanData;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Payments, fees and defaults grouped into hourly buckets
+ * <p>Each bucket keeps its entries and their totals, so a range query only visits the buckets
+ * in the range and whole buckets are summed without looking at their entries. Totals are also
+ * rolled up by day, so long ranges sum whole days and only visit the hours at either end.</p>
+ * <p>Each event adds the payments and fees of its loan dated after the last ones indexed, so
+ * repeated events add nothing and loans changed by other servers are indexed from their
+ * {@link LoanEventType#UPDATED} events.</p>
+ */
+public class ActivityIndex {
+    private static ActivityIndex instance;
+
+    public static ActivityIndex instance() {
+        if (instance == null) instance = new ActivityIndex();
+        return instance;
+    }
+
+    private static final long BUCKET_SECONDS = Duration.ofHours(1).toSeconds();
+    private static final long DAY_SECONDS = Duration.ofDays(1).toSeconds();
+
+    /**
+     * Buckets by the epoch hour they start at
+     */
+    private final NavigableMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+
+    /**
+     * Totals by the epoch day they start at
+     */
+    private final NavigableMap<Long, Rollup> days = new ConcurrentSkipListMap<>();
+
+    /**
+     * The latest payment indexed for each loan
+     */
+    private final Map<UUID, Mark> paymentsIndexed = new ConcurrentHashMap<>();
+
+    /**
+     * The latest fee indexed for each loan
+     */
+    private final Map<UUID, Mark> feesIndexed = new ConcurrentHashMap<>();
+
+    /**
+     * Loans with an indexed default
+     */
+    private final Set<UUID> defaulted = ConcurrentHashMap.newKeySet();
+
+    /**
+     * How long entries are kept
+     */
+    private Duration retention = Duration.ofDays(90);
+
+    /**
+     * Load the settings from the config
+     *
+     * @param config The {@code activity} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        retention = Duration.ofDays(Math.max(1, config.getInt("retention-days", 90)));
+    }
+
+    /**
+     * Add new payments, fees and defaults as they happen
+     *
+     * @param bus The event bus
+     */
+    public void subscribe(@NotNull LoanEventBus bus) {
+        bus.subscribe("activity", this::onEvents, () -> rebuild(LoanData.instance().getLoansView()));
+    }
+
+    private void onEvents(@NotNull List<LoanEvent> events) {
+        for (LoanEvent event : events) record(event);
+    }
+
+    /**
+     * Index the activity of an event
+     *
+     * @param event The event
+     */
+    void record(@NotNull LoanEvent event) {
+        switch (event.type) {
+            // entries are added from the loan, so an event for a change already indexed adds nothing
+            case PAYMENT, FEE, UPDATED -> {
+                Loan loan = event.loan;
+                synchronized (loan) {
+                    addNew(loan);
+                }
+            }
+            case DEFAULTED -> {
+                Loan loan = event.loan;
+                synchronized (loan) {
+                    addNew(loan);
+                    // the loan may have been extended since it defaulted
+                    addDefault(loan);
+                }
+            }
+            case REMOVED -> {
+                // entries stay in their buckets until they are pruned
+                paymentsIndexed.remove(event.loan.loanID);
+                feesIndexed.remove(event.loan.loanID);
+                defaulted.remove(event.loan.loanID);
+            }
+            default -> {
+                // other events have no dated activity
+            }
+        }
+    }
+
+    /**
+     * Replace the index with the activity of every loan
+     *
+     * @param loans All loans
+     */
+    public void rebuild(@NotNull Collection<Loan> loans) {
+        buckets.clear();
+        days.clear();
+        paymentsIndexed.clear();
+        feesIndexed.clear();
+        defaulted.clear();
+        Instant now = Instant.now();
+        for (Loan loan : loans) {
+            synchronized (loan) {
+                addNew(loan);
+                // loans that defaulted while the server was down
+                if (!loan.isPaidOff() && now.isAfter(loan.getDueDate())) addDefault(loan);
+            }
+        }
+        prune(now);
+    }
+
+    /**
+     * Drop entries older than the retention period
+     * <p>Whole days are dropped, so the day totals always match the hours that are kept</p>
+     *
+     * @param now The current time
+     */
+    public void prune(@NotNull Instant now) {
+        long day = dayOf(now.minus(retention));
+        buckets.headMap(day * (DAY_SECONDS / BUCKET_SECONDS)).clear();
+        days.headMap(day).clear();
+    }
+
+    /**
+     * Add the payments, fees and default of a loan that are not indexed yet
+     */
+    private void addNew(Loan loan) {
+        addNew(loan.getPayments().stream().map(payment -> paymentEntry(loan, payment)).toList(), paymentsIndexed.get(loan.loanID));
+        // includes the fees charged on payments
+        addNew(loan.getFees().stream().map(fee -> feeEntry(loan, fee)).toList(), feesIndexed.get(loan.loanID));
+        if (loan.isDefaulted()) addDefault(loan);
+    }
+
+    /**
+     * Add the entries after the latest one already indexed
+     * <p>Dates are stored to the second, so entries dated the same second as the latest one are
+     * counted off rather than compared</p>
+     *
+     * @param entries The entries in the order they were made
+     * @param indexed The latest entry indexed, or null if none are
+     */
+    private void addNew(List<ActivityEntry> entries, @Nullable Mark indexed) {
+        int same = 0;
+        for (ActivityEntry entry : entries) {
+            if (indexed != null) {
+                if (entry.date().isBefore(indexed.date())) continue;
+                if (entry.date().equals(indexed.date()) && same++ < indexed.count()) continue;
+            }
+            add(entry);
+        }
+    }
+
+    private static ActivityEntry paymentEntry(Loan loan, Payment payment) {
+        return new ActivityEntry(ActivityType.PAYMENT, loan.loanID, payment.getDate(), payment.getAmountUnits());
+    }
+
+    private static ActivityEntry feeEntry(Loan loan, Fee fee) {
+        return new ActivityEntry(ActivityType.FEE, loan.loanID, fee.getDate(), fee.getAmountUnits());
+    }
+
+    private void addDefault(Loan loan) {
+        // the default date is not stored, a loan is dated as defaulting when it was due
+        if (defaulted.add(loan.loanID)) add(new ActivityEntry(ActivityType.DEFAULT, loan.loanID, loan.getDueDate(), 0));
+    }
+
+    /**
+     * Add an entry to the index
+     *
+     * @param entry The entry
+     */
+    public void add(@NotNull ActivityEntry entry) {
+        buckets.computeIfAbsent(bucketOf(entry.date()), hour -> new Bucket()).add(entry);
+        days.computeIfAbsent(dayOf(entry.date()), day -> new Rollup()).add(entry);
+        switch (entry.type()) {
+            case PAYMENT -> paymentsIndexed.merge(entry.loanID(), new Mark(entry.date(), 1), Mark::latest);
+            case FEE -> feesIndexed.merge(entry.loanID(), new Mark(entry.date(), 1), Mark::latest);
+            default -> {
+                // defaults are tracked by loan
+            }
+        }
+    }
+
+    /**
+     * Total the activity in a time range
+     *
+     * @param from The start of the range, inclusive
+     * @param to   The end of the range, exclusive
+     * @return The totals
+     */
+    @NotNull
+    public ActivitySummary summarize(@NotNull Instant from, @NotNull Instant to) {
+        ActivitySummary summary = new ActivitySummary();
+        // the whole days in the range, the hours before and after them are summed by hour
+        long firstDay = Math.floorDiv(from.getEpochSecond() + DAY_SECONDS - 1, DAY_SECONDS);
+        long endDay = dayOf(to);
+        if (firstDay >= endDay) {
+            summarizeHours(summary, from, to);
+            return summary;
+        }
+
+        Instant daysStart = Instant.ofEpochSecond(firstDay * DAY_SECONDS);
+        Instant daysEnd = Instant.ofEpochSecond(endDay * DAY_SECONDS);
+        summarizeHours(summary, from, daysStart);
+        for (Rollup day : days.subMap(firstDay, true, endDay, false).values()) day.summarize(summary);
+        summarizeHours(summary, daysEnd, to);
+        return summary;
+    }
+
+    private void summarizeHours(ActivitySummary summary, Instant from, Instant to) {
+        if (!from.isBefore(to)) return;
+        long first = bucketOf(from);
+        long last = bucketOf(to);
+        for (var bucket : buckets.subMap(first, true, last, true).entrySet()) {
+            boolean whole = bucket.getKey() > first && bucket.getKey() < last;
+            bucket.getValue().summarize(summary, whole ? null : from, to);
+        }
+    }
+
+    /**
+     * Total the activity of the recent past
+     *
+     * @param window How far back to look
+     * @return The totals
+     */
+    @NotNull
+    public ActivitySummary summarizeLast(@NotNull Duration window) {
+        Instant now = Instant.now();
+        return summarize(now.minus(window), now.plusNanos(1));
+    }
+
+    /**
+     * Get the entries in a time range
+     *
+     * @param from The start of the range, inclusive
+     * @param to   The end of the range, exclusive
+     * @param type Only entries of this type, or null for all entries
+     * @return The entries, in bucket order
+     */
+    @NotNull
+    public List<ActivityEntry> getEntries(@NotNull Instant from, @NotNull Instant to, @Nullable ActivityType type) {
+        List<ActivityEntry> entries = new ArrayList<>();
+        for (Bucket bucket : buckets.subMap(bucketOf(from), true, bucketOf(to), true).values()) {
+            bucket.collect(entries, from, to, type);
+        }
+        return entries;
+    }
+
+    private static long bucketOf(Instant date) {
+        return Math.floorDiv(date.getEpochSecond(), BUCKET_SECONDS);
+    }
+
+    private static long dayOf(Instant date) {
+        return Math.floorDiv(date.getEpochSecond(), DAY_SECONDS);
+    }
+
+    /**
+     * The latest entry indexed for a loan
+     *
+     * @param date  The date of the latest entry
+     * @param count The number of entries indexed with that date
+     */
+    private record Mark(Instant date, int count) {
+        static Mark latest(Mark a, Mark b) {
+            if (a.date.equals(b.date)) return new Mark(a.date, a.count + b.count);
+            return a.date.isAfter(b.date) ? a : b;
+        }
+    }
+
+    /**
+     * The totals of one day
+     */
+    private static class Rollup {
+        private final ActivitySummary totals = new ActivitySummary();
+
+        synchronized void add(ActivityEntry entry) {
+            totals.add(entry);
+        }
+
+        synchronized void summarize(ActivitySummary summary) {
+            summary.add(totals);
+        }
+    }
+
+    /**
+     * The entries of one hour and their totals
+     */
+    private static class Bucket {
+        private final List<ActivityEntry> entries = new ArrayList<>();
+        private final ActivitySummary totals = new ActivitySummary();
+
+        synchronized void add(ActivityEntry entry) {
+            entries.add(entry);
+            totals.add(entry);
+        }
+
+        /**
+         * @param from The start of the range, or null if the bucket is entirely inside the range
+         */
+        synchronized void summarize(ActivitySummary summary, @Nullable Instant from, Instant to) {
+            if (from == null) {
+                summary.add(totals);
+                return;
+            }
+            for (ActivityEntry entry : entries) {
+                if (!entry.date().isBefore(from) && entry.date().isBefore(to)) summary.add(entry);
+            }
+        }
+
+        synchronized void collect(List<ActivityEntry> result, Instant from, Instant to, @Nullable ActivityType type) {
+            for (ActivityEntry entry : entries) {
+                if ((type == null || entry.type() == type) && !entry.date().isBefore(from) && entry.date().isBefore(to)) {
+                    result.add(entry);
+                }
+            }
+        }
+    }
+}
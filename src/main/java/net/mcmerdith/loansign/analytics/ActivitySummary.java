@@ -0,0 +1,73 @@
+package net.mcmerdith.loansign.analytics;
+
+import net.mcmerdith.loansign.model.MinorUnits;
+
+import java.math.BigDecimal;
+
+/**
+ * Totals of the activity in a time range
+ */
+public class ActivitySummary {
+    int payments;
+    long paymentUnits;
+    int fees;
+    long feeUnits;
+    int defaults;
+
+    void add(ActivityEntry entry) {
+        switch (entry.type()) {
+            case PAYMENT -> {
+                ++payments;
+                paymentUnits += entry.units();
+            }
+            case FEE -> {
+                ++fees;
+                feeUnits += entry.units();
+            }
+            case DEFAULT -> ++defaults;
+        }
+    }
+
+    void add(ActivitySummary other) {
+        payments += other.payments;
+        paymentUnits += other.paymentUnits;
+        fees += other.fees;
+        feeUnits += other.feeUnits;
+        defaults += other.defaults;
+    }
+
+    /**
+     * @return The number of payments collected
+     */
+    public int getPayments() {
+        return payments;
+    }
+
+    /**
+     * @return The total amount collected
+     */
+    public BigDecimal getPaymentVolume() {
+        return MinorUnits.toDecimal(paymentUnits);
+    }
+
+    /**
+     * @return The number of fees charged
+     */
+    public int getFees() {
+        return fees;
+    }
+
+    /**
+     * @return The total amount of fees charged
+     */
+    public BigDecimal getFeeIncome() {
+        return MinorUnits.toDecimal(feeUnits);
+    }
+
+    /**
+     * @return The number of loans that defaulted
+     */
+    public int getDefaults() {
+        return defaults;
+    }
+}
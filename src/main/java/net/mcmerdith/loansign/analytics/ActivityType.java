@@ -0,0 +1,10 @@
+package net.mcmerdith.loansign.analytics;
+
+/**
+ * The kinds of dated activity kept in the {@link ActivityIndex}
+ */
+public enum ActivityType {
+    PAYMENT,
+    FEE,
+    DEFAULT
+}
@@ -0,0 +1,72 @@
+package net.mcmerdith.loansign.analytics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counts of values in fixed buckets
+ */
+public class Histogram {
+    /**
+     * The inclusive upper bound of each bucket but the last, ascending
+     */
+    private final long[] bounds;
+
+    private final long[] counts;
+
+    Histogram(long... bounds) {
+        this.bounds = bounds;
+        this.counts = new long[bounds.length + 1];
+    }
+
+    private Histogram(Histogram other) {
+        this.bounds = other.bounds;
+        this.counts = other.counts.clone();
+    }
+
+    /**
+     * Add or remove a value
+     *
+     * @param value The value
+     * @param sign  1 to add, -1 to remove
+     */
+    void apply(long value, int sign) {
+        int bucket = Arrays.binarySearch(bounds, value);
+        if (bucket < 0) bucket = -bucket - 1;
+        counts[bucket] += sign;
+    }
+
+    /**
+     * @return An independent copy of this histogram
+     */
+    @NotNull
+    Histogram copy() {
+        return new Histogram(this);
+    }
+
+    /**
+     * @return The number of values in each bucket
+     */
+    @NotNull
+    public long[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * @return A label for each bucket, such as {@code 1-7} or {@code >30}
+     */
+    @NotNull
+    public List<String> getLabels() {
+        List<String> labels = new ArrayList<>(counts.length);
+        long lower = Long.MIN_VALUE;
+        for (long bound : bounds) {
+            labels.add(lower == Long.MIN_VALUE ? "<=" + bound : lower == bound ? Long.toString(bound) : lower + "-" + bound);
+            lower = bound + 1;
+        }
+        labels.add(">" + bounds[bounds.length - 1]);
+        return labels;
+    }
+}
@@ -0,0 +1,310 @@
+package net.mcmerdith.loansign.analytics;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventBus;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.MinorUnits;
+import net.mcmerdith.loansign.storage.LoanData;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Lender and server-wide portfolio totals, kept up to date from loan events
+ * <p>Each loan's last {@link LoanContribution} is remembered so a change only replaces that loan's share.
+ * The contributions are snapshot next to the loan data so a restart does not recalculate every loan.</p>
+ */
+public class LoanAnalytics {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(LoanAnalytics.class);
+
+    private static LoanAnalytics instance;
+
+    public static LoanAnalytics instance() {
+        if (instance == null) instance = new LoanAnalytics();
+        return instance;
+    }
+
+    private static final long UNITS_PER_WHOLE = MinorUnits.toUnits(BigDecimal.ONE);
+
+    private final Gson gson = new Gson();
+
+    private final Map<UUID, LoanContribution> contributions = new HashMap<>();
+    private final Map<UUID, PortfolioStats> lenders = new HashMap<>();
+    private PortfolioStats server = new PortfolioStats();
+
+    /**
+     * Remaining balance in whole currency units
+     */
+    private Histogram balances = new Histogram(10, 100, 1000, 10000, 100000);
+
+    /**
+     * Days the oldest unpaid installment is late
+     */
+    private Histogram overdueDays = new Histogram(0, 1, 3, 7, 14, 30);
+
+    /**
+     * Lenders ordered by outstanding principal, largest first
+     */
+    private final NavigableSet<Ranking> rankings = new TreeSet<>(Comparator
+            .comparingLong(Ranking::principal).reversed()
+            .thenComparing(Ranking::lender));
+
+    /**
+     * Keep the totals up to date with loan events
+     *
+     * @param bus The event bus
+     */
+    public void subscribe(@NotNull LoanEventBus bus) {
+        bus.subscribe("analytics", this::onEvents, () -> rebuild(LoanData.instance().getLoansView()));
+    }
+
+    private void onEvents(@NotNull List<LoanEvent> events) {
+        Instant now = Instant.now();
+        for (LoanEvent event : events) {
+            switch (event.type) {
+                case REMOVED -> remove(event.loan.loanID);
+                case OFFERED, OFFER_ACCEPTED, OFFER_DECLINED, OFFER_EXPIRED -> {
+                    // offers are not part of any portfolio
+                }
+                default -> update(event.loan, now);
+            }
+        }
+    }
+
+    /**
+     * Recalculate the share of a loan
+     *
+     * @param loan The loan
+     * @param now  The current time
+     */
+    public void update(@NotNull Loan loan, @NotNull Instant now) {
+        LoanContribution contribution;
+        synchronized (loan) {
+            contribution = LoanContribution.of(loan, now);
+        }
+        synchronized (this) {
+            replace(loan.loanID, contribution);
+        }
+    }
+
+    /**
+     * Recalculate the time-dependent shares of loans, such as how overdue they are
+     *
+     * @param loans The loans
+     */
+    public void refresh(@NotNull Collection<Loan> loans) {
+        Instant now = Instant.now();
+        loans.forEach(loan -> update(loan, now));
+    }
+
+    /**
+     * Remove the share of a loan
+     *
+     * @param loanID The {@link UUID} of the loan
+     */
+    public synchronized void remove(@NotNull UUID loanID) {
+        replace(loanID, null);
+    }
+
+    /**
+     * Recalculate everything from scratch
+     *
+     * @param loans All loans
+     */
+    public void rebuild(@NotNull Collection<Loan> loans) {
+        synchronized (this) {
+            clear();
+        }
+        refresh(loans);
+    }
+
+    /**
+     * @param lender The lender
+     * @return The totals of a lender's loans
+     */
+    @NotNull
+    public synchronized PortfolioStats getLenderStats(@NotNull UUID lender) {
+        PortfolioStats stats = lenders.get(lender);
+        return stats == null ? new PortfolioStats() : stats.copy();
+    }
+
+    /**
+     * @return The totals of all loans
+     */
+    @NotNull
+    public synchronized PortfolioStats getServerStats() {
+        return server.copy();
+    }
+
+    /**
+     * @return The number of loans by remaining balance, in whole currency units
+     */
+    @NotNull
+    public synchronized Histogram getBalanceHistogram() {
+        return balances.copy();
+    }
+
+    /**
+     * @return The number of loans by days overdue
+     */
+    @NotNull
+    public synchronized Histogram getOverdueHistogram() {
+        return overdueDays.copy();
+    }
+
+    /**
+     * @param count The maximum number of lenders
+     * @return The lenders with the most outstanding principal, largest first
+     */
+    @NotNull
+    public synchronized List<UUID> getTopLenders(int count) {
+        List<UUID> top = new ArrayList<>(count);
+        for (Ranking ranking : rankings) {
+            if (top.size() >= count) break;
+            top.add(ranking.lender());
+        }
+        return top;
+    }
+
+    /**
+     * Write the totals next to the loan data
+     *
+     * @param loans The loans that were saved
+     */
+    public void saveSnapshot(@NotNull Collection<Loan> loans) {
+        saveSnapshot(loans, getSnapshotFile());
+    }
+
+    void saveSnapshot(@NotNull Collection<Loan> loans, @NotNull File file) {
+        Snapshot snapshot;
+        synchronized (this) {
+            snapshot = new Snapshot(fingerprint(loans), new HashMap<>(contributions));
+        }
+        try {
+            Files.writeString(file.toPath(), gson.toJson(snapshot),
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            logger.exception(e, "Failed to write analytics snapshot");
+        }
+    }
+
+    /**
+     * Restore the totals from the snapshot, or rebuild them if it does not match the loans
+     *
+     * @param loans All loans
+     * @return If the snapshot was used
+     */
+    public boolean restore(@NotNull Collection<Loan> loans) {
+        return restore(loans, getSnapshotFile());
+    }
+
+    boolean restore(@NotNull Collection<Loan> loans, @NotNull File file) {
+        Snapshot snapshot = null;
+        if (file.exists()) {
+            try {
+                snapshot = gson.fromJson(Files.readString(file.toPath(), StandardCharsets.UTF_8), Snapshot.class);
+            } catch (IOException | JsonParseException e) {
+                logger.exception(e, "Failed to read analytics snapshot");
+            }
+        }
+
+        if (snapshot == null || snapshot.contributions() == null || snapshot.fingerprint() != fingerprint(loans)) {
+            rebuild(loans);
+            return false;
+        }
+
+        synchronized (this) {
+            clear();
+            snapshot.contributions().forEach(this::replace);
+        }
+        return true;
+    }
+
+    private File getSnapshotFile() {
+        return new File(LoanSignMain.instance.getDataFolder(), "analytics.json");
+    }
+
+    /**
+     * An order-independent hash of what the contributions depend on, cheap to compute without reading history
+     */
+    private static long fingerprint(Collection<Loan> loans) {
+        long hash = loans.size();
+        for (Loan loan : loans) {
+            long h;
+            synchronized (loan) {
+                h = loan.loanID.getMostSignificantBits() ^ loan.loanID.getLeastSignificantBits();
+                h = h * 31 + MinorUnits.toUnits(loan.getPaymentTotal());
+                h = h * 31 + MinorUnits.toUnits(loan.getFeeTotal());
+                h = h * 31 + (loan.getPrincipal() == null ? 0 : MinorUnits.toUnits(loan.getPrincipal()));
+            }
+            // mix so that sums of similar loans do not collide
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            hash += h;
+        }
+        return hash;
+    }
+
+    private void clear() {
+        contributions.clear();
+        lenders.clear();
+        rankings.clear();
+        server = new PortfolioStats();
+        balances = new Histogram(10, 100, 1000, 10000, 100000);
+        overdueDays = new Histogram(0, 1, 3, 7, 14, 30);
+    }
+
+    /**
+     * Swap the contribution of a loan
+     * <p>Must be called while holding the lock on this object</p>
+     */
+    private void replace(UUID loanID, LoanContribution next) {
+        LoanContribution previous = next == null ? contributions.remove(loanID) : contributions.put(loanID, next);
+        if (previous != null) apply(previous, -1);
+        if (next != null) apply(next, 1);
+    }
+
+    private void apply(LoanContribution contribution, int sign) {
+        PortfolioStats stats = lenders.computeIfAbsent(contribution.lender(), k -> new PortfolioStats());
+        rankings.remove(new Ranking(stats.getOutstandingPrincipalUnits(), contribution.lender()));
+        stats.apply(contribution, sign);
+        if (stats.getLoans() == 0) {
+            lenders.remove(contribution.lender());
+        } else {
+            rankings.add(new Ranking(stats.getOutstandingPrincipalUnits(), contribution.lender()));
+        }
+
+        server.apply(contribution, sign);
+        balances.apply(contribution.remaining() / UNITS_PER_WHOLE, sign);
+        overdueDays.apply(contribution.overdueDays(), sign);
+    }
+
+    private record Ranking(long principal, UUID lender) {
+    }
+
+    private record Snapshot(long fingerprint, Map<UUID, LoanContribution> contributions) {
+    }
+}
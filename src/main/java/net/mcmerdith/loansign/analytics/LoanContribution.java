@@ -0,0 +1,62 @@
+package net.mcmerdith.loansign.analytics;
+
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.MinorUnits;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * What one loan adds to its lender's {@link PortfolioStats}
+ * <p>Payments are assumed to pay principal, interest and fees in proportion</p>
+ *
+ * @param lender      The lender of the loan
+ * @param principal   The outstanding principal in {@link MinorUnits}
+ * @param interest    The interest still expected in {@link MinorUnits}
+ * @param fees        The fees charged in {@link MinorUnits}
+ * @param remaining   The remaining balance in {@link MinorUnits}
+ * @param defaulted   If the loan is past due with a balance remaining
+ * @param overdueDays The number of days the oldest unpaid installment is late
+ */
+record LoanContribution(UUID lender, long principal, long interest, long fees, long remaining, boolean defaulted, int overdueDays) {
+    /**
+     * Calculate the contribution of a loan
+     *
+     * @param loan The loan
+     * @param now  The current time
+     * @return The contribution
+     * @implSpec Callers off the main thread must hold the lock on the loan
+     */
+    @NotNull
+    static LoanContribution of(@NotNull Loan loan, @NotNull Instant now) {
+        BigDecimal remaining = loan.getRemainingAmount();
+        BigDecimal total = loan.getTotalAmount();
+        BigDecimal fees = loan.getFeeTotal();
+        // loans saved before the principal was recorded count entirely as interest
+        BigDecimal lent = loan.getPrincipal() == null ? BigDecimal.ZERO : loan.getPrincipal();
+        BigDecimal interest = total.subtract(fees).subtract(lent).max(BigDecimal.ZERO);
+
+        BigDecimal share = total.signum() == 0 ? BigDecimal.ZERO : remaining.divide(total, MathContext.DECIMAL64);
+        BigDecimal principal = lent.multiply(share).setScale(MinorUnits.SCALE, RoundingMode.HALF_UP);
+        BigDecimal expected = interest.multiply(share).setScale(MinorUnits.SCALE, RoundingMode.HALF_UP);
+
+        boolean paidOff = remaining.signum() == 0;
+        int overdueDays = 0;
+        if (!paidOff && loan.isPaymentDue()) {
+            overdueDays = (int) Math.max(0, Duration.between(loan.getNextPaymentDate(), now).toDays());
+        }
+
+        return new LoanContribution(loan.lender,
+                MinorUnits.toUnits(principal),
+                MinorUnits.toUnits(expected),
+                MinorUnits.toUnits(fees),
+                MinorUnits.toUnits(remaining),
+                !paidOff && now.isAfter(loan.getDueDate()),
+                overdueDays);
+    }
+}
@@ -0,0 +1,110 @@
+package net.mcmerdith.loansign.analytics;
+
+import net.mcmerdith.loansign.model.MinorUnits;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+
+/**
+ * Running totals over a set of loans
+ */
+public class PortfolioStats {
+    private int loans;
+    private int defaulted;
+    private long principal;
+    private long interest;
+    private long fees;
+    private long remaining;
+
+    PortfolioStats() {
+    }
+
+    private PortfolioStats(PortfolioStats other) {
+        this.loans = other.loans;
+        this.defaulted = other.defaulted;
+        this.principal = other.principal;
+        this.interest = other.interest;
+        this.fees = other.fees;
+        this.remaining = other.remaining;
+    }
+
+    /**
+     * Add or remove a contribution
+     *
+     * @param contribution The contribution
+     * @param sign         1 to add, -1 to remove
+     */
+    void apply(@NotNull LoanContribution contribution, int sign) {
+        loans += sign;
+        if (contribution.defaulted()) defaulted += sign;
+        principal += sign * contribution.principal();
+        interest += sign * contribution.interest();
+        fees += sign * contribution.fees();
+        remaining += sign * contribution.remaining();
+    }
+
+    /**
+     * @return An independent copy of these totals
+     */
+    @NotNull
+    PortfolioStats copy() {
+        return new PortfolioStats(this);
+    }
+
+    /**
+     * @return The number of loans
+     */
+    public int getLoans() {
+        return loans;
+    }
+
+    /**
+     * @return The number of loans past due with a balance remaining
+     */
+    public int getDefaulted() {
+        return defaulted;
+    }
+
+    /**
+     * @return The share of loans that have defaulted, between 0 and 1
+     */
+    public double getDefaultRate() {
+        return loans == 0 ? 0.0 : (double) defaulted / loans;
+    }
+
+    /**
+     * @return The principal not yet repaid
+     */
+    @NotNull
+    public BigDecimal getOutstandingPrincipal() {
+        return MinorUnits.toDecimal(principal);
+    }
+
+    long getOutstandingPrincipalUnits() {
+        return principal;
+    }
+
+    /**
+     * @return The interest still expected to be repaid
+     */
+    @NotNull
+    public BigDecimal getExpectedInterest() {
+        return MinorUnits.toDecimal(interest);
+    }
+
+    /**
+     * @return The total fees charged
+     */
+    @NotNull
+    public BigDecimal getFeeIncome() {
+        return MinorUnits.toDecimal(fees);
+    }
+
+    /**
+     * @return The total remaining balance
+     */
+    @NotNull
+    public BigDecimal getRemaining() {
+        return MinorUnits.toDecimal(remaining);
+    }
+}
@@ -0,0 +1,145 @@
+package net.mcmerdith.loansign.bulk;
+
+import net.mcmerdith.loansign.analytics.LoanAnalytics;
+import net.mcmerdith.loansign.cache.PlayerSummaryCache;
+import net.mcmerdith.loansign.io.IoExecutor;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.MinorUnits;
+import net.mcmerdith.loansign.storage.LoanData;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Applies a {@link LoanMutation} to every loan matching a filter
+ * <p>Loans are processed in parallel chunks, each loan under its own lock. All changes
+ * are written with a single save instead of one write per loan.</p>
+ */
+public class BulkOperations {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(BulkOperations.class);
+
+    private static BulkOperations instance;
+
+    public static BulkOperations instance() {
+        if (instance == null) instance = new BulkOperations();
+        return instance;
+    }
+
+    /**
+     * Chunks no larger than this are processed on a single thread
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Start a bulk operation on the {@link IoExecutor}
+     *
+     * @param filter   Selects the loans to change
+     * @param mutation The change
+     * @param dryRun   Only count what would change
+     * @return The result, or null if a bulk operation is already running
+     */
+    @Nullable
+    public CompletableFuture<BulkResult> run(@NotNull Predicate<Loan> filter, @NotNull LoanMutation mutation, boolean dryRun) {
+        if (!running.compareAndSet(false, true)) return null;
+        return IoExecutor.instance().submit(() -> execute(LoanData.instance(), filter, mutation, dryRun))
+                .whenComplete((result, e) -> running.set(false));
+    }
+
+    /**
+     * Run a bulk operation on the calling thread
+     *
+     * @param data     The loans
+     * @param filter   Selects the loans to change
+     * @param mutation The change
+     * @param dryRun   Only count what would change
+     * @return The result
+     */
+    @NotNull
+    public static BulkResult execute(@NotNull LoanData data, @NotNull Predicate<Loan> filter, @NotNull LoanMutation mutation, boolean dryRun) {
+        List<Loan> loans = new ArrayList<>(data.getLoansView());
+        Chunk chunk = ForkJoinPool.commonPool().invoke(new BulkTask(data, loans, filter, mutation, dryRun));
+        BulkResult result = new BulkResult(dryRun, chunk.matched, MinorUnits.toDecimal(chunk.balanceUnits), chunk.changes);
+        if (dryRun || chunk.changes.isEmpty()) return result;
+
+        logger.info("Bulk operation changed " + chunk.changes.size() + " of " + chunk.matched + " matching loans");
+        if (!data.save()) logger.error("Some bulk changes could not be saved and will be retried on the next save");
+        LoanAnalytics.instance().refresh(chunk.changes);
+        PlayerSummaryCache.instance().clear();
+        return result;
+    }
+
+    /**
+     * The changes made to part of the loan book
+     */
+    private static class Chunk {
+        private int matched;
+        private long balanceUnits;
+        private final List<Loan> changes = new ArrayList<>();
+
+        private Chunk merge(Chunk other) {
+            matched += other.matched;
+            balanceUnits += other.balanceUnits;
+            changes.addAll(other.changes);
+            return this;
+        }
+    }
+
+    private static class BulkTask extends RecursiveTask<Chunk> {
+        private final LoanData data;
+        private final List<Loan> loans;
+        private final Predicate<Loan> filter;
+        private final LoanMutation mutation;
+        private final boolean dryRun;
+
+        BulkTask(LoanData data, List<Loan> loans, Predicate<Loan> filter, LoanMutation mutation, boolean dryRun) {
+            this.data = data;
+            this.loans = loans;
+            this.filter = filter;
+            this.mutation = mutation;
+            this.dryRun = dryRun;
+        }
+
+        @Override
+        protected Chunk compute() {
+            if (loans.size() <= CHUNK_SIZE) {
+                Chunk chunk = new Chunk();
+                loans.forEach(loan -> process(loan, chunk));
+                return chunk;
+            }
+
+            int middle = loans.size() / 2;
+            BulkTask left = new BulkTask(data, loans.subList(0, middle), filter, mutation, dryRun);
+            BulkTask right = new BulkTask(data, loans.subList(middle, loans.size()), filter, mutation, dryRun);
+            left.fork();
+            Chunk chunk = right.compute();
+            return chunk.merge(left.join());
+        }
+
+        private void process(Loan loan, Chunk chunk) {
+            synchronized (loan) {
+                if (!filter.test(loan)) return;
+                ++chunk.matched;
+
+                BigDecimal change = mutation.preview(loan);
+                if (change == null) return;
+                chunk.balanceUnits += MinorUnits.toUnits(change);
+                chunk.changes.add(loan);
+                if (dryRun) return;
+
+                if (mutation.changesDueDate()) data.reindex(loan, () -> mutation.apply(loan));
+                else mutation.apply(loan);
+            }
+        }
+    }
+}
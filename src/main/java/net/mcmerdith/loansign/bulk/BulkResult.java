@@ -0,0 +1,62 @@
+package net.mcmerdith.loansign.bulk;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a bulk operation, or what it would do in a dry run
+ */
+public class BulkResult {
+    private final boolean dryRun;
+    private final int matched;
+    private final BigDecimal balanceChange;
+    private final List<Loan> changes;
+
+    BulkResult(boolean dryRun, int matched, @NotNull BigDecimal balanceChange, @NotNull List<Loan> changes) {
+        this.dryRun = dryRun;
+        this.matched = matched;
+        this.balanceChange = balanceChange;
+        this.changes = changes;
+    }
+
+    /**
+     * @return If nothing was changed
+     */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /**
+     * @return The number of loans matching the filter
+     */
+    public int getMatched() {
+        return matched;
+    }
+
+    /**
+     * @return The number of loans changed, or that would be changed in a dry run
+     */
+    public int getChanged() {
+        return changes.size();
+    }
+
+    /**
+     * @return The total change to the remaining balance of all loans
+     */
+    @NotNull
+    public BigDecimal getBalanceChange() {
+        return balanceChange;
+    }
+
+    /**
+     * @return The loans changed, or that would be changed in a dry run
+     */
+    @NotNull
+    public List<Loan> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+}
@@ -0,0 +1,124 @@
+package net.mcmerdith.loansign.bulk;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * A change applied to many loans by {@link BulkOperations}
+ * <p>Both methods are called while holding the lock on the loan</p>
+ */
+public interface LoanMutation {
+    /**
+     * @param loan The loan
+     * @return The change to the remaining balance of the loan, or null if the mutation would not change it
+     */
+    @Nullable
+    BigDecimal preview(@NotNull Loan loan);
+
+    /**
+     * Change the loan
+     *
+     * @param loan The loan, only called if {@link LoanMutation#preview(Loan)} returned a change
+     */
+    void apply(@NotNull Loan loan);
+
+    /**
+     * @return If the mutation changes the due date, so loans must be re-indexed
+     */
+    default boolean changesDueDate() {
+        return false;
+    }
+
+    /**
+     * Forgive fees charged on or after a date
+     *
+     * @param since The earliest fee date
+     */
+    static LoanMutation waiveFees(@NotNull Instant since) {
+        return new LoanMutation() {
+            @Override
+            public BigDecimal preview(@NotNull Loan loan) {
+                BigDecimal fees = loan.getFeeTotalSince(since);
+                if (fees.signum() == 0) return null;
+                // fees past the remaining balance were never going to be collected
+                return fees.min(loan.getRemainingAmount()).negate();
+            }
+
+            @Override
+            public void apply(@NotNull Loan loan) {
+                loan.waiveFees(since);
+            }
+        };
+    }
+
+    /**
+     * Add periods to unpaid loans without charging more interest
+     *
+     * @param periods The number of periods to add
+     */
+    static LoanMutation extend(int periods) {
+        return new LoanMutation() {
+            @Override
+            public BigDecimal preview(@NotNull Loan loan) {
+                if (periods <= 0 || loan.isPaidOff()) return null;
+                return BigDecimal.ZERO;
+            }
+
+            @Override
+            public void apply(@NotNull Loan loan) {
+                loan.extend(periods);
+            }
+
+            @Override
+            public boolean changesDueDate() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Change the interest rate of unpaid loans
+     *
+     * @param rate The new interest rate per period
+     */
+    static LoanMutation adjustRate(@NotNull BigDecimal rate) {
+        return new LoanMutation() {
+            @Override
+            public BigDecimal preview(@NotNull Loan loan) {
+                if (loan.isPaidOff() || loan.getRate().compareTo(rate) == 0) return null;
+                BigDecimal total = loan.quoteTotal(rate);
+                if (total == null) return null;
+                BigDecimal remaining = loan.getRemainingAmount();
+                // a lower total can never take the balance below zero
+                return total.subtract(loan.getLoanAmount()).max(remaining.negate());
+            }
+
+            @Override
+            public void apply(@NotNull Loan loan) {
+                loan.setRate(rate);
+            }
+        };
+    }
+
+    /**
+     * Close unpaid loans, forgiving the remaining balance
+     */
+    static LoanMutation close() {
+        return new LoanMutation() {
+            @Override
+            public BigDecimal preview(@NotNull Loan loan) {
+                if (loan.isPaidOff()) return null;
+                return loan.getRemainingAmount().negate();
+            }
+
+            @Override
+            public void apply(@NotNull Loan loan) {
+                loan.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,137 @@
+package net.mcmerdith.loansign.cache;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * A bounded LRU cache of {@link OfflinePlayer} handles for economy calls
+ * <p>Looking up an offline player may read their profile from disk, so handles are kept between
+ * collections. Online players are cached on join and evicted on quit, and the parties to loans
+ * due before the next collection are looked up off the main thread ahead of time.</p>
+ */
+public class OfflinePlayerCache {
+    private static OfflinePlayerCache instance;
+
+    public static OfflinePlayerCache instance() {
+        if (instance == null) instance = new OfflinePlayerCache(Bukkit::getOfflinePlayer);
+        return instance;
+    }
+
+    private static final int DEFAULT_MAX_SIZE = 2000;
+
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * Looks up a player that is not cached
+     */
+    private final Function<UUID, OfflinePlayer> loader;
+
+    private final Map<UUID, OfflinePlayer> players = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, OfflinePlayer> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    /**
+     * @param loader Looks up a player that is not cached
+     */
+    OfflinePlayerCache(@NotNull Function<UUID, OfflinePlayer> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Load the cache settings
+     *
+     * @param config The {@code player-cache} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        maxSize = Math.max(1, config.getInt("max-size", DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * Get a player's handle, looking it up if it is not cached
+     *
+     * @param player The player
+     * @return The handle
+     */
+    @NotNull
+    public OfflinePlayer get(@NotNull UUID player) {
+        OfflinePlayer handle;
+        synchronized (players) {
+            handle = players.get(player);
+        }
+        if (handle != null) return handle;
+
+        // the lookup may block, so it happens outside the lock
+        handle = loader.apply(player);
+        synchronized (players) {
+            OfflinePlayer existing = players.putIfAbsent(player, handle);
+            return existing == null ? handle : existing;
+        }
+    }
+
+    /**
+     * Look up the lenders and borrowers of loans that are not cached
+     *
+     * @param loans The loans
+     * @return The number of players looked up
+     */
+    public int warm(@NotNull Collection<Loan> loans) {
+        Set<UUID> missing = new HashSet<>();
+        synchronized (players) {
+            for (Loan loan : loans) {
+                // a plain lookup does not refresh the LRU order of players that are cached
+                if (!players.containsKey(loan.lender)) missing.add(loan.lender);
+                if (!players.containsKey(loan.borrower)) missing.add(loan.borrower);
+            }
+        }
+        missing.forEach(this::get);
+        return missing.size();
+    }
+
+    /**
+     * Cache the handle of a player who joined
+     *
+     * @param player The player
+     */
+    public void put(@NotNull Player player) {
+        synchronized (players) {
+            players.put(player.getUniqueId(), player);
+        }
+    }
+
+    /**
+     * Remove a player's handle, so the next lookup gets a fresh one
+     *
+     * @param player The player
+     */
+    public void evict(@NotNull UUID player) {
+        synchronized (players) {
+            players.remove(player);
+        }
+    }
+
+    /**
+     * @return The number of cached handles
+     */
+    public int size() {
+        synchronized (players) {
+            return players.size();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package net.mcmerdith.loansign.cache;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A snapshot of a player's active loans
+ */
+public class PlayerSummary {
+    @NotNull
+    public final UUID player;
+
+    /**
+     * The number of active loans the player is borrowing
+     */
+    public final int borrowing;
+
+    /**
+     * The number of active loans the player is lending
+     */
+    public final int lending;
+
+    /**
+     * The total remaining amount the player owes
+     */
+    @NotNull
+    public final BigDecimal totalOwed;
+
+    /**
+     * The total remaining amount owed to the player
+     */
+    @NotNull
+    public final BigDecimal totalReceivable;
+
+    /**
+     * The amount the player should have paid by now but has not
+     */
+    @NotNull
+    public final BigDecimal overdue;
+
+    /**
+     * When the player's next installment is due, or null if they owe nothing
+     */
+    @Nullable
+    public final Instant nextDueDate;
+
+    /**
+     * When the time-dependent values of this summary become stale
+     */
+    @Nullable
+    final Instant expires;
+
+    private PlayerSummary(@NotNull UUID player, int borrowing, int lending, @NotNull BigDecimal totalOwed, @NotNull BigDecimal totalReceivable,
+                          @NotNull BigDecimal overdue, @Nullable Instant nextDueDate, @Nullable Instant expires) {
+        this.player = player;
+        this.borrowing = borrowing;
+        this.lending = lending;
+        this.totalOwed = totalOwed;
+        this.totalReceivable = totalReceivable;
+        this.overdue = overdue;
+        this.nextDueDate = nextDueDate;
+        this.expires = expires;
+    }
+
+    /**
+     * Summarize a player's loans
+     *
+     * @param player   The player
+     * @param borrowed The loans given to the player
+     * @param lent     The loans given by the player
+     * @return The summary
+     */
+    @NotNull
+    public static PlayerSummary of(@NotNull UUID player, @NotNull Collection<Loan> borrowed, @NotNull Collection<Loan> lent) {
+        List<Line> borrowedLines = new ArrayList<>(borrowed.size());
+        for (Loan loan : borrowed) {
+            Line line = Line.of(loan);
+            if (line != null) borrowedLines.add(line);
+        }
+        List<Line> lentLines = new ArrayList<>(lent.size());
+        for (Loan loan : lent) {
+            Line line = Line.of(loan);
+            if (line != null) lentLines.add(line);
+        }
+        return sum(player, borrowedLines, lentLines);
+    }
+
+    /**
+     * Summarize the lines of a player's active loans
+     *
+     * @param player   The player
+     * @param borrowed The lines of the loans given to the player
+     * @param lent     The lines of the loans given by the player
+     * @return The summary
+     */
+    @NotNull
+    static PlayerSummary sum(@NotNull UUID player, @NotNull Collection<Line> borrowed, @NotNull Collection<Line> lent) {
+        BigDecimal totalOwed = BigDecimal.ZERO;
+        BigDecimal totalReceivable = BigDecimal.ZERO;
+        BigDecimal overdue = BigDecimal.ZERO;
+        Instant nextDueDate = null;
+
+        for (Line line : borrowed) {
+            totalOwed = totalOwed.add(line.remaining());
+            overdue = overdue.add(line.overdue());
+            nextDueDate = earliest(nextDueDate, line.next());
+        }
+
+        for (Line line : lent) {
+            totalReceivable = totalReceivable.add(line.remaining());
+        }
+
+        return new PlayerSummary(player, borrowed.size(), lent.size(), totalOwed, totalReceivable, overdue, nextDueDate, nextDueDate);
+    }
+
+    /**
+     * @param now The current time
+     * @return If an installment has come due since this summary was made
+     */
+    boolean isStale(@NotNull Instant now) {
+        return expires != null && !now.isBefore(expires);
+    }
+
+    private static Instant earliest(Instant a, Instant b) {
+        return a == null || b.isBefore(a) ? b : a;
+    }
+
+    /**
+     * The share of one active loan in a summary
+     *
+     * @param remaining The remaining balance
+     * @param overdue   The amount that should have been paid by now
+     * @param next      When the next installment is due
+     */
+    record Line(@NotNull BigDecimal remaining, @NotNull BigDecimal overdue, @NotNull Instant next) {
+        /**
+         * @param loan The loan
+         * @return The line of the loan, or null if it is paid off
+         */
+        @Nullable
+        static Line of(@NotNull Loan loan) {
+            synchronized (loan) {
+                if (loan.isPaidOff()) return null;
+                return new Line(loan.getRemainingAmount(), loan.getOverdueAmount(), loan.getNextPaymentDate());
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package net.mcmerdith.loansign.cache;
+
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventBus;
+import net.mcmerdith.loansign.event.LoanEventType;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.storage.LoanData;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A bounded LRU cache of {@link PlayerSummary}s
+ * <p>Each summary keeps the {@link PlayerSummary.Line} of every active loan of the player. When the
+ * {@link LoanEventBus} reports a change, only the changed loan is read again and the summary is
+ * added up from the kept lines. Summaries are rebuilt from the player's indexed loans when an
+ * installment comes due. Online players are warmed on join and evicted on quit.</p>
+ */
+public class PlayerSummaryCache {
+    private static PlayerSummaryCache instance;
+
+    public static PlayerSummaryCache instance() {
+        if (instance == null) instance = new PlayerSummaryCache(LoanData.instance(), DEFAULT_MAX_SIZE);
+        return instance;
+    }
+
+    private static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final LoanData data;
+
+    private volatile int maxSize;
+
+    private final Map<UUID, Entry> summaries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    /**
+     * @param data    The loans summaries are built from
+     * @param maxSize The number of summaries to keep
+     */
+    PlayerSummaryCache(@NotNull LoanData data, int maxSize) {
+        this.data = data;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Load the cache settings
+     *
+     * @param config The {@code summary-cache} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        maxSize = Math.max(1, config.getInt("max-size", DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * Keep cached summaries up to date with loan events
+     *
+     * @param bus The event bus
+     */
+    public void subscribe(@NotNull LoanEventBus bus) {
+        bus.subscribe("summary-cache", this::onEvents, this::clear);
+    }
+
+    /**
+     * Update the line of each changed loan once per batch
+     */
+    void onEvents(@NotNull List<LoanEvent> events) {
+        // only the last event of each loan matters, the loan is read as it is now
+        Map<UUID, LoanEvent> changed = new LinkedHashMap<>();
+        for (LoanEvent event : events) {
+            // offers do not affect summaries until they are accepted
+            if (event.type == LoanEventType.OFFERED || event.type == LoanEventType.OFFER_ACCEPTED
+                    || event.type == LoanEventType.OFFER_DECLINED || event.type == LoanEventType.OFFER_EXPIRED) continue;
+            changed.put(event.loan.loanID, event);
+        }
+        for (LoanEvent event : changed.values()) {
+            Loan loan = event.loan;
+            if (!isCached(loan.borrower) && !isCached(loan.lender)) continue;
+            PlayerSummary.Line line = event.type == LoanEventType.REMOVED ? null : PlayerSummary.Line.of(loan);
+            update(loan.borrower, loan.loanID, line, true);
+            update(loan.lender, loan.loanID, line, false);
+        }
+    }
+
+    /**
+     * Get a player's summary, building it if it is not cached
+     *
+     * @param player The player
+     * @return The summary
+     */
+    @NotNull
+    public PlayerSummary get(@NotNull UUID player) {
+        PlayerSummary summary;
+        synchronized (summaries) {
+            Entry entry = summaries.get(player);
+            summary = entry == null ? null : entry.summary;
+        }
+        if (summary != null && !summary.isStale(Instant.now())) return summary;
+        return rebuild(player);
+    }
+
+    /**
+     * Build and cache a player's summary
+     *
+     * @param player The player
+     * @return The summary
+     */
+    @NotNull
+    public PlayerSummary rebuild(@NotNull UUID player) {
+        Entry entry = new Entry(player, lines(data.getLoansFor(player)), lines(data.getLoansFrom(player)));
+        synchronized (summaries) {
+            summaries.put(player, entry);
+        }
+        return entry.summary;
+    }
+
+    /**
+     * Remove a player's summary
+     *
+     * @param player The player
+     */
+    public void evict(@NotNull UUID player) {
+        synchronized (summaries) {
+            summaries.remove(player);
+        }
+    }
+
+    /**
+     * Remove all summaries
+     */
+    public void clear() {
+        synchronized (summaries) {
+            summaries.clear();
+        }
+    }
+
+    private boolean isCached(UUID player) {
+        synchronized (summaries) {
+            return summaries.containsKey(player);
+        }
+    }
+
+    /**
+     * Replace the line of one loan in a player's summary, if it is cached
+     *
+     * @param line The new line, or null if the loan is no longer active
+     */
+    private void update(UUID player, UUID loanID, @Nullable PlayerSummary.Line line, boolean borrowed) {
+        synchronized (summaries) {
+            Entry entry = summaries.get(player);
+            if (entry == null) return;
+            Map<UUID, PlayerSummary.Line> lines = borrowed ? entry.borrowed : entry.lent;
+            if (line == null) lines.remove(loanID);
+            else lines.put(loanID, line);
+            entry.summary = PlayerSummary.sum(player, entry.borrowed.values(), entry.lent.values());
+        }
+    }
+
+    private static Map<UUID, PlayerSummary.Line> lines(Collection<Loan> loans) {
+        Map<UUID, PlayerSummary.Line> lines = new HashMap<>();
+        for (Loan loan : loans) {
+            PlayerSummary.Line line = PlayerSummary.Line.of(loan);
+            if (line != null) lines.put(loan.loanID, line);
+        }
+        return lines;
+    }
+
+    /**
+     * A cached summary and the lines it was added up from, guarded by the cache
+     */
+    private static class Entry {
+        final Map<UUID, PlayerSummary.Line> borrowed;
+        final Map<UUID, PlayerSummary.Line> lent;
+        PlayerSummary summary;
+
+        Entry(UUID player, Map<UUID, PlayerSummary.Line> borrowed, Map<UUID, PlayerSummary.Line> lent) {
+            this.borrowed = borrowed;
+            this.lent = lent;
+            this.summary = PlayerSummary.sum(player, borrowed.values(), lent.values());
+        }
+    }
+}
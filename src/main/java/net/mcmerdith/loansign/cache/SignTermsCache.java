@@ -0,0 +1,103 @@
+package net.mcmerdith.loansign.cache;
+
+import net.mcmerdith.loansign.model.LoanTerms;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded LRU cache of the parsed {@link LoanTerms} of each loan sign, keyed by sign location
+ * <p>Entries are created when a sign is set up (or first used after a restart)
+ * and removed when the sign is broken or edited, or its world is unloaded</p>
+ */
+public class SignTermsCache {
+    private static SignTermsCache instance;
+
+    public static SignTermsCache instance() {
+        if (instance == null) instance = new SignTermsCache(DEFAULT_MAX_SIZE);
+        return instance;
+    }
+
+    private static final int DEFAULT_MAX_SIZE = 1000;
+
+    private volatile int maxSize;
+
+    private final Map<Location, LoanTerms> terms = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Location, LoanTerms> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    /**
+     * @param maxSize The number of signs to keep
+     */
+    SignTermsCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Load the cache settings
+     *
+     * @param config The {@code sign-cache} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        maxSize = Math.max(1, config.getInt("max-size", DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * @param location The sign location
+     * @return The cached terms, or null if the sign has not been parsed
+     */
+    @Nullable
+    public LoanTerms get(@NotNull Location location) {
+        synchronized (terms) {
+            return terms.get(location);
+        }
+    }
+
+    /**
+     * @param location The sign location
+     * @param loanTerms The parsed terms
+     */
+    public void put(@NotNull Location location, @NotNull LoanTerms loanTerms) {
+        synchronized (terms) {
+            terms.put(location, loanTerms);
+        }
+    }
+
+    /**
+     * @param location The sign location
+     */
+    public void invalidate(@NotNull Location location) {
+        synchronized (terms) {
+            terms.remove(location);
+        }
+    }
+
+    /**
+     * Remove the terms of every sign in a world
+     *
+     * @param world The world
+     */
+    public void invalidate(@NotNull World world) {
+        synchronized (terms) {
+            terms.keySet().removeIf(location -> world.equals(location.getWorld()));
+        }
+    }
+
+    /**
+     * @return The number of cached signs
+     */
+    public int size() {
+        synchronized (terms) {
+            return terms.size();
+        }
+    }
+}
@@ -1,18 +1,763 @@
 package net.mcmerdith.loansign.command;
 
+import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.analytics.ActivityIndex;
+import net.mcmerdith.loansign.analytics.ActivitySummary;
+import net.mcmerdith.loansign.analytics.Histogram;
+import net.mcmerdith.loansign.analytics.LoanAnalytics;
+import net.mcmerdith.loansign.analytics.PortfolioStats;
+import net.mcmerdith.loansign.bulk.BulkOperations;
+import net.mcmerdith.loansign.bulk.BulkResult;
+import net.mcmerdith.loansign.bulk.LoanMutation;
+import net.mcmerdith.loansign.cache.OfflinePlayerCache;
+import net.mcmerdith.loansign.cache.PlayerSummary;
+import net.mcmerdith.loansign.cache.PlayerSummaryCache;
+import net.mcmerdith.loansign.consolidation.LoanConsolidator;
+import net.mcmerdith.loansign.credit.CreditScores;
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventBus;
+import net.mcmerdith.loansign.event.LoanEventType;
+import net.mcmerdith.loansign.export.ExportFilter;
+import net.mcmerdith.loansign.export.ExportFormat;
+import net.mcmerdith.loansign.export.LoanExporter;
+import net.mcmerdith.loansign.export.LoanStatus;
+import net.mcmerdith.loansign.io.EconomyGateway;
+import net.mcmerdith.loansign.io.IoExecutor;
+import net.mcmerdith.loansign.limit.LimitedAction;
+import net.mcmerdith.loansign.limit.RateLimiter;
+import net.mcmerdith.loansign.message.CurrencyFormat;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.LoanOffer;
+import net.mcmerdith.loansign.profiler.LoanProfiler;
+import net.mcmerdith.loansign.profiler.ProfilerSection;
+import net.mcmerdith.loansign.query.LoanPage;
+import net.mcmerdith.loansign.query.LoanPageRenderer;
+import net.mcmerdith.loansign.query.LoanQuery;
+import net.mcmerdith.loansign.query.LoanQueryEngine;
+import net.mcmerdith.loansign.query.LoanSort;
+import net.mcmerdith.loansign.storage.LoanData;
+import net.mcmerdith.loansign.storage.LoanVerifier;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
 import net.mcmerdith.mcmpluginlib.command.McmCommand;
 import net.mcmerdith.mcmpluginlib.command.StaticTabComplete;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
 public class LoanCommand extends McmCommand {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(LoanCommand.class);
+
+    /**
+     * Permission required for administrative subcommands
+     */
+    public static final String ADMIN_PERMISSION = "loansign.admin";
+
+    /**
+     * The number of rows per page of query results
+     */
+    private static final int PAGE_SIZE = 8;
+
+    /**
+     * The last page of loans shown to each sender, for /loan list next and /loan history
+     */
+    private final Map<String, LoanPage> lastPages = new ConcurrentHashMap<>();
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
     public LoanCommand() {
-        setTabCompleter(0, new StaticTabComplete("accept", "decline"));
+        setTabCompleter(0, new StaticTabComplete("accept", "decline", "list", "history", "lookup", "stats", "export", "bulk", "verify", "consolidate", "profiler"));
+    }
+
+    /**
+     * Forget the last page shown to a sender
+     *
+     * @param name The name of the sender
+     */
+    public void forget(@NotNull String name) {
+        lastPages.remove(name);
     }
 
     @Override
     protected boolean runCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
-        return false;
+        LoanProfiler profiler = LoanProfiler.instance();
+        try (ProfilerSection ignored = profiler.isEnabled()
+                ? profiler.section("LoanCommand.runCommand", null, sender instanceof Player player ? player.getUniqueId() : null)
+                : ProfilerSection.NOOP) {
+            // administrative commands do not need loan data
+            if (args.length > 0 && args[0].equalsIgnoreCase("profiler")) return runProfiler(sender, args);
+
+            if (!LoanData.instance().awaitReady(LoanData.READY_WAIT_MILLIS)) {
+                sender.sendMessage(ChatColor.YELLOW + "Loans are still loading, please try again in a moment");
+                return true;
+            }
+
+            if (sender instanceof Player player && !RateLimiter.instance().tryAcquire(LimitedAction.COMMAND, player.getUniqueId())) {
+                sender.sendMessage(ChatColor.YELLOW + "You are doing that too fast, please wait a moment");
+                return true;
+            }
+
+            if (args.length == 0) return runSummary(sender);
+
+            return switch (args[0].toLowerCase()) {
+                case "accept" -> runAccept(sender);
+                case "decline" -> runDecline(sender);
+                case "list" -> runList(sender, args);
+                case "history" -> runHistory(sender, args);
+                case "lookup" -> runLookup(sender, args);
+                case "stats" -> runStats(sender, args);
+                case "export" -> runExport(sender, args);
+                case "bulk" -> runBulk(sender, args);
+                case "verify" -> runVerify(sender);
+                case "consolidate" -> runConsolidate(sender, args);
+                default -> false;
+            };
+        }
+    }
+
+    /**
+     * /loan
+     */
+    private boolean runSummary(@NotNull CommandSender sender) {
+        if (!(sender instanceof Player player)) return false;
+
+        PlayerSummary summary = PlayerSummaryCache.instance().get(player.getUniqueId());
+        sender.sendMessage(ChatColor.GOLD + "--- Your loans ---");
+        sender.sendMessage(ChatColor.GRAY + "Borrowing: " + ChatColor.WHITE + summary.borrowing
+                + ChatColor.GRAY + " (" + CurrencyFormat.format(summary.totalOwed) + " owed)");
+        sender.sendMessage(ChatColor.GRAY + "Lending: " + ChatColor.WHITE + summary.lending
+                + ChatColor.GRAY + " (" + CurrencyFormat.format(summary.totalReceivable) + " receivable)");
+        if (summary.nextDueDate != null) {
+            sender.sendMessage(ChatColor.GRAY + "Next payment due: " + ChatColor.WHITE + DATE_FORMAT.format(summary.nextDueDate));
+        }
+        if (summary.overdue.signum() > 0) {
+            sender.sendMessage(ChatColor.RED + "Overdue: " + CurrencyFormat.format(summary.overdue));
+        }
+        sender.sendMessage(ChatColor.GRAY + "Credit score: " + ChatColor.WHITE + CreditScores.instance().getScore(player.getUniqueId()));
+        return true;
+    }
+
+    /**
+     * /loan accept
+     */
+    private boolean runAccept(@NotNull CommandSender sender) {
+        if (!(sender instanceof Player player)) return false;
+
+        LoanData data = LoanData.instance();
+        LoanOffer offer = data.removeLoanOffer(player.getUniqueId());
+        if (offer == null || Instant.now().isAfter(offer.expiry)) {
+            if (offer != null) LoanEventBus.instance().post(new LoanEvent(LoanEventType.OFFER_EXPIRED, offer.loan));
+            sender.sendMessage(ChatColor.RED + "You do not have a loan offer");
+            return true;
+        }
+
+        Loan loan = offer.loan;
+        double principal = loan.getPrincipal().doubleValue();
+        if (!EconomyGateway.instance().transfer(loan.lender, player.getUniqueId(), principal)) {
+            sender.sendMessage(ChatColor.RED + "The lender can no longer afford this loan");
+            return true;
+        }
+        LoanEventBus.instance().post(new LoanEvent(LoanEventType.OFFER_ACCEPTED, loan));
+        data.addLoan(loan);
+        // shared storage would otherwise only write the new loan on the next sync
+        IoExecutor.instance().execute(() -> {
+            if (!data.commit(loan)) logger.error("Failed to write new loan " + loan.loanID + ", it will be written on the next save");
+        });
+
+        LoanConsolidator consolidator = LoanConsolidator.instance();
+        if (consolidator.isOnAccept()) {
+            consolidator.run(player.getUniqueId(), loan.lender).thenAccept(merged -> {
+                if (!merged.isEmpty()) send(sender, describeMerged(merged));
+            });
+        }
+
+        sender.sendMessage(ChatColor.GREEN + "You borrowed " + CurrencyFormat.format(loan.getPrincipal())
+                + ", " + CurrencyFormat.format(loan.getInstallmentAmount()) + " will be collected every " + periodName(loan.getPeriodUnit()));
+        return true;
+    }
+
+    /**
+     * @param unit The period unit of a loan
+     * @return The name of one period (ex. {@code day})
+     */
+    private static String periodName(@NotNull ChronoUnit unit) {
+        String name = unit.toString().toLowerCase(Locale.ROOT);
+        return name.endsWith("s") ? name.substring(0, name.length() - 1) : name;
+    }
+
+    /**
+     * /loan decline
+     */
+    private boolean runDecline(@NotNull CommandSender sender) {
+        if (!(sender instanceof Player player)) return false;
+
+        LoanOffer offer = LoanData.instance().removeLoanOffer(player.getUniqueId());
+        if (offer == null) {
+            sender.sendMessage(ChatColor.RED + "You do not have a loan offer");
+        } else {
+            LoanEventBus.instance().post(new LoanEvent(LoanEventType.OFFER_DECLINED, offer.loan));
+            sender.sendMessage(ChatColor.GREEN + "Loan offer declined");
+        }
+        return true;
+    }
+
+    /**
+     * /loan list [lent|borrowed|all] [due|balance|lender|borrower]
+     * <p>/loan list next</p>
+     */
+    private boolean runList(@NotNull CommandSender sender, @NotNull String[] args) {
+        String scope = args.length > 1 ? args[1].toLowerCase() : "";
+
+        if (scope.equals("next")) {
+            LoanPage previous = lastPages.get(sender.getName());
+            if (previous == null || previous.getCursor() == null) {
+                sender.sendMessage(ChatColor.RED + "There are no more results");
+                return true;
+            }
+            showPage(sender, () -> LoanQueryEngine.instance().next(previous));
+            return true;
+        }
+
+        LoanSort sort = parseSort(args.length > 2 ? args[2] : null);
+        if (sort == null) return false;
+
+        UUID self = sender instanceof Player player ? player.getUniqueId() : null;
+        LoanQuery query;
+        switch (scope) {
+            case "lent" -> query = new LoanQuery(self, null, null, false, sort, PAGE_SIZE);
+            case "borrowed" -> query = new LoanQuery(null, self, null, false, sort, PAGE_SIZE);
+            case "all" -> {
+                if (!sender.hasPermission(ADMIN_PERMISSION)) {
+                    sender.sendMessage(ChatColor.RED + "You do not have permission to do that");
+                    return true;
+                }
+                query = new LoanQuery(null, null, null, false, sort, PAGE_SIZE);
+            }
+            case "" -> query = new LoanQuery(null, null, self, false, sort, PAGE_SIZE);
+            default -> {
+                return false;
+            }
+        }
+
+        if (self == null && !scope.equals("all")) {
+            sender.sendMessage(ChatColor.RED + "Only players have loans, use /loan list all");
+            return true;
+        }
+
+        showPage(sender, () -> LoanQueryEngine.instance().query(query));
+        return true;
+    }
+
+    /**
+     * /loan lookup (player) [due|balance|lender|borrower]
+     */
+    private boolean runLookup(@NotNull CommandSender sender, @NotNull String[] args) {
+        if (!sender.hasPermission(ADMIN_PERMISSION)) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to do that");
+            return true;
+        }
+        if (args.length < 2) return false;
+
+        LoanSort sort = parseSort(args.length > 2 ? args[2] : null);
+        if (sort == null) return false;
+
+        String name = args[1];
+        // resolving a player name may block, so it happens with the query
+        showPage(sender, () -> CompletableFuture.supplyAsync(() -> {
+            @SuppressWarnings("deprecation")
+            OfflinePlayer target = Bukkit.getOfflinePlayer(name);
+            return target.getUniqueId();
+        }, task -> Bukkit.getScheduler().runTaskAsynchronously(LoanSignMain.instance, task)).thenCompose(target ->
+                LoanQueryEngine.instance().query(new LoanQuery(null, null, target, true, sort, PAGE_SIZE))));
+        return true;
+    }
+
+    /**
+     * /loan stats [server|top|activity]
+     */
+    private boolean runStats(@NotNull CommandSender sender, @NotNull String[] args) {
+        LoanAnalytics analytics = LoanAnalytics.instance();
+        String scope = args.length > 1 ? args[1].toLowerCase() : "";
+
+        switch (scope) {
+            case "" -> {
+                if (!(sender instanceof Player player)) return false;
+                sender.sendMessage(ChatColor.GOLD + "--- Your lending ---");
+                sendStats(sender, analytics.getLenderStats(player.getUniqueId()));
+            }
+            case "server" -> {
+                if (!sender.hasPermission(ADMIN_PERMISSION)) {
+                    sender.sendMessage(ChatColor.RED + "You do not have permission to do that");
+                    return true;
+                }
+                sender.sendMessage(ChatColor.GOLD + "--- Server lending ---");
+                sendStats(sender, analytics.getServerStats());
+                sendHistogram(sender, "Balance", analytics.getBalanceHistogram());
+                sendHistogram(sender, "Days overdue", analytics.getOverdueHistogram());
+            }
+            case "activity" -> {
+                if (!sender.hasPermission(ADMIN_PERMISSION)) {
+                    sender.sendMessage(ChatColor.RED + "You do not have permission to do that");
+                    return true;
+                }
+                ActivityIndex activity = ActivityIndex.instance();
+                sender.sendMessage(ChatColor.GOLD + "--- Recent activity ---");
+                sendActivity(sender, "Last 24 hours", activity.summarizeLast(Duration.ofDays(1)));
+                sendActivity(sender, "Last 7 days", activity.summarizeLast(Duration.ofDays(7)));
+                sendActivity(sender, "Last 30 days", activity.summarizeLast(Duration.ofDays(30)));
+            }
+            case "top" -> {
+                sender.sendMessage(ChatColor.GOLD + "--- Top lenders ---");
+                int rank = 0;
+                for (UUID lender : analytics.getTopLenders(PAGE_SIZE)) {
+                    String name = OfflinePlayerCache.instance().get(lender).getName();
+                    sender.sendMessage(ChatColor.GRAY + "" + (++rank) + ". " + ChatColor.WHITE + (name == null ? lender : name) + ChatColor.GRAY + " - "
+                            + CurrencyFormat.format(analytics.getLenderStats(lender).getOutstandingPrincipal()));
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * /loan export (csv|ndjson) [player=name] [from=yyyy-mm-dd] [to=yyyy-mm-dd] [status=active|paid_off|defaulted]
+     */
+    private boolean runExport(@NotNull CommandSender sender, @NotNull String[] args) {
+        if (!sender.hasPermission(ADMIN_PERMISSION)) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to do that");
+            return true;
+        }
+        if (args.length < 2) return false;
+
+        ExportFormat format;
+        try {
+            format = ExportFormat.valueOf(args[1].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        String playerName = null;
+        Instant from = null;
+        Instant to = null;
+        LoanStatus status = null;
+        ZoneId zone = ZoneId.systemDefault();
+        for (int i = 2; i < args.length; ++i) {
+            String[] option = args[i].split("=", 2);
+            if (option.length < 2) return false;
+            try {
+                switch (option[0].toLowerCase()) {
+                    case "player" -> playerName = option[1];
+                    case "from" -> from = LocalDate.parse(option[1]).atStartOfDay(zone).toInstant();
+                    // the whole of the last day is included
+                    case "to" -> to = LocalDate.parse(option[1]).plusDays(1).atStartOfDay(zone).toInstant().minusNanos(1);
+                    case "status" -> status = LoanStatus.valueOf(option[1].toUpperCase());
+                    default -> {
+                        return false;
+                    }
+                }
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                sender.sendMessage(ChatColor.RED + "Invalid value for " + option[0] + ": " + option[1]);
+                return true;
+            }
+        }
+
+        File file = new File(new File(LoanSignMain.instance.getDataFolder(), "exports"),
+                "loans-" + DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(zone).format(Instant.now()) + "." + format.getExtension());
+
+        String name = playerName;
+        Instant start = from;
+        Instant end = to;
+        LoanStatus only = status;
+        // resolving a player name may block, so it happens before the export starts
+        CompletableFuture.supplyAsync(() -> {
+            if (name == null) return new ExportFilter(start, end, null, only);
+            @SuppressWarnings("deprecation")
+            OfflinePlayer target = Bukkit.getOfflinePlayer(name);
+            return new ExportFilter(start, end, target.getUniqueId(), only);
+        }, task -> Bukkit.getScheduler().runTaskAsynchronously(LoanSignMain.instance, task)).thenCompose(filter -> {
+            CompletableFuture<Integer> export = LoanExporter.instance().export(file, format, filter,
+                    percent -> send(sender, List.of(ChatColor.GRAY + "Export " + percent + "% complete")));
+            if (export == null) throw new CompletionException(new IllegalStateException("An export is already running"));
+            send(sender, List.of(ChatColor.GRAY + "Exporting loans to " + file.getName()));
+            return export;
+        }).handle((records, e) -> {
+            if (e == null) return List.of(ChatColor.GREEN + "Exported " + records + " records to " + file.getName());
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IllegalStateException) return List.of(ChatColor.RED + cause.getMessage());
+            logger.exception(cause, "Failed to export loans");
+            return List.of(ChatColor.RED + "Failed to export loans");
+        }).thenAccept(lines -> send(sender, lines));
+        return true;
+    }
+
+    /**
+     * /loan bulk (preview|apply) (waive-fees (days)|extend (periods)|rate (rate)|close) [player=name] [lender=name] [borrower=name] [status=...]
+     */
+    private boolean runBulk(@NotNull CommandSender sender, @NotNull String[] args) {
+        if (!sender.hasPermission(ADMIN_PERMISSION)) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to do that");
+            return true;
+        }
+        if (args.length < 3) return false;
+
+        boolean dryRun;
+        switch (args[1].toLowerCase()) {
+            case "preview" -> dryRun = true;
+            case "apply" -> dryRun = false;
+            default -> {
+                return false;
+            }
+        }
+
+        LoanMutation mutation;
+        int next = 3;
+        try {
+            switch (args[2].toLowerCase()) {
+                case "waive-fees" -> {
+                    if (args.length < 4) return false;
+                    mutation = LoanMutation.waiveFees(Instant.now().minus(Duration.ofDays(Integer.parseInt(args[3]))));
+                    next = 4;
+                }
+                case "extend" -> {
+                    if (args.length < 4) return false;
+                    mutation = LoanMutation.extend(Integer.parseInt(args[3]));
+                    next = 4;
+                }
+                case "rate" -> {
+                    if (args.length < 4) return false;
+                    mutation = LoanMutation.adjustRate(new BigDecimal(args[3]));
+                    next = 4;
+                }
+                case "close" -> mutation = LoanMutation.close();
+                default -> {
+                    return false;
+                }
+            }
+        } catch (NumberFormatException e) {
+            sender.sendMessage(ChatColor.RED + "Invalid number: " + args[3]);
+            return true;
+        }
+
+        Map<String, String> names = new HashMap<>();
+        LoanStatus status = null;
+        for (int i = next; i < args.length; ++i) {
+            String[] option = args[i].split("=", 2);
+            if (option.length < 2) return false;
+            switch (option[0].toLowerCase()) {
+                case "player", "lender", "borrower" -> names.put(option[0].toLowerCase(), option[1]);
+                case "status" -> {
+                    try {
+                        status = LoanStatus.valueOf(option[1].toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        sender.sendMessage(ChatColor.RED + "Invalid value for status: " + option[1]);
+                        return true;
+                    }
+                }
+                default -> {
+                    return false;
+                }
+            }
+        }
+
+        LoanStatus only = status;
+        // resolving player names may block, so it happens before the operation starts
+        CompletableFuture.supplyAsync(() -> {
+            Predicate<Loan> filter = loan -> true;
+            for (Map.Entry<String, String> name : names.entrySet()) {
+                @SuppressWarnings("deprecation")
+                UUID player = Bukkit.getOfflinePlayer(name.getValue()).getUniqueId();
+                filter = filter.and(switch (name.getKey()) {
+                    case "lender" -> loan -> loan.lender.equals(player);
+                    case "borrower" -> loan -> loan.borrower.equals(player);
+                    default -> loan -> loan.lender.equals(player) || loan.borrower.equals(player);
+                });
+            }
+            if (only != null) {
+                Instant now = Instant.now();
+                filter = filter.and(loan -> LoanStatus.of(loan, now) == only);
+            }
+            return filter;
+        }, task -> Bukkit.getScheduler().runTaskAsynchronously(LoanSignMain.instance, task)).thenCompose(filter -> {
+            CompletableFuture<BulkResult> operation = BulkOperations.instance().run(filter, mutation, dryRun);
+            if (operation == null) throw new CompletionException(new IllegalStateException("A bulk operation is already running"));
+            return operation;
+        }).handle((result, e) -> {
+            if (e == null) {
+                return List.of(ChatColor.GOLD + (result.isDryRun() ? "--- Bulk preview ---" : "--- Bulk operation ---"),
+                        ChatColor.GRAY + "Matching loans: " + ChatColor.WHITE + result.getMatched(),
+                        ChatColor.GRAY + (result.isDryRun() ? "Would change: " : "Changed: ") + ChatColor.WHITE + result.getChanged(),
+                        ChatColor.GRAY + "Balance change: " + ChatColor.WHITE + CurrencyFormat.format(result.getBalanceChange()));
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IllegalStateException) return List.of(ChatColor.RED + cause.getMessage());
+            logger.exception(cause, "Failed to run bulk operation");
+            return List.of(ChatColor.RED + "Failed to run bulk operation");
+        }).thenAccept(lines -> send(sender, lines));
+        return true;
+    }
+
+    /**
+     * /loan consolidate (borrower) [lender]
+     */
+    private boolean runConsolidate(@NotNull CommandSender sender, @NotNull String[] args) {
+        if (!sender.hasPermission(ADMIN_PERMISSION)) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to do that");
+            return true;
+        }
+        if (args.length < 2) return false;
+
+        String borrowerName = args[1];
+        String lenderName = args.length > 2 ? args[2] : null;
+        // resolving player names may block, so it happens before the loans are merged
+        CompletableFuture.supplyAsync(() -> {
+            @SuppressWarnings("deprecation")
+            UUID borrower = Bukkit.getOfflinePlayer(borrowerName).getUniqueId();
+            @SuppressWarnings("deprecation")
+            UUID lender = lenderName == null ? null : Bukkit.getOfflinePlayer(lenderName).getUniqueId();
+            return new UUID[]{borrower, lender};
+        }, task -> Bukkit.getScheduler().runTaskAsynchronously(LoanSignMain.instance, task)).thenCompose(players ->
+                LoanConsolidator.instance().run(players[0], players[1])
+        ).handle((merged, e) -> {
+            if (e != null) {
+                logger.exception(e, "Failed to consolidate loans");
+                return List.of(ChatColor.RED + "Failed to consolidate loans");
+            }
+            if (merged.isEmpty()) return List.of(ChatColor.YELLOW + "There are no current loans to consolidate");
+            return describeMerged(merged);
+        }).thenAccept(lines -> send(sender, lines));
+        return true;
+    }
+
+    private static List<String> describeMerged(@NotNull List<Loan> merged) {
+        List<String> lines = new ArrayList<>();
+        for (Loan loan : merged) {
+            synchronized (loan) {
+                lines.add(ChatColor.GREEN + "Combined " + loan.getConsolidatedFrom().size() + " loans into one, "
+                        + CurrencyFormat.format(loan.getRemainingAmount()) + " remaining, "
+                        + CurrencyFormat.format(loan.getInstallmentAmount()) + " collected per period");
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * /loan verify
+     */
+    private boolean runVerify(@NotNull CommandSender sender) {
+        if (!sender.hasPermission(ADMIN_PERMISSION)) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to do that");
+            return true;
+        }
+
+        LoanData data = LoanData.instance();
+        LoanVerifier verifier = data.getVerifier();
+        if (verifier == null) {
+            sender.sendMessage(ChatColor.RED + "Verification is not available");
+            return true;
+        }
+
+        sender.sendMessage(ChatColor.GRAY + "Verifying loans...");
+        IoExecutor.instance().submit(() -> {
+            LoanVerifier.Report report = LoanVerifier.verify(data.getAllLoans(), ForkJoinPool.commonPool());
+            if (!report.problems().isEmpty() && verifier.quarantine(report.problems())) data.removeLoans(report.getBadLoans());
+            return report;
+        }).handle((report, e) -> {
+            if (e != null) {
+                logger.exception(e, "Failed to verify loans");
+                return List.of(ChatColor.RED + "Failed to verify loans");
+            }
+            List<String> lines = new ArrayList<>();
+            lines.add(ChatColor.GREEN + "Verified " + report.checked() + " loans in " + report.elapsed().toMillis() + "ms");
+            for (LoanVerifier.Problem problem : report.problems()) {
+                lines.add(ChatColor.RED + "Quarantined " + problem.loan().loanID + ": " + problem.reason());
+            }
+            return lines;
+        }).thenAccept(lines -> send(sender, lines));
+        return true;
+    }
+
+    private static void sendStats(@NotNull CommandSender sender, @NotNull PortfolioStats stats) {
+        sender.sendMessage(ChatColor.GRAY + "Loans: " + ChatColor.WHITE + stats.getLoans()
+                + ChatColor.GRAY + " (" + stats.getDefaulted() + " defaulted, " + String.format("%.1f%%", stats.getDefaultRate() * 100.0) + ")");
+        sender.sendMessage(ChatColor.GRAY + "Outstanding principal: " + ChatColor.WHITE + CurrencyFormat.format(stats.getOutstandingPrincipal()));
+        sender.sendMessage(ChatColor.GRAY + "Expected interest: " + ChatColor.WHITE + CurrencyFormat.format(stats.getExpectedInterest()));
+        sender.sendMessage(ChatColor.GRAY + "Fee income: " + ChatColor.WHITE + CurrencyFormat.format(stats.getFeeIncome()));
+    }
+
+    private static void sendActivity(@NotNull CommandSender sender, @NotNull String title, @NotNull ActivitySummary summary) {
+        sender.sendMessage(ChatColor.GRAY + title + ": " + ChatColor.WHITE + summary.getPayments() + ChatColor.GRAY + " payments ("
+                + CurrencyFormat.format(summary.getPaymentVolume()) + "), " + ChatColor.WHITE + summary.getFees() + ChatColor.GRAY + " fees ("
+                + CurrencyFormat.format(summary.getFeeIncome()) + "), " + ChatColor.WHITE + summary.getDefaults() + ChatColor.GRAY + " defaults");
+    }
+
+    private static void sendHistogram(@NotNull CommandSender sender, @NotNull String title, @NotNull Histogram histogram) {
+        List<String> labels = histogram.getLabels();
+        long[] counts = histogram.getCounts();
+        StringBuilder line = new StringBuilder(ChatColor.GRAY + title + ":");
+        for (int i = 0; i < counts.length; ++i) {
+            line.append(' ').append(ChatColor.GRAY).append(labels.get(i)).append('=').append(ChatColor.WHITE).append(counts[i]);
+        }
+        sender.sendMessage(line.toString());
+    }
+
+    /**
+     * /loan history (row|loan id) [page]
+     */
+    private boolean runHistory(@NotNull CommandSender sender, @NotNull String[] args) {
+        if (args.length < 2) return false;
+
+        Loan loan = null;
+        try {
+            LoanPage previous = lastPages.get(sender.getName());
+            if (previous != null) loan = previous.getRow(Integer.parseInt(args[1]));
+        } catch (NumberFormatException e) {
+            try {
+                loan = LoanData.instance().getLoan(UUID.fromString(args[1]));
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+
+        if (loan == null) {
+            sender.sendMessage(ChatColor.RED + "Loan not found, use a row number from /loan list");
+            return true;
+        }
+
+        UUID self = sender instanceof Player player ? player.getUniqueId() : null;
+        if (!loan.borrower.equals(self) && !loan.lender.equals(self) && !sender.hasPermission(ADMIN_PERMISSION)) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to do that");
+            return true;
+        }
+
+        int page;
+        try {
+            page = args.length > 2 ? Math.max(1, Integer.parseInt(args[2])) : 1;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        Loan target = loan;
+        runQuery(sender, () -> LoanQueryEngine.instance().history(target, page, PAGE_SIZE)
+                .thenApply(payments -> LoanPageRenderer.renderHistory(target, page, payments)));
+        return true;
+    }
+
+    /**
+     * Render a page off the main thread, then send it to the sender
+     */
+    private void showPage(@NotNull CommandSender sender, @NotNull Supplier<CompletableFuture<LoanPage>> query) {
+        runQuery(sender, () -> query.get().thenApply(page -> {
+            if (page == null) return List.of(ChatColor.RED + "There are no more results");
+            lastPages.put(sender.getName(), page);
+            return LoanPageRenderer.render(page);
+        }));
+    }
+
+    /**
+     * Run a query if the server is not already running too many, then send the result to the sender
+     *
+     * @param sender The sender
+     * @param query  Starts the query, called only if it may run
+     */
+    private void runQuery(@NotNull CommandSender sender, @NotNull Supplier<CompletableFuture<List<String>>> query) {
+        RateLimiter limiter = RateLimiter.instance();
+        if (!limiter.tryStartQuery()) {
+            sender.sendMessage(ChatColor.YELLOW + "The server is busy, please try again in a moment");
+            return;
+        }
+
+        CompletableFuture<List<String>> future;
+        try {
+            future = query.get();
+        } catch (RuntimeException e) {
+            limiter.releaseQuery();
+            throw e;
+        }
+        future.whenComplete((lines, e) -> limiter.releaseQuery())
+                .exceptionally(e -> List.of(ChatColor.RED + "Failed to look up loans"))
+                .thenAccept(lines -> send(sender, lines));
+    }
+
+    /**
+     * Send lines to a sender on the main thread
+     */
+    private static void send(@NotNull CommandSender sender, @NotNull List<String> lines) {
+        Bukkit.getScheduler().runTask(LoanSignMain.instance, () -> lines.forEach(sender::sendMessage));
+    }
+
+    private static LoanSort parseSort(String name) {
+        if (name == null) return LoanSort.DUE_DATE;
+        return switch (name.toLowerCase()) {
+            case "due" -> LoanSort.DUE_DATE;
+            case "balance" -> LoanSort.BALANCE;
+            case "lender" -> LoanSort.LENDER;
+            case "borrower" -> LoanSort.BORROWER;
+            default -> null;
+        };
+    }
+
+    /**
+     * /loan profiler (enable|disable|dump|reset)
+     */
+    private boolean runProfiler(@NotNull CommandSender sender, @NotNull String[] args) {
+        if (!sender.hasPermission(ADMIN_PERMISSION)) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to do that");
+            return true;
+        }
+        if (args.length < 2) return false;
+
+        LoanProfiler profiler = LoanProfiler.instance();
+        switch (args[1].toLowerCase()) {
+            case "enable" -> {
+                profiler.setEnabled(true);
+                sender.sendMessage(ChatColor.GREEN + "Profiler enabled");
+            }
+            case "disable" -> {
+                profiler.setEnabled(false);
+                sender.sendMessage(ChatColor.GREEN + "Profiler disabled");
+            }
+            case "reset" -> {
+                profiler.reset();
+                sender.sendMessage(ChatColor.GREEN + "Profiler reset");
+            }
+            case "dump" -> {
+                List<String> summary = profiler.summarize();
+                summary.forEach(line -> sender.sendMessage(ChatColor.GRAY + line));
+                File file = profiler.dump(LoanSignMain.instance.getDataFolder());
+                if (file != null) sender.sendMessage(ChatColor.GREEN + "Summary written to " + file.getName());
+            }
+            default -> {
+                return false;
+            }
+        }
+
+        return true;
     }
 }
@@ -0,0 +1,169 @@
+package net.mcmerdith.loansign.consolidation;
+
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventBus;
+import net.mcmerdith.loansign.event.LoanEventType;
+import net.mcmerdith.loansign.io.IoExecutor;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.storage.LoanData;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Merges the loans a borrower has from the same lender into a single loan
+ * <p>Only loans that are current are merged, so no overdue installments are forgiven.
+ * The merged loan owes the same balance and carries the fees of its sources, which are
+ * archived (or dropped if archiving is disabled) so they are no longer tracked or collected.</p>
+ *
+ * @see Loan#consolidate(List, Instant)
+ */
+public class LoanConsolidator {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(LoanConsolidator.class);
+
+    private static LoanConsolidator instance;
+
+    public static LoanConsolidator instance() {
+        if (instance == null) instance = new LoanConsolidator();
+        return instance;
+    }
+
+    private static final int DEFAULT_MINIMUM_LOANS = 2;
+
+    /**
+     * If loans are merged when a borrower accepts another loan from the same lender
+     */
+    private boolean onAccept = false;
+
+    /**
+     * The fewest loans merged at once
+     */
+    private int minimumLoans = DEFAULT_MINIMUM_LOANS;
+
+    /**
+     * Load the settings from the config
+     *
+     * @param config The {@code consolidation} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        onAccept = config.getBoolean("on-accept", false);
+        minimumLoans = Math.max(2, config.getInt("minimum-loans", DEFAULT_MINIMUM_LOANS));
+    }
+
+    /**
+     * @return If loans are merged when a borrower accepts another loan from the same lender
+     */
+    public boolean isOnAccept() {
+        return onAccept;
+    }
+
+    /**
+     * Merge the loans of a borrower on the {@link IoExecutor}
+     *
+     * @param borrower The borrower
+     * @param lender   Only merge loans from this lender, or null for every lender
+     * @return The merged loans, one per lender
+     */
+    @NotNull
+    public CompletableFuture<List<Loan>> run(@NotNull UUID borrower, @Nullable UUID lender) {
+        return IoExecutor.instance().submit(() -> execute(LoanData.instance(), borrower, lender, minimumLoans, Instant.now()));
+    }
+
+    /**
+     * Merge the loans of a borrower on the calling thread
+     *
+     * @param data     The loans
+     * @param borrower The borrower
+     * @param lender   Only merge loans from this lender, or null for every lender
+     * @param minimum  The fewest loans merged at once
+     * @param now      The current time
+     * @return The merged loans, one per lender
+     */
+    @NotNull
+    public static List<Loan> execute(@NotNull LoanData data, @NotNull UUID borrower, @Nullable UUID lender, int minimum, @NotNull Instant now) {
+        // loans are only merged with loans of the same lender and period
+        Map<Group, List<Loan>> groups = new LinkedHashMap<>();
+        for (Loan loan : data.getLoansFor(borrower)) {
+            if (lender != null && !lender.equals(loan.lender)) continue;
+            // with shared storage another server may be collecting the loan
+            if (!data.isCollector(loan)) continue;
+            Group group;
+            synchronized (loan) {
+                if (!isEligible(loan, now)) continue;
+                group = new Group(loan.lender, loan.getPeriodUnit());
+            }
+            groups.computeIfAbsent(group, ignored -> new ArrayList<>()).add(loan);
+        }
+
+        List<Loan> merged = new ArrayList<>();
+        for (List<Loan> group : groups.values()) {
+            if (group.size() < minimum) continue;
+            // a fixed lock order so two merges of overlapping loans can not deadlock
+            group.sort(Comparator.comparing(loan -> loan.loanID));
+            List<Loan> sources = new ArrayList<>();
+            Loan loan = lockAndMerge(data, group, 0, sources, minimum, now);
+            if (loan == null) continue;
+
+            merged.add(loan);
+            if (!data.archiveLoans(sources)) {
+                // closed loans are not collected, the archiver moves them on a later run
+                logger.error("Failed to archive " + sources.size() + " loans merged into " + loan.loanID);
+                sources.forEach(source -> LoanEventBus.instance().post(new LoanEvent(LoanEventType.UPDATED, source)));
+            }
+            logger.info("Merged " + sources.size() + " loans into " + loan.loanID);
+        }
+
+        if (!merged.isEmpty() && !data.save()) logger.error("Merged loans could not be saved and will be retried on the next save");
+        return merged;
+    }
+
+    /**
+     * Lock every loan of a group, then merge the ones still eligible
+     *
+     * @param sources Filled with the loans that were merged
+     */
+    @Nullable
+    private static Loan lockAndMerge(LoanData data, List<Loan> group, int locked, List<Loan> sources, int minimum, Instant now) {
+        if (locked < group.size()) {
+            synchronized (group.get(locked)) {
+                return lockAndMerge(data, group, locked + 1, sources, minimum, now);
+            }
+        }
+
+        // a payment may have been collected since the group was found
+        List<Loan> eligible = group.stream().filter(loan -> isEligible(loan, now)).toList();
+        if (eligible.size() < minimum) return null;
+
+        Loan merged = Loan.consolidate(eligible, now);
+        // tracked before the sources are unlocked, so the balance is always owed by some loan
+        data.addLoan(merged);
+        sources.addAll(eligible);
+        return merged;
+    }
+
+    /**
+     * A loan can be merged while it is current and has a balance remaining
+     * <p>The caller must hold the lock of the loan</p>
+     */
+    private static boolean isEligible(Loan loan, Instant now) {
+        return !loan.isClosed()
+                && !loan.isPaidOff()
+                && !loan.isPaymentDue()
+                && now.isBefore(loan.getDueDate());
+    }
+
+    private record Group(UUID lender, ChronoUnit periodUnit) {
+    }
+}
@@ -0,0 +1,363 @@
+package net.mcmerdith.loansign.credit;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventBus;
+import net.mcmerdith.loansign.event.LoanEventType;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import net.mcmerdith.loansign.storage.LoanData;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Borrower credit scores, kept up to date from payment events
+ * <p>Each borrower has a small {@link CreditState} updated in constant time per event,
+ * so scores can be checked when a loan is offered without reading any loan history.
+ * A mark of what has been applied from each loan makes events idempotent, and is saved with the
+ * states so a {@code credit.json} that does not match the loans is rebuilt from their history.</p>
+ */
+public class CreditScores {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(CreditScores.class);
+
+    private static CreditScores instance;
+
+    public static CreditScores instance() {
+        if (instance == null) instance = new CreditScores();
+        return instance;
+    }
+
+    public static final int MIN_SCORE = 300;
+    public static final int MAX_SCORE = 850;
+
+    /**
+     * The score of a borrower without any history
+     */
+    public static final int BASE_SCORE = 650;
+
+    private static final double DEFAULT_DECAY = 0.2;
+
+    private final Gson gson = new Gson();
+
+    private volatile Map<UUID, CreditState> states = new ConcurrentHashMap<>();
+
+    /**
+     * What has been applied from each loan, guarded by this object
+     */
+    private Map<UUID, LoanMark> marks = new HashMap<>();
+
+    private int minimumScore = 0;
+    private double decay = DEFAULT_DECAY;
+
+    /**
+     * Load the scoring settings
+     *
+     * @param config The {@code credit} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        minimumScore = config.getInt("minimum-score", 0);
+        decay = Math.max(0.01, Math.min(1.0, config.getDouble("decay", DEFAULT_DECAY)));
+    }
+
+    /**
+     * Keep scores up to date with loan events
+     *
+     * @param bus The event bus
+     */
+    public void subscribe(@NotNull LoanEventBus bus) {
+        bus.subscribe("credit", this::onEvents, () -> rebuild(LoanData.instance().getLoansView()));
+    }
+
+    private void onEvents(@NotNull List<LoanEvent> events) {
+        for (LoanEvent event : events) record(event);
+    }
+
+    /**
+     * Update the borrower's state from an event
+     * <p>Events already applied to the loan's {@link LoanMark} are skipped, so an event delivered
+     * twice, or after a rebuild that included it, is only counted once.</p>
+     *
+     * @param event The event
+     */
+    void record(@NotNull LoanEvent event) {
+        Loan loan = event.loan;
+        switch (event.type) {
+            case PAYMENT, FEE -> {
+                Payment payment = event.payment;
+                if (payment == null) return;
+                int number;
+                synchronized (loan) {
+                    number = paymentNumber(loan, payment);
+                }
+                // a payment that was folded or reverted is caught up by the next rebuild
+                if (number <= 0) return;
+                synchronized (this) {
+                    LoanMark mark = marks.computeIfAbsent(loan.loanID, k -> new LoanMark());
+                    if (event.type == LoanEventType.PAYMENT) {
+                        if (number <= mark.payments) return;
+                        mark.payments = number;
+                        update(states, loan.borrower, state -> state.recordPayment(payment.getAmountUnits(), payment.getDeficitUnits(), decay));
+                    } else {
+                        if (number <= mark.fees) return;
+                        mark.fees = number;
+                        update(states, loan.borrower, CreditState::recordFee);
+                    }
+                }
+            }
+            case DEFAULTED -> {
+                synchronized (this) {
+                    LoanMark mark = marks.computeIfAbsent(loan.loanID, k -> new LoanMark());
+                    if (mark.defaulted) return;
+                    mark.defaulted = true;
+                    update(states, loan.borrower, CreditState::recordDefault);
+                }
+            }
+            case PAID_OFF -> {
+                synchronized (this) {
+                    LoanMark mark = marks.computeIfAbsent(loan.loanID, k -> new LoanMark());
+                    if (mark.paidOff) return;
+                    mark.paidOff = true;
+                    update(states, loan.borrower, CreditState::recordPaidOff);
+                }
+            }
+            case REMOVED -> {
+                // the borrower keeps the history, the loan will not change again
+                synchronized (this) {
+                    marks.remove(loan.loanID);
+                }
+            }
+            default -> {
+                // other events do not affect credit
+            }
+        }
+    }
+
+    /**
+     * @param player The player
+     * @return The credit score of the player
+     */
+    public int getScore(@NotNull UUID player) {
+        CreditState state = states.get(player);
+        if (state == null) return BASE_SCORE;
+        synchronized (state) {
+            return state.score();
+        }
+    }
+
+    /**
+     * @return The lowest score allowed to borrow, 0 if scores are not checked
+     */
+    public int getMinimumScore() {
+        return minimumScore;
+    }
+
+    /**
+     * @param player The player
+     * @return If the player's score allows them to borrow
+     */
+    public boolean isEligible(@NotNull UUID player) {
+        return minimumScore <= 0 || getScore(player) >= minimumScore;
+    }
+
+    /**
+     * Write all states and loan marks to {@code credit.json}
+     */
+    public void save() {
+        save(getFile());
+    }
+
+    void save(@NotNull File file) {
+        JsonObject json = new JsonObject();
+        JsonObject players = new JsonObject();
+        synchronized (this) {
+            states.forEach((player, state) -> {
+                synchronized (state) {
+                    players.add(player.toString(), gson.toJsonTree(state));
+                }
+            });
+            json.add("states", players);
+            json.add("loans", gson.toJsonTree(marks));
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            Files.writeString(temp.toPath(), gson.toJson(json),
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.exception(e, "Failed to write credit scores");
+        }
+    }
+
+    /**
+     * Read states from {@code credit.json}, or replay the payment history of the loans
+     * if the file is missing or its loan marks do not match the loans
+     *
+     * @param loans All loans
+     * @return If the saved states were used
+     */
+    public boolean load(@NotNull Collection<Loan> loans) {
+        return load(loans, getFile());
+    }
+
+    boolean load(@NotNull Collection<Loan> loans, @NotNull File file) {
+        Snapshot snapshot = null;
+        if (file.exists()) {
+            try {
+                snapshot = gson.fromJson(Files.readString(file.toPath(), StandardCharsets.UTF_8), Snapshot.class);
+            } catch (IOException | JsonParseException e) {
+                logger.exception(e, "Failed to read credit scores, rebuilding them");
+            }
+        }
+
+        if (snapshot == null || snapshot.states() == null || snapshot.loans() == null || !matches(snapshot.loans(), loans)) {
+            rebuild(loans);
+            return false;
+        }
+
+        synchronized (this) {
+            states = new ConcurrentHashMap<>(snapshot.states());
+            marks = new HashMap<>(snapshot.loans());
+        }
+        return true;
+    }
+
+    /**
+     * Replay the payment history of loans, replacing all states
+     *
+     * @param loans The loans
+     */
+    void rebuild(@NotNull Collection<Loan> loans) {
+        Map<UUID, CreditState> rebuilt = new ConcurrentHashMap<>();
+        Map<UUID, LoanMark> rebuiltMarks = new HashMap<>();
+        for (Loan loan : loans) {
+            synchronized (loan) {
+                for (Payment payment : loan.getPayments()) {
+                    // folded payments only keep their totals, replay them as one
+                    update(rebuilt, loan.borrower, state -> {
+                        state.recordPayment(payment.getAmountUnits(), payment.getDeficitUnits(), decay);
+                        if (payment.fee != null) state.recordFee();
+                    });
+                }
+                if (loan.isDefaulted()) update(rebuilt, loan.borrower, CreditState::recordDefault);
+                if (loan.isPaidOff()) update(rebuilt, loan.borrower, CreditState::recordPaidOff);
+                rebuiltMarks.put(loan.loanID, LoanMark.of(loan));
+            }
+        }
+        synchronized (this) {
+            states = rebuilt;
+            marks = rebuiltMarks;
+        }
+    }
+
+    /**
+     * @return If every loan has had exactly the changes in its mark applied
+     */
+    private static boolean matches(Map<UUID, LoanMark> saved, Collection<Loan> loans) {
+        LoanMark none = new LoanMark();
+        for (Loan loan : loans) {
+            LoanMark expected;
+            synchronized (loan) {
+                expected = LoanMark.of(loan);
+            }
+            if (!expected.equals(saved.getOrDefault(loan.loanID, none))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of payments made on a loan up to and including {@code payment},
+     * counting folded payments, or 0 if the payment is not on the loan
+     */
+    private static int paymentNumber(Loan loan, Payment payment) {
+        int number = 0;
+        for (Payment made : loan.getPayments()) {
+            number += 1 + made.foldedPayments;
+            if (made == payment) return number;
+        }
+        return 0;
+    }
+
+    private void update(Map<UUID, CreditState> states, UUID player, Consumer<CreditState> change) {
+        CreditState state = states.computeIfAbsent(player, k -> new CreditState());
+        synchronized (state) {
+            change.accept(state);
+        }
+    }
+
+    private File getFile() {
+        return new File(LoanSignMain.instance.getDataFolder(), "credit.json");
+    }
+
+    /**
+     * What has been applied to a borrower's state from one loan
+     */
+    static class LoanMark {
+        /**
+         * The number of payments applied, counting folded payments
+         */
+        int payments;
+
+        /**
+         * The number of the last payment whose fee was applied
+         */
+        int fees;
+
+        boolean defaulted;
+
+        boolean paidOff;
+
+        /**
+         * @param loan A loan, locked by the caller
+         * @return The mark of a loan with all of its history applied
+         */
+        static LoanMark of(Loan loan) {
+            LoanMark mark = new LoanMark();
+            for (Payment payment : loan.getPayments()) {
+                mark.payments += 1 + payment.foldedPayments;
+                if (payment.fee != null) mark.fees = mark.payments;
+            }
+            mark.defaulted = loan.isDefaulted();
+            mark.paidOff = loan.isPaidOff();
+            return mark;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof LoanMark other)) return false;
+            return payments == other.payments && fees == other.fees && defaulted == other.defaulted && paidOff == other.paidOff;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(payments, fees, defaulted, paidOff);
+        }
+    }
+
+    private record Snapshot(Map<UUID, CreditState> states, Map<UUID, LoanMark> loans) {
+    }
+}
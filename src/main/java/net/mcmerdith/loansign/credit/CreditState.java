@@ -0,0 +1,80 @@
+package net.mcmerdith.loansign.credit;
+
+/**
+ * The payment record of one borrower, updated in place as events arrive
+ */
+class CreditState {
+    /**
+     * The number of payments made
+     */
+    int payments;
+
+    /**
+     * The number of payments that fell short of the installment
+     */
+    int shortPayments;
+
+    /**
+     * The number of fees charged for short payments
+     */
+    int fees;
+
+    /**
+     * The number of loans that passed their due date unpaid
+     */
+    int defaults;
+
+    /**
+     * The number of loans paid off
+     */
+    int paidOff;
+
+    /**
+     * The number of full payments since the last short payment or default
+     */
+    int streak;
+
+    /**
+     * The exponentially decayed share of each installment left unpaid, between 0 and 1
+     */
+    double deficitRatio;
+
+    void recordPayment(long amountUnits, long deficitUnits, double decay) {
+        payments++;
+        long due = amountUnits + deficitUnits;
+        double ratio = due <= 0 ? 0.0 : (double) deficitUnits / due;
+        deficitRatio = decay * ratio + (1.0 - decay) * deficitRatio;
+        if (deficitUnits > 0) {
+            shortPayments++;
+            streak = 0;
+        } else {
+            streak++;
+        }
+    }
+
+    void recordFee() {
+        fees++;
+    }
+
+    void recordDefault() {
+        defaults++;
+        streak = 0;
+    }
+
+    void recordPaidOff() {
+        paidOff++;
+    }
+
+    /**
+     * @return A score between {@link CreditScores#MIN_SCORE} and {@link CreditScores#MAX_SCORE}
+     */
+    int score() {
+        double score = CreditScores.BASE_SCORE;
+        score += Math.min(streak, 30) * 4;
+        score += Math.min(paidOff, 10) * 10;
+        score -= deficitRatio * 300;
+        score -= Math.min(fees, 20) * 5;
+        score -= defaults * 120;
+        return (int) Math.max(CreditScores.MIN_SCORE, Math.min(CreditScores.MAX_SCORE, Math.round(score)));
+    }
+}
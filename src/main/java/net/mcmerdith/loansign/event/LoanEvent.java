@@ -0,0 +1,55 @@
+package net.mcmerdith.loansign.event;
+
+import net.mcmerdith.loansign.model.Fee;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+
+/**
+ * A change in the lifecycle of a {@link Loan}
+ */
+public class LoanEvent {
+    @NotNull
+    public final LoanEventType type;
+
+    /**
+     * The loan that changed
+     * <p>This is the live loan, which may have changed again by the time the event is handled.
+     * Listeners must hold its lock to read anything but its IDs.</p>
+     */
+    @NotNull
+    public final Loan loan;
+
+    /**
+     * The payment made, for {@link LoanEventType#PAYMENT}, {@link LoanEventType#FEE} and {@link LoanEventType#PAID_OFF}
+     */
+    @Nullable
+    public final Payment payment;
+
+    /**
+     * The fee charged, for {@link LoanEventType#FEE}
+     */
+    @Nullable
+    public final Fee fee;
+
+    /**
+     * When the event happened
+     */
+    @NotNull
+    public final Instant time;
+
+    public LoanEvent(@NotNull LoanEventType type, @NotNull Loan loan, @Nullable Payment payment, @Nullable Fee fee) {
+        this.type = type;
+        this.loan = loan;
+        this.payment = payment;
+        this.fee = fee;
+        this.time = Instant.now();
+    }
+
+    public LoanEvent(@NotNull LoanEventType type, @NotNull Loan loan) {
+        this(type, loan, null, null);
+    }
+}
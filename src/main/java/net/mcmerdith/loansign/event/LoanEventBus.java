@@ -0,0 +1,265 @@
+package net.mcmerdith.loansign.event;
+
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers {@link LoanEvent}s to listeners in batches on their own threads
+ * <p>Each subscription has a bounded lock-free queue. Posting never blocks: if a slow listener
+ * lets its queue fill up, new events for that listener are dropped and counted, and the listener
+ * is resynchronized from the loans before it is sent any more events.</p>
+ */
+public class LoanEventBus {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(LoanEventBus.class);
+
+    private static LoanEventBus instance;
+
+    public static LoanEventBus instance() {
+        if (instance == null) instance = new LoanEventBus();
+        return instance;
+    }
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Load the default queue settings
+     *
+     * @param config The {@code events} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        queueCapacity = Math.max(1, config.getInt("queue-capacity", DEFAULT_QUEUE_CAPACITY));
+        batchSize = Math.max(1, config.getInt("batch-size", DEFAULT_BATCH_SIZE));
+    }
+
+    /**
+     * Subscribe a listener on a dedicated thread with the configured queue settings
+     *
+     * @param name     The name of the listener thread
+     * @param listener The listener
+     * @return The subscription
+     */
+    @NotNull
+    public Subscription subscribe(@NotNull String name, @NotNull LoanEventListener listener) {
+        return subscribe(name, listener, null, queueCapacity, batchSize);
+    }
+
+    /**
+     * Subscribe a listener on a dedicated thread with the configured queue settings
+     *
+     * @param name     The name of the listener thread
+     * @param listener The listener
+     * @param resync   Rebuilds the listener's state from the loans after events were dropped
+     * @return The subscription
+     */
+    @NotNull
+    public Subscription subscribe(@NotNull String name, @NotNull LoanEventListener listener, @NotNull Runnable resync) {
+        return subscribe(name, listener, resync, queueCapacity, batchSize);
+    }
+
+    /**
+     * Subscribe a listener on a dedicated thread
+     *
+     * @param name      The name of the listener thread
+     * @param listener  The listener
+     * @param capacity  The maximum number of undelivered events
+     * @param batchSize The maximum number of events per batch
+     * @return The subscription
+     */
+    @NotNull
+    public Subscription subscribe(@NotNull String name, @NotNull LoanEventListener listener, int capacity, int batchSize) {
+        return subscribe(name, listener, null, capacity, batchSize);
+    }
+
+    /**
+     * Subscribe a listener on a dedicated thread
+     *
+     * @param name      The name of the listener thread
+     * @param listener  The listener
+     * @param resync    Rebuilds the listener's state from the loans after events were dropped, may be null
+     * @param capacity  The maximum number of undelivered events
+     * @param batchSize The maximum number of events per batch
+     * @return The subscription
+     */
+    @NotNull
+    public Subscription subscribe(@NotNull String name, @NotNull LoanEventListener listener, @Nullable Runnable resync, int capacity, int batchSize) {
+        ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "LoanSign-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        Subscription subscription = new Subscription(name, listener, resync, executor, Math.max(1, capacity), Math.max(1, batchSize));
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Post an event to all listeners
+     *
+     * @param event The event
+     */
+    public void post(@NotNull LoanEvent event) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Deliver all queued events and stop every subscription
+     */
+    public void shutdown() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+        subscriptions.clear();
+    }
+
+    /**
+     * A listener and its event queue
+     */
+    public static class Subscription {
+        private final String name;
+        private final LoanEventListener listener;
+        private final Runnable resync;
+        private final ExecutorService executor;
+        private final int capacity;
+        private final int batchSize;
+
+        private final Queue<LoanEvent> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicLong dropped = new AtomicLong();
+
+        /**
+         * Set when an event is dropped, until the listener is resynchronized
+         */
+        private final AtomicBoolean overflowed = new AtomicBoolean();
+
+        private Subscription(String name, LoanEventListener listener, Runnable resync, ExecutorService executor, int capacity, int batchSize) {
+            this.name = name;
+            this.listener = listener;
+            this.resync = resync;
+            this.executor = executor;
+            this.capacity = capacity;
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * @return The number of events dropped because the queue was full
+         */
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        private void offer(LoanEvent event) {
+            // reserve a slot without locking
+            if (size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                dropped.incrementAndGet();
+                if (overflowed.compareAndSet(false, true)) {
+                    logger.error("Listener " + name + " is falling behind, dropping events until it is resynchronized");
+                }
+                schedule();
+                return;
+            }
+            queue.offer(event);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RuntimeException e) {
+                    // the executor was shut down
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                try {
+                    List<LoanEvent> batch = new ArrayList<>(batchSize);
+                    LoanEvent event;
+                    while (true) {
+                        // the undelivered batch is covered by the resync too
+                        if (overflowed.getAndSet(false)) {
+                            batch.clear();
+                            resynchronize();
+                        }
+                        if ((event = queue.poll()) == null) break;
+                        size.decrementAndGet();
+                        batch.add(event);
+                        if (batch.size() == batchSize) {
+                            deliver(batch);
+                            batch = new ArrayList<>(batchSize);
+                        }
+                    }
+                    if (!batch.isEmpty()) deliver(batch);
+                } finally {
+                    scheduled.set(false);
+                }
+                // an event may have been queued or dropped after the last poll, keep this thread
+                // rather than submitting again, which would be rejected once the bus is shutting down
+            } while ((!queue.isEmpty() || overflowed.get()) && scheduled.compareAndSet(false, true));
+        }
+
+        /**
+         * Replace the queued events with a rebuild of the listener's state
+         * <p>The queued changes are already in the loans the listener is rebuilt from. Changes made
+         * while it is rebuilding may be both included and delivered afterwards, so listeners with a
+         * resync must skip changes they already hold.</p>
+         */
+        private void resynchronize() {
+            // without a resync the dropped events are simply lost
+            if (resync == null) return;
+            while (queue.poll() != null) size.decrementAndGet();
+            try {
+                resync.run();
+            } catch (RuntimeException e) {
+                logger.exception(e, "Listener " + name + " failed to resynchronize");
+            }
+        }
+
+        private void deliver(List<LoanEvent> batch) {
+            try {
+                listener.onEvents(batch);
+            } catch (RuntimeException e) {
+                logger.exception(e, "Listener " + name + " failed to handle events");
+            }
+        }
+
+        private void close() {
+            schedule();
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    logger.error("Listener " + name + " did not finish in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package net.mcmerdith.loansign.event;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Consumes batches of {@link LoanEvent}s from the {@link LoanEventBus}
+ */
+@FunctionalInterface
+public interface LoanEventListener {
+    /**
+     * Handle a batch of events
+     *
+     * @param events The events, in the order they were posted
+     * @implSpec Called on the executor of the subscription, never concurrently with itself.
+     * The loan of each event is live, anything but its IDs must be read while holding its lock.
+     */
+    void onEvents(@NotNull List<LoanEvent> events);
+}
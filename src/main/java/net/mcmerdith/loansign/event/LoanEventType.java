@@ -0,0 +1,67 @@
+package net.mcmerdith.loansign.event;
+
+/**
+ * The kinds of {@link LoanEvent}
+ */
+public enum LoanEventType {
+    /**
+     * A loan was offered to a borrower
+     */
+    OFFERED,
+    /**
+     * A borrower accepted an offer
+     */
+    OFFER_ACCEPTED,
+    /**
+     * A borrower declined an offer
+     */
+    OFFER_DECLINED,
+    /**
+     * An offer expired before the borrower responded
+     */
+    OFFER_EXPIRED,
+    /**
+     * A loan started being tracked
+     */
+    CREATED,
+    /**
+     * A payment was made on a loan
+     */
+    PAYMENT,
+    /**
+     * A fee was charged for a short payment
+     */
+    FEE,
+    /**
+     * A payment brought the balance of a loan to zero
+     */
+    PAID_OFF,
+    /**
+     * A loan passed its due date with a balance remaining
+     */
+    DEFAULTED,
+    /**
+     * A loan was closed by an administrator, forgiving the remaining balance
+     */
+    CLOSED,
+    /**
+     * Fees on a loan were waived by an administrator
+     */
+    FEES_WAIVED,
+    /**
+     * Periods were added to a loan by an administrator
+     */
+    EXTENDED,
+    /**
+     * The interest rate of a loan was changed by an administrator
+     */
+    RATE_CHANGED,
+    /**
+     * A loan was changed by another server
+     */
+    UPDATED,
+    /**
+     * A loan stopped being tracked (archived or merged)
+     */
+    REMOVED
+}
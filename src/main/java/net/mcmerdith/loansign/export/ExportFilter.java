@@ -0,0 +1,43 @@
+package net.mcmerdith.loansign.export;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Selects the loans and ledger entries included in an export
+ *
+ * @param from   The earliest payment or fee date included, or null for no limit
+ * @param to     The latest payment or fee date included, or null for no limit
+ * @param player Only loans lent or borrowed by this player, or null for all players
+ * @param status Only loans with this status, or null for any status
+ */
+public record ExportFilter(@Nullable Instant from, @Nullable Instant to, @Nullable UUID player, @Nullable LoanStatus status) {
+    /**
+     * An export of everything
+     */
+    public static final ExportFilter ALL = new ExportFilter(null, null, null, null);
+
+    /**
+     * @param loan   The loan
+     * @param status The status of the loan
+     * @return If the loan is included
+     */
+    boolean includes(@NotNull Loan loan, @NotNull LoanStatus status) {
+        if (player != null && !player.equals(loan.lender) && !player.equals(loan.borrower)) return false;
+        if (this.status != null && this.status != status) return false;
+        // loans created after the range have nothing in it
+        return to == null || !loan.getInitiation().isAfter(to);
+    }
+
+    /**
+     * @param date The date of a payment or fee
+     * @return If the entry is included
+     */
+    boolean includes(@NotNull Instant date) {
+        return (from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to));
+    }
+}
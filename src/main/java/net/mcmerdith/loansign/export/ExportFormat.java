@@ -0,0 +1,28 @@
+package net.mcmerdith.loansign.export;
+
+/**
+ * The file formats loans can be exported to
+ */
+public enum ExportFormat {
+    /**
+     * Comma separated values with a header row
+     */
+    CSV("csv"),
+    /**
+     * One json object per line
+     */
+    NDJSON("ndjson");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return The file extension, without a dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,53 @@
+package net.mcmerdith.loansign.export;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One line of an export, reused for every line so exports do not allocate per record
+ */
+class LedgerRow {
+    static final String[] COLUMNS = {"record", "loan_id", "lender", "borrower", "date", "amount", "deficit", "total", "remaining", "status", "reason"};
+
+    String record;
+    UUID loanID;
+    UUID lender;
+    UUID borrower;
+    Instant date;
+    @Nullable
+    BigDecimal amount;
+    @Nullable
+    BigDecimal deficit;
+    @Nullable
+    BigDecimal total;
+    @Nullable
+    BigDecimal remaining;
+    @Nullable
+    String status;
+    @Nullable
+    String reason;
+
+    /**
+     * Clear the values that are not shared by every record type
+     */
+    void reset(String record, Instant date) {
+        this.record = record;
+        this.date = date;
+        this.amount = null;
+        this.deficit = null;
+        this.total = null;
+        this.remaining = null;
+        this.status = null;
+        this.reason = null;
+    }
+
+    /**
+     * @return The values of each column in {@link LedgerRow#COLUMNS} order, null where a column does not apply
+     */
+    Object[] values() {
+        return new Object[]{record, loanID, lender, borrower, date, amount, deficit, total, remaining, status, reason};
+    }
+}
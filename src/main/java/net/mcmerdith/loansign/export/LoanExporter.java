@@ -0,0 +1,184 @@
+package net.mcmerdith.loansign.export;
+
+import com.google.gson.stream.JsonWriter;
+import net.mcmerdith.loansign.io.IoExecutor;
+import net.mcmerdith.loansign.model.Fee;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import net.mcmerdith.loansign.storage.LoanData;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/**
+ * Streams loans, payments and fees to a file
+ * <p>Records are written straight from the live loan registry as each loan is visited,
+ * so memory use does not grow with the size of the book.</p>
+ */
+public class LoanExporter {
+    private static LoanExporter instance;
+
+    public static LoanExporter instance() {
+        if (instance == null) instance = new LoanExporter();
+        return instance;
+    }
+
+    /**
+     * Progress is reported each time this many more percent of loans are written
+     */
+    private static final int PROGRESS_STEP = 10;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Start an export on the {@link IoExecutor}
+     *
+     * @param file     The file to write
+     * @param format   The file format
+     * @param filter   The loans and entries to include
+     * @param progress Called with the percentage of loans written
+     * @return The number of records written, or null if an export is already running
+     */
+    @Nullable
+    public CompletableFuture<Integer> export(@NotNull File file, @NotNull ExportFormat format, @NotNull ExportFilter filter, @NotNull IntConsumer progress) {
+        if (!running.compareAndSet(false, true)) return null;
+
+        LoanData data = LoanData.instance();
+        Collection<Loan> loans;
+        if (filter.player() != null) {
+            // a player's loans come from the index, a loan lent to yourself is listed once
+            loans = new LinkedHashSet<>(data.getLoansFrom(filter.player()));
+            loans.addAll(data.getLoansFor(filter.player()));
+        } else {
+            loans = data.getLoansView();
+        }
+
+        return IoExecutor.instance().submit(() -> {
+            File folder = file.getParentFile();
+            if (folder != null && !folder.exists() && !folder.mkdirs()) throw new IOException("Could not create " + folder);
+            try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                return write(loans, loans.size(), out, format, filter, progress);
+            }
+        }).whenComplete((count, e) -> running.set(false));
+    }
+
+    /**
+     * Write an export
+     *
+     * @param loans    The loans to visit
+     * @param total    The number of loans, for progress
+     * @param out      The output
+     * @param format   The file format
+     * @param filter   The loans and entries to include
+     * @param progress Called with the percentage of loans written
+     * @return The number of records written
+     */
+    static int write(@NotNull Iterable<Loan> loans, int total, @NotNull Writer out, @NotNull ExportFormat format,
+                     @NotNull ExportFilter filter, @NotNull IntConsumer progress) throws IOException {
+        if (format == ExportFormat.CSV) out.write(String.join(",", LedgerRow.COLUMNS) + "\n");
+
+        Instant now = Instant.now();
+        LedgerRow row = new LedgerRow();
+        int records = 0;
+        int visited = 0;
+        int reported = 0;
+        for (Loan loan : loans) {
+            synchronized (loan) {
+                records += writeLoan(loan, now, row, out, format, filter);
+            }
+
+            ++visited;
+            int percent = total <= 0 ? 100 : (int) (visited * 100L / total);
+            if (percent >= reported + PROGRESS_STEP) {
+                reported = percent - percent % PROGRESS_STEP;
+                progress.accept(reported);
+            }
+        }
+        out.flush();
+        return records;
+    }
+
+    /**
+     * Write a loan and its entries
+     *
+     * @return The number of records written
+     */
+    private static int writeLoan(Loan loan, Instant now, LedgerRow row, Writer out, ExportFormat format, ExportFilter filter) throws IOException {
+        LoanStatus status = LoanStatus.of(loan, now);
+        if (!filter.includes(loan, status)) return 0;
+
+        row.loanID = loan.loanID;
+        row.lender = loan.lender;
+        row.borrower = loan.borrower;
+
+        row.reset("loan", loan.getInitiation());
+        row.amount = loan.getPrincipal();
+        row.total = loan.getTotalAmount();
+        row.remaining = loan.getRemainingAmount();
+        row.status = status.name();
+        writeRow(row, out, format);
+        int records = 1;
+
+        for (Payment payment : loan.getPayments()) {
+            if (!filter.includes(payment.getDate())) continue;
+            row.reset("payment", payment.getDate());
+            row.amount = payment.getAmountDecimal();
+            row.deficit = payment.getDeficitDecimal();
+            writeRow(row, out, format);
+            ++records;
+        }
+
+        for (Fee fee : loan.getFees()) {
+            if (!filter.includes(fee.getDate())) continue;
+            row.reset("fee", fee.getDate());
+            row.amount = fee.getAmountDecimal();
+            row.reason = fee.reason == null ? null : fee.reason.name();
+            writeRow(row, out, format);
+            ++records;
+        }
+        return records;
+    }
+
+    private static void writeRow(LedgerRow row, Writer out, ExportFormat format) throws IOException {
+        Object[] values = row.values();
+        if (format == ExportFormat.CSV) {
+            for (int i = 0; i < values.length; ++i) {
+                if (i > 0) out.write(',');
+                out.write(csvValue(values[i]));
+            }
+        } else {
+            // JsonWriter writes through to the output, it is not closed so the output stays open
+            JsonWriter json = new JsonWriter(out);
+            json.beginObject();
+            for (int i = 0; i < values.length; ++i) {
+                if (values[i] == null) continue;
+                json.name(LedgerRow.COLUMNS[i]);
+                if (values[i] instanceof BigDecimal amount) json.jsonValue(amount.stripTrailingZeros().toPlainString());
+                else json.value(values[i].toString());
+            }
+            json.endObject();
+            json.flush();
+        }
+        out.write('\n');
+    }
+
+    private static String csvValue(Object value) {
+        if (value == null) return "";
+        String text = value instanceof BigDecimal amount ? amount.stripTrailingZeros().toPlainString() : value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) return text;
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
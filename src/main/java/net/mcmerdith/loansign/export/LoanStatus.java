@@ -0,0 +1,30 @@
+package net.mcmerdith.loansign.export;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+
+/**
+ * The state of a loan as shown in exports
+ */
+public enum LoanStatus {
+    ACTIVE,
+    CLOSED,
+    PAID_OFF,
+    DEFAULTED;
+
+    /**
+     * @param loan The loan
+     * @param now  The current time
+     * @return The status of the loan
+     * @implSpec Callers off the main thread must hold the lock on the loan
+     */
+    @NotNull
+    public static LoanStatus of(@NotNull Loan loan, @NotNull Instant now) {
+        if (loan.isClosed()) return CLOSED;
+        if (loan.isPaidOff()) return PAID_OFF;
+        if (now.isAfter(loan.getDueDate())) return DEFAULTED;
+        return ACTIVE;
+    }
+}
@@ -0,0 +1,94 @@
+package net.mcmerdith.loansign.io;
+
+import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.cache.OfflinePlayerCache;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * The economy calls made by the plugin
+ * <p>Calls block until the economy responds. Payments are collected from {@link IoExecutor} threads
+ * when {@link EconomyGateway#isAsync()} is set, otherwise everything runs on the main thread.</p>
+ */
+public class EconomyGateway {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(EconomyGateway.class);
+
+    private static EconomyGateway instance;
+
+    public static EconomyGateway instance() {
+        if (instance == null) instance = new EconomyGateway();
+        return instance;
+    }
+
+    private boolean async = false;
+
+    /**
+     * Load the gateway settings
+     *
+     * @param config The {@code io} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        async = config.getBoolean("async-economy", false);
+    }
+
+    /**
+     * @return If the economy is safe to call off the main thread
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * @param player The player
+     * @return The balance of the player
+     */
+    public double getBalance(@NotNull UUID player) {
+        return LoanSignMain.economy.getBalance(offline(player));
+    }
+
+    /**
+     * @param player The player
+     * @param amount The amount to take
+     * @return If the amount was taken
+     */
+    public boolean withdraw(@NotNull UUID player, double amount) {
+        return LoanSignMain.economy.withdrawPlayer(offline(player), amount).transactionSuccess();
+    }
+
+    /**
+     * @param player The player
+     * @param amount The amount to give
+     * @return If the amount was given
+     */
+    public boolean deposit(@NotNull UUID player, double amount) {
+        return LoanSignMain.economy.depositPlayer(offline(player), amount).transactionSuccess();
+    }
+
+    /**
+     * Move money between players, refunding the sender if the deposit fails
+     *
+     * @param from   The sender
+     * @param to     The receiver
+     * @param amount The amount
+     * @return If the money was moved
+     */
+    public boolean transfer(@NotNull UUID from, @NotNull UUID to, double amount) {
+        if (!withdraw(from, amount)) return false;
+        if (deposit(to, amount)) return true;
+
+        if (!deposit(from, amount)) {
+            logger.error("Failed to refund " + amount + " to " + from + " after a failed transfer");
+        }
+        return false;
+    }
+
+    private static OfflinePlayer offline(UUID player) {
+        return OfflinePlayerCache.instance().get(player);
+    }
+}
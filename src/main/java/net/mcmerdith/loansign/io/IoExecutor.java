@@ -0,0 +1,202 @@
+package net.mcmerdith.loansign.io;
+
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking storage and economy work off the Bukkit scheduler
+ * <p>Uses a virtual thread per task when the server runs on Java 21 or newer,
+ * otherwise a bounded pool of platform threads.</p>
+ */
+public class IoExecutor {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(IoExecutor.class);
+
+    private static IoExecutor instance;
+
+    public static IoExecutor instance() {
+        if (instance == null) instance = new IoExecutor();
+        return instance;
+    }
+
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
+    private static final int DEFAULT_TIMEOUT_SECONDS = 30;
+
+    private boolean virtualThreads = true;
+    private int threads = DEFAULT_THREADS;
+    private Duration timeout = Duration.ofSeconds(DEFAULT_TIMEOUT_SECONDS);
+
+    private ExecutorService executor;
+
+    /**
+     * Load the executor settings
+     * <p>Must be called before the first task is submitted</p>
+     *
+     * @param config The {@code io} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        virtualThreads = config.getBoolean("virtual-threads", true);
+        threads = Math.max(1, config.getInt("threads", DEFAULT_THREADS));
+        timeout = Duration.ofSeconds(Math.max(1, config.getInt("timeout-seconds", DEFAULT_TIMEOUT_SECONDS)));
+    }
+
+    /**
+     * @return How long multi-step operations may take before they are cancelled
+     */
+    @NotNull
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Run a task
+     *
+     * @param task The task
+     * @return The result of the task
+     */
+    @NotNull
+    public <T> CompletableFuture<T> submit(@NotNull Callable<T> task) {
+        return submit(task, null);
+    }
+
+    /**
+     * Run a task, giving up on it if it takes too long
+     * <p>A task that already started is left to finish, so a storage write is never interrupted
+     * halfway through a file</p>
+     *
+     * @param task    The task
+     * @param timeout The maximum time the task may take, or null to wait forever
+     * @return The result of the task, completed with a {@link java.util.concurrent.TimeoutException} on timeout
+     */
+    @NotNull
+    public <T> CompletableFuture<T> submit(@NotNull Callable<T> task, @Nullable Duration timeout) {
+        return submit(task, timeout, false);
+    }
+
+    /**
+     * Run a task, giving up on it if it takes too long
+     *
+     * @param task      The task
+     * @param timeout   The maximum time the task may take, or null to wait forever
+     * @param interrupt If a running task is interrupted when it is given up on, otherwise it is left to finish
+     * @return The result of the task, completed with a {@link java.util.concurrent.TimeoutException} on timeout,
+     * or a {@link RejectedExecutionException} if the executor is full or shut down
+     */
+    @NotNull
+    public <T> CompletableFuture<T> submit(@NotNull Callable<T> task, @Nullable Duration timeout, boolean interrupt) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running;
+        try {
+            running = executor().submit(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // never fall back to running blocking work on the caller, which may be the main thread
+            result.completeExceptionally(e);
+            return result;
+        }
+        if (timeout != null) result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        // stop the task if the caller gave up on it
+        result.whenComplete((value, e) -> {
+            if (e != null) running.cancel(interrupt);
+        });
+        return result;
+    }
+
+    /**
+     * Run a task in the background, logging any failure
+     *
+     * @param task The task
+     */
+    public void execute(@NotNull Runnable task) {
+        submit(() -> {
+            task.run();
+            return null;
+        }).exceptionally(e -> {
+            logger.exception(e, "Background task failed");
+            return null;
+        });
+    }
+
+    /**
+     * Open a scope for a multi-step operation bounded by the configured timeout
+     *
+     * @return The scope
+     */
+    @NotNull
+    public TaskScope scope() {
+        return new TaskScope(this, timeout);
+    }
+
+    /**
+     * Wait for running tasks to finish and stop the executor
+     */
+    public synchronized void shutdown() {
+        if (executor == null) return;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.error("I/O tasks did not finish in time");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            ExecutorService virtual = virtualThreads ? createVirtualExecutor() : null;
+            executor = virtual != null ? virtual : createPlatformExecutor(threads);
+        }
+        return executor;
+    }
+
+    /**
+     * @return A virtual thread per task executor, or null before Java 21
+     */
+    @Nullable
+    private static ExecutorService createVirtualExecutor() {
+        try {
+            // compiled against Java 17, so look the factory up at runtime
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService createPlatformExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(DEFAULT_QUEUE_SIZE),
+                task -> {
+                    Thread thread = new Thread(task, "LoanSign-io-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // fail the submitted future rather than block the submitter
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
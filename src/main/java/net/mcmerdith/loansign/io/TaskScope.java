@@ -0,0 +1,87 @@
+package net.mcmerdith.loansign.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the steps of one operation on the {@link IoExecutor} and waits for all of them
+ * <p>If any step fails, or the deadline passes, the remaining steps are cancelled.
+ * Steps still waiting when the scope is closed are cancelled as well. Steps that already
+ * started are never interrupted, they may be part way through a write or a transfer,
+ * but their results are ignored.</p>
+ */
+public class TaskScope implements AutoCloseable {
+    private final IoExecutor executor;
+    private final Instant deadline;
+
+    private final List<CompletableFuture<?>> tasks = new CopyOnWriteArrayList<>();
+
+    /**
+     * Completed exceptionally with the first failure of any step
+     */
+    private final CompletableFuture<Void> failure = new CompletableFuture<>();
+
+    TaskScope(@NotNull IoExecutor executor, @NotNull Duration timeout) {
+        this.executor = executor;
+        this.deadline = Instant.now().plus(timeout);
+    }
+
+    /**
+     * Start a step of the operation
+     *
+     * @param task The step
+     * @return The result of the step
+     */
+    @NotNull
+    public <T> CompletableFuture<T> fork(@NotNull Callable<T> task) {
+        CompletableFuture<T> future = executor.submit(task, remaining(), false);
+        tasks.add(future);
+        future.whenComplete((value, e) -> {
+            if (e != null && failure.completeExceptionally(e)) cancelAll();
+        });
+        return future;
+    }
+
+    /**
+     * Wait for every step to complete
+     *
+     * @throws ExecutionException If a step failed
+     * @throws TimeoutException   If the deadline passed
+     */
+    public void join() throws InterruptedException, ExecutionException, TimeoutException {
+        CompletableFuture<Void> all = CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]));
+        try {
+            CompletableFuture.anyOf(all, failure).get(remaining().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancelAll();
+            throw e;
+        } catch (ExecutionException e) {
+            // steps share the deadline and may time out first
+            if (e.getCause() instanceof TimeoutException timeout) throw timeout;
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+    }
+
+    private void cancelAll() {
+        for (CompletableFuture<?> task : tasks) task.cancel(false);
+    }
+
+    private Duration remaining() {
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+}
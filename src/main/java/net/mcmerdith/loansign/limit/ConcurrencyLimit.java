@@ -0,0 +1,56 @@
+package net.mcmerdith.loansign.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps the number of operations running at once
+ */
+public class ConcurrencyLimit {
+    private final AtomicInteger running = new AtomicInteger();
+
+    private volatile int limit;
+
+    /**
+     * @param limit The most operations running at once
+     */
+    public ConcurrencyLimit(int limit) {
+        this.limit = Math.max(1, limit);
+    }
+
+    /**
+     * Change the most operations running at once, running operations are not affected
+     *
+     * @param limit The most operations running at once
+     */
+    public void setLimit(int limit) {
+        this.limit = Math.max(1, limit);
+    }
+
+    /**
+     * Start an operation if the limit has not been reached
+     * <p>Every successful call must be paired with {@link #release()}</p>
+     *
+     * @return If the operation may start
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = running.get();
+            if (current >= limit) return false;
+            if (running.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    /**
+     * Finish an operation started with {@link #tryAcquire()}
+     */
+    public void release() {
+        running.decrementAndGet();
+    }
+
+    /**
+     * @return The number of operations running
+     */
+    public int getRunning() {
+        return running.get();
+    }
+}
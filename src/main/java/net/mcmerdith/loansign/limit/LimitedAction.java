@@ -0,0 +1,33 @@
+package net.mcmerdith.loansign.limit;
+
+/**
+ * Player actions with their own rate limit
+ */
+public enum LimitedAction {
+    /**
+     * Clicking a loan sign
+     */
+    SIGN("sign", 5, 2.0),
+    /**
+     * Receiving a loan offer from a sign
+     */
+    OFFER("offer", 3, 0.5),
+    /**
+     * Running a /loan command
+     */
+    COMMAND("command", 5, 1.0);
+
+    /**
+     * The name of the config section
+     */
+    public final String key;
+
+    final int defaultCapacity;
+    final double defaultPerSecond;
+
+    LimitedAction(String key, int defaultCapacity, double defaultPerSecond) {
+        this.key = key;
+        this.defaultCapacity = defaultCapacity;
+        this.defaultPerSecond = defaultPerSecond;
+    }
+}
@@ -0,0 +1,181 @@
+package net.mcmerdith.loansign.limit;
+
+import net.mcmerdith.loansign.LoanSignMain;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player rate limits on loan signs, offers and commands
+ * <p>Each player has a {@link TokenBucket} per action, created on first use and dropped once it
+ * is full again, so players who stop (or leave) cost nothing. Offers also share a server-wide
+ * bucket and loan queries share a {@link ConcurrencyLimit}.</p>
+ */
+public class RateLimiter {
+    private static RateLimiter instance;
+
+    public static RateLimiter instance() {
+        if (instance == null) instance = new RateLimiter();
+        return instance;
+    }
+
+    private static final double DEFAULT_GLOBAL_OFFERS_PER_SECOND = 10.0;
+    private static final int DEFAULT_MAX_CONCURRENT_QUERIES = 4;
+
+    /**
+     * Ticks between removing full buckets
+     */
+    private static final long PRUNE_TICKS = 1200L;
+
+    private boolean enabled = true;
+
+    private final Map<LimitedAction, Limit> limits = new EnumMap<>(LimitedAction.class);
+
+    private final Map<LimitedAction, Map<UUID, TokenBucket>> buckets = new EnumMap<>(LimitedAction.class);
+
+    private double globalOffersPerSecond = DEFAULT_GLOBAL_OFFERS_PER_SECOND;
+
+    private TokenBucket globalOffers;
+
+    private final ConcurrencyLimit queries = new ConcurrencyLimit(DEFAULT_MAX_CONCURRENT_QUERIES);
+
+    private BukkitTask task;
+
+    private record Limit(int capacity, double perSecond) {
+    }
+
+    RateLimiter() {
+        for (LimitedAction action : LimitedAction.values()) {
+            limits.put(action, new Limit(action.defaultCapacity, action.defaultPerSecond));
+            buckets.put(action, new ConcurrentHashMap<>());
+        }
+        globalOffers = createGlobalOffers();
+    }
+
+    /**
+     * Load the limits from the config
+     *
+     * @param config The {@code rate-limit} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        enabled = config.getBoolean("enabled", true);
+        for (LimitedAction action : LimitedAction.values()) {
+            ConfigurationSection section = config.getConfigurationSection(action.key);
+            if (section == null) continue;
+            limits.put(action, new Limit(
+                    Math.max(1, section.getInt("capacity", action.defaultCapacity)),
+                    section.getDouble("per-second", action.defaultPerSecond)));
+            buckets.get(action).clear();
+        }
+        globalOffersPerSecond = config.getDouble("global-offers-per-second", DEFAULT_GLOBAL_OFFERS_PER_SECOND);
+        globalOffers = createGlobalOffers();
+        queries.setLimit(config.getInt("max-concurrent-queries", DEFAULT_MAX_CONCURRENT_QUERIES));
+    }
+
+    private TokenBucket createGlobalOffers() {
+        // allow a second's worth of offers at once
+        return new TokenBucket((int) Math.ceil(globalOffersPerSecond), globalOffersPerSecond, System.nanoTime());
+    }
+
+    /**
+     * Start removing full buckets
+     */
+    public void start() {
+        if (!enabled) return;
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(LoanSignMain.instance, this::prune, PRUNE_TICKS, PRUNE_TICKS);
+    }
+
+    /**
+     * Stop removing full buckets
+     */
+    public void stop() {
+        if (task != null) task.cancel();
+        task = null;
+    }
+
+    /**
+     * @return If limits are applied
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Take a token for a player action
+     *
+     * @param action The action
+     * @param player The player
+     * @return If the player may perform the action
+     */
+    public boolean tryAcquire(@NotNull LimitedAction action, @NotNull UUID player) {
+        if (!enabled) return true;
+        long now = System.nanoTime();
+        Limit limit = limits.get(action);
+        Map<UUID, TokenBucket> players = buckets.get(action);
+        TokenBucket bucket = players.get(player);
+        if (bucket == null) {
+            bucket = players.computeIfAbsent(player, ignored -> new TokenBucket(limit.capacity, limit.perSecond, now));
+        }
+        return bucket.tryAcquire(now);
+    }
+
+    /**
+     * Take a token for a loan offer, from the player and from the server-wide limit
+     *
+     * @param player The player
+     * @return If the player may receive an offer
+     */
+    public boolean tryOffer(@NotNull UUID player) {
+        if (!enabled) return true;
+        // the player's own limit goes first so one player can not use up the server's
+        return tryAcquire(LimitedAction.OFFER, player) && globalOffers.tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * Start a loan query if fewer than the maximum are running
+     * <p>Every successful call must be paired with {@link #releaseQuery()}</p>
+     *
+     * @return If the query may start
+     */
+    public boolean tryStartQuery() {
+        return !enabled || queries.tryAcquire();
+    }
+
+    /**
+     * Finish a query started with {@link #tryStartQuery()}
+     */
+    public void releaseQuery() {
+        if (enabled) queries.release();
+    }
+
+    /**
+     * Remove buckets that are full again
+     *
+     * @return The number of buckets removed
+     */
+    public int prune() {
+        long now = System.nanoTime();
+        int removed = 0;
+        for (Map<UUID, TokenBucket> players : buckets.values()) {
+            int before = players.size();
+            players.values().removeIf(bucket -> bucket.isIdle(now));
+            removed += before - players.size();
+        }
+        return removed;
+    }
+
+    /**
+     * @return The number of buckets held
+     */
+    public int size() {
+        return buckets.values().stream().mapToInt(Map::size).sum();
+    }
+}
@@ -0,0 +1,65 @@
+package net.mcmerdith.loansign.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket
+ * <p>Instead of counting tokens the bucket stores the time it will be full again, so taking a
+ * token is a single compare-and-set and nothing needs to refill it in the background.</p>
+ */
+public class TokenBucket {
+    /**
+     * Nanoseconds to refill one token
+     */
+    private final long interval;
+
+    /**
+     * Nanoseconds to refill an empty bucket
+     */
+    private final long burst;
+
+    /**
+     * The time the bucket is full again, in {@link System#nanoTime()}
+     */
+    private final AtomicLong fullAt;
+
+    /**
+     * Create a new full bucket
+     *
+     * @param capacity  The most tokens the bucket holds
+     * @param perSecond The tokens refilled every second
+     * @param now       The current time in nanoseconds
+     */
+    public TokenBucket(int capacity, double perSecond, long now) {
+        this.interval = Math.max(1, (long) (1_000_000_000L / Math.max(perSecond, 0.001)));
+        this.burst = interval * Math.max(1, capacity);
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Take a token if one is available
+     *
+     * @param now The current time in nanoseconds
+     * @return If a token was taken
+     */
+    public boolean tryAcquire(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + interval;
+            // a rejection does not write, so a flood of requests only costs a read each
+            if (next - now > burst) return false;
+            if (fullAt.compareAndSet(current, next)) return true;
+        }
+    }
+
+    /**
+     * Check if the bucket is full
+     * <p>A full bucket holds no state, removing it and creating a new one later changes nothing</p>
+     *
+     * @param now The current time in nanoseconds
+     * @return If the bucket is full
+     */
+    public boolean isIdle(long now) {
+        return fullAt.get() - now <= 0;
+    }
+}
@@ -0,0 +1,49 @@
+package net.mcmerdith.loansign.listener;
+
+import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.cache.OfflinePlayerCache;
+import net.mcmerdith.loansign.cache.PlayerSummaryCache;
+import net.mcmerdith.loansign.command.LoanCommand;
+import net.mcmerdith.loansign.notification.NotificationDispatcher;
+import net.mcmerdith.loansign.storage.LoanData;
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * Keeps per-player state in step with players joining and leaving
+ */
+public class PlayerListener implements Listener {
+    private final LoanCommand command;
+
+    /**
+     * @param command The loan command, which keeps the last page of loans shown to each player
+     */
+    public PlayerListener(@NotNull LoanCommand command) {
+        this.command = command;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        UUID player = event.getPlayer().getUniqueId();
+        OfflinePlayerCache.instance().put(event.getPlayer());
+        NotificationDispatcher.instance().deliver(event.getPlayer());
+        // warm the summary off the main thread once loans are available
+        LoanData.instance().getReadyFuture().thenRun(() ->
+                Bukkit.getScheduler().runTaskAsynchronously(LoanSignMain.instance, () -> PlayerSummaryCache.instance().rebuild(player)));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        PlayerSummaryCache.instance().evict(event.getPlayer().getUniqueId());
+        // the online handle goes stale once the player leaves
+        OfflinePlayerCache.instance().evict(event.getPlayer().getUniqueId());
+        command.forget(event.getPlayer().getName());
+    }
+}
@@ -0,0 +1,29 @@
+package net.mcmerdith.loansign.listener;
+
+import net.mcmerdith.loansign.cache.SignTermsCache;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.SignChangeEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Invalidates cached sign terms when a sign is broken or edited, or its world is unloaded
+ */
+public class SignListener implements Listener {
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBreak(BlockBreakEvent event) {
+        SignTermsCache.instance().invalidate(event.getBlock().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEdit(SignChangeEvent event) {
+        SignTermsCache.instance().invalidate(event.getBlock().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        SignTermsCache.instance().invalidate(event.getWorld());
+    }
+}
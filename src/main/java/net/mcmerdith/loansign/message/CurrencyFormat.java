@@ -0,0 +1,63 @@
+package net.mcmerdith.loansign.message;
+
+import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.model.MinorUnits;
+import net.milkbowl.vault.economy.Economy;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Formats amounts with the economy plugin, remembering recent results
+ * <p>Installments and fees repeat across many loans, so most amounts are formatted only once</p>
+ */
+public final class CurrencyFormat {
+    /**
+     * The cache is emptied when it grows past this many amounts
+     */
+    private static final int MAX_SIZE = 4096;
+
+    private static final Map<Long, String> cache = new ConcurrentHashMap<>();
+
+    /**
+     * The economy the cached amounts were formatted by
+     */
+    private static volatile Economy formatter;
+
+    private CurrencyFormat() {
+    }
+
+    /**
+     * @param units An amount in minor units
+     * @return The amount formatted by the economy plugin
+     */
+    @NotNull
+    public static String format(long units) {
+        Economy economy = LoanSignMain.economy;
+        if (economy != formatter || cache.size() >= MAX_SIZE) {
+            cache.clear();
+            formatter = economy;
+        }
+        return cache.computeIfAbsent(units, u -> economy.format(MinorUnits.toDouble(u)));
+    }
+
+    /**
+     * @param amount An amount
+     * @return The amount formatted by the economy plugin
+     */
+    @NotNull
+    public static String format(@NotNull BigDecimal amount) {
+        return format(MinorUnits.toUnits(amount));
+    }
+
+    /**
+     * @param amount An amount
+     * @return The amount formatted by the economy plugin
+     */
+    @NotNull
+    public static String format(double amount) {
+        return format(BigDecimal.valueOf(amount));
+    }
+}
@@ -0,0 +1,118 @@
+package net.mcmerdith.loansign.message;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message compiled once into literal text and placeholder slots
+ * <p>Placeholders use the SignShop {@code !name} style. Each placeholder named in the parameter
+ * list becomes a slot filled by position when rendering, any other text is kept as written.</p>
+ */
+public final class MessageTemplate {
+    /**
+     * Builders reused by each rendering thread
+     */
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+    /**
+     * Literal text before each slot, and after the last one
+     */
+    private final String[] literals;
+
+    /**
+     * The parameter index filling each slot
+     */
+    private final int[] slots;
+
+    /**
+     * The length of all literal text
+     */
+    private final int literalLength;
+
+    private MessageTemplate(String[] literals, int[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) length += literal.length();
+        this.literalLength = length;
+    }
+
+    /**
+     * Compile a message
+     *
+     * @param text       The message
+     * @param parameters The placeholders filled when rendering, including the {@code !}
+     * @return The template
+     */
+    @NotNull
+    public static MessageTemplate compile(@NotNull String text, @NotNull String... parameters) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c != '!') {
+                literal.append(c);
+                ++i;
+                continue;
+            }
+
+            // the longest matching parameter wins, so !amount is not read as !a + mount
+            int end = i + 1;
+            while (end < text.length() && isNameChar(text.charAt(end))) ++end;
+            int parameter = -1;
+            int length = 0;
+            for (int p = 0; p < parameters.length; ++p) {
+                String name = parameters[p];
+                if (name.length() > length && name.length() <= end - i && text.startsWith(name, i)) {
+                    parameter = p;
+                    length = name.length();
+                }
+            }
+
+            if (parameter < 0) {
+                literal.append(c);
+                ++i;
+            } else {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                slots.add(parameter);
+                i += length;
+            }
+        }
+        literals.add(literal.toString());
+
+        return new MessageTemplate(literals.toArray(new String[0]), slots.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * Render the message
+     *
+     * @param values The value of each parameter, in the order given to {@link MessageTemplate#compile(String, String...)}
+     * @return The message
+     */
+    @NotNull
+    public String render(@NotNull String... values) {
+        // no placeholders, nothing to build
+        if (slots.length == 0) return literals[0];
+
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        builder.ensureCapacity(literalLength + 16 * slots.length);
+        for (int i = 0; i < slots.length; ++i) {
+            builder.append(literals[i]);
+            int slot = slots[i];
+            builder.append(slot < values.length ? values[slot] : "");
+        }
+        builder.append(literals[slots.length]);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package net.mcmerdith.loansign.message;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The configured messages, each compiled once on first use
+ */
+public class MessageTemplates {
+    private static MessageTemplates instance;
+
+    public static MessageTemplates instance() {
+        if (instance == null) instance = new MessageTemplates();
+        return instance;
+    }
+
+    /**
+     * Message text by type and key
+     */
+    private final Map<String, Map<String, String>> messages = new ConcurrentHashMap<>();
+
+    /**
+     * Compiled messages by type and key
+     */
+    private final Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * Load the configured messages, replacing any compiled templates
+     *
+     * @param messages Message text by type and key, the {@code messages} section of the config
+     */
+    public void configure(@NotNull Map<String, ? extends Map<String, String>> messages) {
+        this.messages.clear();
+        messages.forEach((type, keys) -> this.messages.put(type, Map.copyOf(keys)));
+        templates.clear();
+    }
+
+    /**
+     * Get a compiled message
+     * <p>The parameters of a message must be the same every time it is requested</p>
+     *
+     * @param type       The message type
+     * @param key        The message key
+     * @param fallback   The text used if the message is not configured, may be null
+     * @param parameters The placeholders filled when rendering
+     * @return The template, or null if the message is not configured and there is no fallback
+     */
+    @Nullable
+    public MessageTemplate get(@NotNull String type, @NotNull String key, @Nullable String fallback, @NotNull String... parameters) {
+        String id = type + '.' + key;
+        MessageTemplate template = templates.get(id);
+        if (template != null) return template;
+
+        Map<String, String> keys = messages.get(type);
+        String text = keys == null ? null : keys.get(key);
+        if (text == null) text = fallback;
+        if (text == null) return null;
+
+        template = MessageTemplate.compile(text, parameters);
+        templates.put(id, template);
+        return template;
+    }
+}
@@ -8,39 +8,44 @@ import java.time.Instant;
 
 public class Fee {
     /**
-     * The date of the fee
+     * The date of the fee in unsigned epoch seconds
+     *
+     * @see MinorUnits#toEpochInt(long)
      */
-    @NotNull
-    public Instant date;
+    private final int date;
 
     /**
-     * The amount of the fee
+     * The amount of the fee in minor units
+     *
+     * @see MinorUnits
      */
-    @NotNull
-    public BigDecimal amount;
+    private final long amount;
 
     /**
-     * A description of the fee
+     * The reason for the fee
      */
     @Nullable
-    public String reason;
+    public final FeeReason reason;
 
     /**
      * A description of the fee
+     * <p>Fees charged on a {@link Payment} leave this null and are explained by
+     * {@link Payment#getFeeExplanation()} when displayed</p>
      */
     @Nullable
-    public String explanation;
+    public final String explanation;
 
     /**
      * Create a new fee
      *
-     * @param date   The date of the fee
-     * @param amount The amount of the fee
-     * @param reason A description of the fee
+     * @param date        The date of the fee
+     * @param amount      The amount of the fee
+     * @param reason      The reason for the fee
+     * @param explanation A description of the fee
      */
-    public Fee(@NotNull Instant date, @NotNull BigDecimal amount, @Nullable String reason, @Nullable String explanation) {
-        this.date = date;
-        this.amount = amount;
+    public Fee(@NotNull Instant date, @NotNull BigDecimal amount, @Nullable FeeReason reason, @Nullable String explanation) {
+        this.date = MinorUnits.toEpochInt(date.getEpochSecond());
+        this.amount = MinorUnits.toUnits(amount);
         this.reason = reason;
         this.explanation = explanation;
     }
@@ -48,28 +53,53 @@ public class Fee {
     /**
      * Create a new fee with a date of {@link Instant#now()}
      *
-     * @param amount The amount of the fee
-     * @param reason A description of the fee
+     * @param amount      The amount of the fee
+     * @param reason      The reason for the fee
+     * @param explanation A description of the fee
      */
-    public Fee(@NotNull BigDecimal amount, @Nullable String reason, @Nullable String explanation) {
+    public Fee(@NotNull BigDecimal amount, @Nullable FeeReason reason, @Nullable String explanation) {
         this(Instant.now(), amount, reason, explanation);
     }
 
     /**
      * Create a new fee with a date of {@link Instant#now()}
      *
-     * @param amount The amount of the fee
-     * @param reason A description of the fee
+     * @param amount      The amount of the fee
+     * @param reason      The reason for the fee
+     * @param explanation A description of the fee
      */
-    public Fee(double amount, @Nullable String reason, @Nullable String explanation) {
+    public Fee(double amount, @Nullable FeeReason reason, @Nullable String explanation) {
         this(BigDecimal.valueOf(amount), reason, explanation);
     }
 
+    /**
+     * @return The date of the fee
+     */
+    @NotNull
+    public Instant getDate() {
+        return Instant.ofEpochSecond(MinorUnits.fromEpochInt(this.date));
+    }
+
+    /**
+     * @return The amount of the fee
+     */
+    @NotNull
+    public BigDecimal getAmountDecimal() {
+        return MinorUnits.toDecimal(this.amount);
+    }
+
+    /**
+     * @return The amount of the fee in minor units
+     */
+    public long getAmountUnits() {
+        return this.amount;
+    }
+
     /**
      * @return A double of the amount
-     * @see Fee#amount
+     * @see Fee#getAmountDecimal()
      */
     public double getAmount() {
-        return this.amount.doubleValue();
+        return MinorUnits.toDouble(this.amount);
     }
 }
@@ -0,0 +1,36 @@
+package net.mcmerdith.loansign.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The reason a {@link Fee} was charged
+ * <p>Fees share these constants instead of carrying their own description strings</p>
+ */
+public enum FeeReason {
+    /**
+     * A payment was short of the required installment
+     */
+    INSUFFICIENT_PAYMENT("Insufficient Payment"),
+    /**
+     * The combined fees of payments folded by {@link Loan#compactPayments(int)}
+     */
+    COMPACTED("Compacted"),
+    /**
+     * A fee charged by an administrator
+     */
+    ADMINISTRATIVE("Administrative");
+
+    private final String description;
+
+    FeeReason(String description) {
+        this.description = description;
+    }
+
+    /**
+     * @return A description of the fee
+     */
+    @NotNull
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,34 @@
+package net.mcmerdith.loansign.model;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Serializes {@link Instant}s as epoch milliseconds
+ * <p>Gson can not reflect into {@code java.time} classes on modern JDKs</p>
+ */
+public class InstantAdapter extends TypeAdapter<Instant> {
+    @Override
+    public void write(JsonWriter out, Instant value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value.toEpochMilli());
+        }
+    }
+
+    @Override
+    public Instant read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (in.peek() == JsonToken.STRING) return Instant.parse(in.nextString());
+        return Instant.ofEpochMilli(in.nextLong());
+    }
+}
@@ -0,0 +1,112 @@
+package net.mcmerdith.loansign.model;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of compound interest growth factors
+ * <p>Sign rates and durations come from a small set, so {@code (1 + rate)^periods} is computed once
+ * per (rate, periods) pair with a fixed {@link MathContext} and reused for every loan and quote</p>
+ */
+public class InterestFactors {
+    private static InterestFactors instance;
+
+    public static InterestFactors instance() {
+        if (instance == null) instance = new InterestFactors();
+        return instance;
+    }
+
+    /**
+     * The precision growth factors are calculated with
+     */
+    public static final MathContext MATH_CONTEXT = MathContext.DECIMAL128;
+
+    private static final int DEFAULT_MAX_SIZE = 256;
+
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    private final Map<Key, BigDecimal> factors = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, BigDecimal> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    /**
+     * Load the cache settings
+     *
+     * @param config The {@code interest} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        maxSize = Math.max(1, config.getInt("factor-cache-size", DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * Get the growth factor of a rate compounded over a number of periods
+     *
+     * @param rate    The interest rate per period
+     * @param periods The number of periods
+     * @return {@code (1 + rate)^periods}
+     */
+    @NotNull
+    public BigDecimal factor(@NotNull BigDecimal rate, int periods) {
+        Key key = new Key(rate.stripTrailingZeros(), periods);
+        synchronized (factors) {
+            BigDecimal factor = factors.get(key);
+            if (factor != null) return factor;
+        }
+
+        BigDecimal factor = rate.add(BigDecimal.ONE).pow(periods, MATH_CONTEXT);
+        synchronized (factors) {
+            factors.put(key, factor);
+        }
+        return factor;
+    }
+
+    /**
+     * Quote the total repaid on a new loan
+     *
+     * @param amount  The amount lent
+     * @param rate    The interest rate per period
+     * @param periods The number of periods
+     * @return The total amount with interest
+     */
+    @NotNull
+    public BigDecimal quoteTotal(@NotNull BigDecimal amount, @NotNull BigDecimal rate, int periods) {
+        return amount.multiply(factor(rate, periods)).setScale(MinorUnits.SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Quote the installment of a new loan
+     * <p>Matches {@link Loan#getInstallmentAmount()} of a loan with no payments</p>
+     *
+     * @param total   The total amount with interest
+     * @param periods The number of periods
+     * @return The amount of each installment
+     */
+    @NotNull
+    public BigDecimal quoteInstallment(@NotNull BigDecimal total, int periods) {
+        if (periods <= 1) return total;
+        return total.divide(BigDecimal.valueOf(periods), RoundingMode.DOWN);
+    }
+
+    /**
+     * @return The number of cached factors
+     */
+    public int size() {
+        synchronized (factors) {
+            return factors.size();
+        }
+    }
+
+    private record Key(BigDecimal rate, int periods) {
+    }
+}
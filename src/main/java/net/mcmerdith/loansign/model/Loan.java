@@ -1,6 +1,9 @@
 package net.mcmerdith.loansign.model;
 
-import net.mcmerdith.loansign.LoanSignMain;
+import com.google.gson.annotations.JsonAdapter;
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventBus;
+import net.mcmerdith.loansign.event.LoanEventType;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -11,6 +14,8 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
@@ -32,6 +37,16 @@ public class Loan {
      */
     public UUID borrower;
 
+    /**
+     * The amount lent to the borrower
+     */
+    protected BigDecimal principal;
+
+    /**
+     * The interest rate per period
+     */
+    protected BigDecimal rate;
+
     /**
      * The initial amount of the loan
      */
@@ -40,6 +55,7 @@ public class Loan {
     /**
      * The initiation date of the loan
      */
+    @JsonAdapter(InstantAdapter.class)
     protected Instant initiation;
 
     /**
@@ -71,6 +87,63 @@ public class Loan {
      */
     protected List<Fee> fees;
 
+    /**
+     * If this loan has been reported as defaulted
+     */
+    protected boolean defaulted;
+
+    /**
+     * If this loan was closed by an administrator, forgiving the remaining balance
+     */
+    protected boolean closed;
+
+    /**
+     * The loans merged into this loan, null if it was not created by consolidation
+     *
+     * @see Loan#consolidate(List, Instant)
+     */
+    @Nullable
+    protected List<UUID> consolidatedFrom;
+
+    /**
+     * The loan this loan was merged into, null if it was not consolidated
+     */
+    @Nullable
+    protected UUID consolidatedInto;
+
+    /**
+     * The version of this loan in shared storage, incremented on every write
+     */
+    protected volatile long version;
+
+    /**
+     * Checksum of the stored fields when this loan was last saved, 0 if it was never saved with one
+     *
+     * @see Loan#computeChecksum()
+     */
+    protected long checksum;
+
+    /**
+     * The number of changes made to this loan, only incremented while holding its lock
+     * <p>The loan changed since it was last written while this is ahead of {@link Loan#written}</p>
+     */
+    private transient volatile long changes;
+
+    /**
+     * The value of {@link Loan#changes} in the last copy of this loan written to storage
+     */
+    private transient volatile long written;
+
+    /**
+     * Cached sum of {@link Loan#payments}, null when it must be recalculated
+     */
+    private transient BigDecimal paymentTotal;
+
+    /**
+     * Cached sum of {@link Loan#getFees()}, null when it must be recalculated
+     */
+    private transient BigDecimal feeTotal;
+
     /**
      * Gson Constructor: Do not use
      */
@@ -86,11 +159,13 @@ public class Loan {
      * @param lender        The {@link UUID} of the player giving the loan
      * @param borrower      The {@link UUID} of the player receiving the loan
      * @param initialAmount The initial amount of the loan
+     * @param rate          The interest rate per period
      * @param initiation    When the loan was created
      * @param currentPeriod The current period of this loan
      * @param totalPeriods  The total number of periods for this loan
      * @param periodUnit    The time unit of each period
      * @param payments      The list of payments made
+     * @param fees          The list of fees charged
      */
     public Loan(
             UUID loanID,
@@ -109,13 +184,16 @@ public class Loan {
         this.loanID = loanID;
         this.lender = lender;
         this.borrower = borrower;
-        this.loanAmount = initialAmount.multiply(rate.add(BigDecimal.ONE).pow(totalPeriods));
+        this.principal = initialAmount;
+        this.rate = rate;
+        this.loanAmount = InterestFactors.instance().quoteTotal(initialAmount, rate, totalPeriods);
         this.initiation = initiation;
         this.currentPeriod = currentPeriod;
         this.totalPeriods = totalPeriods;
         this.periodUnit = periodUnit;
         this.payments = payments;
         this.fees = fees;
+        this.changes++;
     }
 
     /**
@@ -143,6 +221,177 @@ public class Loan {
         );
     }
 
+    /**
+     * @return The version of this loan in shared storage
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @return If this loan changed since it was last written to storage
+     */
+    public boolean isDirty() {
+        return this.changes != this.written;
+    }
+
+    /**
+     * @return The number of changes made to this loan, to identify a copy taken while holding its lock
+     */
+    public long getChanges() {
+        return this.changes;
+    }
+
+    /**
+     * @param changes A value of {@link Loan#getChanges()}
+     * @return If a copy of this loan with at least these changes was written to storage
+     */
+    public boolean isWritten(long changes) {
+        return changes <= this.written;
+    }
+
+    /**
+     * Record that a copy of this loan was written to storage
+     * <p>Does not need the lock of this loan. Changes made after the copy was taken keep the loan dirty.</p>
+     *
+     * @param version The version that was written
+     * @param changes The value of {@link Loan#getChanges()} when the copy was taken
+     */
+    public void markWritten(long version, long changes) {
+        this.version = version;
+        if (changes > this.written) this.written = changes;
+    }
+
+    /**
+     * @return The checksum recorded when this loan was last saved, 0 if there is none
+     */
+    public long getChecksum() {
+        return this.checksum;
+    }
+
+    /**
+     * Calculate a checksum of the stored fields of this loan
+     * <p>The storage version and the checksum itself are not included</p>
+     *
+     * @return The checksum, never 0
+     */
+    public long computeChecksum() {
+        LoanChecksum sum = new LoanChecksum()
+                .add(this.loanID)
+                .add(this.lender)
+                .add(this.borrower)
+                .add(this.principal)
+                .add(this.rate)
+                .add(this.loanAmount)
+                // initiation is stored in milliseconds
+                .add(this.initiation == null ? -1L : this.initiation.toEpochMilli())
+                .add(this.currentPeriod)
+                .add(this.totalPeriods)
+                .add(this.periodUnit)
+                .add(this.defaulted)
+                .add(this.closed);
+        if (this.payments != null) {
+            sum.add(this.payments.size());
+            for (Payment payment : this.payments) {
+                sum.add(payment.getDate().getEpochSecond()).add(payment.getAmountUnits()).add(payment.getDeficitUnits()).add(payment.foldedPayments);
+                addFee(sum, payment.fee);
+            }
+        }
+        if (this.fees != null) {
+            sum.add(this.fees.size());
+            for (Fee fee : this.fees) addFee(sum, fee);
+        }
+        // only consolidated loans have these, so older checksums still match
+        if (this.consolidatedFrom != null) {
+            sum.add(this.consolidatedFrom.size());
+            for (UUID source : this.consolidatedFrom) sum.add(source);
+        }
+        if (this.consolidatedInto != null) sum.add(this.consolidatedInto);
+        return sum.getValue();
+    }
+
+    private static void addFee(LoanChecksum sum, @Nullable Fee fee) {
+        if (fee == null) {
+            sum.add(false);
+            return;
+        }
+        sum.add(true).add(fee.getDate().getEpochSecond()).add(fee.getAmountUnits()).add(fee.reason).add(fee.explanation);
+    }
+
+    /**
+     * Check the invariants of this loan
+     *
+     * @return A description of the first broken invariant, or null if the loan is valid
+     */
+    @Nullable
+    public String findProblem() {
+        if (this.loanID == null || this.lender == null || this.borrower == null) return "missing loan ID, lender or borrower";
+        if (this.initiation == null || this.periodUnit == null) return "missing initiation or period unit";
+        if (this.rate == null || this.rate.signum() < 0) return "missing or negative rate";
+        if (this.loanAmount == null || this.loanAmount.signum() < 0) return "missing or negative total";
+        if (this.principal != null && this.principal.signum() <= 0) return "principal is not positive";
+        if (this.totalPeriods <= 0) return "no periods";
+        if (this.currentPeriod < 0 || this.currentPeriod > this.totalPeriods) {
+            return "current period " + this.currentPeriod + " is outside 0.." + this.totalPeriods;
+        }
+        if (this.payments == null || this.fees == null) return "missing payments or fees";
+        for (Payment payment : this.payments) {
+            if (payment == null) return "missing payment";
+            if (payment.getAmountUnits() < 0 || payment.getDeficitUnits() < 0) return "negative payment";
+            if (payment.fee != null && payment.fee.getAmountUnits() < 0) return "negative fee";
+        }
+        for (Fee fee : this.fees) {
+            if (fee == null) return "missing fee";
+            if (fee.getAmountUnits() < 0) return "negative fee";
+        }
+        if (getPaymentTotal().compareTo(getTotalAmount()) > 0) return "payments exceed the total";
+        return null;
+    }
+
+    /**
+     * Record the checksum of this loan before it is saved
+     */
+    public void seal() {
+        this.checksum = computeChecksum();
+    }
+
+    /**
+     * @return The amount lent to the borrower
+     */
+    public BigDecimal getPrincipal() {
+        return this.principal;
+    }
+
+    /**
+     * @return The interest rate per period
+     */
+    public BigDecimal getRate() {
+        return this.rate;
+    }
+
+    /**
+     * @return The {@link Instant} when this loan was created
+     */
+    @NotNull
+    public Instant getInitiation() {
+        return this.initiation;
+    }
+
+    /**
+     * @return The time unit of each period
+     */
+    @NotNull
+    public ChronoUnit getPeriodUnit() {
+        return this.periodUnit;
+    }
+
+    /**
+     * @return The period this loan is on
+     */
+    public int getCurrentPeriod() {
+        return this.currentPeriod;
+    }
+
     /**
      * @return The {@link Instant} when this loan is due
      */
@@ -153,6 +402,61 @@ public class Loan {
         return this.initiation.plus(Duration.of(this.totalPeriods + 1, this.periodUnit));
     }
 
+    /**
+     * @return The {@link Instant} when the next installment is due
+     * @apiNote May be after {@link Loan#getDueDate()} if all periods have been paid
+     */
+    @NotNull
+    @Contract("-> !null")
+    public Instant getNextPaymentDate() {
+        return this.initiation.plus(Duration.of(this.currentPeriod + 1, this.periodUnit));
+    }
+
+    /**
+     * @return The amount that should have been paid by now but has not been
+     * @apiNote This value is never negative
+     */
+    @NotNull
+    @Contract("-> !null")
+    public BigDecimal getOverdueAmount() {
+        if (Instant.now().isAfter(getDueDate())) return getRemainingAmount();
+        return getInstallmentAmount().multiply(BigDecimal.valueOf(getRequiredPayments()));
+    }
+
+    /**
+     * @return An unmodifiable view of the payments made on this loan
+     */
+    @NotNull
+    public List<Payment> getPayments() {
+        return Collections.unmodifiableList(this.payments);
+    }
+
+    /**
+     * @return The date of the most recent payment, or null if no payments were made
+     */
+    @Nullable
+    public Instant getLastPaymentDate() {
+        return this.payments.isEmpty() ? null : this.payments.get(this.payments.size() - 1).getDate();
+    }
+
+    /**
+     * A loan can be archived once it has been paid off or past due for the retention period
+     *
+     * @param now       The current time
+     * @param retention How long closed loans are kept active
+     * @return If this loan can be archived
+     */
+    public boolean isArchivable(@NotNull Instant now, @NotNull Duration retention) {
+        Instant closed;
+        if (this.isPaidOff()) {
+            Instant lastPayment = getLastPaymentDate();
+            closed = lastPayment == null ? this.initiation : lastPayment;
+        } else {
+            closed = getDueDate();
+        }
+        return closed.plus(retention).isBefore(now);
+    }
+
     /**
      * @return The period that this loan should be on based on the current date
      * @apiNote May be greater than {@link Loan#totalPeriods}
@@ -173,7 +477,8 @@ public class Loan {
      * @return If a payment is due on this loan
      */
     public boolean isPaymentDue() {
-        return this.currentPeriod < getExpectedCurrentPeriod();
+        // nothing is collected on a closed loan
+        return !this.closed && this.currentPeriod < getExpectedCurrentPeriod();
     }
 
     /**
@@ -183,6 +488,231 @@ public class Loan {
         return this.getRemainingAmount().compareTo(BigDecimal.ZERO) <= 0;
     }
 
+    /**
+     * @return If this loan has been reported as defaulted
+     */
+    public boolean isDefaulted() {
+        return this.defaulted;
+    }
+
+    /**
+     * Mark this loan as defaulted if it is past due with a balance remaining
+     *
+     * @param now The current time
+     * @return If the loan defaulted just now
+     */
+    public boolean markDefaulted(@NotNull Instant now) {
+        if (this.defaulted || this.isPaidOff() || !now.isAfter(getDueDate())) return false;
+        this.defaulted = true;
+        this.changes++;
+        LoanEventBus.instance().post(new LoanEvent(LoanEventType.DEFAULTED, this));
+        return true;
+    }
+
+    /**
+     * @return If this loan was closed by an administrator
+     */
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Close this loan, forgiving the remaining balance
+     */
+    public void close() {
+        this.closed = true;
+        this.changes++;
+        LoanEventBus.instance().post(new LoanEvent(LoanEventType.CLOSED, this));
+    }
+
+    /**
+     * @return The {@link UUID}s of the loans merged into this loan, empty if it was not created by consolidation
+     */
+    @NotNull
+    public List<UUID> getConsolidatedFrom() {
+        return this.consolidatedFrom == null ? List.of() : Collections.unmodifiableList(this.consolidatedFrom);
+    }
+
+    /**
+     * @return The {@link UUID} of the loan this loan was merged into, or null if it was not consolidated
+     */
+    @Nullable
+    public UUID getConsolidatedInto() {
+        return this.consolidatedInto;
+    }
+
+    /**
+     * Merge loans between the same lender and borrower into a single loan
+     * <p>The merged loan carries the totals, fees and payments of the sources, with the payments
+     * folded into one checkpoint, so it owes exactly the sum of their remaining balances. It starts
+     * now and is due when the last source was due. The sources are closed so nothing more is
+     * collected on them.</p>
+     * <p>The caller must hold the lock of every source</p>
+     *
+     * @param sources The loans to merge, with the same lender, borrower and period unit and a balance remaining
+     * @param now     The current time
+     * @return The merged loan
+     * @throws IllegalArgumentException If the sources can not be merged
+     */
+    @NotNull
+    public static Loan consolidate(@NotNull List<Loan> sources, @NotNull Instant now) {
+        if (sources.isEmpty()) throw new IllegalArgumentException("Nothing to consolidate");
+        Loan first = sources.get(0);
+        for (Loan source : sources) {
+            if (!source.lender.equals(first.lender) || !source.borrower.equals(first.borrower)) {
+                throw new IllegalArgumentException("Loan " + source.loanID + " has a different lender or borrower");
+            }
+            if (source.periodUnit != first.periodUnit) throw new IllegalArgumentException("Loan " + source.loanID + " has a different period");
+            // a clamped or forgiven balance would not carry over exactly
+            if (source.closed || source.isPaidOff()) throw new IllegalArgumentException("Loan " + source.loanID + " has no balance");
+        }
+
+        Loan merged = new Loan();
+        merged.loanID = UUID.randomUUID();
+        merged.lender = first.lender;
+        merged.borrower = first.borrower;
+        merged.initiation = now;
+        merged.periodUnit = first.periodUnit;
+        merged.payments = new ArrayList<>();
+        merged.fees = new ArrayList<>();
+        merged.consolidatedFrom = new ArrayList<>(sources.size());
+
+        BigDecimal principal = BigDecimal.ZERO;
+        BigDecimal loanAmount = BigDecimal.ZERO;
+        BigDecimal weightedRate = BigDecimal.ZERO;
+        long amount = 0;
+        long deficit = 0;
+        int count = 0;
+        Instant lastPayment = null;
+        Instant dueDate = now;
+        for (Loan source : sources) {
+            principal = principal == null || source.principal == null ? null : principal.add(source.principal);
+            loanAmount = loanAmount.add(source.loanAmount);
+            weightedRate = weightedRate.add(source.rate.multiply(source.loanAmount));
+            for (Payment payment : source.payments) {
+                amount += payment.getAmountUnits();
+                deficit += payment.getDeficitUnits();
+                count += 1 + payment.foldedPayments;
+                if (lastPayment == null || payment.getDate().isAfter(lastPayment)) lastPayment = payment.getDate();
+                if (payment.fee != null) {
+                    Fee fee = payment.fee;
+                    // the explanation of a payment fee is rendered from its payment
+                    merged.fees.add(new Fee(fee.getDate(), fee.getAmountDecimal(), fee.reason, payment.getFeeExplanation()));
+                }
+            }
+            merged.fees.addAll(source.fees);
+            if (source.getDueDate().isAfter(dueDate)) dueDate = source.getDueDate();
+            merged.consolidatedFrom.add(source.loanID);
+        }
+        merged.fees.sort(Comparator.comparing(Fee::getDate));
+
+        merged.principal = principal;
+        merged.loanAmount = loanAmount;
+        // interest is already part of the totals, the rate is their weighted average
+        merged.rate = loanAmount.signum() == 0 ? first.rate
+                : weightedRate.divide(loanAmount, MinorUnits.SCALE, RoundingMode.HALF_EVEN).stripTrailingZeros();
+        // the due date is one period after the last period
+        merged.totalPeriods = (int) Math.max(1, now.until(dueDate, merged.periodUnit) - 1);
+        merged.currentPeriod = 0;
+        if (count > 0) {
+            Payment checkpoint = new Payment(lastPayment, MinorUnits.toDecimal(amount), MinorUnits.toDecimal(deficit));
+            checkpoint.foldedPayments = count - 1;
+            merged.payments.add(checkpoint);
+        }
+        merged.changes++;
+
+        for (Loan source : sources) {
+            source.closed = true;
+            source.consolidatedInto = merged.loanID;
+            source.changes++;
+        }
+        return merged;
+    }
+
+    /**
+     * Add periods to the end of this loan without charging more interest
+     * <p>The due date of this loan changes, so it must be re-indexed. A defaulted loan
+     * that is no longer past due is reported again if it defaults on the new due date.</p>
+     *
+     * @param periods The number of periods to add
+     */
+    public void extend(int periods) {
+        this.totalPeriods += periods;
+        if (this.defaulted && !Instant.now().isAfter(getDueDate())) this.defaulted = false;
+        this.changes++;
+        LoanEventBus.instance().post(new LoanEvent(LoanEventType.EXTENDED, this));
+    }
+
+    /**
+     * Change the interest rate of this loan and re-quote the total
+     *
+     * @param rate The new interest rate per period
+     * @apiNote Loans saved before the principal was recorded cannot be re-quoted and are not changed.
+     * The total never drops below what was already paid, a loan paid past its new total is paid off instead.
+     */
+    public void setRate(@NotNull BigDecimal rate) {
+        if (this.principal == null) return;
+        this.rate = rate;
+        // payments are never refunded, fees count towards what was paid
+        BigDecimal paid = getPaymentTotal().subtract(getFeeTotal()).max(BigDecimal.ZERO);
+        this.loanAmount = quoteTotal(rate).max(paid);
+        this.changes++;
+        LoanEventBus.instance().post(new LoanEvent(LoanEventType.RATE_CHANGED, this));
+    }
+
+    /**
+     * @param rate An interest rate per period
+     * @return The total this loan would have with interest at {@code rate}, or null if the principal is unknown
+     */
+    @Nullable
+    public BigDecimal quoteTotal(@NotNull BigDecimal rate) {
+        if (this.principal == null) return null;
+        return InterestFactors.instance().quoteTotal(this.principal, rate, this.totalPeriods);
+    }
+
+    /**
+     * @return The total with interest, without fees
+     */
+    @NotNull
+    public BigDecimal getLoanAmount() {
+        return this.loanAmount;
+    }
+
+    /**
+     * @param since The earliest fee date
+     * @return The total amount of fees charged on or after {@code since}
+     */
+    @NotNull
+    public BigDecimal getFeeTotalSince(@NotNull Instant since) {
+        long units = 0;
+        for (Fee fee : getFees()) {
+            if (!fee.getDate().isBefore(since)) units += fee.getAmountUnits();
+        }
+        return MinorUnits.toDecimal(units);
+    }
+
+    /**
+     * Remove fees charged on or after a date
+     *
+     * @param since The earliest fee date
+     * @return If any fees were removed
+     */
+    public boolean waiveFees(@NotNull Instant since) {
+        boolean waived = this.fees.removeIf(fee -> !fee.getDate().isBefore(since));
+        for (Payment payment : this.payments) {
+            if (payment.fee != null && !payment.fee.getDate().isBefore(since)) {
+                payment.setFee(null);
+                waived = true;
+            }
+        }
+        if (waived) {
+            this.feeTotal = null;
+            this.changes++;
+            LoanEventBus.instance().post(new LoanEvent(LoanEventType.FEES_WAIVED, this));
+        }
+        return waived;
+    }
+
     /**
      * @return The number of payments required to make this loan current
      * @apiNote This value is designed to be used as a multiplier for {@link Loan#getInstallmentAmount()}
@@ -215,6 +745,7 @@ public class Loan {
     @NotNull
     @Contract("-> !null")
     public BigDecimal getRemainingAmount() {
+        if (this.closed) return BigDecimal.ZERO;
         return getTotalAmount().subtract(getPaymentTotal()).max(BigDecimal.ZERO);
     }
 
@@ -224,7 +755,14 @@ public class Loan {
     @NotNull
     @Contract("-> !null")
     public BigDecimal getPaymentTotal() {
-        return this.payments.stream().map(p -> p.amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal total = this.paymentTotal;
+        if (total == null) {
+            long units = 0;
+            for (Payment payment : this.payments) units += payment.getAmountUnits();
+            total = MinorUnits.toDecimal(units);
+            this.paymentTotal = total;
+        }
+        return total;
     }
 
     /**
@@ -233,7 +771,28 @@ public class Loan {
     @NotNull
     @Contract("-> !null")
     public BigDecimal getFeeTotal() {
-        return getFees().stream().map(f -> f.amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal total = this.feeTotal;
+        if (total == null) {
+            long units = 0;
+            for (Fee fee : this.fees) units += fee.getAmountUnits();
+            for (Payment payment : this.payments) {
+                if (payment.fee != null) units += payment.fee.getAmountUnits();
+            }
+            total = MinorUnits.toDecimal(units);
+            this.feeTotal = total;
+        }
+        return total;
+    }
+
+    /**
+     * Rebuild the cached payment and fee totals
+     * <p>Must be called after the payments or fees of this loan are modified directly</p>
+     */
+    public void recalculate() {
+        this.paymentTotal = null;
+        this.feeTotal = null;
+        getPaymentTotal();
+        getFeeTotal();
     }
 
     /**
@@ -264,6 +823,47 @@ public class Loan {
         }
     }
 
+    /**
+     * Fold all but the most recent payments into a single checkpoint payment
+     * <p>The checkpoint preserves the payment, deficit and fee totals of the folded payments</p>
+     *
+     * @param keep The number of recent payments to keep as-is
+     * @return If any payments were folded
+     */
+    public boolean compactPayments(int keep) {
+        int fold = this.payments.size() - Math.max(0, keep);
+        // folding a single payment would not save anything
+        if (fold < 2) return false;
+
+        List<Payment> folded = this.payments.subList(0, fold);
+        long amount = 0;
+        long deficit = 0;
+        long feeAmount = 0;
+        boolean hasFee = false;
+        int count = 0;
+        for (Payment payment : folded) {
+            amount += payment.getAmountUnits();
+            deficit += payment.getDeficitUnits();
+            count += 1 + payment.foldedPayments;
+            if (payment.fee != null) {
+                feeAmount += payment.fee.getAmountUnits();
+                hasFee = true;
+            }
+        }
+
+        Instant date = folded.get(fold - 1).getDate();
+        Payment checkpoint = new Payment(date, MinorUnits.toDecimal(amount), MinorUnits.toDecimal(deficit));
+        checkpoint.foldedPayments = count - 1;
+        if (hasFee) {
+            checkpoint.setFee(new Fee(date, MinorUnits.toDecimal(feeAmount), FeeReason.COMPACTED, count + " payments"));
+        }
+
+        folded.clear();
+        this.payments.add(0, checkpoint);
+        this.changes++;
+        return true;
+    }
+
     /**
      * Make a payment on this loan
      * <p>This method does not apply fees for insufficient payments.
@@ -276,6 +876,94 @@ public class Loan {
     @Nullable
     @Contract("_ -> _")
     public Payment makePayment(double maximum) {
+        Payment payment = quote(maximum);
+        if (payment == null) return null;
+        recordPayment(payment);
+        postPayment(payment);
+        return payment;
+    }
+
+    /**
+     * Make a payment on this loan
+     *
+     * @param maximum The largest payment that could be made
+     * @return The payment data, or null if no payment was made
+     */
+    @Nullable
+    @Contract("_, _ -> _")
+    public Payment attemptPayment(double maximum, double maxFee) {
+        Payment payment = quotePayment(maximum, maxFee);
+        if (payment == null) return null;
+        recordPayment(payment);
+        postPayment(payment);
+        return payment;
+    }
+
+    /**
+     * Calculate the payment due on this loan without recording it
+     * <p>Fees are charged for the part of the payment that can not be made. The quote must be
+     * recorded with {@link Loan#recordPayment(Payment)} while the loan is still locked.</p>
+     *
+     * @param maximum The largest payment that could be made
+     * @param maxFee  The fee charged when nothing can be paid
+     * @return The payment, or null if no payment is due
+     */
+    @Nullable
+    public Payment quotePayment(double maximum, double maxFee) {
+        Payment payment = quote(maximum);
+        if (payment == null) return null;
+        if (payment.getDeficitUnits() > 0) {
+            // the explanation is rendered from the payment when displayed
+            payment.setFee(new Fee(
+                    payment.getDeficitDecimal()
+                            .divide(payment.getTotal(), RoundingMode.DOWN)
+                            .multiply(BigDecimal.valueOf(maxFee)),
+                    FeeReason.INSUFFICIENT_PAYMENT,
+                    null));
+        }
+        return payment;
+    }
+
+    /**
+     * Record a quoted payment without posting events
+     *
+     * @param payment A payment from {@link Loan#quotePayment(double, double)}
+     * @return The period this loan was on before the payment, to {@link Loan#revertPayment(Payment, int) revert} it
+     */
+    public int recordPayment(@NotNull Payment payment) {
+        int period = this.currentPeriod;
+        this.paymentTotal = getPaymentTotal().add(payment.getAmountDecimal());
+        if (payment.fee != null) this.feeTotal = getFeeTotal().add(payment.fee.getAmountDecimal());
+        this.payments.add(payment);
+        this.currentPeriod = Math.min(this.currentPeriod + payment.periods, this.totalPeriods);
+        this.changes++;
+        return period;
+    }
+
+    /**
+     * Remove the most recent payment after the money for it could not be moved
+     *
+     * @param payment The payment, must be the most recent payment on this loan
+     * @param period  The period this loan was on before the payment
+     * @throws IllegalStateException If {@code payment} is not the most recent payment
+     */
+    public void revertPayment(@NotNull Payment payment, int period) {
+        int last = this.payments.size() - 1;
+        if (last < 0 || this.payments.get(last) != payment) {
+            throw new IllegalStateException("Only the most recent payment on loan " + this.loanID + " can be reverted");
+        }
+        this.payments.remove(last);
+        this.currentPeriod = period;
+        this.paymentTotal = null;
+        this.feeTotal = null;
+        this.changes++;
+    }
+
+    /**
+     * Calculate the payment required to make this loan current
+     */
+    @Nullable
+    private Payment quote(double maximum) {
         // No balance, no payment
         if (this.isPaidOff()) return null;
         // the amount that still needs to be paid
@@ -287,39 +975,23 @@ public class Loan {
         // no payment required is there is no balance
         if (requiredAmount.compareTo(BigDecimal.ZERO) <= 0 || maximum < 0) return null;
         // calculate the withdrawal
-        BigDecimal actualAmount = requiredAmount.min(BigDecimal.valueOf(maximum));
+        BigDecimal actualAmount = requiredAmount.min(BigDecimal.valueOf(maximum)).setScale(MinorUnits.SCALE, RoundingMode.DOWN);
         // create and return the payment
         Payment payment = new Payment(actualAmount, requiredAmount.subtract(actualAmount));
-        this.payments.add(payment);
-        this.currentPeriod = Math.min(this.currentPeriod + requiredPayments, this.totalPeriods);
+        payment.periods = requiredPayments;
         return payment;
     }
 
     /**
-     * Make a payment on this loan
+     * Post the events for a completed payment
      *
-     * @param maximum The largest payment that could be made
-     * @return The payment data, or null if no payment was made
+     * @param payment A payment recorded on this loan
      */
-    @Nullable
-    @Contract("_, _ -> _")
-    public Payment attemptPayment(double maximum, double maxFee) {
-        Payment payment = makePayment(maximum);
-        if (payment == null) return null;
-        if (payment.deficit.compareTo(BigDecimal.ZERO) > 0) {
-            payment.setFee(new Fee(
-                    payment.deficit
-                            .divide(payment.getTotal(), RoundingMode.DOWN)
-                            .multiply(BigDecimal.valueOf(maxFee)),
-                    "Insufficient Payment",
-                    String.format(
-                            "%s / %s (%s short)",
-                            LoanSignMain.economy.format(payment.getAmount()),
-                            LoanSignMain.economy.format(payment.getTotal_d()),
-                            LoanSignMain.economy.format(payment.getDeficit())
-                    )));
-        }
-        return payment;
+    public void postPayment(@NotNull Payment payment) {
+        LoanEventBus bus = LoanEventBus.instance();
+        bus.post(new LoanEvent(LoanEventType.PAYMENT, this, payment, null));
+        if (payment.fee != null) bus.post(new LoanEvent(LoanEventType.FEE, this, payment, payment.fee));
+        if (this.isPaidOff()) bus.post(new LoanEvent(LoanEventType.PAID_OFF, this, payment, null));
     }
 }
 
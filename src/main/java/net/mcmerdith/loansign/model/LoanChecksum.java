@@ -0,0 +1,46 @@
+package net.mcmerdith.loansign.model;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Builds the checksum of a loan from its stored fields
+ *
+ * @see Loan#computeChecksum()
+ */
+final class LoanChecksum {
+    private final CRC32C crc = new CRC32C();
+    private final byte[] buffer = new byte[Long.BYTES];
+
+    LoanChecksum add(long value) {
+        for (int i = 0; i < Long.BYTES; ++i) buffer[i] = (byte) (value >>> (i * 8));
+        crc.update(buffer, 0, Long.BYTES);
+        return this;
+    }
+
+    LoanChecksum add(boolean value) {
+        crc.update(value ? 1 : 0);
+        return this;
+    }
+
+    LoanChecksum add(@Nullable BigDecimal value) {
+        // equal amounts written with different scales have the same checksum
+        return add(value == null ? null : value.stripTrailingZeros().toPlainString());
+    }
+
+    LoanChecksum add(@Nullable Object value) {
+        if (value == null) return add(-1L);
+        byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        add(bytes.length);
+        crc.update(bytes, 0, bytes.length);
+        return this;
+    }
+
+    long getValue() {
+        // never 0, which marks a loan without a checksum
+        return crc.getValue() + 1;
+    }
+}
@@ -0,0 +1,103 @@
+package net.mcmerdith.loansign.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * The terms offered by a loan sign
+ * <p>The total and installment amounts are calculated once when the terms are created</p>
+ */
+public class LoanTerms {
+    /**
+     * The amount lent
+     */
+    public final double amount;
+
+    /**
+     * The interest rate per day
+     */
+    public final double rate;
+
+    /**
+     * The duration of the loan in days
+     */
+    public final int durationDays;
+
+    /**
+     * The {@link UUID} of the lender
+     */
+    @NotNull
+    public final UUID lender;
+
+    /**
+     * The total amount to be repaid
+     */
+    @NotNull
+    public final BigDecimal total;
+
+    /**
+     * The amount of each daily installment
+     */
+    @NotNull
+    public final BigDecimal installment;
+
+    public LoanTerms(double amount, double rate, int durationDays, @NotNull UUID lender) {
+        this.amount = amount;
+        this.rate = rate;
+        this.durationDays = durationDays;
+        this.lender = lender;
+
+        InterestFactors factors = InterestFactors.instance();
+        this.total = factors.quoteTotal(BigDecimal.valueOf(amount), BigDecimal.valueOf(rate), durationDays);
+        this.installment = factors.quoteInstallment(this.total, durationDays);
+    }
+
+    /**
+     * @return If the total to repay is more than a loan can hold ({@link MinorUnits#MAX})
+     */
+    public boolean isTooLarge() {
+        return !MinorUnits.fits(total);
+    }
+
+    /**
+     * Parse the terms written on a loan sign
+     *
+     * @param amount       The amount lent (the sign price)
+     * @param durationLine The sign line with the duration (ex. {@code 20} or {@code 20 days})
+     * @param rateLine     The sign line with the daily rate (ex. {@code 5%} or {@code 0.05})
+     * @param lender       The {@link UUID} of the lender
+     * @return The terms, or null if the sign is not valid
+     */
+    @Nullable
+    public static LoanTerms parse(double amount, @Nullable String durationLine, @Nullable String rateLine, @NotNull UUID lender) {
+        if (durationLine == null || rateLine == null || amount <= 0) return null;
+
+        try {
+            int durationDays = Integer.parseInt(durationLine.trim().split("[^0-9]", 2)[0]);
+
+            String rateText = rateLine.trim();
+            double rate = rateText.endsWith("%")
+                    ? Double.parseDouble(rateText.substring(0, rateText.length() - 1).trim()) / 100.0
+                    : Double.parseDouble(rateText);
+
+            if (durationDays <= 0 || rate < 0) return null;
+            return new LoanTerms(amount, rate, durationDays, lender);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Create a loan with these terms
+     *
+     * @param borrower The {@link UUID} of the borrower
+     * @return A new loan initiating now
+     */
+    @NotNull
+    public Loan createLoan(@NotNull UUID borrower) {
+        return new Loan(lender, borrower, amount, rate, durationDays);
+    }
+}
@@ -0,0 +1,84 @@
+package net.mcmerdith.loansign.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversion between {@link BigDecimal} amounts and fixed-point {@code long} minor units
+ * <p>Amounts are stored with {@link MinorUnits#SCALE} decimal places, which is finer than any
+ * economy plugin formats and keeps installment math exact enough to pay loans off to zero.</p>
+ */
+public final class MinorUnits {
+    /**
+     * The number of decimal places kept in a minor unit amount
+     */
+    public static final int SCALE = 8;
+
+    /**
+     * The largest amount that fits in minor units, about 92 billion
+     */
+    public static final BigDecimal MAX = BigDecimal.valueOf(Long.MAX_VALUE, SCALE);
+
+    private MinorUnits() {
+    }
+
+    /**
+     * Convert an amount to minor units, truncating any extra decimal places
+     *
+     * @param amount The amount
+     * @return The amount in minor units
+     * @throws ArithmeticException If the amount does not fit in a {@code long}
+     */
+    public static long toUnits(@NotNull BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.DOWN).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @param amount The amount
+     * @return If the amount can be converted to minor units
+     */
+    public static boolean fits(@NotNull BigDecimal amount) {
+        return amount.abs().compareTo(MAX) <= 0;
+    }
+
+    /**
+     * Convert minor units to an amount
+     *
+     * @param units The amount in minor units
+     * @return The amount
+     */
+    @NotNull
+    public static BigDecimal toDecimal(long units) {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    /**
+     * Convert minor units to a double
+     *
+     * @param units The amount in minor units
+     * @return The approximate amount
+     */
+    public static double toDouble(long units) {
+        return units / 1e8;
+    }
+
+    /**
+     * Convert an {@link java.time.Instant} to compact unsigned epoch seconds
+     *
+     * @param epochSecond The epoch second (valid until 2106)
+     * @return The epoch second as an unsigned int
+     */
+    public static int toEpochInt(long epochSecond) {
+        return (int) epochSecond;
+    }
+
+    /**
+     * @param epochInt An unsigned epoch second from {@link MinorUnits#toEpochInt(long)}
+     * @return The epoch second
+     */
+    public static long fromEpochInt(int epochInt) {
+        return Integer.toUnsignedLong(epochInt);
+    }
+}
@@ -1,5 +1,8 @@
 package net.mcmerdith.loansign.model;
 
+import net.mcmerdith.loansign.message.CurrencyFormat;
+import net.mcmerdith.loansign.message.MessageTemplate;
+import net.mcmerdith.loansign.message.MessageTemplates;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
@@ -8,26 +11,49 @@ import java.time.Instant;
 
 public class Payment {
     /**
-     * The date of the payment
+     * The message type holding fee explanation templates
      */
-    @NotNull
-    public Instant date;
+    public static final String FEE_MESSAGE_TYPE = "fee";
 
     /**
-     * The amount of the payment
+     * The date of the payment in unsigned epoch seconds
+     *
+     * @see MinorUnits#toEpochInt(long)
      */
-    @NotNull
-    public BigDecimal amount;
+    private final int date;
 
     /**
-     * The deficit from the expected payment
+     * The amount of the payment in minor units
+     *
+     * @see MinorUnits
      */
-    @NotNull
-    public BigDecimal deficit;
+    private final long amount;
+
+    /**
+     * The deficit from the expected payment in minor units
+     *
+     * @see MinorUnits
+     */
+    private final long deficit;
 
     @Nullable
     public Fee fee = null;
 
+    /**
+     * The number of earlier payments folded into this entry
+     * <p>0 for a regular payment</p>
+     *
+     * @see Loan#compactPayments(int)
+     */
+    public int foldedPayments = 0;
+
+    /**
+     * The number of installments a quoted payment covers
+     *
+     * @see Loan#quotePayment(double, double)
+     */
+    transient int periods = 0;
+
     /**
      * Create a new payment
      *
@@ -36,9 +62,9 @@ public class Payment {
      * @param deficit The deficit from the expected payment
      */
     public Payment(@NotNull Instant date, @NotNull BigDecimal amount, @NotNull BigDecimal deficit) {
-        this.date = date;
-        this.amount = amount;
-        this.deficit = deficit;
+        this.date = MinorUnits.toEpochInt(date.getEpochSecond());
+        this.amount = MinorUnits.toUnits(amount);
+        this.deficit = MinorUnits.toUnits(deficit);
     }
 
     /**
@@ -66,28 +92,87 @@ public class Payment {
     }
 
     /**
-     * Also see {@link Payment#amount}
+     * @return The date of the payment
+     */
+    @NotNull
+    public Instant getDate() {
+        return Instant.ofEpochSecond(MinorUnits.fromEpochInt(this.date));
+    }
+
+    /**
+     * @return The amount of the payment
+     */
+    @NotNull
+    public BigDecimal getAmountDecimal() {
+        return MinorUnits.toDecimal(this.amount);
+    }
+
+    /**
+     * @return The amount of the payment in minor units
+     */
+    public long getAmountUnits() {
+        return this.amount;
+    }
+
+    /**
+     * @return The deficit from the expected payment
+     */
+    @NotNull
+    public BigDecimal getDeficitDecimal() {
+        return MinorUnits.toDecimal(this.deficit);
+    }
+
+    /**
+     * @return The deficit from the expected payment in minor units
+     */
+    public long getDeficitUnits() {
+        return this.deficit;
+    }
+
+    /**
+     * Also see {@link Payment#getAmountDecimal()}
      *
      * @return A double of the amount
      */
     public double getAmount() {
-        return this.amount.doubleValue();
+        return MinorUnits.toDouble(this.amount);
     }
 
     /**
-     * Also see {@link Payment#deficit}
+     * Also see {@link Payment#getDeficitDecimal()}
      *
      * @return A double of the deficit
      */
     public double getDeficit() {
-        return this.deficit.doubleValue();
+        return MinorUnits.toDouble(this.deficit);
     }
 
     public BigDecimal getTotal() {
-        return amount.add(deficit);
+        return MinorUnits.toDecimal(this.amount + this.deficit);
     }
 
     public double getTotal_d() {
-        return getAmount() + getDeficit();
+        return MinorUnits.toDouble(this.amount + this.deficit);
+    }
+
+    /**
+     * Render the explanation of the fee on this payment
+     * <p>Explanations of insufficient payment fees are not stored, they are rendered from the payment when displayed</p>
+     *
+     * @return The explanation, or null if there is no fee or explanation
+     */
+    @Nullable
+    public String getFeeExplanation() {
+        if (this.fee == null) return null;
+        if (this.fee.explanation != null) return this.fee.explanation;
+        if (this.fee.reason != FeeReason.INSUFFICIENT_PAYMENT) return null;
+
+        MessageTemplate template = MessageTemplates.instance().get(FEE_MESSAGE_TYPE, "insufficient_payment",
+                "!amount / !total (!deficit short)", "!amount", "!total", "!deficit");
+        return template == null ? null : template.render(
+                CurrencyFormat.format(this.amount),
+                CurrencyFormat.format(this.amount + this.deficit),
+                CurrencyFormat.format(this.deficit)
+        );
     }
 }
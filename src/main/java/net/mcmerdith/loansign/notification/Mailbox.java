@@ -0,0 +1,121 @@
+package net.mcmerdith.loansign.notification;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Messages held for offline players, persisted to a json file
+ */
+public class Mailbox {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(Mailbox.class);
+
+    private final Gson gson = new Gson();
+
+    private final File file;
+
+    /**
+     * The maximum number of messages kept per player, older messages are dropped first
+     */
+    private final int maxMessages;
+
+    private final Map<UUID, List<String>> messages = new HashMap<>();
+
+    private boolean dirty = false;
+
+    /**
+     * @param file        The file messages are stored in
+     * @param maxMessages The maximum number of messages kept per player
+     */
+    public Mailbox(@NotNull File file, int maxMessages) {
+        this.file = file;
+        this.maxMessages = Math.max(1, maxMessages);
+    }
+
+    /**
+     * Hold a message for a player
+     *
+     * @param player  The player
+     * @param message The message
+     */
+    public synchronized void add(@NotNull UUID player, @NotNull String message) {
+        List<String> held = messages.computeIfAbsent(player, k -> new ArrayList<>());
+        held.add(message);
+        if (held.size() > maxMessages) held.subList(0, held.size() - maxMessages).clear();
+        dirty = true;
+    }
+
+    /**
+     * Remove and return all messages held for a player
+     *
+     * @param player The player
+     * @return The messages, oldest first
+     */
+    @NotNull
+    public synchronized List<String> take(@NotNull UUID player) {
+        List<String> held = messages.remove(player);
+        if (held == null) return Collections.emptyList();
+        dirty = true;
+        return held;
+    }
+
+    /**
+     * Load held messages from the file
+     */
+    public synchronized void load() {
+        if (!file.exists()) return;
+        try {
+            Map<UUID, List<String>> loaded = gson.fromJson(Files.readString(file.toPath(), StandardCharsets.UTF_8),
+                    new TypeToken<Map<UUID, List<String>>>() {
+                    });
+            messages.clear();
+            if (loaded != null) loaded.forEach((player, held) -> messages.put(player, new ArrayList<>(held)));
+            dirty = false;
+        } catch (IOException e) {
+            logger.exception(e, "Failed to read mailbox");
+        } catch (JsonSyntaxException e) {
+            logger.exception(e, "Syntax error in mailbox file");
+        }
+    }
+
+    /**
+     * Write held messages to the file if they changed
+     */
+    public synchronized void save() {
+        if (!dirty) return;
+        // a crash mid-write must not lose the messages already held
+        Path temp = file.toPath().resolveSibling(file.getName() + ".tmp");
+        try {
+            Files.writeString(temp, gson.toJson(messages),
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            logger.exception(e, "Failed to write mailbox");
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // the next save replaces it
+            }
+        }
+    }
+}
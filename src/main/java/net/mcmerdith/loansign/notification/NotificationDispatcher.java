@@ -0,0 +1,168 @@
+package net.mcmerdith.loansign.notification;
+
+import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventBus;
+import net.mcmerdith.loansign.io.IoExecutor;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Tells borrowers and lenders what happened to their loans
+ * <p>Events are tallied per player and sent as one summary message per window.
+ * Summaries for offline players are held in a {@link Mailbox} and delivered when they join.</p>
+ */
+public class NotificationDispatcher {
+    private static NotificationDispatcher instance;
+
+    public static NotificationDispatcher instance() {
+        if (instance == null) instance = new NotificationDispatcher();
+        return instance;
+    }
+
+    private static final int DEFAULT_WINDOW_SECONDS = 60;
+    private static final int DEFAULT_MAILBOX_SIZE = 20;
+
+    private boolean enabled = true;
+    private int windowSeconds = DEFAULT_WINDOW_SECONDS;
+    private int mailboxSize = DEFAULT_MAILBOX_SIZE;
+
+    private final Map<UUID, NotificationTally> tallies = new ConcurrentHashMap<>();
+
+    private Mailbox mailbox;
+
+    private BukkitTask task;
+
+    /**
+     * Load the notification settings
+     *
+     * @param config The {@code notifications} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        enabled = config.getBoolean("enabled", true);
+        windowSeconds = Math.max(1, config.getInt("window-seconds", DEFAULT_WINDOW_SECONDS));
+        mailboxSize = Math.max(1, config.getInt("mailbox-size", DEFAULT_MAILBOX_SIZE));
+    }
+
+    /**
+     * Load the mailbox, subscribe to loan events and start sending summaries
+     *
+     * @param bus The event bus
+     */
+    public void start(@NotNull LoanEventBus bus) {
+        if (!enabled) return;
+        mailbox = new Mailbox(new File(LoanSignMain.instance.getDataFolder(), "mailbox.json"), mailboxSize);
+        mailbox.load();
+        bus.subscribe("notifications", this::onEvents);
+        long ticks = windowSeconds * 20L;
+        task = Bukkit.getScheduler().runTaskTimer(LoanSignMain.instance, this::flush, ticks, ticks);
+    }
+
+    /**
+     * Stop sending summaries and hold any pending ones in the mailbox
+     * <p>Must be called after the event bus is shut down</p>
+     */
+    public void stop() {
+        if (mailbox == null) return;
+        if (task != null) task.cancel();
+        for (UUID player : new ArrayList<>(tallies.keySet())) {
+            NotificationTally tally = tallies.remove(player);
+            String message = tally == null ? null : tally.render();
+            if (message != null) mailbox.add(player, message);
+        }
+        mailbox.save();
+    }
+
+    /**
+     * Send a joining player the messages held for them
+     *
+     * @param player The player
+     */
+    public void deliver(@NotNull Player player) {
+        if (mailbox == null) return;
+        List<String> held = mailbox.take(player.getUniqueId());
+        if (held.isEmpty()) return;
+        player.sendMessage(ChatColor.GOLD + "While you were away:");
+        held.forEach(message -> player.sendMessage(ChatColor.GOLD + message));
+        IoExecutor.instance().execute(mailbox::save);
+    }
+
+    /**
+     * Tally a batch of events
+     */
+    private void onEvents(@NotNull List<LoanEvent> events) {
+        for (LoanEvent event : events) {
+            switch (event.type) {
+                case PAYMENT -> {
+                    if (event.payment == null || event.payment.getAmountUnits() <= 0) break;
+                    long units = event.payment.getAmountUnits();
+                    record(event.loan.borrower, tally -> tally.recordPaymentMade(units));
+                    record(event.loan.lender, tally -> tally.recordPaymentReceived(units));
+                }
+                case FEE -> {
+                    if (event.fee == null) break;
+                    long units = event.fee.getAmountUnits();
+                    record(event.loan.borrower, tally -> tally.recordFee(units));
+                }
+                case PAID_OFF -> {
+                    record(event.loan.borrower, tally -> tally.paidOff++);
+                    record(event.loan.lender, tally -> tally.paidOff++);
+                }
+                case DEFAULTED -> {
+                    record(event.loan.borrower, tally -> tally.defaulted++);
+                    record(event.loan.lender, tally -> tally.defaulted++);
+                }
+                default -> {
+                    // offers and bookkeeping are reported interactively or not at all
+                }
+            }
+        }
+    }
+
+    /**
+     * Update a player's tally atomically with respect to {@link NotificationDispatcher#flush()}
+     */
+    private void record(UUID player, Consumer<NotificationTally> update) {
+        tallies.compute(player, (k, tally) -> {
+            if (tally == null) tally = new NotificationTally();
+            update.accept(tally);
+            return tally;
+        });
+    }
+
+    /**
+     * Send each tallied player one summary message
+     * <p>Runs on the main thread</p>
+     */
+    private void flush() {
+        boolean held = false;
+        for (UUID uuid : new ArrayList<>(tallies.keySet())) {
+            NotificationTally tally = tallies.remove(uuid);
+            String message = tally == null ? null : tally.render();
+            if (message == null) continue;
+
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null && player.isOnline()) {
+                player.sendMessage(ChatColor.GOLD + message);
+            } else {
+                mailbox.add(uuid, message);
+                held = true;
+            }
+        }
+        if (held) IoExecutor.instance().execute(mailbox::save);
+    }
+}
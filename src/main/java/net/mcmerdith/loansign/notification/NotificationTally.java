@@ -0,0 +1,65 @@
+package net.mcmerdith.loansign.notification;
+
+import net.mcmerdith.loansign.message.CurrencyFormat;
+import net.mcmerdith.loansign.message.MessageTemplate;
+import net.mcmerdith.loansign.message.MessageTemplates;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The events for one player within a notification window
+ */
+class NotificationTally {
+    /**
+     * The message type holding the notification templates
+     */
+    static final String MESSAGE_TYPE = "notification";
+
+    int paymentsMade;
+    long paidUnits;
+    int paymentsReceived;
+    long receivedUnits;
+    int feesCharged;
+    long feeUnits;
+    int paidOff;
+    int defaulted;
+
+    void recordPaymentMade(long units) {
+        paymentsMade++;
+        paidUnits += units;
+    }
+
+    void recordPaymentReceived(long units) {
+        paymentsReceived++;
+        receivedUnits += units;
+    }
+
+    void recordFee(long units) {
+        feesCharged++;
+        feeUnits += units;
+    }
+
+    /**
+     * Render the tally as a single line from the {@code notification} message templates
+     *
+     * @return The message, or null if nothing happened
+     */
+    String render() {
+        List<String> parts = new ArrayList<>();
+        addPart(parts, "payments_made", paymentsMade, paidUnits);
+        addPart(parts, "payments_received", paymentsReceived, receivedUnits);
+        addPart(parts, "fees_charged", feesCharged, feeUnits);
+        addPart(parts, "paid_off", paidOff, 0);
+        addPart(parts, "defaulted", defaulted, 0);
+        return parts.isEmpty() ? null : String.join(", ", parts);
+    }
+
+    private static void addPart(List<String> parts, String key, int count, long units) {
+        if (count == 0) return;
+        MessageTemplate template = MessageTemplates.instance().get(MESSAGE_TYPE, key, null, "!count", "!amount");
+        if (template == null) return;
+        String part = template.render(Integer.toString(count), CurrencyFormat.format(units));
+        if (!part.isEmpty()) parts.add(part);
+    }
+}
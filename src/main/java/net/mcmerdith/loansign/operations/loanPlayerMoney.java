@@ -1,85 +1,208 @@
 package net.mcmerdith.loansign.operations;
 
+import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.cache.OfflinePlayerCache;
+import net.mcmerdith.loansign.cache.SignTermsCache;
+import net.mcmerdith.loansign.credit.CreditScores;
+import net.mcmerdith.loansign.limit.LimitedAction;
+import net.mcmerdith.loansign.limit.RateLimiter;
+import net.mcmerdith.loansign.message.CurrencyFormat;
+import net.mcmerdith.loansign.model.LoanOffer;
+import net.mcmerdith.loansign.model.LoanTerms;
+import net.mcmerdith.loansign.model.MinorUnits;
+import net.mcmerdith.loansign.profiler.LoanProfiler;
+import net.mcmerdith.loansign.profiler.ProfilerSection;
+import net.mcmerdith.loansign.storage.LoanData;
+import org.bukkit.Location;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Sign;
+import org.bukkit.entity.Player;
 import org.wargamer2010.signshop.operations.SignShopArguments;
 import org.wargamer2010.signshop.operations.SignShopOperation;
+import org.wargamer2010.signshop.player.SignShopPlayer;
+
+import java.util.UUID;
 
 public class loanPlayerMoney implements SignShopOperation {
 
+    /**
+     * Sign line with the loan duration in days
+     */
+    private static final int DURATION_LINE = 1;
+
+    /**
+     * Sign line with the daily interest rate
+     */
+    private static final int RATE_LINE = 2;
+
+    /**
+     * Open a profiler section for a SignShop callback
+     *
+     * @param callback The name of the callback
+     * @param ssArgs   The SignShop arguments
+     * @return The open section
+     */
+    private static ProfilerSection profile(String callback, SignShopArguments ssArgs) {
+        LoanProfiler profiler = LoanProfiler.instance();
+        if (!profiler.isEnabled()) return ProfilerSection.NOOP;
+
+        SignShopPlayer ssPlayer = ssArgs.getPlayer().get();
+        Player player = ssPlayer == null ? null : ssPlayer.getPlayer();
+        return profiler.section("loanPlayerMoney." + callback, null, player == null ? null : player.getUniqueId());
+    }
+
+    /**
+     * Parse the terms on a sign
+     *
+     * @param ssArgs The SignShop arguments
+     * @param lender The {@link UUID} of the sign owner
+     * @return The terms, or null if the sign is not valid
+     */
+    private static LoanTerms parseTerms(SignShopArguments ssArgs, UUID lender) {
+        Block block = ssArgs.getSign().get();
+        BlockState state = block == null ? null : block.getState();
+        if (!(state instanceof Sign sign)) return null;
+
+        Double price = ssArgs.getPrice().get();
+        return LoanTerms.parse(price == null ? 0 : price, sign.getLine(DURATION_LINE), sign.getLine(RATE_LINE), lender);
+    }
+
+    /**
+     * Get the terms of a sign, parsing them only if they are not cached
+     *
+     * @param ssArgs The SignShop arguments
+     * @return The terms, or null if the sign is not valid
+     */
+    private static LoanTerms getTerms(SignShopArguments ssArgs) {
+        Location location = ssArgs.getSign().get().getLocation();
+        SignTermsCache cache = SignTermsCache.instance();
+
+        LoanTerms terms = cache.get(location);
+        if (terms == null) {
+            SignShopPlayer owner = ssArgs.getOwner().get();
+            OfflinePlayer lender = owner == null ? null : owner.getOfflinePlayer();
+            if (lender == null) return null;
+            terms = parseTerms(ssArgs, lender.getUniqueId());
+            if (terms != null) cache.put(location, terms);
+        }
+        return terms;
+    }
+
+    /**
+     * Fill in the loan placeholders of the SignShop messages
+     */
+    private static void setMessageParts(SignShopArguments ssArgs, LoanTerms terms) {
+        ssArgs.setMessagePart("!duration", Integer.toString(terms.durationDays));
+        ssArgs.setMessagePart("!rate", String.format("%.2f%%", terms.rate * 100.0));
+        ssArgs.setMessagePart("!total", CurrencyFormat.format(terms.total));
+        ssArgs.setMessagePart("!installment", CurrencyFormat.format(terms.installment));
+    }
+
     @Override
     public Boolean setupOperation(SignShopArguments ssArgs) {
-//        // No linked chests
-//        if (ssArgs.getContainables().isEmpty()) {
-//            if (ssArgs.isOperationParameter("allowNoChests"))
-//                return true;
-//            ssArgs.getPlayer().get().sendMessage(SignShopConfig.getError("chest_missing", ssArgs.getMessageParts()));
-//            return false;
-//        }
-//
-//        // Get items from all chests
-//        ItemStack[] isTotalItems = itemUtil.getAllItemStacksForContainables(ssArgs.getContainables().get());
-//
-//        // Chests are empty
-//        if (isTotalItems.length == 0) {
-//            ssArgs.getPlayer().get().sendMessage(SignShopConfig.getError("chest_empty", ssArgs.getMessageParts()));
-//            return false;
-//        }
-//
-//        // Update the items we're working with
-//        ssArgs.getItems().set(isTotalItems);
-//        ssArgs.setMessagePart("!items", itemUtil.itemStackToString(ssArgs.getItems().get()));
+        try (ProfilerSection ignored = profile("setupOperation", ssArgs)) {
+            return setup(ssArgs);
+        }
+    }
+
+    private boolean setup(SignShopArguments ssArgs) {
+        // The player setting up the sign is the lender
+        Player owner = ssArgs.getPlayer().get().getPlayer();
+        LoanTerms terms = parseTerms(ssArgs, owner.getUniqueId());
+        if (terms == null) {
+            ssArgs.sendFailedRequirementsMessage("invalid_loan_sign");
+            return false;
+        }
+        if (terms.isTooLarge()) {
+            ssArgs.setMessagePart("!max", CurrencyFormat.format(MinorUnits.MAX));
+            ssArgs.sendFailedRequirementsMessage("loan_too_large");
+            return false;
+        }
+
+        SignTermsCache.instance().put(ssArgs.getSign().get().getLocation(), terms);
+        setMessageParts(ssArgs, terms);
         return true;
     }
 
     @Override
     public Boolean checkRequirements(SignShopArguments ssArgs, Boolean activeCheck) {
-//        // If player exists (NOT if they are online)
-//        if (!ssArgs.isPlayerOnline())
-//            return true;
-//
-//        // If shop has no define items
-//        if (ssArgs.getItems().get() == null) {
-//            ssArgs.getPlayer().get().sendMessage(SignShopConfig.getError("no_items_defined_for_shop", ssArgs.getMessageParts()));
-//            return false;
-//        }
-//
-//        // Get the items that could be used for the transaction
-//        List<TransactionItem> availableItems = getItemsSuitableForTransaction(ssArgs);
-//
-//        if (availableItems == null) {
-//            ssArgs.sendFailedRequirementsMessage("player_doesnt_have_items");
-//            return false;
-//        }
-//
-//        // Get the transaction item wrappers
-//        List<TransactionItem> transactionItems = filterItems(availableItems, ssArgs.isOperationParameter("any"));
-//        // Get the unwrapped itemstacks
-//        ItemStack[] unwrappedTransactionItems = unwrapTranscationItems(transactionItems);
-//
-//        // Update the items in the transaction
-//        ssArgs.getItems().set(unwrappedTransactionItems);
-//        // Update the message with the items selected for the transaction
-//        ssArgs.setMessagePart("!items", itemUtil.itemStackToString(unwrappedTransactionItems));
-//
-//        // Calculate a weighted average for the available multipliers
-//        double totalMultiplier = 0.0D;
-//        for (TransactionItem transactionItem : transactionItems)
-//            totalMultiplier += transactionItem.amountMultiplier * transactionItem.item.getDamageMultiplier();
-//        totalMultiplier /= transactionItems.size();
-//
-//        // Set the price
-//        ssArgs.getPrice().set(ssArgs.getPrice().get() * totalMultiplier);
+        try (ProfilerSection ignored = profile("checkRequirements", ssArgs)) {
+            return check(ssArgs, activeCheck);
+        }
+    }
+
+    private boolean check(SignShopArguments ssArgs, boolean activeCheck) {
+        // rejected clicks stop here, before any loan or economy lookups
+        // only using the sign spends a token, not the passive check when it is inspected
+        Player borrower = ssArgs.getPlayer().get().getPlayer();
+        if (activeCheck && borrower != null && !RateLimiter.instance().tryAcquire(LimitedAction.SIGN, borrower.getUniqueId())) {
+            ssArgs.sendFailedRequirementsMessage("rate_limited");
+            return false;
+        }
+
+        // Loans are loaded after the plugin is enabled
+        if (!LoanData.instance().awaitReady(LoanData.READY_WAIT_MILLIS)) {
+            ssArgs.sendFailedRequirementsMessage("loans_loading");
+            return false;
+        }
+
+        LoanTerms terms = getTerms(ssArgs);
+        if (terms == null) {
+            ssArgs.sendFailedRequirementsMessage("invalid_loan_sign");
+            return false;
+        }
+        setMessageParts(ssArgs, terms);
+
+        // signs set up before the limit was checked can still offer too much
+        if (terms.isTooLarge()) {
+            ssArgs.setMessagePart("!max", CurrencyFormat.format(MinorUnits.MAX));
+            ssArgs.sendFailedRequirementsMessage("loan_too_large");
+            return false;
+        }
+
+        if (borrower != null && borrower.getUniqueId().equals(terms.lender)) {
+            ssArgs.sendFailedRequirementsMessage("loan_to_self");
+            return false;
+        }
+
+        // scores are kept up to date as payments happen, checking one is constant time
+        CreditScores credit = CreditScores.instance();
+        if (borrower != null && !credit.isEligible(borrower.getUniqueId())) {
+            ssArgs.setMessagePart("!score", Integer.toString(credit.getScore(borrower.getUniqueId())));
+            ssArgs.setMessagePart("!minimum_score", Integer.toString(credit.getMinimumScore()));
+            ssArgs.sendFailedRequirementsMessage("credit_score_too_low");
+            return false;
+        }
+
+        if (!LoanSignMain.economy.has(OfflinePlayerCache.instance().get(terms.lender), terms.amount)) {
+            ssArgs.sendFailedRequirementsMessage("lender_insufficient_funds");
+            return false;
+        }
 
         return true;
     }
 
     @Override
     public Boolean runOperation(SignShopArguments ssArgs) {
-//        if (!checkRequirements(ssArgs, true))
-//            return false;
-//        boolean transactedAll = ssArgs.getPlayer().get().takePlayerItems(ssArgs.getItems().get()).isEmpty();
-//        if (!transactedAll)
-//            ssArgs.getPlayer().get().sendMessage(SignShopConfig.getError("could_not_complete_operation", null));
-//        return transactedAll;
+        try (ProfilerSection ignored = profile("runOperation", ssArgs)) {
+            return run(ssArgs);
+        }
+    }
+
+    private boolean run(SignShopArguments ssArgs) {
+        LoanTerms terms = getTerms(ssArgs);
+        Player borrower = ssArgs.getPlayer().get().getPlayer();
+        if (terms == null || borrower == null) return false;
+
+        if (!RateLimiter.instance().tryOffer(borrower.getUniqueId())) {
+            ssArgs.sendFailedRequirementsMessage("rate_limited");
+            return false;
+        }
+
+        // The borrower accepts the offer with /loan accept
+        LoanData.instance().setLoanOffer(new LoanOffer(terms.createLoan(borrower.getUniqueId())));
         return true;
     }
 }
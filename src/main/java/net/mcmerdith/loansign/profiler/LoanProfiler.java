@@ -0,0 +1,215 @@
+package net.mcmerdith.loansign.profiler;
+
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An opt-in profiler for main-thread entry points
+ * <p>Timings are recorded into a fixed size ring buffer. Calls slower than the configured
+ * threshold are logged with the loan and player they were working for.</p>
+ * <p>While disabled, {@link LoanProfiler#section(String, UUID, UUID)} returns a shared no-op section</p>
+ */
+public class LoanProfiler {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(LoanProfiler.class);
+
+    private static LoanProfiler instance;
+
+    public static LoanProfiler instance() {
+        if (instance == null) instance = new LoanProfiler(DEFAULT_BUFFER_SIZE, DEFAULT_SLOW_THRESHOLD_MS);
+        return instance;
+    }
+
+    private static final int DEFAULT_BUFFER_SIZE = 4096;
+    private static final long DEFAULT_SLOW_THRESHOLD_MS = 5L;
+
+    private volatile boolean enabled = false;
+    private volatile long slowThresholdNanos;
+
+    /**
+     * The innermost open section on each thread
+     */
+    private final ThreadLocal<ProfilerSection> current = new ThreadLocal<>();
+
+    /**
+     * Ring buffer storage
+     */
+    private String[] paths;
+    private long[] durations;
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * @param bufferSize      The number of timings kept
+     * @param slowThresholdMs Calls slower than this are logged
+     */
+    LoanProfiler(int bufferSize, long slowThresholdMs) {
+        this.paths = new String[bufferSize];
+        this.durations = new long[bufferSize];
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+    }
+
+    /**
+     * Load the profiler settings
+     *
+     * @param config The {@code profiler} section of the config, may be null
+     */
+    public void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+
+        int bufferSize = Math.max(64, config.getInt("buffer-size", DEFAULT_BUFFER_SIZE));
+        synchronized (this) {
+            if (bufferSize != paths.length) {
+                paths = new String[bufferSize];
+                durations = new long[bufferSize];
+                cursor.set(0);
+            }
+        }
+        slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getLong("slow-threshold-ms", DEFAULT_SLOW_THRESHOLD_MS));
+        setEnabled(config.getBoolean("enabled", false));
+    }
+
+    /**
+     * @return If timings are being recorded
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) current.remove();
+    }
+
+    /**
+     * Open a timed section
+     *
+     * @param name   The name of the section
+     * @param loanID The loan being worked on, if any
+     * @param player The player responsible for the work, if any
+     * @return The open section, or {@link ProfilerSection#NOOP} if profiling is disabled
+     */
+    @NotNull
+    public ProfilerSection section(@NotNull String name, @Nullable UUID loanID, @Nullable UUID player) {
+        if (!enabled) return ProfilerSection.NOOP;
+        ProfilerSection section = new ProfilerSection(this, current.get(), name, loanID, player);
+        current.set(section);
+        return section;
+    }
+
+    /**
+     * Open a timed section
+     *
+     * @param name The name of the section
+     * @return The open section, or {@link ProfilerSection#NOOP} if profiling is disabled
+     */
+    @NotNull
+    public ProfilerSection section(@NotNull String name) {
+        return section(name, null, null);
+    }
+
+    /**
+     * Record a closed section
+     *
+     * @param section  The section
+     * @param duration The duration in nanoseconds
+     * @return If the section was slower than the threshold
+     */
+    boolean record(ProfilerSection section, long duration) {
+        if (section.getParent() == null) {
+            current.remove();
+        } else {
+            current.set(section.getParent());
+        }
+
+        String[] paths = this.paths;
+        long[] durations = this.durations;
+        int slot = (int) (cursor.getAndIncrement() % paths.length);
+        paths[slot] = section.path;
+        durations[slot] = duration;
+
+        if (duration <= slowThresholdNanos) return false;
+        logger.info(String.format("Slow operation: %s took %.3fms (loan: %s, player: %s)",
+                section.path,
+                duration / 1_000_000.0,
+                section.loanID == null ? "none" : section.loanID,
+                section.player == null ? "none" : section.player));
+        return true;
+    }
+
+    /**
+     * Discard all recorded timings
+     */
+    public synchronized void reset() {
+        paths = new String[paths.length];
+        durations = new long[durations.length];
+        cursor.set(0);
+    }
+
+    /**
+     * Summarize the ring buffer in folded stack format
+     * <p>Each line is {@code stack;frames self-time-in-microseconds}, which can be fed
+     * directly to flame graph tooling</p>
+     *
+     * @return The folded lines, sorted by stack
+     */
+    @NotNull
+    public List<String> summarize() {
+        String[] paths = this.paths;
+        long[] durations = this.durations;
+        int count = (int) Math.min(cursor.get(), paths.length);
+
+        // total time spent in each stack
+        Map<String, long[]> totals = new TreeMap<>();
+        for (int i = 0; i < count; ++i) {
+            String path = paths[i];
+            if (path == null) continue;
+            long[] total = totals.computeIfAbsent(path, p -> new long[2]);
+            total[0] += durations[i];
+            total[1]++;
+        }
+
+        // remove time spent in children to get the self time of each frame
+        Map<String, Long> self = new TreeMap<>();
+        totals.forEach((path, total) -> self.merge(path, total[0], Long::sum));
+        totals.forEach((path, total) -> {
+            int split = path.lastIndexOf(';');
+            if (split > 0) self.merge(path.substring(0, split), -total[0], Long::sum);
+        });
+
+        List<String> lines = new ArrayList<>(self.size());
+        self.forEach((path, nanos) -> lines.add(path + " " + Math.max(0L, TimeUnit.NANOSECONDS.toMicros(nanos))));
+        return lines;
+    }
+
+    /**
+     * Write the folded summary to a file
+     *
+     * @param folder The folder to write the summary into
+     * @return The file written, or null if writing failed
+     */
+    @Nullable
+    public File dump(@NotNull File folder) {
+        File file = new File(folder, "profile-" + System.currentTimeMillis() + ".folded");
+        try {
+            Files.write(file.toPath(), summarize(), StandardCharsets.UTF_8);
+            return file;
+        } catch (IOException e) {
+            logger.exception(e, "Failed to write profiler summary");
+        }
+
+        return null;
+    }
+}
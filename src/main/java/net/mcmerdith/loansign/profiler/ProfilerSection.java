@@ -0,0 +1,65 @@
+package net.mcmerdith.loansign.profiler;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * A timed section of main-thread work
+ * <p>Sections are opened with {@link LoanProfiler#section(String, UUID, UUID)} and
+ * should always be closed with try-with-resources</p>
+ */
+public class ProfilerSection implements AutoCloseable {
+    /**
+     * The section returned while profiling is disabled
+     */
+    public static final ProfilerSection NOOP = new ProfilerSection(null, null, null, null, null);
+
+    private final LoanProfiler profiler;
+    private final ProfilerSection parent;
+
+    /**
+     * The folded stack of this section (ex. {@code LoanCommand.runCommand;LoanData.getAllLoans})
+     */
+    final String path;
+
+    /**
+     * The loan being worked on, if any
+     */
+    @Nullable
+    final UUID loanID;
+
+    /**
+     * The player responsible for the work, if any
+     */
+    @Nullable
+    final UUID player;
+
+    private final long start;
+
+    ProfilerSection(LoanProfiler profiler, ProfilerSection parent, String name, @Nullable UUID loanID, @Nullable UUID player) {
+        this.profiler = profiler;
+        this.parent = parent;
+        this.path = parent == null ? name : parent.path + ";" + name;
+        this.loanID = loanID;
+        this.player = player;
+        this.start = profiler == null ? 0L : System.nanoTime();
+    }
+
+    /**
+     * @return If this section is being recorded
+     */
+    public boolean isActive() {
+        return profiler != null;
+    }
+
+    ProfilerSection getParent() {
+        return parent;
+    }
+
+    @Override
+    public void close() {
+        if (profiler == null) return;
+        profiler.record(this, System.nanoTime() - start);
+    }
+}
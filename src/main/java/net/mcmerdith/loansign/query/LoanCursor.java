@@ -0,0 +1,16 @@
+package net.mcmerdith.loansign.query;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * The position of a loan in a {@link LoanSort}, taken when its page was built
+ * <p>Pages continue from the sort key the loan had then, so later payments on it
+ * cannot make the next page skip or repeat other loans</p>
+ *
+ * @param key    The value the loan was sorted by
+ * @param loanID The ID of the loan, to break ties
+ */
+public record LoanCursor(@NotNull Comparable<?> key, @NotNull UUID loanID) {
+}
@@ -0,0 +1,62 @@
+package net.mcmerdith.loansign.query;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * One page of {@link LoanQuery} results
+ */
+public class LoanPage {
+    @NotNull
+    public final LoanQuery query;
+
+    /**
+     * The loans on this page, in query order
+     */
+    @NotNull
+    public final List<Loan> rows;
+
+    /**
+     * The number of this page, starting from 1
+     */
+    public final int number;
+
+    /**
+     * If there are more results after this page
+     */
+    public final boolean hasMore;
+
+    /**
+     * The position of the last row when this page was built
+     */
+    @Nullable
+    private final LoanCursor cursor;
+
+    public LoanPage(@NotNull LoanQuery query, @NotNull List<Loan> rows, int number, boolean hasMore, @Nullable LoanCursor cursor) {
+        this.query = query;
+        this.rows = rows;
+        this.number = number;
+        this.hasMore = hasMore;
+        this.cursor = cursor;
+    }
+
+    /**
+     * @return The cursor for the next page, or null if this is the last page
+     */
+    @Nullable
+    public LoanCursor getCursor() {
+        return hasMore ? cursor : null;
+    }
+
+    /**
+     * @param row A row number on this page, starting from 1
+     * @return The loan on that row, or null if it is out of range
+     */
+    @Nullable
+    public Loan getRow(int row) {
+        return row >= 1 && row <= rows.size() ? rows.get(row - 1) : null;
+    }
+}
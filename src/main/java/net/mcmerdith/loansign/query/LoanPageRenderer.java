@@ -0,0 +1,86 @@
+package net.mcmerdith.loansign.query;
+
+import net.mcmerdith.loansign.cache.OfflinePlayerCache;
+import net.mcmerdith.loansign.message.CurrencyFormat;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import org.bukkit.ChatColor;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Formats query results into chat lines
+ * <p>Rendering calls into the economy and player lookup, so it should be done off the main thread</p>
+ */
+public final class LoanPageRenderer {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
+
+    private LoanPageRenderer() {
+    }
+
+    /**
+     * @param page The page of loans
+     * @return The chat lines for the page
+     */
+    @NotNull
+    public static List<String> render(@NotNull LoanPage page) {
+        List<String> lines = new ArrayList<>(page.rows.size() + 2);
+        lines.add(ChatColor.GOLD + "--- Loans (page " + page.number + ") ---");
+        if (page.rows.isEmpty()) lines.add(ChatColor.GRAY + "No loans found");
+
+        int row = 1;
+        for (Loan loan : page.rows) {
+            lines.add(ChatColor.AQUA + "#" + row++ + " "
+                    + ChatColor.WHITE + CurrencyFormat.format(loan.getRemainingAmount())
+                    + ChatColor.GRAY + " owed by " + ChatColor.WHITE + nameOf(loan.borrower)
+                    + ChatColor.GRAY + " to " + ChatColor.WHITE + nameOf(loan.lender)
+                    + ChatColor.GRAY + ", due " + DATE_FORMAT.format(loan.getDueDate()));
+        }
+
+        if (page.hasMore) lines.add(ChatColor.GRAY + "Use /loan list next for more");
+        return lines;
+    }
+
+    /**
+     * @param loan     The loan
+     * @param page     The page number
+     * @param payments The payments on the page
+     * @return The chat lines for the payment history page
+     */
+    @NotNull
+    public static List<String> renderHistory(@NotNull Loan loan, int page, @NotNull List<Payment> payments) {
+        List<String> lines = new ArrayList<>(payments.size() + 1);
+        lines.add(ChatColor.GOLD + "--- Payments for " + nameOf(loan.borrower) + " (page " + page + ") ---");
+        if (payments.isEmpty()) lines.add(ChatColor.GRAY + "No payments found");
+
+        for (Payment payment : payments) {
+            StringBuilder line = new StringBuilder()
+                    .append(ChatColor.GRAY).append(DATE_FORMAT.format(payment.getDate()))
+                    .append(ChatColor.WHITE).append(" paid ").append(CurrencyFormat.format(payment.getAmountUnits()));
+            if (payment.foldedPayments > 0) {
+                line.append(ChatColor.GRAY).append(" (").append(payment.foldedPayments + 1).append(" payments)");
+            }
+            if (payment.getDeficitUnits() > 0) {
+                line.append(ChatColor.RED).append(" short ").append(CurrencyFormat.format(payment.getDeficitUnits()));
+            }
+            if (payment.fee != null) {
+                line.append(ChatColor.RED).append(", fee ").append(CurrencyFormat.format(payment.fee.getAmountUnits()));
+                String explanation = payment.getFeeExplanation();
+                if (explanation != null) line.append(ChatColor.GRAY).append(": ").append(explanation);
+            }
+            lines.add(line.toString());
+        }
+
+        return lines;
+    }
+
+    private static String nameOf(UUID player) {
+        String name = OfflinePlayerCache.instance().get(player).getName();
+        return name == null ? player.toString() : name;
+    }
+}
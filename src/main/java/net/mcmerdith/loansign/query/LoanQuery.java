@@ -0,0 +1,64 @@
+package net.mcmerdith.loansign.query;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * A filtered and sorted view of the loan book
+ */
+public class LoanQuery {
+    /**
+     * Only loans given by this player, or null for any lender
+     */
+    @Nullable
+    public final UUID lender;
+
+    /**
+     * Only loans given to this player, or null for any borrower
+     */
+    @Nullable
+    public final UUID borrower;
+
+    /**
+     * Only loans this player is the lender or borrower of, or null for any player
+     */
+    @Nullable
+    public final UUID party;
+
+    /**
+     * If loans without a balance are included
+     */
+    public final boolean includePaidOff;
+
+    @NotNull
+    public final LoanSort sort;
+
+    /**
+     * The number of loans per page
+     */
+    public final int pageSize;
+
+    public LoanQuery(@Nullable UUID lender, @Nullable UUID borrower, @Nullable UUID party, boolean includePaidOff, @NotNull LoanSort sort, int pageSize) {
+        this.lender = lender;
+        this.borrower = borrower;
+        this.party = party;
+        this.includePaidOff = includePaidOff;
+        this.sort = sort;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * @return A predicate matching the loans in this query
+     */
+    @NotNull
+    public Predicate<Loan> filter() {
+        return loan -> (lender == null || lender.equals(loan.lender))
+                && (borrower == null || borrower.equals(loan.borrower))
+                && (party == null || party.equals(loan.lender) || party.equals(loan.borrower))
+                && (includePaidOff || !loan.isPaidOff());
+    }
+}
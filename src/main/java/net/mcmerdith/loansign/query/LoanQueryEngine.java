@@ -0,0 +1,138 @@
+package net.mcmerdith.loansign.query;
+
+import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import net.mcmerdith.loansign.storage.LoanData;
+import org.bukkit.Bukkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+
+/**
+ * Runs {@link LoanQuery}s off the main thread
+ * <p>Queries use cursor-based pagination: only the loans on the requested page are kept
+ * while scanning, so a page costs O(n log pageSize) regardless of how deep it is</p>
+ */
+public class LoanQueryEngine {
+    private static LoanQueryEngine instance;
+
+    public static LoanQueryEngine instance() {
+        if (instance == null) instance = new LoanQueryEngine();
+        return instance;
+    }
+
+    private final Executor executor = task -> Bukkit.getScheduler().runTaskAsynchronously(LoanSignMain.instance, task);
+
+    /**
+     * Get the first page of a query
+     *
+     * @param query The query
+     * @return A future completed off the main thread with the page
+     */
+    @NotNull
+    public CompletableFuture<LoanPage> query(@NotNull LoanQuery query) {
+        return CompletableFuture.supplyAsync(() -> collect(query, source(query), null, 1), executor);
+    }
+
+    /**
+     * Get the page following another page
+     *
+     * @param previous The previous page
+     * @return A future completed off the main thread with the page, or null if there are no more results
+     */
+    @NotNull
+    public CompletableFuture<LoanPage> next(@NotNull LoanPage previous) {
+        LoanCursor cursor = previous.getCursor();
+        if (cursor == null) return CompletableFuture.completedFuture(null);
+        return CompletableFuture.supplyAsync(() -> collect(previous.query, source(previous.query), cursor, previous.number + 1), executor);
+    }
+
+    /**
+     * Get a page of the payment history of a loan
+     *
+     * @param loan     The loan
+     * @param page     The page number, starting from 1
+     * @param pageSize The number of payments per page
+     * @return A future completed off the main thread with the payments, most recent first
+     */
+    @NotNull
+    public CompletableFuture<List<Payment>> history(@NotNull Loan loan, int page, int pageSize) {
+        return CompletableFuture.supplyAsync(() -> {
+            synchronized (loan) {
+                List<Payment> payments = loan.getPayments();
+                int to = payments.size() - (Math.max(1, page) - 1) * pageSize;
+                if (to <= 0) return List.of();
+                List<Payment> rows = new ArrayList<>(payments.subList(Math.max(0, to - pageSize), to));
+                Collections.reverse(rows);
+                return rows;
+            }
+        }, executor);
+    }
+
+    /**
+     * Pick the smallest set of loans that can contain the query results
+     */
+    private static Collection<Loan> source(LoanQuery query) {
+        LoanData data = LoanData.instance();
+        if (query.lender != null) return data.getLoansFrom(query.lender);
+        if (query.borrower != null) return data.getLoansFor(query.borrower);
+        if (query.party != null) {
+            Collection<Loan> loans = new LinkedHashSet<>(data.getLoansFrom(query.party));
+            loans.addAll(data.getLoansFor(query.party));
+            return loans;
+        }
+        return data.getLoansView();
+    }
+
+    /**
+     * Collect one page of results
+     *
+     * @param query  The query
+     * @param source The loans to search
+     * @param after  The cursor of the previous page, or null for the first page
+     * @param number The number of the page
+     * @return The page
+     */
+    @NotNull
+    static LoanPage collect(@NotNull LoanQuery query, @NotNull Iterable<Loan> source, @Nullable LoanCursor after, int number) {
+        Comparator<LoanCursor> order = query.sort.order();
+        Predicate<Loan> filter = query.filter();
+        // keep one extra result to know if there is another page
+        int limit = query.pageSize + 1;
+
+        // the largest kept loan is at the head so it can be evicted
+        PriorityQueue<Row> kept = new PriorityQueue<>(limit + 1, Comparator.comparing(Row::cursor, order).reversed());
+        for (Loan loan : source) {
+            LoanCursor cursor;
+            // read the sort key once so the loan is compared by the same value throughout
+            synchronized (loan) {
+                if (!filter.test(loan)) continue;
+                cursor = query.sort.cursor(loan);
+            }
+            if (after != null && order.compare(cursor, after) <= 0) continue;
+            kept.add(new Row(loan, cursor));
+            if (kept.size() > limit) kept.poll();
+        }
+
+        List<Row> rows = new ArrayList<>(kept);
+        rows.sort(Comparator.comparing(Row::cursor, order));
+        boolean hasMore = rows.size() > query.pageSize;
+        if (hasMore) rows = rows.subList(0, query.pageSize);
+        LoanCursor last = rows.isEmpty() ? null : rows.get(rows.size() - 1).cursor();
+        return new LoanPage(query, rows.stream().map(Row::loan).toList(), number, hasMore, last);
+    }
+
+    private record Row(Loan loan, LoanCursor cursor) {
+    }
+}
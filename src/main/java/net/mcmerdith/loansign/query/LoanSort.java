@@ -0,0 +1,53 @@
+package net.mcmerdith.loansign.query;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Comparator;
+import java.util.function.Function;
+
+/**
+ * Orderings available to a {@link LoanQuery}
+ * <p>Every ordering breaks ties by loan ID so pages never overlap</p>
+ */
+public enum LoanSort {
+    DUE_DATE(Loan::getDueDate, false),
+    BALANCE(Loan::getRemainingAmount, true),
+    LENDER(loan -> loan.lender, false),
+    BORROWER(loan -> loan.borrower, false);
+
+    private final Function<Loan, Comparable<?>> key;
+    private final Comparator<LoanCursor> order;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    LoanSort(Function<Loan, Comparable<?>> key, boolean descending) {
+        this.key = key;
+        Comparator<LoanCursor> keys = (a, b) -> ((Comparable) a.key()).compareTo(b.key());
+        this.order = (descending ? keys.reversed() : keys).thenComparing(LoanCursor::loanID);
+    }
+
+    /**
+     * @param loan A loan, locked by the caller
+     * @return The position of the loan in this ordering
+     */
+    @NotNull
+    public LoanCursor cursor(@NotNull Loan loan) {
+        return new LoanCursor(key.apply(loan), loan.loanID);
+    }
+
+    /**
+     * @return A total ordering of cursors
+     */
+    @NotNull
+    public Comparator<LoanCursor> order() {
+        return order;
+    }
+
+    /**
+     * @return A total ordering of loans
+     */
+    @NotNull
+    public Comparator<Loan> comparator() {
+        return (a, b) -> order.compare(cursor(a), cursor(b));
+    }
+}
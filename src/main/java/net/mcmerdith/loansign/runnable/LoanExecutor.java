@@ -1,16 +1,40 @@
 package net.mcmerdith.loansign.runnable;
 
+import net.mcmerdith.loansign.io.EconomyGateway;
 import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import net.mcmerdith.loansign.profiler.LoanProfiler;
+import net.mcmerdith.loansign.profiler.ProfilerSection;
+import net.mcmerdith.loansign.storage.LoanData;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * An executor task for {@link Loan}s
  * <p>This task should never be run asynchronously or on a timer</p>
  */
 public class LoanExecutor extends BukkitRunnable {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(LoanExecutor.class);
+
+    /**
+     * The fee charged when a payment is missed entirely
+     */
+    private static volatile double maxFee = 0.0;
+
+    /**
+     * Load the collection settings
+     *
+     * @param config The {@code collection} section of the config, may be null
+     */
+    public static void configure(@Nullable ConfigurationSection config) {
+        if (config == null) return;
+        maxFee = Math.max(0.0, config.getDouble("max-fee", 0.0));
+    }
 
     private final Loan loan;
 
@@ -27,7 +51,47 @@ public class LoanExecutor extends BukkitRunnable {
 
     @Override
     public void run() {
+        collect(loan);
+    }
+
+    /**
+     * Collect the installments due on a loan
+     * <p>Runs on the main thread, or on an {@link net.mcmerdith.loansign.io.IoExecutor} thread
+     * when the {@link EconomyGateway} is asynchronous</p>
+     *
+     * @param loan The loan
+     */
+    public static void collect(@NotNull Loan loan) {
+        try (ProfilerSection ignored = LoanProfiler.instance().section("LoanExecutor.collect", loan.loanID, loan.borrower)) {
+            EconomyGateway economy = EconomyGateway.instance();
+
+            synchronized (loan) {
+                // another executor may have collected already
+                if (!loan.isPaymentDue()) return;
+                // collect as much as the borrower can afford, fees are charged for the rest
+                Payment payment = loan.quotePayment(economy.getBalance(loan.borrower), maxFee);
+                if (payment == null) return;
+
+                // claim the installment before money moves
+                int period = loan.recordPayment(payment);
+                LoanData data = LoanData.instance();
+                if (!data.commit(loan)) {
+                    // with shared storage, another server may have collected first
+                    loan.revertPayment(payment, period);
+                    return;
+                }
 
+                double amount = payment.getAmount();
+                if (payment.getAmountUnits() > 0 && !economy.transfer(loan.borrower, loan.lender, amount)) {
+                    logger.error("Failed to collect " + amount + " for loan " + loan.loanID);
+                    // the installment stays due and is retried on the next run
+                    loan.revertPayment(payment, period);
+                    data.commit(loan);
+                    return;
+                }
+                loan.postPayment(payment);
+            }
+        }
     }
 
     @NotNull
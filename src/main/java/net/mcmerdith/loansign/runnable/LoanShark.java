@@ -1,17 +1,41 @@
 package net.mcmerdith.loansign.runnable;
 
 import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.analytics.ActivityIndex;
+import net.mcmerdith.loansign.analytics.LoanAnalytics;
+import net.mcmerdith.loansign.cache.OfflinePlayerCache;
+import net.mcmerdith.loansign.io.EconomyGateway;
+import net.mcmerdith.loansign.io.IoExecutor;
+import net.mcmerdith.loansign.io.TaskScope;
 import net.mcmerdith.loansign.model.Loan;
 import net.mcmerdith.loansign.storage.LoanData;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
 /**
  * A watchdog task for {@link Loan}s
  */
 public class LoanShark extends BukkitRunnable {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(LoanShark.class);
+
+    /**
+     * Ticks between runs
+     */
+    private static final long PERIOD_TICKS = 1200L;
+
+    /**
+     * Time between runs, 20 ticks per second
+     */
+    private static final Duration PERIOD = Duration.ofMillis(PERIOD_TICKS * 50L);
 
     /**
      * The {@link BukkitTask} associated with the watchdog
@@ -23,7 +47,7 @@ public class LoanShark extends BukkitRunnable {
      * <p>Task will run automatically</p>
      */
     public LoanShark() {
-        this.task = runTaskTimerAsynchronously(LoanSignMain.instance, 0L, 1200L);
+        this.task = runTaskTimerAsynchronously(LoanSignMain.instance, 0L, PERIOD_TICKS);
     }
 
     /**
@@ -35,8 +59,57 @@ public class LoanShark extends BukkitRunnable {
 
     @Override
     public void run() {
-        // Run an executor on all due loans
-        LoanData.instance().getDueLoans().forEach(l -> new LoanExecutor(LoanSignMain.instance, l));
+        LoanData data = LoanData.instance();
+        Instant now = Instant.now();
+        // look up the players of loans due before the next run here, not on the main thread during collection
+        Instant nextRun = now.plus(PERIOD);
+        OfflinePlayerCache.instance().warm(data.getLoansView().stream()
+                .filter(loan -> loan.getNextPaymentDate().isBefore(nextRun) && !loan.isPaidOff() && data.isCollector(loan))
+                .toList());
+        // Collect all due loans this server is responsible for
+        List<Loan> due = data.getDueLoans().stream().filter(data::isCollector).toList();
+        if (EconomyGateway.instance().isAsync()) {
+            collectAsync(due);
+        } else {
+            due.forEach(l -> new LoanExecutor(LoanSignMain.instance, l));
+        }
+        // Report loans that passed their due date unpaid
+        for (Loan loan : data.getExpiredLoans()) {
+            if (!data.isCollector(loan)) continue;
+            synchronized (loan) {
+                loan.markDefaulted(now);
+            }
+        }
+        data.expireLoanOffers(now);
+        // overdue loans age without changing
+        LoanAnalytics.instance().refresh(data.getDueLoans());
+        ActivityIndex.instance().prune(now);
+    }
+
+    /**
+     * Collect loans on the {@link IoExecutor}, waiting at most the configured timeout
+     */
+    private void collectAsync(List<Loan> loans) {
+        try (TaskScope scope = IoExecutor.instance().scope()) {
+            for (Loan loan : loans) {
+                scope.fork(() -> {
+                    try {
+                        LoanExecutor.collect(loan);
+                    } catch (RuntimeException e) {
+                        // one failed collection should not stop the others
+                        logger.exception(e, "Failed to collect loan " + loan.loanID);
+                    }
+                    return null;
+                });
+            }
+            scope.join();
+        } catch (ExecutionException e) {
+            logger.exception(e.getCause(), "Failed to collect loans");
+        } catch (TimeoutException e) {
+            logger.error("Collecting loans took too long, the rest will be collected next time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @NotNull
@@ -0,0 +1,307 @@
+package net.mcmerdith.loansign.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import net.mcmerdith.loansign.model.Loan;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A snapshot of loans split into independently compressed blocks
+ * <p>Each block is a gzip compressed JSON array of loans, so blocks can be compressed and
+ * decompressed in parallel. An index of block offsets is written after the last block.</p>
+ * <pre>
+ * header  int magic, int version
+ * blocks  byte[] gzip data...
+ * index   int blocks, (long offset, int length, int loans)...
+ * footer  long index offset, int magic
+ * </pre>
+ */
+final class BlockSnapshot {
+    private static final int MAGIC = 0x4C534231; // LSB1
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES + Integer.BYTES * 2;
+
+    private static final Gson gson = new Gson();
+
+    private BlockSnapshot() {
+    }
+
+    /**
+     * @param file A file
+     * @return If the file is a block snapshot
+     */
+    static boolean isSnapshot(@NotNull Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            return channel.read(header, 0) == Integer.BYTES && header.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write a snapshot, replacing the file only once it is complete
+     *
+     * @param file      The snapshot file
+     * @param loans     The loans
+     * @param blockSize The number of loans per block
+     * @param pool      The pool blocks are compressed on
+     */
+    static void write(@NotNull Path file, @NotNull List<Loan> loans, int blockSize, @NotNull ForkJoinPool pool) throws IOException {
+        try (Writer writer = new Writer(file, blockSize, pool)) {
+            for (Loan loan : loans) writer.add(loan);
+            writer.commit();
+        }
+    }
+
+    /**
+     * Read a snapshot
+     *
+     * @param file The snapshot file
+     * @param pool The pool blocks are decompressed on
+     * @return The loans, in the order they were written
+     * @throws IOException If the file could not be read or is not a complete snapshot
+     */
+    @NotNull
+    static List<Loan> read(@NotNull Path file, @NotNull ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Block> index = readIndex(file, channel);
+
+            // positional reads on a FileChannel are safe from several threads
+            List<ForkJoinTask<List<Loan>>> blocks = new ArrayList<>(index.size());
+            int total = 0;
+            for (Block block : index) {
+                total += block.loans();
+                blocks.add(pool.submit(() -> decompress(readFully(channel, block.offset(), block.length()).array())));
+            }
+
+            List<Loan> loans = new ArrayList<>(total);
+            for (ForkJoinTask<List<Loan>> block : blocks) loans.addAll(join(block));
+            return loans;
+        }
+    }
+
+    /**
+     * Read a snapshot one block at a time
+     * <p>Only one block is held in memory, so snapshots larger than the heap can be read</p>
+     *
+     * @param file     The snapshot file
+     * @param consumer Called with each loan, in the order they were written
+     * @throws IOException If the file could not be read or is not a complete snapshot
+     */
+    static void forEach(@NotNull Path file, @NotNull Consumer<Loan> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (Block block : readIndex(file, channel)) {
+                decompress(readFully(channel, block.offset(), block.length()).array()).forEach(consumer);
+            }
+        }
+    }
+
+    /**
+     * The location of a block in a snapshot
+     */
+    private record Block(long offset, int length, int loans) {
+    }
+
+    /**
+     * Check the header and footer of a snapshot and read its index
+     */
+    private static List<Block> readIndex(Path file, FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE + Integer.BYTES + FOOTER_SIZE) throw new IOException("Snapshot is truncated: " + file);
+
+        ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) throw new IOException("Not a loan snapshot: " + file);
+        int version = header.getInt();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + ": " + file);
+
+        ByteBuffer footer = readFully(channel, fileSize - FOOTER_SIZE, FOOTER_SIZE);
+        long indexOffset = footer.getLong();
+        // a missing trailer means the write was interrupted
+        if (footer.getInt() != MAGIC || indexOffset < HEADER_SIZE || indexOffset > fileSize - FOOTER_SIZE - Integer.BYTES) {
+            throw new IOException("Snapshot is incomplete: " + file);
+        }
+
+        int blockCount = readFully(channel, indexOffset, Integer.BYTES).getInt();
+        if (blockCount < 0 || indexOffset + Integer.BYTES + (long) blockCount * INDEX_ENTRY_SIZE != fileSize - FOOTER_SIZE) {
+            throw new IOException("Snapshot index is corrupt: " + file);
+        }
+        ByteBuffer index = readFully(channel, indexOffset + Integer.BYTES, blockCount * INDEX_ENTRY_SIZE);
+
+        List<Block> blocks = new ArrayList<>(blockCount);
+        for (int i = 0; i < blockCount; ++i) {
+            Block block = new Block(index.getLong(), index.getInt(), index.getInt());
+            if (block.offset() < HEADER_SIZE || block.length() < 0 || block.offset() + block.length() > indexOffset) {
+                throw new IOException("Snapshot index is corrupt: " + file);
+            }
+            blocks.add(block);
+        }
+        return blocks;
+    }
+
+    private static byte[] compress(List<Loan> block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(gson.toJson(block).getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Loan> decompress(byte[] data) throws IOException {
+        try (Reader in = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(data)), StandardCharsets.UTF_8)) {
+            List<Loan> loans = gson.fromJson(in, new TypeToken<List<Loan>>() {
+            });
+            return loans == null ? List.of() : loans;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of snapshot");
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Wait for a block, unwrapping I/O failures
+     */
+    private static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.join();
+        } catch (RuntimeException e) {
+            // the pool wraps checked exceptions thrown by a task
+            if (e.getCause() instanceof IOException cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a snapshot one loan at a time
+     * <p>Full blocks are compressed on the pool while more loans are added. Only a few blocks
+     * are held in memory at once, so snapshots larger than the heap can be written. The file is
+     * replaced by {@link #commit()}, closing the writer without committing discards it.</p>
+     */
+    static final class Writer implements Closeable {
+        private final Path file;
+        private final Path temp;
+        private final int blockSize;
+        private final ForkJoinPool pool;
+
+        /**
+         * The most blocks compressing at once
+         */
+        private final int maxPending;
+
+        private final DataOutputStream out;
+
+        private List<Loan> buffer = new ArrayList<>();
+
+        private final Deque<ForkJoinTask<byte[]>> pending = new ArrayDeque<>();
+        private final Deque<Integer> pendingCounts = new ArrayDeque<>();
+
+        private final List<Block> written = new ArrayList<>();
+        private long offset = HEADER_SIZE;
+
+        private boolean committed;
+
+        /**
+         * @param file      The snapshot file
+         * @param blockSize The number of loans per block
+         * @param pool      The pool blocks are compressed on
+         */
+        Writer(@NotNull Path file, int blockSize, @NotNull ForkJoinPool pool) throws IOException {
+            this.file = file;
+            this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.blockSize = Math.max(1, blockSize);
+            this.pool = pool;
+            this.maxPending = Math.max(2, pool.getParallelism() * 2);
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        /**
+         * Add the next loan
+         *
+         * @param loan The loan
+         */
+        void add(@NotNull Loan loan) throws IOException {
+            buffer.add(loan);
+            if (buffer.size() >= blockSize) submit();
+        }
+
+        private void submit() throws IOException {
+            List<Loan> block = buffer;
+            buffer = new ArrayList<>();
+            pending.add(pool.submit(() -> compress(block)));
+            pendingCounts.add(block.size());
+            while (pending.size() >= maxPending) writeNext();
+        }
+
+        /**
+         * Write the oldest block once it has finished compressing, blocks stay in order
+         */
+        private void writeNext() throws IOException {
+            byte[] data = join(pending.poll());
+            out.write(data);
+            written.add(new Block(offset, data.length, pendingCounts.poll()));
+            offset += data.length;
+        }
+
+        /**
+         * Write the remaining blocks and the index, then replace the snapshot file
+         */
+        void commit() throws IOException {
+            if (!buffer.isEmpty()) submit();
+            while (!pending.isEmpty()) writeNext();
+
+            out.writeInt(written.size());
+            for (Block block : written) {
+                out.writeLong(block.offset());
+                out.writeInt(block.length());
+                out.writeInt(block.loans());
+            }
+            out.writeLong(offset);
+            out.writeInt(MAGIC);
+            out.close();
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (committed) return;
+            pending.forEach(block -> block.cancel(true));
+            out.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+}
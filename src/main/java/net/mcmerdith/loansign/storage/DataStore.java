@@ -1,5 +1,9 @@
 package net.mcmerdith.loansign.storage;
 
+import net.mcmerdith.loansign.model.Loan;
+
+import java.util.Collection;
+
 public interface DataStore {
 
     /**
@@ -17,4 +21,41 @@ public interface DataStore {
      * @implSpec Data must be fully saved when this method returns
      */
     boolean save(LoanData data);
+
+    /**
+     * Start any background work once the data is loaded
+     */
+    default void open(LoanData data) {
+    }
+
+    /**
+     * Stop any background work after the final save
+     */
+    default void close() {
+    }
+
+    /**
+     * Write a changed loan immediately, before money moves
+     *
+     * @return False if the loan was changed elsewhere and the change must be abandoned
+     * @implSpec Stores that only save everything at once may return true without writing
+     */
+    default boolean commit(Loan loan) {
+        return true;
+    }
+
+    /**
+     * Remove loans from storage immediately
+     *
+     * @implSpec Stores that only save everything at once may ignore this
+     */
+    default void delete(Collection<Loan> loans) {
+    }
+
+    /**
+     * @return If this server is responsible for collecting payments on a loan
+     */
+    default boolean isCollector(Loan loan) {
+        return true;
+    }
 }
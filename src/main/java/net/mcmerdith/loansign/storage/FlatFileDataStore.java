@@ -1,37 +1,89 @@
 package net.mcmerdith.loansign.storage;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
-import com.google.gson.reflect.TypeToken;
 import net.mcmerdith.loansign.LoanSignMain;
 import net.mcmerdith.loansign.model.Loan;
 import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
+/**
+ * Stores all loans in a single file
+ * <p>Loans are written as plain JSON to {@code loans.json}, or as a {@link BlockSnapshot} to
+ * {@code loans.snapshot} when compression is enabled. Either file is loaded regardless of the
+ * current mode, and the other file is removed after the next save.</p>
+ */
 public class FlatFileDataStore implements DataStore {
     private static final McmPluginLogger logger = McmPluginLogger.classInstance(FlatFileDataStore.class);
 
-    private final Gson gson = new Gson();
+    /**
+     * The folder the loan files are in
+     */
+    private final File folder;
 
-    private File getLoanFile() {
-        return new File(LoanSignMain.instance.getDataFolder(), "loans.json");
+    /**
+     * If loans are written as a compressed snapshot
+     */
+    private final boolean compress;
+
+    /**
+     * The number of loans per compressed block
+     */
+    private final int blockSize;
+
+    /**
+     * Create a new data store writing plain JSON to the plugin folder
+     */
+    public FlatFileDataStore() {
+        this(LoanSignMain.instance.getDataFolder(), false, 1000);
+    }
+
+    /**
+     * Create a new data store
+     *
+     * @param folder    The folder the loan files are in
+     * @param compress  If loans are written as a compressed snapshot
+     * @param blockSize The number of loans per compressed block
+     */
+    public FlatFileDataStore(@NotNull File folder, boolean compress, int blockSize) {
+        this.folder = folder;
+        this.compress = compress;
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * @return The plain JSON loan file
+     */
+    @NotNull
+    public File getLoanFile() {
+        return new File(folder, "loans.json");
+    }
+
+    /**
+     * @return The compressed snapshot loan file
+     */
+    @NotNull
+    public File getSnapshotFile() {
+        return new File(folder, "loans.snapshot");
     }
 
     @Override
     public boolean save(LoanData data) {
-        String dataString = gson.toJson(data.getAllLoans());
-        try {
-            Files.writeString(getLoanFile().toPath(), dataString,
-                    StandardCharsets.UTF_8,
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.TRUNCATE_EXISTING,
-                    StandardOpenOption.WRITE);
+        List<Loan> loans = data.getAllLoans();
+        LoanVerifier.seal(loans);
+        File file = compress ? getSnapshotFile() : getLoanFile();
+        // loans are streamed to a temporary file that replaces the old one when it is complete
+        try (LoanFiles.LoanWriter writer = LoanFiles.newWriter(file.toPath(), compress, blockSize, ForkJoinPool.commonPool())) {
+            for (Loan loan : loans) writer.write(loan);
+            writer.commit();
+            // the file in the other format is out of date now
+            Files.deleteIfExists((compress ? getLoanFile() : getSnapshotFile()).toPath());
             return true;
         } catch (IOException e) {
             logger.exception(e, "Failed to write data");
@@ -42,12 +94,28 @@ public class FlatFileDataStore implements DataStore {
 
     @Override
     public boolean load(LoanData data) {
+        File preferred = compress ? getSnapshotFile() : getLoanFile();
+        File other = compress ? getLoanFile() : getSnapshotFile();
+        File file = !preferred.exists() && other.exists() ? other : preferred;
+        if (!file.exists()) {
+            // a new install has no loans yet
+            data.setLoans(new ArrayList<>());
+            return true;
+        }
+        if (file != preferred) logger.info("Migrating " + file.getName() + " to " + preferred.getName() + " on the next save");
+
         try {
-            data.setLoans(gson.fromJson(Files.readString(getLoanFile().toPath(), StandardCharsets.UTF_8), new TypeToken<List<Loan>>() {
-            }));
+            List<Loan> loans;
+            if (BlockSnapshot.isSnapshot(file.toPath())) {
+                loans = BlockSnapshot.read(file.toPath(), ForkJoinPool.commonPool());
+            } else {
+                loans = new ArrayList<>();
+                LoanFiles.forEach(file.toPath(), loans::add);
+            }
+            data.setLoans(loans);
             return true;
         } catch (IOException e) {
-            logger.exception(e, "Failed to write data");
+            logger.exception(e, "Failed to read data");
         } catch (JsonSyntaxException e) {
             logger.exception(e, "Syntax error in data file");
         }
@@ -0,0 +1,156 @@
+package net.mcmerdith.loansign.storage;
+
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Splits the shards of a {@link SharedDataStore} between the servers using it
+ * <p>Each server heartbeats into {@code nodes/} and holds time-limited leases in {@code leases/}.
+ * Servers take free shards up to an even share and give up shards above it, so every shard
+ * is collected by exactly one server once the leases settle.</p>
+ */
+class LeaseTable {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(LeaseTable.class);
+
+    private static final Duration LOCK_TIMEOUT = Duration.ofSeconds(5);
+
+    private final File leaseFolder;
+    private final File nodeFolder;
+    private final String node;
+    private final int shards;
+    private final Duration leaseTime;
+
+    /**
+     * The shards leased by this server and when the leases expire
+     */
+    private final Map<Integer, Instant> held = new ConcurrentHashMap<>();
+
+    LeaseTable(@NotNull File folder, @NotNull String node, int shards, @NotNull Duration leaseTime) {
+        this.leaseFolder = new File(folder, "leases");
+        this.nodeFolder = new File(folder, "nodes");
+        this.node = node;
+        this.shards = shards;
+        this.leaseTime = leaseTime;
+    }
+
+    /**
+     * @param shard The shard
+     * @return If this server holds the lease on a shard with time to spare
+     */
+    boolean holds(int shard) {
+        Instant expiry = held.get(shard);
+        // stop collecting well before another server could take over
+        return expiry != null && Instant.now().plus(leaseTime.dividedBy(4)).isBefore(expiry);
+    }
+
+    /**
+     * Heartbeat, then renew, take or give up leases
+     */
+    void renew() {
+        if (!leaseFolder.exists() && !leaseFolder.mkdirs() || !nodeFolder.exists() && !nodeFolder.mkdirs()) {
+            logger.error("Could not create lease folders!");
+            return;
+        }
+
+        Instant now = Instant.now();
+        try {
+            Files.writeString(new File(nodeFolder, node).toPath(), Long.toString(now.toEpochMilli()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.exception(e, "Failed to write heartbeat");
+            return;
+        }
+
+        int live = liveNodes(now);
+        int target = (shards + live - 1) / live;
+        for (int shard = 0; shard < shards; ++shard) {
+            Path leaseFile = new File(leaseFolder, "shard-" + shard + ".lease").toPath();
+            try (SharedLock ignored = SharedLock.acquire(new File(leaseFolder, "shard-" + shard + ".lock").toPath(), LOCK_TIMEOUT)) {
+                Lease lease = readLease(leaseFile);
+                boolean mine = lease != null && lease.node.equals(node) && lease.expiry.isAfter(now);
+                boolean free = lease == null || !lease.expiry.isAfter(now);
+
+                if (mine && held.size() > target) {
+                    // give shards back when more servers join
+                    Files.deleteIfExists(leaseFile);
+                    held.remove(shard);
+                } else if (mine || (free && held.size() < target)) {
+                    Instant expiry = now.plus(leaseTime);
+                    Files.writeString(leaseFile, node + " " + expiry.toEpochMilli(), StandardCharsets.UTF_8);
+                    held.put(shard, expiry);
+                } else {
+                    held.remove(shard);
+                }
+            } catch (IOException | TimeoutException e) {
+                logger.exception(e, "Failed to renew lease on shard " + shard);
+                held.remove(shard);
+            }
+        }
+    }
+
+    /**
+     * Give up all leases held by this server
+     */
+    void releaseAll() {
+        for (int shard : new ArrayList<>(held.keySet())) {
+            Path leaseFile = new File(leaseFolder, "shard-" + shard + ".lease").toPath();
+            try (SharedLock ignored = SharedLock.acquire(new File(leaseFolder, "shard-" + shard + ".lock").toPath(), LOCK_TIMEOUT)) {
+                Lease lease = readLease(leaseFile);
+                if (lease != null && lease.node.equals(node)) Files.deleteIfExists(leaseFile);
+            } catch (IOException | TimeoutException e) {
+                logger.exception(e, "Failed to release lease on shard " + shard);
+            }
+        }
+        held.clear();
+
+        try {
+            Files.deleteIfExists(new File(nodeFolder, node).toPath());
+        } catch (IOException e) {
+            logger.exception(e, "Failed to remove heartbeat");
+        }
+    }
+
+    /**
+     * @return The number of servers that heartbeat within the lease time, at least 1
+     */
+    private int liveNodes(Instant now) {
+        File[] files = nodeFolder.listFiles();
+        if (files == null) return 1;
+
+        int live = 0;
+        for (File file : files) {
+            try {
+                long beat = Long.parseLong(Files.readString(file.toPath(), StandardCharsets.UTF_8).trim());
+                if (Instant.ofEpochMilli(beat).plus(leaseTime).isAfter(now)) ++live;
+            } catch (IOException | NumberFormatException ignored) {
+                // a heartbeat being written or removed
+            }
+        }
+        return Math.max(1, live);
+    }
+
+    private static Lease readLease(Path file) throws IOException {
+        if (!Files.exists(file)) return null;
+        String[] parts = Files.readString(file, StandardCharsets.UTF_8).trim().split(" ");
+        if (parts.length != 2) return null;
+        try {
+            return new Lease(parts[0], Instant.ofEpochMilli(Long.parseLong(parts[1])));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private record Lease(String node, Instant expiry) {
+    }
+}
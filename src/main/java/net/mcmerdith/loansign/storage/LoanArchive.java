@@ -0,0 +1,84 @@
+package net.mcmerdith.loansign.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An append-only, compressed file of archived {@link Loan}s
+ * <p>Each append writes a new gzip member containing one JSON loan per line.
+ * Concatenated members are read back as a single stream.</p>
+ */
+public class LoanArchive {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(LoanArchive.class);
+
+    private final Gson gson = new Gson();
+
+    private final File file;
+
+    /**
+     * @param file The archive file
+     */
+    public LoanArchive(@NotNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Append loans to the archive
+     *
+     * @param loans The loans to append
+     * @return If the loans were written
+     */
+    public synchronized boolean append(@NotNull Collection<Loan> loans) {
+        if (loans.isEmpty()) return true;
+
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(file, true)), StandardCharsets.UTF_8))) {
+            for (Loan loan : loans) {
+                writer.write(gson.toJson(loan));
+                writer.newLine();
+            }
+            return true;
+        } catch (IOException e) {
+            logger.exception(e, "Failed to write archive");
+        }
+
+        return false;
+    }
+
+    /**
+     * Read every loan in the archive
+     *
+     * @param consumer Called with each archived loan
+     * @throws IOException         If the archive could not be read
+     * @throws JsonSyntaxException If an archived loan is malformed
+     */
+    public synchronized void forEach(@NotNull Consumer<Loan> consumer) throws IOException {
+        if (!file.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                consumer.accept(gson.fromJson(line, Loan.class));
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package net.mcmerdith.loansign.storage;
+
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Moves closed loans out of {@link LoanData} into a {@link LoanArchive}
+ * and folds old payment history on active loans
+ */
+public class LoanArchiver {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(LoanArchiver.class);
+
+    private final LoanArchive archive;
+
+    /**
+     * How long paid off or past due loans are kept active
+     */
+    private final Duration retention;
+
+    /**
+     * The number of recent payments kept on active loans, 0 to never compact
+     */
+    private final int keepPayments;
+
+    /**
+     * @param archive      The archive to write to
+     * @param retention    How long paid off or past due loans are kept active
+     * @param keepPayments The number of recent payments kept on active loans, 0 to never compact
+     */
+    public LoanArchiver(@NotNull LoanArchive archive, @NotNull Duration retention, int keepPayments) {
+        this.archive = archive;
+        this.retention = retention;
+        this.keepPayments = keepPayments;
+    }
+
+    /**
+     * Create an archiver from the config
+     *
+     * @param archive The archive to write to
+     * @param config  The {@code archive} section of the config, may be null
+     * @return The archiver, or null if archiving is disabled
+     */
+    @Nullable
+    public static LoanArchiver fromConfig(@NotNull LoanArchive archive, @Nullable ConfigurationSection config) {
+        if (config == null || !config.getBoolean("enabled", false)) return null;
+        return new LoanArchiver(archive,
+                Duration.ofDays(config.getInt("retention-days", 30)),
+                config.getInt("keep-payments", 0));
+    }
+
+    /**
+     * Archive loans now, regardless of the retention period
+     *
+     * @param loans The loans
+     * @return If the loans were written
+     */
+    public boolean append(@NotNull Collection<Loan> loans) {
+        return archive.append(loans);
+    }
+
+    /**
+     * Archive all eligible loans and compact the rest
+     *
+     * @param data The loan data
+     * @return The number of loans archived
+     */
+    public int run(@NotNull LoanData data) {
+        Instant now = Instant.now();
+        // with shared storage each server archives the loans it collects
+        List<Loan> archivable = data.getAllLoans().stream().filter(data::isCollector).filter(loan -> {
+            synchronized (loan) {
+                return loan.isArchivable(now, retention);
+            }
+        }).toList();
+
+        if (!archivable.isEmpty()) {
+            if (!archive.append(archivable)) return 0;
+            data.removeLoans(archivable);
+            logger.info("Archived " + archivable.size() + " loans");
+        }
+
+        if (keepPayments > 0) {
+            int compacted = 0;
+            for (Loan loan : data.getAllLoans()) {
+                if (!data.isCollector(loan)) continue;
+                synchronized (loan) {
+                    if (loan.compactPayments(keepPayments)) ++compacted;
+                }
+            }
+            if (compacted > 0) logger.info("Compacted payment history of " + compacted + " loans");
+        }
+
+        return archivable.size();
+    }
+}
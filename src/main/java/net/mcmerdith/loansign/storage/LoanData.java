@@ -1,6 +1,14 @@
 package net.mcmerdith.loansign.storage;
 
 import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.analytics.ActivityIndex;
+import net.mcmerdith.loansign.analytics.LoanAnalytics;
+import net.mcmerdith.loansign.cache.PlayerSummaryCache;
+import net.mcmerdith.loansign.credit.CreditScores;
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventBus;
+import net.mcmerdith.loansign.event.LoanEventType;
+import net.mcmerdith.loansign.io.IoExecutor;
 import net.mcmerdith.loansign.model.Loan;
 import net.mcmerdith.loansign.model.LoanOffer;
 import net.mcmerdith.loansign.runnable.LoanShark;
@@ -11,10 +19,18 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class LoanData {
     private static final McmPluginLogger logger = McmPluginLogger.classInstance(LoanData.class);
@@ -28,6 +44,18 @@ public class LoanData {
 
     private DataStore dataStore;
 
+    /**
+     * Moves closed loans out of memory, null if archiving is disabled
+     */
+    @Nullable
+    private LoanArchiver archiver;
+
+    /**
+     * Checks loaded loans, null if loaded loans are not checked
+     */
+    @Nullable
+    private LoanVerifier verifier;
+
     /**
      * The watchdog for loans
      */
@@ -39,22 +67,139 @@ public class LoanData {
     private final ConcurrentLinkedQueue<Loan> loans = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<LoanOffer> loanOffers = new ConcurrentLinkedQueue<>();
 
+    /**
+     * Lender, borrower and due date lookups for {@link LoanData#loans}
+     */
+    private final LoanIndex index = new LoanIndex();
+
+    /**
+     * How long interactive callers wait for data before giving up
+     */
+    public static final long READY_WAIT_MILLIS = 50L;
+
+    /**
+     * Completed once the data is loaded, or exceptionally if {@link DataStore#load(LoanData)} failed
+     */
+    private final CompletableFuture<Boolean> ready = new CompletableFuture<>();
+
+    /**
+     * Completed once the watchdog and auto-save tasks have been started
+     */
+    private CompletableFuture<Void> started;
+
+    /**
+     * Start loading data
+     * <p>Data is loaded asynchronously, use {@link LoanData#getReadyFuture()} to wait for it.
+     * The watchdog and auto-save tasks are started once loading completes.</p>
+     *
+     * @param dataStore The storage handler
+     */
     public void enable(DataStore dataStore) {
         // set storage handler
         this.dataStore = dataStore;
         // load data from handler
-        this.dataStore.load(this);
-        // start the watchdog
-        this.loanShark = new LoanShark();
-        // start an auto-save task (5 minute interval)
-        Bukkit.getScheduler().runTaskTimerAsynchronously(LoanSignMain.instance, () -> {
-            logger.info("Auto-saving data...");
-            this.dataStore.save(this);
-            logger.info("Done!");
-        }, 6000L, 6000L);
+        logger.info("Loading data...");
+        IoExecutor.instance().submit(() -> this.dataStore.load(this)).whenComplete((loaded, e) -> {
+            if (e != null) ready.completeExceptionally(e);
+            // a failed load leaves an empty book that must never be saved
+            else if (!loaded) ready.completeExceptionally(new IllegalStateException("The data store failed to load"));
+            else ready.complete(true);
+        });
+
+        this.started = ready.thenRun(() -> {
+            logger.info("Loaded " + loans.size() + " loans");
+            if (!LoanAnalytics.instance().restore(getLoansView())) logger.info("Rebuilt loan analytics");
+            ActivityIndex.instance().rebuild(getLoansView());
+            if (!CreditScores.instance().load(getLoansView())) logger.info("Rebuilt credit scores");
+            this.dataStore.open(this);
+            // start the watchdog
+            this.loanShark = new LoanShark();
+            // start an auto-save task (5 minute interval)
+            Bukkit.getScheduler().runTaskTimerAsynchronously(LoanSignMain.instance, () -> IoExecutor.instance().execute(() -> {
+                if (this.archiver != null) this.archiver.run(this);
+                logger.info("Auto-saving data...");
+                this.dataStore.save(this);
+                LoanAnalytics.instance().saveSnapshot(getLoansView());
+                CreditScores.instance().save();
+                logger.info("Done!");
+            }), 6000L, 6000L);
+        });
+        this.started.exceptionally(e -> {
+            logger.exception(e, "Failed to load data, loans will not be processed");
+            return null;
+        });
+    }
+
+    /**
+     * Set the verifier used to check loaded loans and by /loan verify
+     *
+     * @param verifier The verifier, or null to load loans unchecked
+     */
+    public void setVerifier(@Nullable LoanVerifier verifier) {
+        this.verifier = verifier;
+    }
+
+    /**
+     * @return The verifier, or null if loans are not checked
+     */
+    @Nullable
+    public LoanVerifier getVerifier() {
+        return verifier;
+    }
+
+    /**
+     * Set the archiver run before each auto-save
+     *
+     * @param archiver The archiver, or null to disable archiving
+     */
+    public void setArchiver(@Nullable LoanArchiver archiver) {
+        this.archiver = archiver;
+    }
+
+    /**
+     * @return A future completed once the data is loaded
+     */
+    public CompletableFuture<Boolean> getReadyFuture() {
+        return ready;
+    }
+
+    /**
+     * @return If the data is loaded
+     */
+    public boolean isReady() {
+        return ready.isDone() && !ready.isCompletedExceptionally();
+    }
+
+    /**
+     * Wait a short time for the data to load
+     *
+     * @param timeoutMillis The maximum time to wait
+     * @return If the data is loaded
+     */
+    public boolean awaitReady(long timeoutMillis) {
+        if (ready.isDone()) return isReady();
+        try {
+            ready.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ignored) {
+        }
+
+        return false;
     }
 
     public void disable() {
+        if (this.dataStore == null) return;
+
+        // Never save over the data file if it was not loaded
+        try {
+            started.join();
+        } catch (CompletionException e) {
+            logger.error("Data was not loaded, skipping save");
+            return;
+        }
+
         // Stop the watchdog and wait for completion
         BukkitTask watchdog = loanShark.getTask();
         Bukkit.getScheduler().cancelTask(watchdog.getTaskId());
@@ -70,6 +215,9 @@ public class LoanData {
         // Save the data
         logger.info("Saving data before shutdown...");
         this.dataStore.save(this);
+        LoanAnalytics.instance().saveSnapshot(getLoansView());
+        CreditScores.instance().save();
+        this.dataStore.close();
         logger.info("Done!");
     }
 
@@ -79,8 +227,27 @@ public class LoanData {
      * @param loans The new loans
      */
     public void setLoans(Collection<Loan> loans) {
+        setLoans(loans, LoanIndex.build(new ArrayList<>(loans), ForkJoinPool.commonPool()));
+    }
+
+    /**
+     * Set the loans tracked in the Data Source
+     *
+     * @param loans The new loans
+     * @param index A prebuilt index over {@code loans}
+     */
+    public void setLoans(Collection<Loan> loans, LoanIndex index) {
+        if (verifier != null) {
+            Collection<Loan> verified = verifier.checkLoaded(loans);
+            // quarantined loans are dropped from the prebuilt index too
+            if (verified != loans) index = LoanIndex.build(new ArrayList<>(verified), ForkJoinPool.commonPool());
+            loans = verified;
+        }
         this.loans.clear();
+        this.index.clear();
         this.loans.addAll(loans);
+        this.index.merge(index);
+        PlayerSummaryCache.instance().clear();
     }
 
     /**
@@ -90,6 +257,92 @@ public class LoanData {
      */
     public void addLoan(Loan loan) {
         loans.add(loan);
+        index.add(loan);
+        LoanEventBus.instance().post(new LoanEvent(LoanEventType.CREATED, loan));
+    }
+
+    /**
+     * Replace a loan with a copy changed by another server
+     *
+     * @param loanID The {@link UUID} of the loan
+     * @param loan   The changed loan, or null if it was deleted
+     */
+    public void replaceLoan(UUID loanID, @Nullable Loan loan) {
+        Loan existing = index.getLoan(loanID);
+        if (existing != null) {
+            loans.remove(existing);
+            index.remove(existing);
+        }
+        if (loan != null) {
+            loans.add(loan);
+            index.add(loan);
+            LoanEventBus.instance().post(new LoanEvent(LoanEventType.UPDATED, loan));
+        } else if (existing != null) {
+            LoanEventBus.instance().post(new LoanEvent(LoanEventType.REMOVED, existing));
+        }
+    }
+
+    /**
+     * Write a changed loan to storage before money moves
+     *
+     * @param loan The loan
+     * @return False if the loan was changed by another server and the change must be abandoned
+     */
+    public boolean commit(Loan loan) {
+        return dataStore == null || dataStore.commit(loan);
+    }
+
+    /**
+     * Change the due date of a loan
+     *
+     * @param loan   The loan
+     * @param change Changes the due date of the loan
+     */
+    public void reindex(Loan loan, Runnable change) {
+        index.reindex(loan, change);
+    }
+
+    /**
+     * Write all changed loans to storage
+     *
+     * @return If saving was successful
+     */
+    public boolean save() {
+        return dataStore == null || dataStore.save(this);
+    }
+
+    /**
+     * @param loan The loan
+     * @return If this server collects payments on the loan
+     */
+    public boolean isCollector(Loan loan) {
+        return dataStore == null || dataStore.isCollector(loan);
+    }
+
+    /**
+     * Stop tracking loans in the Data Source
+     *
+     * @param loans The loans to remove
+     */
+    public void removeLoans(Collection<Loan> loans) {
+        if (dataStore != null) dataStore.delete(loans);
+        for (Loan loan : loans) {
+            this.loans.remove(loan);
+            index.remove(loan);
+            LoanEventBus.instance().post(new LoanEvent(LoanEventType.REMOVED, loan));
+        }
+    }
+
+    /**
+     * Stop tracking loans, moving them to the archive first if archiving is enabled
+     *
+     * @param loans The loans to remove
+     * @return False if the archive could not be written and the loans are still tracked
+     */
+    public boolean archiveLoans(Collection<Loan> loans) {
+        if (archiver != null && !archiver.append(loans)) return false;
+        removeLoans(loans);
+        return true;
     }
 
     /**
@@ -101,6 +354,27 @@ public class LoanData {
         return loans.stream().toList();
     }
 
+    /**
+     * Get a live view of all loans on the server
+     * <p>Iteration is weakly consistent and does not copy the loan book</p>
+     *
+     * @return An unmodifiable view of the loans
+     */
+    public Collection<Loan> getLoansView() {
+        return Collections.unmodifiableCollection(loans);
+    }
+
+    /**
+     * Get a loan by its ID
+     *
+     * @param loanID The {@link UUID} of the loan
+     * @return The loan, or null if it does not exist
+     */
+    @Nullable
+    public Loan getLoan(UUID loanID) {
+        return index.getLoan(loanID);
+    }
+
     /**
      * Get all loans that have a payment due
      *
@@ -117,7 +391,7 @@ public class LoanData {
      * @return An immutable list of loans
      */
     public List<Loan> getLoansFrom(UUID giver) {
-        return loans.stream().filter(loan -> loan.lender == giver).toList();
+        return index.getLoansFrom(giver).stream().toList();
     }
 
     /**
@@ -127,7 +401,7 @@ public class LoanData {
      * @return An immutable list of loans
      */
     public List<Loan> getLoansFor(UUID borrower) {
-        return loans.stream().filter(loan -> loan.borrower == borrower).toList();
+        return index.getLoansFor(borrower).stream().toList();
     }
 
     /**
@@ -136,7 +410,7 @@ public class LoanData {
      * @return An immutable list of loans
      */
     public List<Loan> getExpiredLoans() {
-        return loans.stream().filter(loan -> Instant.now().isAfter(loan.getDueDate())).toList();
+        return index.getDueBefore(Instant.now());
     }
 
     /**
@@ -147,8 +421,35 @@ public class LoanData {
      * @param offer The new offer
      */
     public void setLoanOffer(@NotNull LoanOffer offer) {
-        loanOffers.removeIf(o -> o.loan.borrower == offer.loan.borrower);
+        loanOffers.removeIf(o -> o.loan.borrower.equals(offer.loan.borrower));
         loanOffers.add(offer);
+        LoanEventBus.instance().post(new LoanEvent(LoanEventType.OFFERED, offer.loan));
+    }
+
+    /**
+     * Remove all offers that have expired
+     *
+     * @param now The current time
+     */
+    public void expireLoanOffers(@NotNull Instant now) {
+        for (LoanOffer offer : loanOffers) {
+            if (now.isAfter(offer.expiry) && loanOffers.remove(offer)) {
+                LoanEventBus.instance().post(new LoanEvent(LoanEventType.OFFER_EXPIRED, offer.loan));
+            }
+        }
+    }
+
+    /**
+     * Remove a players loan offer
+     *
+     * @param player The players UUID
+     * @return The removed {@link LoanOffer}, or null if no offer existed
+     */
+    @Nullable
+    public LoanOffer removeLoanOffer(UUID player) {
+        LoanOffer offer = getLoanOffer(player);
+        if (offer != null) loanOffers.remove(offer);
+        return offer;
     }
 
     /**
@@ -0,0 +1,156 @@
+package net.mcmerdith.loansign.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import net.mcmerdith.loansign.model.Loan;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Streams loans to and from the files written by {@link FlatFileDataStore}
+ * <p>Loans are read and written one at a time, so files larger than the heap can be processed.
+ * Either format is read, a plain JSON array or a {@link BlockSnapshot}.</p>
+ */
+public final class LoanFiles {
+    private static final Gson gson = new Gson();
+
+    private LoanFiles() {
+    }
+
+    /**
+     * @param file A loan file
+     * @return If the file is a compressed block snapshot rather than plain JSON
+     */
+    public static boolean isSnapshot(@NotNull Path file) {
+        return BlockSnapshot.isSnapshot(file);
+    }
+
+    /**
+     * Read every loan in a file
+     *
+     * @param file     The loan file, in either format
+     * @param consumer Called with each loan, in the order they were written
+     * @throws IOException         If the file could not be read
+     * @throws JsonSyntaxException If a loan is malformed
+     */
+    public static void forEach(@NotNull Path file, @NotNull Consumer<Loan> consumer) throws IOException {
+        if (isSnapshot(file)) {
+            BlockSnapshot.forEach(file, consumer);
+            return;
+        }
+
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             JsonReader reader = new JsonReader(in)) {
+            // an empty file has no loans, the same as when the data store loads it
+            if (reader.peek() == JsonToken.END_DOCUMENT) return;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Loan loan = gson.fromJson(reader, Loan.class);
+                if (loan != null) consumer.accept(loan);
+            }
+            reader.endArray();
+        }
+    }
+
+    /**
+     * Open a writer that replaces a loan file once it is committed
+     *
+     * @param file      The loan file
+     * @param compress  If loans are written as a compressed snapshot
+     * @param blockSize The number of loans per compressed block
+     * @param pool      The pool compressed blocks are written on
+     * @return The writer
+     * @throws IOException If the file could not be created
+     */
+    @NotNull
+    public static LoanWriter newWriter(@NotNull Path file, boolean compress, int blockSize, @NotNull ForkJoinPool pool) throws IOException {
+        if (compress) {
+            BlockSnapshot.Writer writer = new BlockSnapshot.Writer(file, blockSize, pool);
+            return new LoanWriter() {
+                @Override
+                public void write(@NotNull Loan loan) throws IOException {
+                    writer.add(loan);
+                }
+
+                @Override
+                public void commit() throws IOException {
+                    writer.commit();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    writer.close();
+                }
+            };
+        }
+        return new JsonLoanWriter(file);
+    }
+
+    /**
+     * Writes loans one at a time
+     * <p>The file is replaced by {@link #commit()}, closing the writer without committing discards it</p>
+     */
+    public interface LoanWriter extends Closeable {
+        /**
+         * Write the next loan
+         *
+         * @param loan The loan
+         */
+        void write(@NotNull Loan loan) throws IOException;
+
+        /**
+         * Finish writing and replace the file
+         */
+        void commit() throws IOException;
+    }
+
+    private static final class JsonLoanWriter implements LoanWriter {
+        private final Path file;
+        private final Path temp;
+        private final JsonWriter writer;
+        private boolean committed;
+
+        JsonLoanWriter(Path file) throws IOException {
+            this.file = file;
+            this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.writer = new JsonWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8));
+            writer.beginArray();
+        }
+
+        @Override
+        public void write(@NotNull Loan loan) throws IOException {
+            gson.toJson(loan, Loan.class, writer);
+        }
+
+        @Override
+        public void commit() throws IOException {
+            writer.endArray();
+            writer.close();
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (committed) return;
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                // the stream is closed even when the document is unfinished
+            }
+            Files.deleteIfExists(temp);
+        }
+    }
+}
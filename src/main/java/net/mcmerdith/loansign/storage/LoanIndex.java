@@ -0,0 +1,181 @@
+package net.mcmerdith.loansign.storage;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Thread-safe lookup tables over a set of {@link Loan}s
+ * <p>Loans are indexed by ID, lender, borrower and due date</p>
+ */
+public class LoanIndex {
+    /**
+     * Lists shorter than this are indexed on the calling thread
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 2048;
+
+    private static final Comparator<Loan> DUE_DATE_ORDER = Comparator
+            .comparing(Loan::getDueDate)
+            .thenComparing(loan -> loan.loanID);
+
+    private final Map<UUID, Loan> byID = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<Loan>> byLender = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<Loan>> byBorrower = new ConcurrentHashMap<>();
+    private final NavigableSet<Loan> byDueDate = new ConcurrentSkipListSet<>(DUE_DATE_ORDER);
+
+    /**
+     * Build an index over a list of loans
+     * <p>Large lists are split and indexed in parallel on {@code pool}</p>
+     *
+     * @param loans The loans to index
+     * @param pool  The pool to index on
+     * @return The index
+     */
+    @NotNull
+    public static LoanIndex build(@NotNull List<Loan> loans, @NotNull ForkJoinPool pool) {
+        return pool.invoke(new IndexTask(loans));
+    }
+
+    /**
+     * Add a loan to the index
+     *
+     * @param loan The loan
+     */
+    public void add(@NotNull Loan loan) {
+        byID.put(loan.loanID, loan);
+        byLender.computeIfAbsent(loan.lender, k -> ConcurrentHashMap.newKeySet()).add(loan);
+        byBorrower.computeIfAbsent(loan.borrower, k -> ConcurrentHashMap.newKeySet()).add(loan);
+        byDueDate.add(loan);
+    }
+
+    /**
+     * Remove a loan from the index
+     * <p>The due date of the loan must not have changed since it was added</p>
+     *
+     * @param loan The loan
+     */
+    public void remove(@NotNull Loan loan) {
+        byID.remove(loan.loanID, loan);
+        Set<Loan> lent = byLender.get(loan.lender);
+        if (lent != null) lent.remove(loan);
+        Set<Loan> borrowed = byBorrower.get(loan.borrower);
+        if (borrowed != null) borrowed.remove(loan);
+        byDueDate.remove(loan);
+    }
+
+    /**
+     * Change the due date of an indexed loan
+     *
+     * @param loan   The loan
+     * @param change Changes the due date of the loan
+     */
+    public void reindex(@NotNull Loan loan, @NotNull Runnable change) {
+        boolean indexed = byDueDate.remove(loan);
+        change.run();
+        if (indexed) byDueDate.add(loan);
+    }
+
+    /**
+     * Add all entries of another index to this index
+     *
+     * @param other The index to merge
+     */
+    public void merge(@NotNull LoanIndex other) {
+        byID.putAll(other.byID);
+        other.byLender.forEach((id, loans) -> byLender.merge(id, loans, LoanIndex::union));
+        other.byBorrower.forEach((id, loans) -> byBorrower.merge(id, loans, LoanIndex::union));
+        byDueDate.addAll(other.byDueDate);
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        byID.clear();
+        byLender.clear();
+        byBorrower.clear();
+        byDueDate.clear();
+    }
+
+    /**
+     * @param loanID The {@link UUID} of the loan
+     * @return The loan, or null if it is not indexed
+     */
+    @Nullable
+    public Loan getLoan(@NotNull UUID loanID) {
+        return byID.get(loanID);
+    }
+
+    /**
+     * @param lender The player
+     * @return A live view of the loans given by the player
+     */
+    @NotNull
+    public Set<Loan> getLoansFrom(@NotNull UUID lender) {
+        return Collections.unmodifiableSet(byLender.getOrDefault(lender, Collections.emptySet()));
+    }
+
+    /**
+     * @param borrower The player
+     * @return A live view of the loans given to the player
+     */
+    @NotNull
+    public Set<Loan> getLoansFor(@NotNull UUID borrower) {
+        return Collections.unmodifiableSet(byBorrower.getOrDefault(borrower, Collections.emptySet()));
+    }
+
+    /**
+     * @param instant The cutoff
+     * @return All loans with a due date before the cutoff, earliest first
+     */
+    @NotNull
+    public List<Loan> getDueBefore(@NotNull Instant instant) {
+        return byDueDate.stream().takeWhile(loan -> loan.getDueDate().isBefore(instant)).toList();
+    }
+
+    private static Set<Loan> union(Set<Loan> a, Set<Loan> b) {
+        a.addAll(b);
+        return a;
+    }
+
+    /**
+     * Indexes a list of loans, splitting it in half until it is small enough to index directly
+     */
+    private static class IndexTask extends RecursiveTask<LoanIndex> {
+        private final List<Loan> loans;
+
+        IndexTask(List<Loan> loans) {
+            this.loans = loans;
+        }
+
+        @Override
+        protected LoanIndex compute() {
+            if (loans.size() <= SEQUENTIAL_THRESHOLD) {
+                LoanIndex index = new LoanIndex();
+                loans.forEach(index::add);
+                return index;
+            }
+
+            int middle = loans.size() / 2;
+            IndexTask left = new IndexTask(loans.subList(0, middle));
+            IndexTask right = new IndexTask(loans.subList(middle, loans.size()));
+            left.fork();
+            LoanIndex index = right.compute();
+            index.merge(left.join());
+            return index;
+        }
+    }
+}
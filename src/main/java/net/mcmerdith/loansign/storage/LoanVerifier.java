@@ -0,0 +1,249 @@
+package net.mcmerdith.loansign.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.bukkit.configuration.ConfigurationSection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+
+/**
+ * Checks the loan book for corrupt or impossible loans
+ * <p>Loans are checked in parallel for a matching checksum, the invariants of {@link Loan#findProblem()}
+ * and duplicate IDs. Bad loans are moved to a quarantine file instead of failing the whole load.</p>
+ */
+public class LoanVerifier {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(LoanVerifier.class);
+
+    /**
+     * Ranges no larger than this are checked on a single thread
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 4096;
+
+    private final Gson gson = new Gson();
+
+    private final File quarantine;
+
+    private final boolean verifyOnLoad;
+
+    /**
+     * @param quarantine   The file bad loans are appended to
+     * @param verifyOnLoad If loans are verified when they are loaded
+     */
+    public LoanVerifier(@NotNull File quarantine, boolean verifyOnLoad) {
+        this.quarantine = quarantine;
+        this.verifyOnLoad = verifyOnLoad;
+    }
+
+    /**
+     * Create a verifier from the config
+     *
+     * @param quarantine The file bad loans are appended to
+     * @param config     The {@code verification} section of the config, may be null
+     * @return The verifier
+     */
+    @NotNull
+    public static LoanVerifier fromConfig(@NotNull File quarantine, @Nullable ConfigurationSection config) {
+        return new LoanVerifier(quarantine, config == null || config.getBoolean("on-load", true));
+    }
+
+    /**
+     * A loan that failed verification
+     *
+     * @param loan   The loan
+     * @param reason Why the loan is bad
+     */
+    public record Problem(@NotNull Loan loan, @NotNull String reason) {
+    }
+
+    /**
+     * The outcome of a verification pass
+     *
+     * @param checked  The number of loans checked
+     * @param problems The loans that failed
+     * @param elapsed  How long verification took
+     */
+    public record Report(int checked, @NotNull List<Problem> problems, @NotNull Duration elapsed) {
+        /**
+         * @return The loans that failed
+         */
+        @NotNull
+        public List<Loan> getBadLoans() {
+            return problems.stream().map(Problem::loan).toList();
+        }
+    }
+
+    /**
+     * Record the checksum of loans before they are saved
+     *
+     * @param loans The loans
+     */
+    public static void seal(@NotNull Collection<Loan> loans) {
+        for (Loan loan : loans) {
+            synchronized (loan) {
+                loan.seal();
+            }
+        }
+    }
+
+    /**
+     * Check one loan for impossible values and a checksum that does not match
+     * <p>Duplicate IDs are only found by {@link #verify(List, ForkJoinPool)}</p>
+     *
+     * @param loan The loan
+     * @return Why the loan is bad, or null if it is valid
+     */
+    @Nullable
+    public static String check(@NotNull Loan loan) {
+        synchronized (loan) {
+            String reason = loan.findProblem();
+            if (reason == null && !loan.isDirty() && loan.getChecksum() != 0 && loan.getChecksum() != loan.computeChecksum()) {
+                reason = "checksum mismatch";
+            }
+            return reason;
+        }
+    }
+
+    /**
+     * Verify loans in parallel
+     * <p>Checksums are only compared for loans that have not changed since they were loaded.
+     * Of several loans with the same ID, the first valid one is kept.</p>
+     *
+     * @param loans The loans
+     * @param pool  The pool to verify on
+     * @return The report
+     */
+    @NotNull
+    public static Report verify(@NotNull List<Loan> loans, @NotNull ForkJoinPool pool) {
+        long start = System.nanoTime();
+        Map<UUID, Integer> first = new ConcurrentHashMap<>();
+
+        List<Problem> problems = pool.invoke(new RangeTask(0, loans.size(), i -> {
+            Loan loan = loans.get(i);
+            if (loan == null) return null;
+            String reason = check(loan);
+            if (reason != null) return new Problem(loan, reason);
+            first.merge(loan.loanID, i, Math::min);
+            return null;
+        }));
+
+        Set<Loan> bad = Collections.newSetFromMap(new IdentityHashMap<>());
+        problems.forEach(problem -> bad.add(problem.loan()));
+        problems.addAll(pool.invoke(new RangeTask(0, loans.size(), i -> {
+            Loan loan = loans.get(i);
+            if (loan == null || bad.contains(loan)) return null;
+            return first.get(loan.loanID) == i ? null : new Problem(loan, "duplicate loan ID");
+        })));
+
+        return new Report(loans.size(), problems, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Verify freshly loaded loans, quarantining bad ones
+     *
+     * @param loans The loaded loans
+     * @return {@code loans} if every loan is valid or verification is disabled, otherwise the valid loans
+     */
+    @NotNull
+    public Collection<Loan> checkLoaded(@NotNull Collection<Loan> loans) {
+        if (!verifyOnLoad) return loans;
+
+        Report report = verify(new ArrayList<>(loans), ForkJoinPool.commonPool());
+        logger.info("Verified " + report.checked() + " loans in " + report.elapsed().toMillis() + "ms");
+        if (report.problems().isEmpty()) return loans;
+
+        quarantine(report.problems());
+        Set<Loan> bad = Collections.newSetFromMap(new IdentityHashMap<>());
+        bad.addAll(report.getBadLoans());
+        return loans.stream().filter(loan -> !bad.contains(loan)).toList();
+    }
+
+    /**
+     * Append bad loans to the quarantine file
+     *
+     * @param problems The bad loans
+     * @return If the loans were written
+     */
+    public synchronized boolean quarantine(@NotNull List<Problem> problems) {
+        if (problems.isEmpty()) return true;
+
+        String now = Instant.now().toString();
+        try (BufferedWriter writer = Files.newBufferedWriter(quarantine.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE)) {
+            for (Problem problem : problems) {
+                JsonObject line = new JsonObject();
+                line.addProperty("reason", problem.reason());
+                line.addProperty("quarantined", now);
+                synchronized (problem.loan()) {
+                    line.add("loan", gson.toJsonTree(problem.loan()));
+                }
+                writer.write(gson.toJson(line));
+                writer.newLine();
+                logger.error("Quarantined loan " + problem.loan().loanID + ": " + problem.reason());
+            }
+            return true;
+        } catch (IOException e) {
+            logger.exception(e, "Failed to write " + quarantine.getName());
+        }
+
+        return false;
+    }
+
+    /**
+     * Runs a check on each index of a range, splitting large ranges
+     */
+    private static class RangeTask extends RecursiveTask<List<Problem>> {
+        private final int from;
+        private final int to;
+        private final IntFunction<Problem> check;
+
+        RangeTask(int from, int to, IntFunction<Problem> check) {
+            this.from = from;
+            this.to = to;
+            this.check = check;
+        }
+
+        @Override
+        protected List<Problem> compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                List<Problem> problems = new ArrayList<>();
+                for (int i = from; i < to; ++i) {
+                    Problem problem = check.apply(i);
+                    if (problem != null) problems.add(problem);
+                }
+                return problems;
+            }
+
+            int middle = (from + to) >>> 1;
+            RangeTask left = new RangeTask(from, middle, check);
+            RangeTask right = new RangeTask(middle, to, check);
+            left.fork();
+            List<Problem> later = right.compute();
+            List<Problem> problems = left.join();
+            problems.addAll(later);
+            return problems;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package net.mcmerdith.loansign.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.io.IoExecutor;
+import net.mcmerdith.loansign.io.TaskScope;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stores loans split across a fixed number of shard files
+ * <p>Shards are loaded and indexed in parallel on a {@link ForkJoinPool}</p>
+ */
+public class ShardedFileDataStore implements DataStore {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(ShardedFileDataStore.class);
+
+    private static final Pattern SHARD_NAME = Pattern.compile("shard-(\\d+)\\.json");
+
+    private final Gson gson = new Gson();
+
+    /**
+     * The folder the shard folder is in
+     */
+    private final File folder;
+
+    /**
+     * The number of shard files loans are split across
+     */
+    private final int shards;
+
+    /**
+     * The number of threads used for loading, 0 to use the common pool
+     */
+    private final int parallelism;
+
+    /**
+     * Create a new sharded data store in the plugin folder
+     *
+     * @param shards      The number of shard files loans are split across
+     * @param parallelism The number of threads used for loading, 0 to use the common pool
+     */
+    public ShardedFileDataStore(int shards, int parallelism) {
+        this(LoanSignMain.instance.getDataFolder(), shards, parallelism);
+    }
+
+    /**
+     * Create a new sharded data store
+     *
+     * @param folder      The folder the shard folder is in
+     * @param shards      The number of shard files loans are split across
+     * @param parallelism The number of threads used for loading, 0 to use the common pool
+     */
+    public ShardedFileDataStore(@NotNull File folder, int shards, int parallelism) {
+        this.folder = folder;
+        this.shards = Math.max(1, shards);
+        this.parallelism = Math.max(0, parallelism);
+    }
+
+    private File getShardFolder() {
+        return new File(folder, "loans");
+    }
+
+    private File getShardFile(int shard) {
+        return new File(getShardFolder(), "shard-" + shard + ".json");
+    }
+
+    private int shardOf(Loan loan) {
+        return Math.floorMod(loan.loanID.hashCode(), shards);
+    }
+
+    @Override
+    public boolean save(LoanData data) {
+        List<List<Loan>> buckets = new ArrayList<>(shards);
+        for (int i = 0; i < shards; ++i) buckets.add(new ArrayList<>());
+        List<Loan> loans = data.getAllLoans();
+        LoanVerifier.seal(loans);
+        loans.forEach(loan -> buckets.get(shardOf(loan)).add(loan));
+
+        File folder = getShardFolder();
+        if (!folder.exists() && !folder.mkdirs()) {
+            logger.error("Could not create shard folder!");
+            return false;
+        }
+
+        // write shards in parallel, a failed shard cancels the rest
+        try (TaskScope scope = IoExecutor.instance().scope()) {
+            for (int i = 0; i < shards; ++i) {
+                File file = getShardFile(i);
+                List<Loan> bucket = buckets.get(i);
+                scope.fork(() -> writeShard(file, bucket));
+            }
+            scope.join();
+
+            // remove shards left over from a larger shard count
+            for (File file : listShardFiles()) {
+                Matcher matcher = SHARD_NAME.matcher(file.getName());
+                if (matcher.matches() && Integer.parseInt(matcher.group(1)) >= shards) {
+                    Files.delete(file.toPath());
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            logger.exception(e, "Failed to write data");
+        } catch (ExecutionException e) {
+            logger.exception(e.getCause(), "Failed to write data");
+        } catch (TimeoutException e) {
+            logger.error("Timed out writing data");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+
+    /**
+     * Replace a shard file, so a failed write leaves the previous shard in place
+     */
+    private Void writeShard(File file, List<Loan> loans) throws IOException {
+        Path temp = new File(file.getParentFile(), file.getName() + ".tmp").toPath();
+        try {
+            Files.writeString(temp, gson.toJson(loans), StandardCharsets.UTF_8);
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean load(LoanData data) {
+        List<File> files = listShardFiles();
+        if (files.isEmpty()) {
+            // migrate from a single data file if one exists
+            if (new FlatFileDataStore(folder, false, 1000).load(data)) {
+                logger.info("Migrated loans.json to " + shards + " shards");
+            }
+            return true;
+        }
+
+        ForkJoinPool pool = parallelism == 0 ? ForkJoinPool.commonPool() : new ForkJoinPool(parallelism);
+        try {
+            Chunk chunk = pool.invoke(new ShardLoadTask(files));
+            data.setLoans(chunk.loans, chunk.index);
+            return true;
+        } catch (UncheckedIOException e) {
+            logger.exception(e.getCause(), "Failed to read data");
+        } catch (JsonSyntaxException e) {
+            logger.exception(e, "Syntax error in data file");
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) pool.shutdown();
+        }
+
+        return false;
+    }
+
+    private List<File> listShardFiles() {
+        File[] files = getShardFolder().listFiles((dir, name) -> SHARD_NAME.matcher(name).matches());
+        return files == null ? List.of() : List.of(files);
+    }
+
+    /**
+     * The loans and partial index of one or more shards
+     */
+    private static class Chunk {
+        final List<Loan> loans;
+        final LoanIndex index;
+
+        Chunk(List<Loan> loans, LoanIndex index) {
+            this.loans = loans;
+            this.index = index;
+        }
+
+        Chunk merge(Chunk other) {
+            loans.addAll(other.loans);
+            index.merge(other.index);
+            return this;
+        }
+    }
+
+    /**
+     * Loads a range of shard files, splitting until each task loads a single shard
+     */
+    private class ShardLoadTask extends RecursiveTask<Chunk> {
+        private final List<File> files;
+
+        ShardLoadTask(List<File> files) {
+            this.files = files;
+        }
+
+        @Override
+        protected Chunk compute() {
+            if (files.size() == 1) return loadShard(files.get(0));
+
+            int middle = files.size() / 2;
+            ShardLoadTask left = new ShardLoadTask(files.subList(0, middle));
+            ShardLoadTask right = new ShardLoadTask(files.subList(middle, files.size()));
+            left.fork();
+            return right.compute().merge(left.join());
+        }
+
+        private Chunk loadShard(File file) {
+            List<Loan> loans;
+            try {
+                loans = gson.fromJson(Files.readString(file.toPath(), StandardCharsets.UTF_8), new TypeToken<List<Loan>>() {
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (loans == null) loans = new ArrayList<>();
+
+            LoanIndex index = new LoanIndex();
+            for (Loan loan : loans) {
+                loan.recalculate();
+                index.add(loan);
+            }
+            return new Chunk(new ArrayList<>(loans), index);
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package net.mcmerdith.loansign.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.io.IoExecutor;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.mcmpluginlib.McmPluginLogger;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stores loans in a folder shared by several servers
+ * <p>Each loan is its own file, written with compare-and-set on {@link Loan#getVersion()} under a lock file.
+ * Every write is appended to {@code changes.log}, which servers follow to refresh only the loans that changed.
+ * The log is rotated to {@code changes.log.old} once it grows past a limit, servers that fall further behind
+ * than that rescan the loan folder. Collection is split between servers by leasing shards of loans with
+ * a {@link LeaseTable}.</p>
+ */
+public class SharedDataStore implements DataStore {
+    private static final McmPluginLogger logger = McmPluginLogger.classInstance(SharedDataStore.class);
+
+    private static final Duration LOCK_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * The version recorded in the change log when a loan is deleted
+     */
+    private static final long DELETED = -1;
+
+    /**
+     * The size {@code changes.log} may grow to before it is rotated
+     */
+    private static final long MAX_FEED_BYTES = 1024 * 1024;
+
+    /**
+     * The most of the change log read into memory at once
+     */
+    private static final int FEED_CHUNK_BYTES = 64 * 1024;
+
+    /**
+     * Lines starting with this hold the generation of a change log
+     */
+    private static final String GENERATION_PREFIX = "#";
+
+    /**
+     * Locks ordering the writes of this server, striped by loan
+     * <p>Never held while waiting for the lock of a loan</p>
+     */
+    private final Object[] writeLocks = new Object[64];
+
+    private final Gson gson = new Gson();
+
+    private final File folder;
+    private final String node;
+    private final int shards;
+    private final Duration syncInterval;
+    private final LeaseTable leases;
+    private final long maxFeedBytes;
+
+    /**
+     * The generation of the change log this server is reading, incremented each time it is rotated
+     */
+    private long feedGeneration = 0;
+
+    /**
+     * How far into the change log this server has read
+     */
+    private long feedOffset = 0;
+
+    private LoanData data;
+    private BukkitTask syncTask;
+
+    /**
+     * Set while a sync is running so slow syncs do not overlap
+     */
+    private final AtomicBoolean syncing = new AtomicBoolean();
+
+    /**
+     * @param folder       The shared folder
+     * @param node         A name unique to this server
+     * @param shards       The number of shards collection is split into
+     * @param syncInterval How often changes are written and read
+     * @param leaseTime    How long a shard lease lasts without renewal
+     */
+    public SharedDataStore(@NotNull File folder, @NotNull String node, int shards, @NotNull Duration syncInterval, @NotNull Duration leaseTime) {
+        this(folder, node, shards, syncInterval, leaseTime, MAX_FEED_BYTES);
+    }
+
+    SharedDataStore(@NotNull File folder, @NotNull String node, int shards, @NotNull Duration syncInterval, @NotNull Duration leaseTime, long maxFeedBytes) {
+        this.folder = folder;
+        this.node = node;
+        this.shards = Math.max(1, shards);
+        this.syncInterval = syncInterval;
+        this.leases = new LeaseTable(folder, node, this.shards, leaseTime);
+        this.maxFeedBytes = maxFeedBytes;
+        for (int i = 0; i < writeLocks.length; ++i) writeLocks[i] = new Object();
+    }
+
+    private File getLoanFolder() {
+        return new File(folder, "loans");
+    }
+
+    private File getLoanFile(UUID loanID) {
+        return new File(getLoanFolder(), loanID + ".json");
+    }
+
+    private Path getLockFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".lock").toPath();
+    }
+
+    private File getFeedFile() {
+        return new File(folder, "changes.log");
+    }
+
+    private File getRotatedFeedFile() {
+        return new File(folder, "changes.log.old");
+    }
+
+    private Object writeLockOf(UUID loanID) {
+        return writeLocks[Math.floorMod(loanID.hashCode(), writeLocks.length)];
+    }
+
+    private int shardOf(Loan loan) {
+        return Math.floorMod(loan.loanID.hashCode(), shards);
+    }
+
+    @Override
+    public boolean load(LoanData data) {
+        File loanFolder = getLoanFolder();
+        if (!loanFolder.exists() && !loanFolder.mkdirs()) {
+            logger.error("Could not create shared loan folder!");
+            return false;
+        }
+
+        // changes made while reading are replayed from the log, replaying is harmless
+        try (RandomAccessFile feed = new RandomAccessFile(getFeedFile(), "r")) {
+            feedGeneration = readGeneration(feed);
+            feedOffset = feed.length();
+        } catch (FileNotFoundException e) {
+            feedGeneration = 0;
+            feedOffset = 0;
+        } catch (IOException e) {
+            logger.exception(e, "Failed to read change log");
+            return false;
+        }
+
+        List<Loan> loans = new ArrayList<>();
+        File[] files = loanFolder.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files != null) {
+            for (File file : files) {
+                Loan loan = readLoan(file);
+                if (loan != null) loans.add(loan);
+            }
+        }
+        data.setLoans(loans);
+        return true;
+    }
+
+    @Override
+    public boolean save(LoanData data) {
+        boolean saved = true;
+        for (Loan loan : data.getLoansView()) {
+            if (loan.isDirty() && !commit(loan)) saved = false;
+        }
+        return saved;
+    }
+
+    @Override
+    public void open(LoanData data) {
+        this.data = data;
+        leases.renew();
+        long ticks = Math.max(1, syncInterval.toMillis() / 50);
+        syncTask = Bukkit.getScheduler().runTaskTimerAsynchronously(LoanSignMain.instance,
+                () -> IoExecutor.instance().execute(this::sync), ticks, ticks);
+    }
+
+    @Override
+    public void close() {
+        if (syncTask != null) syncTask.cancel();
+        leases.releaseAll();
+    }
+
+    @Override
+    public boolean commit(Loan loan) {
+        // copy the loan while holding its lock, the file is written without it
+        JsonObject json;
+        long changes;
+        synchronized (loan) {
+            loan.seal();
+            json = gson.toJsonTree(loan).getAsJsonObject();
+            changes = loan.getChanges();
+        }
+
+        synchronized (writeLockOf(loan.loanID)) {
+            // a later copy was already written by another thread
+            if (loan.isWritten(changes)) return true;
+
+            File file = getLoanFile(loan.loanID);
+            try (SharedLock ignored = SharedLock.acquire(getLockFile(file), LOCK_TIMEOUT)) {
+                long version = loan.getVersion();
+                long stored = readVersion(file);
+                if (stored != version) {
+                    logger.error("Loan " + loan.loanID + " was changed by another server, discarding local changes");
+                    return false;
+                }
+
+                json.addProperty("version", version + 1);
+                Path temp = new File(file.getParentFile(), file.getName() + ".tmp").toPath();
+                Files.writeString(temp, gson.toJson(json), StandardCharsets.UTF_8);
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                loan.markWritten(version + 1, changes);
+                appendChange(loan.loanID, version + 1);
+                return true;
+            } catch (IOException | TimeoutException e) {
+                logger.exception(e, "Failed to write loan " + loan.loanID);
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void delete(Collection<Loan> loans) {
+        for (Loan loan : loans) {
+            File file = getLoanFile(loan.loanID);
+            try (SharedLock ignored = SharedLock.acquire(getLockFile(file), LOCK_TIMEOUT)) {
+                if (Files.deleteIfExists(file.toPath())) appendChange(loan.loanID, DELETED);
+            } catch (IOException | TimeoutException e) {
+                logger.exception(e, "Failed to delete loan " + loan.loanID);
+            }
+        }
+    }
+
+    @Override
+    public boolean isCollector(Loan loan) {
+        return leases.holds(shardOf(loan));
+    }
+
+    /**
+     * Heartbeat and renew shard leases
+     */
+    void renewLeases() {
+        leases.renew();
+    }
+
+    /**
+     * Write local changes, read changes from other servers and renew leases
+     */
+    private void sync() {
+        if (!syncing.compareAndSet(false, true)) return;
+        try {
+            save(data);
+            readChanges(data);
+            leases.renew();
+        } finally {
+            syncing.set(false);
+        }
+    }
+
+    /**
+     * Refresh loans changed by other servers since the last call
+     *
+     * @param data The loan data to update
+     * @return The number of loans refreshed
+     */
+    int readChanges(@NotNull LoanData data) {
+        try {
+            int refreshed = 0;
+            try (RandomAccessFile feed = new RandomAccessFile(getFeedFile(), "r")) {
+                long generation = readGeneration(feed);
+                if (generation != feedGeneration) {
+                    // finish the rotated log, unless it was rotated again since
+                    int rotated = generation == feedGeneration + 1 ? finishRotated(data) : -1;
+                    if (rotated < 0) {
+                        logger.info("Fell behind the change log, rescanning all loans");
+                        rotated = rescan(data);
+                    }
+                    refreshed += rotated;
+                    feedGeneration = generation;
+                    feedOffset = 0;
+                }
+                refreshed += readFeed(feed, data);
+            }
+            return refreshed;
+        } catch (FileNotFoundException e) {
+            return 0;
+        } catch (IOException e) {
+            logger.exception(e, "Failed to read change log");
+            return 0;
+        }
+    }
+
+    /**
+     * Read the rest of the rotated change log
+     *
+     * @return The number of loans refreshed, or -1 if the rotated log is not the one this server was reading
+     */
+    private int finishRotated(@NotNull LoanData data) throws IOException {
+        try (RandomAccessFile feed = new RandomAccessFile(getRotatedFeedFile(), "r")) {
+            if (readGeneration(feed) != feedGeneration) return -1;
+            return readFeed(feed, data);
+        } catch (FileNotFoundException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Apply the entries of a change log after {@link SharedDataStore#feedOffset}, a chunk at a time
+     */
+    private int readFeed(@NotNull RandomAccessFile feed, @NotNull LoanData data) throws IOException {
+        int refreshed = 0;
+        byte[] chunk = new byte[FEED_CHUNK_BYTES];
+        long length = feed.length();
+        while (feedOffset < length) {
+            int size = (int) Math.min(chunk.length, length - feedOffset);
+            feed.seek(feedOffset);
+            feed.readFully(chunk, 0, size);
+
+            // leave a partially written line for the next call
+            int end = size;
+            while (end > 0 && chunk[end - 1] != '\n') --end;
+            if (end == 0) {
+                if (size < chunk.length) break;
+                logger.error("Skipping an oversized change log entry");
+                feedOffset += size;
+                continue;
+            }
+
+            feedOffset += end;
+            for (String line : new String(chunk, 0, end, StandardCharsets.UTF_8).split("\n")) {
+                if (!line.isBlank() && !line.startsWith(GENERATION_PREFIX)) refreshed += applyChange(line, data);
+            }
+        }
+        return refreshed;
+    }
+
+    /**
+     * Apply one change log entry
+     *
+     * @return 1 if a loan was refreshed, otherwise 0
+     */
+    private int applyChange(@NotNull String line, @NotNull LoanData data) {
+        String[] parts = line.split(" ");
+        if (parts.length != 3 || parts[2].equals(node)) return 0;
+
+        UUID loanID;
+        long version;
+        try {
+            loanID = UUID.fromString(parts[0]);
+            version = Long.parseLong(parts[1]);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid change log entry: " + line);
+            return 0;
+        }
+
+        if (version == DELETED) {
+            if (data.getLoan(loanID) == null) return 0;
+            data.replaceLoan(loanID, null);
+            return 1;
+        }
+
+        Loan local = data.getLoan(loanID);
+        if (local != null && local.getVersion() >= version) return 0;
+        return refresh(data, local, readLoan(getLoanFile(loanID))) ? 1 : 0;
+    }
+
+    /**
+     * Refresh every loan with a newer stored version, for servers that missed part of the change log
+     *
+     * @return The number of loans refreshed
+     */
+    private int rescan(@NotNull LoanData data) {
+        File[] files = getLoanFolder().listFiles((dir, name) -> name.endsWith(".json"));
+        Set<UUID> stored = new HashSet<>();
+        int refreshed = 0;
+        if (files != null) {
+            for (File file : files) {
+                Loan remote = readLoan(file);
+                if (remote == null) continue;
+                stored.add(remote.loanID);
+                Loan local = data.getLoan(remote.loanID);
+                if (local != null && local.getVersion() >= remote.getVersion()) continue;
+                if (refresh(data, local, remote)) ++refreshed;
+            }
+        }
+
+        // written loans without a file were deleted by another server
+        for (Loan local : data.getAllLoans()) {
+            if (local.getVersion() > 0 && !stored.contains(local.loanID)) {
+                data.replaceLoan(local.loanID, null);
+                ++refreshed;
+            }
+        }
+        return refreshed;
+    }
+
+    private boolean refresh(@NotNull LoanData data, @Nullable Loan local, @Nullable Loan remote) {
+        if (remote == null) return false;
+        if (local != null && local.isDirty()) {
+            logger.error("Loan " + remote.loanID + " was changed by another server, discarding local changes");
+        }
+        data.replaceLoan(remote.loanID, remote);
+        return true;
+    }
+
+    private void appendChange(UUID loanID, long version) throws IOException, TimeoutException {
+        File feed = getFeedFile();
+        try (SharedLock ignored = SharedLock.acquire(getLockFile(feed), LOCK_TIMEOUT)) {
+            String entry = loanID + " " + version + " " + node + "\n";
+            if (feed.length() >= maxFeedBytes) {
+                // servers still reading the old log finish it from changes.log.old
+                long generation;
+                try (RandomAccessFile old = new RandomAccessFile(feed, "r")) {
+                    generation = readGeneration(old) + 1;
+                }
+                Files.move(feed.toPath(), getRotatedFeedFile().toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                entry = GENERATION_PREFIX + generation + "\n" + entry;
+            }
+            Files.writeString(feed.toPath(), entry,
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND,
+                    StandardOpenOption.WRITE);
+        }
+    }
+
+    /**
+     * @return The generation recorded on the first line of a change log, 0 if it has none
+     */
+    private static long readGeneration(@NotNull RandomAccessFile feed) throws IOException {
+        feed.seek(0);
+        byte[] header = new byte[32];
+        int read = feed.read(header);
+        if (read <= 0 || header[0] != GENERATION_PREFIX.charAt(0)) return 0;
+
+        int end = 1;
+        while (end < read && header[end] != '\n') ++end;
+        try {
+            return Long.parseLong(new String(header, 1, end - 1, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt change log header", e);
+        }
+    }
+
+    /**
+     * @return The stored version of a loan, 0 if it has not been written
+     */
+    private long readVersion(File file) throws IOException {
+        if (!file.exists()) return 0;
+        try {
+            JsonElement version = JsonParser.parseString(Files.readString(file.toPath(), StandardCharsets.UTF_8))
+                    .getAsJsonObject().get("version");
+            return version == null ? 0 : version.getAsLong();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Corrupt loan file " + file, e);
+        }
+    }
+
+    @Nullable
+    private Loan readLoan(File file) {
+        try {
+            Loan loan = gson.fromJson(Files.readString(file.toPath(), StandardCharsets.UTF_8), Loan.class);
+            if (loan != null) loan.recalculate();
+            return loan;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.exception(e, "Failed to read " + file.getName());
+        } catch (JsonParseException e) {
+            logger.exception(e, "Syntax error in " + file.getName());
+        }
+        return null;
+    }
+}
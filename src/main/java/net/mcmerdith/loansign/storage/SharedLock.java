@@ -0,0 +1,112 @@
+package net.mcmerdith.loansign.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A lock shared between servers, held by creating a lock file
+ * <p>Lock files older than {@link SharedLock#STALE_AFTER} are assumed to be left behind by a crashed server.
+ * A stale lock is renamed before it is removed, so only one of the servers waiting for it can break it.</p>
+ */
+final class SharedLock implements AutoCloseable {
+    private static final Duration STALE_AFTER = Duration.ofSeconds(30);
+
+    private final Path path;
+
+    /**
+     * Written to the lock file to tell it apart from a lock taken after this one was broken
+     */
+    private final String token;
+
+    private SharedLock(Path path, String token) {
+        this.path = path;
+        this.token = token;
+    }
+
+    /**
+     * Wait for a lock
+     *
+     * @param path    The lock file
+     * @param timeout The maximum time to wait
+     * @return The held lock
+     * @throws TimeoutException If the lock was not available in time
+     */
+    @NotNull
+    static SharedLock acquire(@NotNull Path path, @NotNull Duration timeout) throws IOException, TimeoutException {
+        Instant deadline = Instant.now().plus(timeout);
+        while (true) {
+            try {
+                Files.createFile(path);
+                String token = UUID.randomUUID().toString();
+                Files.writeString(path, token, StandardCharsets.UTF_8);
+                return new SharedLock(path, token);
+            } catch (FileAlreadyExistsException e) {
+                if (breakIfStale(path)) continue;
+            }
+
+            if (Instant.now().isAfter(deadline)) throw new TimeoutException("Timed out waiting for " + path);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for " + path);
+            }
+        }
+    }
+
+    /**
+     * Remove a lock file left behind by a crashed server
+     *
+     * @return If the lock is gone and can be tried again
+     */
+    private static boolean breakIfStale(Path path) throws IOException {
+        try {
+            if (!isStale(path)) return false;
+
+            // only one server can move the stale lock away
+            Path broken = path.resolveSibling(path.getFileName() + "." + UUID.randomUUID() + ".stale");
+            Files.move(path, broken, StandardCopyOption.ATOMIC_MOVE);
+            if (!isStale(broken)) {
+                // the stale lock was released and taken again before it was moved, give it back
+                try {
+                    Files.createLink(path, broken);
+                } catch (FileAlreadyExistsException taken) {
+                    // the holder lost its lock to a newer one, which is held now
+                }
+                Files.deleteIfExists(broken);
+                return false;
+            }
+            Files.deleteIfExists(broken);
+            return true;
+        } catch (NoSuchFileException released) {
+            return true;
+        }
+    }
+
+    private static boolean isStale(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).toInstant().plus(STALE_AFTER).isBefore(Instant.now());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            // never remove a lock taken by another server after this one was broken
+            if (!token.equals(Files.readString(path, StandardCharsets.UTF_8))) return;
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,132 @@
+package net.mcmerdith.loansign.analytics;
+
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventType;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ActivityIndexTest {
+    @Test
+    public void testRanges() {
+        ActivityIndex index = new ActivityIndex();
+        UUID loanID = UUID.randomUUID();
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+
+        // one payment every 10 minutes for two days, and a fee every hour
+        for (int minute = 0; minute < 48 * 60; minute += 10) {
+            Instant date = start.plus(Duration.ofMinutes(minute));
+            index.add(new ActivityEntry(ActivityType.PAYMENT, loanID, date, 100));
+            if (minute % 60 == 0) index.add(new ActivityEntry(ActivityType.FEE, loanID, date, 5));
+        }
+
+        ActivitySummary day = index.summarize(start, start.plus(Duration.ofDays(1)));
+        assertEquals(24 * 6, day.getPayments(), "A day should have 144 payments");
+        assertEquals(24, day.getFees(), "A day should have 24 fees");
+        assertEquals(0, day.getFeeIncome().compareTo(new BigDecimal("0.0000012")), "Fee income should be totalled");
+
+        // ranges that start and end inside a bucket only count entries in the range
+        ActivitySummary partial = index.summarize(start.plus(Duration.ofMinutes(25)), start.plus(Duration.ofMinutes(95)));
+        assertEquals(7, partial.getPayments(), "Only payments in the range should count");
+        assertEquals(1, partial.getFees(), "Only fees in the range should count");
+
+        assertEquals(24, index.getEntries(start, start.plus(Duration.ofDays(1)), ActivityType.FEE).size(), "Entries should be filtered by type");
+
+        // old buckets are dropped
+        index.prune(start.plus(Duration.ofDays(92)));
+        assertEquals(0, index.summarize(start, start.plus(Duration.ofDays(2))).getPayments(), "Pruned entries should be gone");
+    }
+
+    @Test
+    public void testDayRollups() {
+        ActivityIndex index = new ActivityIndex();
+        UUID loanID = UUID.randomUUID();
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+
+        // one payment every 45 minutes for ten days
+        for (int minute = 0; minute < 10 * 24 * 60; minute += 45) {
+            index.add(new ActivityEntry(ActivityType.PAYMENT, loanID, start.plus(Duration.ofMinutes(minute)), 100));
+        }
+
+        // ranges spanning whole days should match counting each entry
+        Instant from = start.plus(Duration.ofMinutes(30 * 60 + 10));
+        Instant to = start.plus(Duration.ofMinutes(8 * 24 * 60 + 95));
+        ActivitySummary summary = index.summarize(from, to);
+        assertEquals(index.getEntries(from, to, null).size(), summary.getPayments(), "Day totals should match the hourly entries");
+        assertEquals(10 * 24 * 60 / 45, index.summarize(start, start.plus(Duration.ofDays(10))).getPayments(), "Whole days should be counted once");
+
+        // pruning drops whole days from both
+        index.prune(start.plus(Duration.ofDays(93)).plus(Duration.ofHours(12)));
+        Instant kept = start.plus(Duration.ofDays(3));
+        assertEquals(index.getEntries(kept, to, null).size(), index.summarize(kept, to).getPayments(), "Pruning should keep the day totals in step");
+        assertEquals(0, index.summarize(start, kept).getPayments(), "Pruned days should be gone");
+    }
+
+    @Test
+    public void testDefaultDate() {
+        Loan loan = new Loan(
+                UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                BigDecimal.valueOf(100), BigDecimal.valueOf(0.05),
+                Instant.now().minus(Duration.ofDays(10)), 0, 7, ChronoUnit.DAYS,
+                new ArrayList<>(), new ArrayList<>()
+        );
+        loan.markDefaulted(Instant.now());
+
+        ActivityIndex live = new ActivityIndex();
+        live.record(new LoanEvent(LoanEventType.DEFAULTED, loan));
+        ActivityIndex rebuilt = new ActivityIndex();
+        rebuilt.rebuild(List.of(loan));
+
+        Instant from = Instant.now().minus(Duration.ofDays(30));
+        List<ActivityEntry> liveDefaults = live.getEntries(from, Instant.now(), ActivityType.DEFAULT);
+        List<ActivityEntry> rebuiltDefaults = rebuilt.getEntries(from, Instant.now(), ActivityType.DEFAULT);
+        assertEquals(1, liveDefaults.size(), "The default should be indexed");
+        assertEquals(rebuiltDefaults, liveDefaults, "A default should have the same date live and rebuilt");
+
+        // the bus may repeat the default in an update
+        live.record(new LoanEvent(LoanEventType.UPDATED, loan));
+        assertEquals(1, live.getEntries(from, Instant.now(), ActivityType.DEFAULT).size(), "A default should be indexed once");
+    }
+
+    @Test
+    public void testRemoteChanges() {
+        ActivityIndex index = new ActivityIndex();
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        List<Payment> payments = new ArrayList<>();
+        Loan loan = new Loan(
+                UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                BigDecimal.valueOf(100), BigDecimal.valueOf(0.05),
+                now.minus(Duration.ofDays(1)), 0, 7, ChronoUnit.DAYS,
+                payments, new ArrayList<>()
+        );
+        Instant from = now.minus(Duration.ofDays(1));
+        Instant to = now.plus(Duration.ofDays(1));
+
+        // a payment made here is indexed from its event
+        Payment local = new Payment(now, BigDecimal.valueOf(10), BigDecimal.ZERO);
+        payments.add(local);
+        index.record(new LoanEvent(LoanEventType.PAYMENT, loan, local, null));
+
+        // another server makes a payment in the same second, and the loan is replaced from its file
+        payments.add(new Payment(now, BigDecimal.valueOf(10), BigDecimal.ZERO));
+        index.record(new LoanEvent(LoanEventType.UPDATED, loan));
+        assertEquals(2, index.summarize(from, to).getPayments(), "A remote payment should be indexed");
+
+        index.record(new LoanEvent(LoanEventType.UPDATED, loan));
+        assertEquals(2, index.summarize(from, to).getPayments(), "Payments should be indexed once");
+
+        payments.add(new Payment(now.plusSeconds(5), BigDecimal.valueOf(10), BigDecimal.ZERO));
+        index.record(new LoanEvent(LoanEventType.UPDATED, loan));
+        assertEquals(3, index.summarize(from, to).getPayments(), "Later remote payments should be indexed");
+    }
+}
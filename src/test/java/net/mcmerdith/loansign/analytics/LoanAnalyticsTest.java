@@ -0,0 +1,89 @@
+package net.mcmerdith.loansign.analytics;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanAnalyticsTest {
+    private static List<Loan> createLoans(UUID lender, UUID otherLender) {
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 1; i <= 10; ++i) {
+            loans.add(new Loan(i % 3 == 0 ? otherLender : lender, UUID.randomUUID(), i * 100, 0.05, 7));
+        }
+        return loans;
+    }
+
+    @Test
+    public void testIncrementalTotals() {
+        UUID lender = UUID.randomUUID();
+        UUID otherLender = UUID.randomUUID();
+        List<Loan> loans = createLoans(lender, otherLender);
+
+        LoanAnalytics analytics = new LoanAnalytics();
+        Instant now = Instant.now();
+        loans.forEach(loan -> analytics.update(loan, now));
+
+        // new loans have all of their principal outstanding
+        BigDecimal principal = BigDecimal.ZERO;
+        for (Loan loan : loans) principal = principal.add(loan.getPrincipal());
+        PortfolioStats server = analytics.getServerStats();
+        assertEquals(loans.size(), server.getLoans(), "Every loan should be counted");
+        assertEquals(0, principal.compareTo(server.getOutstandingPrincipal()), "Outstanding principal should match");
+        assertTrue(server.getExpectedInterest().signum() > 0, "Interest should be expected");
+
+        // lender totals should add up to the server totals
+        PortfolioStats first = analytics.getLenderStats(lender);
+        PortfolioStats second = analytics.getLenderStats(otherLender);
+        assertEquals(server.getLoans(), first.getLoans() + second.getLoans(), "Lender loans should add up");
+        assertEquals(0, server.getRemaining().compareTo(first.getRemaining().add(second.getRemaining())), "Lender balances should add up");
+
+        // updating a loan twice should not count it twice
+        analytics.update(loans.get(0), now);
+        assertEquals(loans.size(), analytics.getServerStats().getLoans(), "Updates should replace the previous share");
+
+        // the leaderboard should be ordered by outstanding principal
+        List<UUID> top = analytics.getTopLenders(2);
+        assertEquals(lender, top.get(0), "Largest lender should be first");
+        assertEquals(otherLender, top.get(1), "Smaller lender should be second");
+
+        // removing every loan should leave nothing behind
+        loans.forEach(loan -> analytics.remove(loan.loanID));
+        assertEquals(0, analytics.getServerStats().getLoans(), "Removed loans should not be counted");
+        assertEquals(0, analytics.getServerStats().getRemaining().signum(), "Removed loans should not have a balance");
+        assertTrue(analytics.getTopLenders(10).isEmpty(), "Lenders without loans should leave the leaderboard");
+        for (long count : analytics.getBalanceHistogram().getCounts()) assertEquals(0L, count, "Histogram should be empty");
+    }
+
+    @Test
+    public void testSnapshot() throws IOException {
+        List<Loan> loans = createLoans(UUID.randomUUID(), UUID.randomUUID());
+        File file = Files.createTempFile("analytics", ".json").toFile();
+
+        LoanAnalytics analytics = new LoanAnalytics();
+        analytics.rebuild(loans);
+        analytics.saveSnapshot(loans, file);
+
+        // a matching snapshot is used as-is
+        LoanAnalytics restored = new LoanAnalytics();
+        assertTrue(restored.restore(loans, file), "Matching snapshot should be used");
+        assertEquals(0, analytics.getServerStats().getRemaining().compareTo(restored.getServerStats().getRemaining()), "Restored totals should match");
+        assertEquals(analytics.getServerStats().getLoans(), restored.getServerStats().getLoans(), "Restored loan count should match");
+
+        // a snapshot of different loans is rebuilt
+        List<Loan> changed = new ArrayList<>(loans);
+        changed.remove(0);
+        LoanAnalytics rebuilt = new LoanAnalytics();
+        assertFalse(rebuilt.restore(changed, file), "Stale snapshot should be ignored");
+        assertEquals(changed.size(), rebuilt.getServerStats().getLoans(), "Stale snapshot should be rebuilt");
+    }
+}
@@ -0,0 +1,128 @@
+package net.mcmerdith.loansign.bulk;
+
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventBus;
+import net.mcmerdith.loansign.event.LoanEventType;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import net.mcmerdith.loansign.storage.LoanData;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkOperationsTest {
+    private static List<Loan> createLoans(UUID borrower) {
+        List<Loan> loans = new ArrayList<>();
+        // enough loans to be split into several chunks
+        for (int i = 0; i < 5000; ++i) {
+            loans.add(new Loan(UUID.randomUUID(), i % 5 == 0 ? borrower : UUID.randomUUID(), 100, 0.05, 7));
+        }
+        return loans;
+    }
+
+    @Test
+    public void testClose() {
+        UUID borrower = UUID.randomUUID();
+        List<Loan> loans = createLoans(borrower);
+        LoanData data = new LoanData();
+        data.setLoans(loans);
+
+        BigDecimal remaining = BigDecimal.ZERO;
+        for (Loan loan : data.getLoansFor(borrower)) remaining = remaining.add(loan.getRemainingAmount());
+
+        // a dry run counts without changing anything
+        BulkResult preview = BulkOperations.execute(data, loan -> loan.borrower.equals(borrower), LoanMutation.close(), true);
+        assertEquals(loans.size() / 5, preview.getMatched(), "Every loan of the borrower should match");
+        assertEquals(preview.getMatched(), preview.getChanged(), "Every unpaid loan would be closed");
+        assertEquals(0, remaining.negate().compareTo(preview.getBalanceChange()), "The whole balance would be forgiven");
+        assertTrue(data.getLoansFor(borrower).stream().noneMatch(Loan::isClosed), "A dry run should not close loans");
+
+        BulkResult result = BulkOperations.execute(data, loan -> loan.borrower.equals(borrower), LoanMutation.close(), false);
+        assertEquals(preview.getChanged(), result.getChanged(), "The result should match the preview");
+        assertTrue(data.getLoansFor(borrower).stream().allMatch(Loan::isPaidOff), "Closed loans have no balance");
+        assertEquals(loans.size() - result.getChanged(), loans.stream().filter(loan -> !loan.isClosed()).count(), "Other loans should not change");
+
+        // closed loans are not changed twice
+        BulkResult everyone = BulkOperations.execute(data, loan -> true, LoanMutation.close(), true);
+        assertEquals(loans.size() - result.getChanged(), everyone.getChanged(), "Only open loans should be closed");
+    }
+
+    @Test
+    public void testExtend() {
+        List<Loan> loans = createLoans(UUID.randomUUID());
+        LoanData data = new LoanData();
+        data.setLoans(loans);
+
+        Loan first = loans.get(0);
+        Instant due = first.getDueDate();
+        BigDecimal total = first.getTotalAmount();
+        BulkResult result = BulkOperations.execute(data, loan -> true, LoanMutation.extend(3), false);
+        assertEquals(loans.size(), result.getChanged(), "Every loan should be extended");
+        assertEquals(0, result.getBalanceChange().signum(), "Extensions do not change balances");
+        assertTrue(first.getDueDate().isAfter(due), "The due date should move");
+        assertEquals(0, total.compareTo(first.getTotalAmount()), "No interest should be added");
+
+        // the due date index follows the new due dates
+        assertTrue(data.getExpiredLoans().isEmpty(), "No loans should have expired");
+        assertNotNull(data.getLoan(first.loanID), "Extended loans should still be indexed");
+    }
+
+    @Test
+    public void testAdjustRateBelowPayments() {
+        // paid more than the loan would owe without interest
+        Loan loan = new Loan(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                BigDecimal.valueOf(100), BigDecimal.valueOf(0.5), Instant.now().minus(4, ChronoUnit.DAYS),
+                3, 7, ChronoUnit.DAYS,
+                new ArrayList<>(List.of(new Payment(BigDecimal.valueOf(150), BigDecimal.ZERO))),
+                new ArrayList<>());
+        LoanData data = new LoanData();
+        data.setLoans(List.of(loan));
+        BigDecimal remaining = loan.getRemainingAmount();
+
+        BulkResult result = BulkOperations.execute(data, l -> true, LoanMutation.adjustRate(BigDecimal.ZERO), false);
+        assertEquals(1, result.getChanged(), "The loan should be re-quoted");
+        assertEquals(0, remaining.negate().compareTo(result.getBalanceChange()), "Only the remaining balance can be forgiven");
+        assertTrue(loan.isPaidOff(), "A loan paid past its new total should be paid off");
+        assertNull(loan.findProblem(), "Payments should never exceed the new total");
+        assertEquals(0, BigDecimal.valueOf(150).compareTo(loan.getLoanAmount()), "The total should be clamped to the payments");
+    }
+
+    @Test
+    public void testEvents() throws InterruptedException {
+        // past due and already reported
+        Loan defaulted = new Loan(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                BigDecimal.valueOf(100), BigDecimal.valueOf(0.05), Instant.now().minus(10, ChronoUnit.DAYS),
+                0, 7, ChronoUnit.DAYS, new ArrayList<>(), new ArrayList<>());
+        assertTrue(defaulted.markDefaulted(Instant.now()), "Loan should default");
+        Loan open = new Loan(UUID.randomUUID(), UUID.randomUUID(), 100, 0.05, 7);
+        LoanData data = new LoanData();
+        data.setLoans(List.of(defaulted, open));
+
+        List<LoanEvent> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        LoanEventBus.instance().subscribe("bulk-test", events -> events.forEach(event -> {
+            if (event.loan != defaulted && event.loan != open) return;
+            received.add(event);
+            done.countDown();
+        }));
+
+        BulkOperations.execute(data, loan -> loan == defaulted, LoanMutation.extend(10), false);
+        assertFalse(defaulted.isDefaulted(), "An extended loan is no longer past due");
+        BulkOperations.execute(data, loan -> loan == open, LoanMutation.adjustRate(BigDecimal.valueOf(0.1)), false);
+        BulkOperations.execute(data, loan -> loan == open, LoanMutation.close(), false);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS), "Every change should post an event");
+        assertEquals(List.of(LoanEventType.EXTENDED, LoanEventType.RATE_CHANGED, LoanEventType.CLOSED),
+                received.stream().map(event -> event.type).toList(), "Changes should be posted in order");
+    }
+}
@@ -0,0 +1,63 @@
+package net.mcmerdith.loansign.cache;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.bukkit.OfflinePlayer;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OfflinePlayerCacheTest {
+    private static OfflinePlayer handle(UUID player) {
+        return (OfflinePlayer) Proxy.newProxyInstance(OfflinePlayer.class.getClassLoader(), new Class<?>[]{OfflinePlayer.class},
+                (proxy, method, args) -> method.getName().equals("getUniqueId") ? player : null);
+    }
+
+    @Test
+    public void testLookups() {
+        AtomicInteger lookups = new AtomicInteger();
+        OfflinePlayerCache cache = new OfflinePlayerCache(player -> {
+            lookups.incrementAndGet();
+            return handle(player);
+        });
+
+        UUID player = UUID.randomUUID();
+        OfflinePlayer first = cache.get(player);
+        assertEquals(player, first.getUniqueId());
+        assertSame(first, cache.get(player), "A cached handle should be reused");
+        assertEquals(1, lookups.get(), "A cached player should not be looked up again");
+
+        cache.evict(player);
+        assertNotSame(first, cache.get(player), "An evicted player should be looked up again");
+        assertEquals(2, lookups.get());
+    }
+
+    @Test
+    public void testWarmAndEvictEldest() {
+        AtomicInteger lookups = new AtomicInteger();
+        OfflinePlayerCache cache = new OfflinePlayerCache(player -> {
+            lookups.incrementAndGet();
+            return handle(player);
+        });
+
+        UUID lender = UUID.randomUUID();
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) loans.add(new Loan(lender, UUID.randomUUID(), 100, 0.05, 7));
+
+        // the shared lender is looked up once
+        assertEquals(11, cache.warm(loans), "Every party should be looked up");
+        assertEquals(0, cache.warm(loans), "Warm players should not be looked up again");
+        cache.get(lender);
+        assertEquals(11, lookups.get(), "Collection should not look up warm players");
+
+        // the least recently used players are dropped first
+        for (int i = 0; i < 2000; ++i) cache.get(UUID.randomUUID());
+        assertEquals(2000, cache.size(), "The cache should stay bounded");
+        assertEquals(11, cache.warm(loans), "Old players should have been evicted");
+    }
+}
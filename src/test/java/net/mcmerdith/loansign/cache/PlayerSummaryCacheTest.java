@@ -0,0 +1,96 @@
+package net.mcmerdith.loansign.cache;
+
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventType;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.storage.LoanData;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlayerSummaryCacheTest {
+    @Test
+    public void testInvalidation() {
+        LoanData data = new LoanData();
+        PlayerSummaryCache cache = new PlayerSummaryCache(data, 10);
+        UUID lender = UUID.randomUUID();
+        UUID borrower = UUID.randomUUID();
+
+        PlayerSummary empty = cache.get(borrower);
+        assertEquals(0, empty.borrowing, "A player without loans should owe nothing");
+        assertSame(empty, cache.get(borrower), "Summaries should be cached");
+
+        // a new loan is picked up from its event
+        Loan loan = new Loan(UUID.randomUUID(), lender, borrower, BigDecimal.valueOf(100), BigDecimal.valueOf(0.05),
+                Instant.now().minus(Duration.ofHours(36)), 0, 7, ChronoUnit.DAYS, new ArrayList<>(), new ArrayList<>());
+        data.addLoan(loan);
+        assertSame(empty, cache.get(borrower), "Summaries should not be rebuilt without an event");
+        cache.onEvents(List.of(new LoanEvent(LoanEventType.CREATED, loan)));
+        PlayerSummary borrowing = cache.get(borrower);
+        assertEquals(1, borrowing.borrowing, "A changed loan should rebuild its borrower");
+        assertEquals(0, loan.getRemainingAmount().compareTo(borrowing.totalOwed));
+
+        // the first installment is due, so the summary is rebuilt once it is paid
+        assertNotNull(loan.makePayment(loan.getInstallmentAmount().doubleValue()), "An installment should be due");
+        cache.onEvents(List.of(new LoanEvent(LoanEventType.PAYMENT, loan)));
+        PlayerSummary paid = cache.get(borrower);
+        assertTrue(paid.totalOwed.compareTo(borrowing.totalOwed) < 0, "Payments should lower the amount owed");
+
+        // offers do not change summaries
+        Loan offered = new Loan(lender, borrower, 50, 0.05, 7);
+        cache.onEvents(List.of(new LoanEvent(LoanEventType.OFFERED, offered)));
+        assertSame(paid, cache.get(borrower), "Offers should not rebuild summaries");
+
+        // evicted players are only rebuilt when they are asked for
+        PlayerSummary lending = cache.get(lender);
+        assertEquals(1, lending.lending);
+        cache.evict(lender);
+        cache.onEvents(List.of(new LoanEvent(LoanEventType.UPDATED, loan)));
+        assertNotSame(lending, cache.get(lender), "Evicted summaries should be rebuilt on request");
+    }
+
+    @Test
+    public void testLoanLines() {
+        LoanData data = new LoanData();
+        PlayerSummaryCache cache = new PlayerSummaryCache(data, 10);
+        UUID lender = UUID.randomUUID();
+        UUID borrower = UUID.randomUUID();
+        Loan first = new Loan(lender, borrower, 100, 0.05, 7);
+        Loan second = new Loan(lender, borrower, 50, 0.05, 7);
+        data.addLoan(first);
+        data.addLoan(second);
+
+        PlayerSummary both = cache.get(borrower);
+        assertEquals(2, both.borrowing);
+        assertEquals(0, first.getRemainingAmount().add(second.getRemainingAmount()).compareTo(both.totalOwed));
+
+        // a removed loan drops out without the other loans being read again
+        data.removeLoans(List.of(first));
+        cache.onEvents(List.of(new LoanEvent(LoanEventType.REMOVED, first)));
+        PlayerSummary one = cache.get(borrower);
+        assertEquals(1, one.borrowing, "Removed loans should leave the summary");
+        assertEquals(0, second.getRemainingAmount().compareTo(one.totalOwed));
+        assertEquals(one.totalOwed, cache.rebuild(borrower).totalOwed, "Updated summaries should match a rebuild");
+    }
+
+    @Test
+    public void testSizeLimit() {
+        LoanData data = new LoanData();
+        PlayerSummaryCache cache = new PlayerSummaryCache(data, 2);
+        UUID first = UUID.randomUUID();
+        PlayerSummary summary = cache.get(first);
+
+        cache.get(UUID.randomUUID());
+        cache.get(first);
+        cache.get(UUID.randomUUID());
+        assertSame(summary, cache.get(first), "Recently used summaries should be kept");
+    }
+}
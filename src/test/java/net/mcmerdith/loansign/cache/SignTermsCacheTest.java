@@ -0,0 +1,59 @@
+package net.mcmerdith.loansign.cache;
+
+import net.mcmerdith.loansign.model.LoanTerms;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SignTermsCacheTest {
+    private static World world() {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> method.getName().equals("equals") ? proxy == args[0] : null);
+    }
+
+    private static LoanTerms terms() {
+        return new LoanTerms(100, 0.05, 7, UUID.randomUUID());
+    }
+
+    @Test
+    public void testEviction() {
+        SignTermsCache cache = new SignTermsCache(2);
+        World world = world();
+        Location first = new Location(world, 0, 64, 0);
+        Location second = new Location(world, 1, 64, 0);
+        Location third = new Location(world, 2, 64, 0);
+
+        LoanTerms terms = terms();
+        cache.put(first, terms);
+        cache.put(second, terms());
+        assertSame(terms, cache.get(new Location(world, 0, 64, 0)), "Terms should be found by location");
+
+        // the least recently used sign is dropped
+        cache.put(third, terms());
+        assertEquals(2, cache.size(), "The cache should stay within its size");
+        assertNotNull(cache.get(first), "A recently used sign should be kept");
+        assertNull(cache.get(second), "The least recently used sign should be dropped");
+
+        cache.invalidate(first);
+        assertNull(cache.get(first), "An edited sign should be parsed again");
+    }
+
+    @Test
+    public void testWorldUnload() {
+        SignTermsCache cache = new SignTermsCache(10);
+        World unloaded = world();
+        World loaded = world();
+        cache.put(new Location(unloaded, 0, 64, 0), terms());
+        cache.put(new Location(unloaded, 1, 64, 0), terms());
+        cache.put(new Location(loaded, 0, 64, 0), terms());
+
+        cache.invalidate(unloaded);
+        assertEquals(1, cache.size(), "Signs in an unloaded world should be dropped");
+        assertNotNull(cache.get(new Location(loaded, 0, 64, 0)), "Signs in other worlds should be kept");
+    }
+}
@@ -0,0 +1,104 @@
+package net.mcmerdith.loansign.consolidation;
+
+import com.google.gson.Gson;
+import net.mcmerdith.loansign.model.Fee;
+import net.mcmerdith.loansign.model.FeeReason;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import net.mcmerdith.loansign.storage.LoanData;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanConsolidatorTest {
+    /**
+     * A loan started {@code days} ago with every installment paid so far
+     */
+    private static Loan createLoan(UUID lender, UUID borrower, int amount, int days, int duration, Instant now) {
+        Instant initiation = now.minus(Duration.ofDays(days));
+        List<Payment> payments = new ArrayList<>();
+        for (int day = 1; day <= days; ++day) {
+            payments.add(new Payment(initiation.plus(Duration.ofDays(day)), BigDecimal.valueOf(amount / 10), BigDecimal.ZERO));
+        }
+        List<Fee> fees = new ArrayList<>();
+        fees.add(new Fee(initiation, new BigDecimal("1.5"), FeeReason.INSUFFICIENT_PAYMENT, "late"));
+        return new Loan(UUID.randomUUID(), lender, borrower, BigDecimal.valueOf(amount), new BigDecimal("0.01"),
+                initiation, days, duration, ChronoUnit.DAYS, payments, fees);
+    }
+
+    @Test
+    public void testMerge() {
+        Instant now = Instant.now();
+        UUID lender = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        UUID borrower = UUID.randomUUID();
+
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 12; ++i) loans.add(createLoan(lender, borrower, 100 + i * 10, i % 3, 7 + i, now));
+        Loan unrelated = createLoan(other, borrower, 500, 1, 7, now);
+        loans.add(unrelated);
+        // an installment is overdue, merging would forgive it
+        Loan overdue = new Loan(UUID.randomUUID(), lender, borrower, BigDecimal.valueOf(200), new BigDecimal("0.01"),
+                now.minus(Duration.ofDays(3)), 0, 7, ChronoUnit.DAYS, new ArrayList<>(), new ArrayList<>());
+        loans.add(overdue);
+
+        LoanData data = new LoanData();
+        data.setLoans(loans);
+
+        BigDecimal remaining = BigDecimal.ZERO;
+        BigDecimal fees = BigDecimal.ZERO;
+        Instant due = now;
+        for (Loan loan : loans.subList(0, 12)) {
+            remaining = remaining.add(loan.getRemainingAmount());
+            fees = fees.add(loan.getFeeTotal());
+            if (loan.getDueDate().isAfter(due)) due = loan.getDueDate();
+        }
+
+        List<Loan> merged = LoanConsolidator.execute(data, borrower, lender, 2, now);
+        assertEquals(1, merged.size(), "Loans from one lender should merge into one");
+        Loan loan = merged.get(0);
+        assertEquals(0, remaining.compareTo(loan.getRemainingAmount()), "The balance should be preserved");
+        assertEquals(0, fees.compareTo(loan.getFeeTotal()), "Fees should be carried over");
+        assertEquals(12, loan.getConsolidatedFrom().size(), "The sources should be referenced");
+        assertTrue(Duration.between(loan.getDueDate(), due).abs().compareTo(Duration.ofDays(1)) <= 0, "The loan should be due with the last source");
+        assertNull(loan.findProblem(), "The merged loan should be valid");
+        assertFalse(loan.isPaymentDue(), "Nothing should be due on a merged loan");
+
+        // the sources are no longer tracked, the others are untouched
+        assertEquals(3, data.getLoansFor(borrower).size(), "Only the merged, unrelated and overdue loans should be left");
+        assertSame(unrelated, data.getLoan(unrelated.loanID));
+        assertFalse(overdue.isClosed(), "Overdue loans should not be merged");
+        for (Loan source : loans.subList(0, 12)) {
+            assertNull(data.getLoan(source.loanID), "Sources should be removed");
+            assertTrue(source.isClosed() && !source.isPaymentDue(), "Sources should not be collected");
+            assertEquals(loan.loanID, source.getConsolidatedInto());
+        }
+
+        // a single loan is not merged
+        assertTrue(LoanConsolidator.execute(data, borrower, other, 2, now).isEmpty(), "One loan should not be merged");
+    }
+
+    @Test
+    public void testChecksum() {
+        Instant now = Instant.now();
+        UUID lender = UUID.randomUUID();
+        UUID borrower = UUID.randomUUID();
+        Loan merged = Loan.consolidate(List.of(createLoan(lender, borrower, 100, 1, 7, now), createLoan(lender, borrower, 200, 2, 7, now)), now);
+
+        merged.seal();
+        // the references survive storage and are covered by the checksum
+        Loan stored = new Gson().fromJson(new Gson().toJson(merged), Loan.class);
+        assertEquals(merged.getConsolidatedFrom(), stored.getConsolidatedFrom(), "The sources should be stored");
+        assertEquals(merged.getChecksum(), stored.computeChecksum(), "The stored loan should match its checksum");
+        assertThrows(IllegalArgumentException.class, () -> Loan.consolidate(List.of(
+                createLoan(lender, borrower, 100, 1, 7, now), createLoan(UUID.randomUUID(), borrower, 100, 1, 7, now)), now));
+    }
+}
@@ -0,0 +1,101 @@
+package net.mcmerdith.loansign.credit;
+
+import net.mcmerdith.loansign.event.LoanEvent;
+import net.mcmerdith.loansign.event.LoanEventType;
+import net.mcmerdith.loansign.model.Fee;
+import net.mcmerdith.loansign.model.FeeReason;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CreditScoresTest {
+    private static Payment pay(CreditScores scores, Loan loan, double amount, double deficit) {
+        Payment payment = new Payment(amount, deficit);
+        if (deficit > 0) payment.fee = new Fee(1, FeeReason.INSUFFICIENT_PAYMENT, null);
+        loan.recordPayment(payment);
+        scores.record(new LoanEvent(LoanEventType.PAYMENT, loan, payment, null));
+        if (payment.fee != null) scores.record(new LoanEvent(LoanEventType.FEE, loan, payment, payment.fee));
+        return payment;
+    }
+
+    @Test
+    public void testScore() {
+        CreditScores scores = new CreditScores();
+        UUID reliable = UUID.randomUUID();
+        UUID unreliable = UUID.randomUUID();
+        Loan reliableLoan = new Loan(UUID.randomUUID(), reliable, 100, 0.05, 7);
+        Loan unreliableLoan = new Loan(UUID.randomUUID(), unreliable, 100, 0.05, 7);
+
+        assertEquals(CreditScores.BASE_SCORE, scores.getScore(reliable), "New borrowers should have the base score");
+
+        // full payments build a streak
+        for (int i = 0; i < 5; ++i) pay(scores, reliableLoan, 15, 0);
+        assertTrue(scores.getScore(reliable) > CreditScores.BASE_SCORE, "Full payments should raise the score");
+
+        // short payments, fees and defaults lower it
+        for (int i = 0; i < 5; ++i) pay(scores, unreliableLoan, 5, 10);
+        int shortScore = scores.getScore(unreliable);
+        assertTrue(shortScore < CreditScores.BASE_SCORE, "Short payments should lower the score");
+        scores.record(new LoanEvent(LoanEventType.DEFAULTED, unreliableLoan));
+        assertTrue(scores.getScore(unreliable) < shortScore, "Defaults should lower the score");
+        assertTrue(scores.getScore(unreliable) >= CreditScores.MIN_SCORE, "Scores should not go below the minimum");
+
+        // a recovered borrower improves as old short payments decay
+        int before = scores.getScore(unreliable);
+        for (int i = 0; i < 10; ++i) pay(scores, unreliableLoan, 15, 0);
+        assertTrue(scores.getScore(unreliable) > before, "Full payments should recover the score");
+    }
+
+    @Test
+    public void testRepeatedEvents() {
+        CreditScores scores = new CreditScores();
+        UUID borrower = UUID.randomUUID();
+        Loan loan = new Loan(UUID.randomUUID(), borrower, 100, 0.05, 7);
+
+        Payment payment = pay(scores, loan, 5, 10);
+        scores.record(new LoanEvent(LoanEventType.DEFAULTED, loan));
+        int score = scores.getScore(borrower);
+
+        // a second delivery, e.g. after a resync, changes nothing
+        scores.record(new LoanEvent(LoanEventType.PAYMENT, loan, payment, null));
+        scores.record(new LoanEvent(LoanEventType.FEE, loan, payment, payment.fee));
+        scores.record(new LoanEvent(LoanEventType.DEFAULTED, loan));
+        assertEquals(score, scores.getScore(borrower), "Repeated events should only be counted once");
+
+        // payments that are not on the loan are ignored
+        scores.record(new LoanEvent(LoanEventType.PAYMENT, loan, new Payment(5, 10), null));
+        assertEquals(score, scores.getScore(borrower), "Unknown payments should be ignored");
+    }
+
+    @Test
+    public void testLoadChecksLoans() throws IOException {
+        File file = Files.createTempDirectory("loansign-credit").resolve("credit.json").toFile();
+        UUID borrower = UUID.randomUUID();
+        Loan loan = new Loan(UUID.randomUUID(), borrower, 100, 0.05, 7);
+
+        CreditScores scores = new CreditScores();
+        for (int i = 0; i < 3; ++i) pay(scores, loan, 5, 10);
+        scores.save(file);
+        int score = scores.getScore(borrower);
+
+        CreditScores loaded = new CreditScores();
+        assertTrue(loaded.load(List.of(loan), file), "Scores matching the loans should be loaded");
+        assertEquals(score, loaded.getScore(borrower), "Loaded scores should match the saved ones");
+
+        // a payment made after the save is missing from the file
+        loan.recordPayment(new Payment(15, 0));
+        CreditScores stale = new CreditScores();
+        assertFalse(stale.load(List.of(loan), file), "Scores behind the loans should be rebuilt");
+        CreditScores rebuilt = new CreditScores();
+        rebuilt.rebuild(List.of(loan));
+        assertEquals(rebuilt.getScore(borrower), stale.getScore(borrower), "Stale scores should be rebuilt from the loans");
+    }
+}
@@ -0,0 +1,105 @@
+package net.mcmerdith.loansign.event;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanEventBusTest {
+    @Test
+    public void testBatchedDelivery() throws InterruptedException {
+        LoanEventBus bus = new LoanEventBus();
+        Loan loan = new Loan(UUID.randomUUID(), UUID.randomUUID(), 100, 0.05, 7);
+
+        List<LoanEvent> received = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(250);
+        bus.subscribe("test", events -> {
+            batchSizes.add(events.size());
+            received.addAll(events);
+            events.forEach(e -> done.countDown());
+        }, 1000, 100);
+
+        List<LoanEvent> posted = new ArrayList<>();
+        for (int i = 0; i < 250; ++i) {
+            LoanEvent event = new LoanEvent(LoanEventType.PAYMENT, loan);
+            posted.add(event);
+            bus.post(event);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS), "All events should be delivered");
+        bus.shutdown();
+
+        // events should arrive once, in order, in bounded batches
+        assertEquals(posted, received, "Events should be delivered in order");
+        for (int size : batchSizes) assertTrue(size <= 100, "Batches should not exceed the batch size");
+    }
+
+    @Test
+    public void testBoundedQueue() throws InterruptedException {
+        LoanEventBus bus = new LoanEventBus();
+        Loan loan = new Loan(UUID.randomUUID(), UUID.randomUUID(), 100, 0.05, 7);
+
+        // block the listener so the queue fills up
+        CountDownLatch release = new CountDownLatch(1);
+        LoanEventBus.Subscription subscription = bus.subscribe("test", events -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 10, 10);
+
+        // posting should never block on a slow listener
+        long start = System.nanoTime();
+        for (int i = 0; i < 50; ++i) bus.post(new LoanEvent(LoanEventType.PAYMENT, loan));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "Posting should not block");
+
+        assertTrue(subscription.getDropped() >= 30, "Overflowing events should be dropped");
+        release.countDown();
+        bus.shutdown();
+    }
+
+    @Test
+    public void testResyncAfterOverflow() throws InterruptedException {
+        LoanEventBus bus = new LoanEventBus();
+        Loan loan = new Loan(UUID.randomUUID(), UUID.randomUUID(), 100, 0.05, 7);
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch resynced = new CountDownLatch(1);
+        List<LoanEvent> received = Collections.synchronizedList(new ArrayList<>());
+        LoanEventBus.Subscription subscription = bus.subscribe("test", events -> {
+            blocked.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.addAll(events);
+        }, resynced::countDown, 10, 10);
+
+        // hold the listener on the first event while the rest overflow its queue
+        LoanEvent first = new LoanEvent(LoanEventType.PAYMENT, loan);
+        bus.post(first);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS), "The listener should receive the first event");
+        for (int i = 0; i < 50; ++i) bus.post(new LoanEvent(LoanEventType.PAYMENT, loan));
+        assertTrue(subscription.getDropped() > 0, "Overflowing events should be dropped");
+        release.countDown();
+
+        assertTrue(resynced.await(5, TimeUnit.SECONDS), "The listener should be resynchronized");
+        LoanEvent after = new LoanEvent(LoanEventType.PAID_OFF, loan);
+        bus.post(after);
+        bus.shutdown();
+
+        // the queued events are covered by the resync, later events are still delivered
+        assertEquals(List.of(first, after), received, "Queued events should be replaced by the resync");
+    }
+}
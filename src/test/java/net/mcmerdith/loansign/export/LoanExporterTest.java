@@ -0,0 +1,72 @@
+package net.mcmerdith.loansign.export;
+
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanExporterTest {
+    private static List<Loan> createLoans(UUID lender) {
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 1; i <= 20; ++i) {
+            List<Payment> payments = new ArrayList<>(List.of(new Payment(BigDecimal.TEN, BigDecimal.ZERO)));
+            loans.add(new Loan(UUID.randomUUID(), i % 2 == 0 ? lender : UUID.randomUUID(), UUID.randomUUID(), BigDecimal.valueOf(i * 100L),
+                    BigDecimal.valueOf(0.05), Instant.now(), 1, 7, ChronoUnit.DAYS, payments, new ArrayList<>()));
+        }
+        return loans;
+    }
+
+    @Test
+    public void testCsv() throws IOException {
+        UUID lender = UUID.randomUUID();
+        List<Loan> loans = createLoans(lender);
+
+        StringWriter out = new StringWriter();
+        List<Integer> progress = new ArrayList<>();
+        int records = LoanExporter.write(loans, loans.size(), out, ExportFormat.CSV, ExportFilter.ALL, progress::add);
+
+        // one loan row and one payment row per loan
+        assertEquals(loans.size() * 2, records, "Every loan and payment should be written");
+        String[] lines = out.toString().split("\n");
+        assertEquals(records + 1, lines.length, "Every record should have a line after the header");
+        assertEquals(String.join(",", LedgerRow.COLUMNS), lines[0], "The header should name every column");
+        assertTrue(lines[1].startsWith("loan," + loans.get(0).loanID), "Loans should be written in order");
+        assertTrue(lines[2].startsWith("payment," + loans.get(0).loanID), "Payments should follow their loan");
+        assertEquals(10, progress.size(), "Progress should be reported every 10%");
+        assertEquals(100, (int) progress.get(progress.size() - 1), "The last progress should be complete");
+
+        // only one player's loans
+        out = new StringWriter();
+        records = LoanExporter.write(loans, loans.size(), out, ExportFormat.CSV,
+                new ExportFilter(null, null, lender, null), percent -> {});
+        assertEquals(loans.size(), records, "Only the lender's loans should be written");
+    }
+
+    @Test
+    public void testNdjson() throws IOException {
+        List<Loan> loans = createLoans(UUID.randomUUID());
+
+        StringWriter out = new StringWriter();
+        int records = LoanExporter.write(loans, loans.size(), out, ExportFormat.NDJSON,
+                new ExportFilter(null, null, null, LoanStatus.PAID_OFF), percent -> {});
+        assertEquals(0, records, "No loans have been paid off");
+        assertEquals("", out.toString(), "NDJSON has no header");
+
+        out = new StringWriter();
+        records = LoanExporter.write(loans, loans.size(), out, ExportFormat.NDJSON, ExportFilter.ALL, percent -> {});
+        String[] lines = out.toString().split("\n");
+        assertEquals(records, lines.length, "Every record should be on its own line");
+        assertTrue(lines[0].startsWith("{\"record\":\"loan\""), "Lines should be JSON objects");
+        assertTrue(lines[1].contains("\"amount\":10"), "Amounts should be numbers");
+    }
+}
@@ -0,0 +1,43 @@
+package net.mcmerdith.loansign.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IoExecutorTest {
+    @Test
+    public void testTimeoutLeavesTaskRunning() throws InterruptedException {
+        IoExecutor executor = new IoExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        CompletableFuture<Object> future = executor.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            finished.countDown();
+            return null;
+        }, Duration.ofMillis(50));
+
+        assertTrue(started.await(5, TimeUnit.SECONDS), "The task should start");
+        ExecutionException e = assertThrows(ExecutionException.class, future::get, "The task should time out");
+        assertTrue(e.getCause() instanceof TimeoutException, "The timeout should be reported");
+
+        // a write that timed out is still allowed to finish
+        assertTrue(finished.await(5, TimeUnit.SECONDS), "The task should finish");
+        assertFalse(interrupted.get(), "The task should not be interrupted");
+        executor.shutdown();
+    }
+}
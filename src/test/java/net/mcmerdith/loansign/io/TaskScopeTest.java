@@ -0,0 +1,96 @@
+package net.mcmerdith.loansign.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskScopeTest {
+    @Test
+    public void testFailureCancelsSiblings() throws InterruptedException {
+        IoExecutor executor = new IoExecutor();
+        CountDownLatch never = new CountDownLatch(1);
+
+        CompletableFuture<Object> slow;
+        try (TaskScope scope = new TaskScope(executor, Duration.ofSeconds(5))) {
+            slow = scope.fork(() -> never.await(5, TimeUnit.SECONDS));
+            scope.fork(() -> {
+                throw new IllegalStateException("step failed");
+            });
+
+            ExecutionException e = null;
+            try {
+                scope.join();
+            } catch (ExecutionException thrown) {
+                e = thrown;
+            } catch (TimeoutException thrown) {
+                fail("A failed step should end the scope before the deadline");
+            }
+            assertNotNull(e, "A failed step should fail the scope");
+            assertTrue(e.getCause() instanceof IllegalStateException, "The step failure should be reported");
+        }
+
+        assertTrue(slow.isCancelled(), "Remaining steps should be cancelled");
+        executor.shutdown();
+    }
+
+    @Test
+    public void testDeadline() throws InterruptedException, ExecutionException {
+        IoExecutor executor = new IoExecutor();
+        CountDownLatch never = new CountDownLatch(1);
+
+        boolean timedOut = false;
+        try (TaskScope scope = new TaskScope(executor, Duration.ofMillis(100))) {
+            scope.fork(() -> "done");
+            scope.fork(() -> never.await(5, TimeUnit.SECONDS));
+            scope.join();
+        } catch (TimeoutException e) {
+            timedOut = true;
+        }
+        assertTrue(timedOut, "A step running past the deadline should time the scope out");
+        never.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRunningStepsAreNotInterrupted() throws InterruptedException {
+        IoExecutor executor = new IoExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> interrupted = new CompletableFuture<>();
+
+        try (TaskScope scope = new TaskScope(executor, Duration.ofSeconds(5))) {
+            scope.fork(() -> {
+                started.countDown();
+                // a write in progress must be allowed to finish
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                    interrupted.complete(Thread.currentThread().isInterrupted());
+                } catch (InterruptedException e) {
+                    interrupted.complete(true);
+                }
+                return null;
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS), "Step should start");
+            scope.fork(() -> {
+                throw new IllegalStateException("step failed");
+            });
+
+            assertThrows(ExecutionException.class, scope::join, "A failed step should fail the scope");
+        }
+
+        release.countDown();
+        try {
+            assertFalse(interrupted.get(5, TimeUnit.SECONDS), "A running step should not be interrupted");
+        } catch (ExecutionException | TimeoutException e) {
+            fail("Running step did not finish");
+        }
+        executor.shutdown();
+    }
+}
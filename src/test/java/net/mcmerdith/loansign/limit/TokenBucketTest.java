@@ -0,0 +1,74 @@
+package net.mcmerdith.loansign.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void testRefill() {
+        long start = 1000 * SECOND;
+        TokenBucket bucket = new TokenBucket(3, 2.0, start);
+
+        // a full bucket allows a burst up to its capacity
+        assertTrue(bucket.tryAcquire(start));
+        assertTrue(bucket.tryAcquire(start));
+        assertTrue(bucket.tryAcquire(start));
+        assertFalse(bucket.tryAcquire(start), "An empty bucket should reject");
+        assertFalse(bucket.isIdle(start), "An empty bucket should not be idle");
+
+        // one token comes back every half second
+        assertFalse(bucket.tryAcquire(start + SECOND / 4), "A token should not be back yet");
+        assertTrue(bucket.tryAcquire(start + SECOND / 2), "A token should be back after half a second");
+        assertFalse(bucket.tryAcquire(start + SECOND / 2), "Only one token should be back");
+
+        // never more than the capacity, however long it waits
+        long later = start + 60 * SECOND;
+        assertTrue(bucket.isIdle(later), "A refilled bucket should be idle");
+        int taken = 0;
+        while (bucket.tryAcquire(later)) taken++;
+        assertEquals(3, taken, "A refilled bucket should hold its capacity");
+    }
+
+    @Test
+    public void testConcurrentAcquire() {
+        long now = System.nanoTime();
+        // refills far slower than the test runs
+        TokenBucket bucket = new TokenBucket(100, 0.001, now);
+        AtomicInteger taken = new AtomicInteger();
+        IntStream.range(0, 1000).parallel().forEach(i -> {
+            if (bucket.tryAcquire(now)) taken.incrementAndGet();
+        });
+        assertEquals(100, taken.get(), "Exactly the capacity should be taken");
+    }
+
+    @Test
+    public void testConcurrencyLimit() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(2);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire(), "The limit should be enforced");
+        limit.release();
+        assertTrue(limit.tryAcquire(), "A released slot should be reusable");
+        assertEquals(2, limit.getRunning());
+    }
+
+    @Test
+    public void testPrune() {
+        RateLimiter limiter = new RateLimiter();
+        UUID player = UUID.randomUUID();
+        assertTrue(limiter.tryAcquire(LimitedAction.COMMAND, player));
+        assertTrue(limiter.tryAcquire(LimitedAction.SIGN, UUID.randomUUID()));
+        assertEquals(2, limiter.size());
+
+        // the buckets are not full again yet
+        assertEquals(0, limiter.prune(), "Buckets in use should be kept");
+        assertEquals(2, limiter.size());
+    }
+}
@@ -0,0 +1,37 @@
+package net.mcmerdith.loansign.message;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageTemplateTest {
+    @Test
+    public void testRender() {
+        MessageTemplate template = MessageTemplate.compile("!count payment(s) of !amount for !customer!", "!count", "!amount");
+        assertEquals("2 payment(s) of $5 for !customer!", template.render("2", "$5"), "Parameters should be filled, other text kept");
+        assertEquals("3 payment(s) of $1 for !customer!", template.render("3", "$1"), "Templates should be reusable");
+
+        // the longer of two overlapping names is used
+        MessageTemplate overlapping = MessageTemplate.compile("!total and !to", "!to", "!total");
+        assertEquals("T and t", overlapping.render("t", "T"), "The longest name should match");
+
+        MessageTemplate literal = MessageTemplate.compile("No placeholders here");
+        assertEquals("No placeholders here", literal.render(), "Literal messages should render unchanged");
+    }
+
+    @Test
+    public void testTemplates() {
+        MessageTemplates templates = new MessageTemplates();
+        templates.configure(Map.of("notification", Map.of("paid_off", "!count loan(s) paid off")));
+
+        MessageTemplate template = templates.get("notification", "paid_off", null, "!count");
+        assertNotNull(template, "Configured messages should be found");
+        assertSame(template, templates.get("notification", "paid_off", null, "!count"), "Messages should be compiled once");
+        assertEquals("1 loan(s) paid off", template.render("1"), "The configured text should be used");
+
+        assertNull(templates.get("notification", "missing", null), "Missing messages without a fallback should be null");
+        assertEquals("fallback 1", templates.get("fee", "missing", "fallback !n", "!n").render("1"), "The fallback should be used");
+    }
+}
@@ -0,0 +1,46 @@
+package net.mcmerdith.loansign.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static net.mcmerdith.loansign.model.LoanTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InterestFactorsTest {
+    @Test
+    public void testQuote() {
+        InterestFactors factors = InterestFactors.instance();
+        BigDecimal rate = BigDecimal.valueOf(TEST_RATE);
+
+        for (int i = 0; i < TEST_INITIAL_AMOUNTS.length; ++i) {
+            BigDecimal total = factors.quoteTotal(BigDecimal.valueOf(TEST_INITIAL_AMOUNTS[i]), rate, TEST_DURATION_DAYS);
+            BigDecimal installment = factors.quoteInstallment(total, TEST_DURATION_DAYS);
+
+            // quotes should match the known values
+            assertBigDecimalEquals(BigDecimal.valueOf(TEST_TOTAL_AMOUNTS[i]), total, TEST_PRECISION, "Incorrect total quoted");
+            assertBigDecimalEquals(BigDecimal.valueOf(TEST_INSTALLMENT_AMOUNTS[i]), installment, TEST_PRECISION, "Incorrect installment quoted");
+
+            // quotes should match a loan created with the same terms exactly
+            Loan loan = new Loan(UUID.randomUUID(), UUID.randomUUID(), TEST_INITIAL_AMOUNTS[i], TEST_RATE, TEST_DURATION_DAYS);
+            assertEquals(loan.getTotalAmount(), total, "Quoted total should match the loan");
+            assertEquals(loan.getInstallmentAmount(), installment, "Quoted installment should match the loan");
+        }
+    }
+
+    @Test
+    public void testFactorCache() {
+        InterestFactors factors = InterestFactors.instance();
+
+        // equal rates with different scales should share a factor
+        BigDecimal factor = factors.factor(new BigDecimal("0.05"), TEST_DURATION_DAYS);
+        assertSame(factor, factors.factor(new BigDecimal("0.0500"), TEST_DURATION_DAYS), "Equal rates should share a cached factor");
+
+        // the cache should never grow past its maximum size
+        for (int periods = 1; periods <= 1000; ++periods) {
+            factors.factor(BigDecimal.valueOf(TEST_RATE), periods);
+        }
+        assertTrue(factors.size() <= 256, "Factor cache should be bounded");
+    }
+}
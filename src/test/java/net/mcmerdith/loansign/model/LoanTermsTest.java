@@ -0,0 +1,57 @@
+package net.mcmerdith.loansign.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanTermsTest {
+    @Test
+    public void testParse() {
+        UUID lender = UUID.randomUUID();
+
+        LoanTerms percent = LoanTerms.parse(100, "20 days", "5%", lender);
+        assertNotNull(percent, "A duration with units and a percent rate should parse");
+        assertEquals(20, percent.durationDays);
+        assertEquals(0.05, percent.rate, 1e-9);
+        assertEquals(lender, percent.lender);
+
+        LoanTerms decimal = LoanTerms.parse(100, " 20", "0.05 ", lender);
+        assertNotNull(decimal, "A plain duration and a decimal rate should parse");
+        assertEquals(20, decimal.durationDays);
+        assertEquals(0.05, decimal.rate, 1e-9);
+        assertEquals(0, percent.total.compareTo(decimal.total), "Both forms should quote the same total");
+        assertTrue(decimal.total.compareTo(decimal.installment) > 0, "The total should span several installments");
+
+        assertNotNull(LoanTerms.parse(100, "7", "0%", lender), "Interest free loans should parse");
+    }
+
+    @Test
+    public void testInvalid() {
+        UUID lender = UUID.randomUUID();
+
+        assertNull(LoanTerms.parse(0, "20", "5%", lender), "A free loan is not valid");
+        assertNull(LoanTerms.parse(100, null, "5%", lender), "A missing duration is not valid");
+        assertNull(LoanTerms.parse(100, "20", null, lender), "A missing rate is not valid");
+        assertNull(LoanTerms.parse(100, "days", "5%", lender), "A duration without a number is not valid");
+        assertNull(LoanTerms.parse(100, "0 days", "5%", lender), "A zero duration is not valid");
+        assertNull(LoanTerms.parse(100, "20", "five", lender), "A rate without a number is not valid");
+        assertNull(LoanTerms.parse(100, "20", "-5%", lender), "A negative rate is not valid");
+    }
+
+    @Test
+    public void testTooLarge() {
+        UUID lender = UUID.randomUUID();
+
+        LoanTerms small = LoanTerms.parse(1_000_000, "20", "5%", lender);
+        assertNotNull(small);
+        assertFalse(small.isTooLarge(), "Ordinary loans should fit in minor units");
+
+        // the principal fits, but not with the interest on top
+        LoanTerms large = LoanTerms.parse(MinorUnits.MAX.doubleValue() / 2, "20", "5%", lender);
+        assertNotNull(large);
+        assertTrue(large.isTooLarge(), "Totals above the minor unit limit should be too large");
+        assertThrows(ArithmeticException.class, () -> MinorUnits.toUnits(large.total), "The total should not fit in minor units");
+    }
+}
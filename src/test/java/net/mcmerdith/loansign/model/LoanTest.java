@@ -74,9 +74,9 @@ public class LoanTest {
                 // payment should have gone through
                 assertNotNull(payment, "Payment was rejected when it should not be");
                 // payment should only be the installment amount
-                assertBigDecimalEquals(installmentAmount, payment.amount, TEST_PRECISION, "Payment was for an incorrect amount");
+                assertBigDecimalEquals(installmentAmount, payment.getAmountDecimal(), TEST_PRECISION, "Payment was for an incorrect amount");
                 // there should be no deficit
-                assertBigDecimalEquals(BigDecimal.ZERO, payment.deficit, TEST_PRECISION, "Payment should not have a deficit");
+                assertBigDecimalEquals(BigDecimal.ZERO, payment.getDeficitDecimal(), TEST_PRECISION, "Payment should not have a deficit");
                 // the number of payments should equal the period after this loop
                 assertEquals(loan.currentPeriod, loan.payments.size(), "Payment count is incorrect");
             }
@@ -108,9 +108,9 @@ public class LoanTest {
                 // payment should have gone through
                 assertNotNull(payment, "Payment was rejected when it should not be");
                 // payment should only be the half payment
-                assertBigDecimalEquals(currentHalfPayment, payment.amount, TEST_PRECISION, "Payment was for an incorrect amount");
+                assertBigDecimalEquals(currentHalfPayment, payment.getAmountDecimal(), TEST_PRECISION, "Payment was for an incorrect amount");
                 // deficit should be the remaining half payment
-                assertBigDecimalEquals(currentHalfPayment, payment.deficit, TEST_PRECISION, "Deficit was an incorrect amount");
+                assertBigDecimalEquals(currentHalfPayment, payment.getDeficitDecimal(), TEST_PRECISION, "Deficit was an incorrect amount");
                 // the number of payments should equal the period after this loop
                 assertEquals(loan.currentPeriod, loan.payments.size(), "Payment count is incorrect");
             }
@@ -133,12 +133,75 @@ public class LoanTest {
             // payment should be successful
             assertNotNull(payment, "Payment failed when it should not have");
             // payment should be for the remaining amount
-            assertBigDecimalEquals(remainingAmount, payment.amount, TEST_PRECISION, "Payment was for an incorrect amount");
+            assertBigDecimalEquals(remainingAmount, payment.getAmountDecimal(), TEST_PRECISION, "Payment was for an incorrect amount");
             // there should be no deficit
-            assertBigDecimalEquals(BigDecimal.ZERO, payment.deficit, TEST_PRECISION, "Payment should not have a deficit");
+            assertBigDecimalEquals(BigDecimal.ZERO, payment.getDeficitDecimal(), TEST_PRECISION, "Payment should not have a deficit");
 
             // there should be no more balance
             assertTrue(loan.isPaidOff(), "Loan should not have a balance remaining");
         }
     }
+
+    @Test
+    public void testCompactPayments() {
+        Loan loan = testLoan(1);
+
+        // make a mix of full and short payments
+        for (int paymentId = 1; paymentId <= 10; ++paymentId) {
+            loan.initiation = loan.initiation.minus(1, loan.periodUnit);
+            double maximum = paymentId % 3 == 0
+                    ? loan.getInstallmentAmount().divide(TWO, RoundingMode.DOWN).doubleValue()
+                    : loan.getTotalAmount().doubleValue();
+            assertNotNull(loan.attemptPayment(maximum, TEST_FEE), "Payment was rejected when it should not be");
+        }
+
+        BigDecimal paymentTotal = loan.getPaymentTotal();
+        BigDecimal feeTotal = loan.getFeeTotal();
+        BigDecimal remainingAmount = loan.getRemainingAmount();
+        Instant lastPaymentDate = loan.getLastPaymentDate();
+
+        assertTrue(loan.compactPayments(4), "Payments should have been compacted");
+        assertEquals(5, loan.payments.size(), "Compacted loan should have a checkpoint and 4 payments");
+        assertEquals(5, loan.payments.get(0).foldedPayments, "Checkpoint should fold 6 payments");
+        assertEquals(lastPaymentDate, loan.getLastPaymentDate(), "Compacting should not change the last payment");
+
+        // totals must be preserved after the cached values are rebuilt
+        loan.recalculate();
+        assertBigDecimalEquals(paymentTotal, loan.getPaymentTotal(), TEST_PRECISION, "Payment total changed");
+        assertBigDecimalEquals(feeTotal, loan.getFeeTotal(), TEST_PRECISION, "Fee total changed");
+        assertBigDecimalEquals(remainingAmount, loan.getRemainingAmount(), TEST_PRECISION, "Remaining amount changed");
+
+        // compacting again should fold the checkpoint into a new one
+        assertFalse(loan.compactPayments(4), "Nothing should be left to compact");
+        assertTrue(loan.compactPayments(0), "Everything should be compacted");
+        assertEquals(1, loan.payments.size(), "Only the checkpoint should remain");
+        assertEquals(9, loan.payments.get(0).foldedPayments, "Checkpoint should fold all 10 payments");
+    }
+
+    @Test
+    public void testRevertPayment() {
+        Loan loan = testLoan(1);
+        loan.initiation = loan.initiation.minus(2, loan.periodUnit);
+        BigDecimal remainingAmount = loan.getRemainingAmount();
+
+        // a short payment charges a fee, quoting it changes nothing
+        Payment payment = loan.quotePayment(loan.getInstallmentAmount().doubleValue(), TEST_FEE);
+        assertNotNull(payment, "Payment was rejected when it should not be");
+        assertNotNull(payment.fee, "Short payment should be charged a fee");
+        assertTrue(loan.payments.isEmpty(), "Quoted payment should not be recorded");
+        assertEquals(0, loan.getCurrentPeriod(), "Quote should not change the period");
+
+        assertEquals(0, loan.recordPayment(payment), "Record should return the previous period");
+        assertEquals(2, loan.getCurrentPeriod(), "Payment should cover both periods");
+        assertBigDecimalEquals(payment.fee.getAmountDecimal(), loan.getFeeTotal(), TEST_PRECISION, "Fee should be charged");
+
+        loan.revertPayment(payment, 0);
+        assertTrue(loan.payments.isEmpty(), "Reverted payment should be removed");
+        assertEquals(0, loan.getCurrentPeriod(), "Period should be restored");
+        assertTrue(loan.isPaymentDue(), "Installments should be due again");
+        assertBigDecimalEquals(remainingAmount, loan.getRemainingAmount(), TEST_PRECISION, "Balance should be restored");
+        assertEquals(0, loan.getFeeTotal().signum(), "Fee should be removed");
+
+        assertThrows(IllegalStateException.class, () -> loan.revertPayment(payment, 0), "Only the most recent payment can be reverted");
+    }
 }
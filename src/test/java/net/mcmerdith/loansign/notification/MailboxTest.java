@@ -0,0 +1,55 @@
+package net.mcmerdith.loansign.notification;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MailboxTest {
+    @Test
+    public void testHeldMessages() throws IOException {
+        Mailbox mailbox = new Mailbox(Files.createTempDirectory("loansign-mail").resolve("mailbox.json").toFile(), 2);
+        UUID player = UUID.randomUUID();
+
+        mailbox.add(player, "first");
+        mailbox.add(player, "second");
+        mailbox.add(player, "third");
+        assertEquals(List.of("second", "third"), mailbox.take(player), "The oldest messages should be dropped first");
+        assertTrue(mailbox.take(player).isEmpty(), "Taken messages should be removed");
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        Path folder = Files.createTempDirectory("loansign-mail");
+        File file = folder.resolve("mailbox.json").toFile();
+        UUID player = UUID.randomUUID();
+
+        Mailbox mailbox = new Mailbox(file, 10);
+        mailbox.add(player, "paid off");
+        mailbox.save();
+        try (var files = Files.list(folder)) {
+            assertEquals(List.of(file.toPath()), files.toList(), "Saving should leave only the mailbox file");
+        }
+
+        // an unchanged mailbox is not written again
+        assertTrue(file.setLastModified(0));
+        mailbox.save();
+        assertEquals(0, file.lastModified(), "An unchanged mailbox should not be written");
+
+        Mailbox loaded = new Mailbox(file, 10);
+        loaded.load();
+        assertEquals(List.of("paid off"), loaded.take(player), "Saved messages should be loaded");
+
+        // taking messages is saved too
+        loaded.save();
+        Mailbox empty = new Mailbox(file, 10);
+        empty.load();
+        assertTrue(empty.take(player).isEmpty(), "Delivered messages should not be loaded again");
+    }
+}
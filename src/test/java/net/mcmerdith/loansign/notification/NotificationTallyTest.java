@@ -0,0 +1,37 @@
+package net.mcmerdith.loansign.notification;
+
+import net.mcmerdith.loansign.LoanSignMain;
+import net.mcmerdith.loansign.message.MessageTemplates;
+import net.mcmerdith.loansign.model.FakeEconomy;
+import net.mcmerdith.loansign.model.MinorUnits;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotificationTallyTest {
+    @Test
+    public void testRender() {
+        LoanSignMain.economy = new FakeEconomy();
+        MessageTemplates.instance().configure(Map.of(NotificationTally.MESSAGE_TYPE, Map.of(
+                "payments_made", "!count payment(s) of !amount",
+                "fees_charged", "!count fee(s) of !amount",
+                "paid_off", "!count loan(s) paid off"
+        )));
+
+        NotificationTally tally = new NotificationTally();
+        assertNull(tally.render(), "An empty tally should not be sent");
+
+        tally.recordPaymentMade(MinorUnits.toUnits(BigDecimal.valueOf(10)));
+        tally.recordPaymentMade(MinorUnits.toUnits(BigDecimal.valueOf(5)));
+        tally.recordFee(MinorUnits.toUnits(BigDecimal.valueOf(2)));
+        tally.paidOff++;
+        // events without a configured message are left out
+        tally.recordPaymentReceived(MinorUnits.toUnits(BigDecimal.valueOf(1)));
+
+        assertEquals(2, tally.paymentsMade);
+        assertEquals("2 payment(s) of $15.0, 1 fee(s) of $2.0, 1 loan(s) paid off", tally.render(), "Events should be summed into one line");
+    }
+}
@@ -0,0 +1,62 @@
+package net.mcmerdith.loansign.profiler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanProfilerTest {
+    private static final long MICROSECOND = TimeUnit.MICROSECONDS.toNanos(1);
+
+    @Test
+    public void testDisabled() {
+        LoanProfiler profiler = new LoanProfiler(64, 5);
+        assertSame(ProfilerSection.NOOP, profiler.section("LoanExecutor.run"), "A disabled profiler should not time sections");
+        assertFalse(ProfilerSection.NOOP.isActive());
+        ProfilerSection.NOOP.close();
+        assertTrue(profiler.summarize().isEmpty(), "Nothing should be recorded while disabled");
+    }
+
+    @Test
+    public void testRingBuffer() {
+        LoanProfiler profiler = new LoanProfiler(64, 5);
+        profiler.setEnabled(true);
+
+        // only the newest timings are kept
+        for (int i = 0; i < 100; ++i) profiler.record(profiler.section("old"), 10 * MICROSECOND);
+        for (int i = 0; i < 64; ++i) profiler.record(profiler.section("new"), 10 * MICROSECOND);
+        assertEquals(List.of("new 640"), profiler.summarize(), "Older timings should be overwritten");
+
+        profiler.reset();
+        assertTrue(profiler.summarize().isEmpty(), "Reset should discard all timings");
+    }
+
+    @Test
+    public void testNesting() {
+        LoanProfiler profiler = new LoanProfiler(64, 5);
+        profiler.setEnabled(true);
+
+        ProfilerSection outer = profiler.section("LoanCommand.runCommand", null, UUID.randomUUID());
+        ProfilerSection inner = profiler.section("LoanData.getAllLoans");
+        assertTrue(inner.isActive());
+        profiler.record(inner, 30 * MICROSECOND);
+        profiler.record(outer, 100 * MICROSECOND);
+
+        // the outer frame only counts its own time
+        assertEquals(List.of("LoanCommand.runCommand 70", "LoanCommand.runCommand;LoanData.getAllLoans 30"), profiler.summarize(),
+                "Sections should be folded by stack");
+        assertFalse(profiler.section("LoanExecutor.run").path.contains(";"), "Closing the outer section should end the stack");
+    }
+
+    @Test
+    public void testSlowThreshold() {
+        LoanProfiler profiler = new LoanProfiler(64, 5);
+        profiler.setEnabled(true);
+
+        assertFalse(profiler.record(profiler.section("fast"), TimeUnit.MILLISECONDS.toNanos(5)), "Calls at the threshold are not slow");
+        assertTrue(profiler.record(profiler.section("slow", UUID.randomUUID(), null), TimeUnit.MILLISECONDS.toNanos(6)), "Calls over the threshold should be logged");
+    }
+}
@@ -0,0 +1,88 @@
+package net.mcmerdith.loansign.query;
+
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.model.Payment;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanQueryEngineTest {
+    static final int TEST_LOANS = 25;
+    static final int TEST_PAGE_SIZE = 8;
+
+    static List<Loan> testLoans(UUID lender) {
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < TEST_LOANS; ++i) {
+            // alternate lenders so filters have something to exclude
+            UUID from = i % 2 == 0 ? lender : UUID.randomUUID();
+            loans.add(new Loan(from, UUID.randomUUID(), 10.0 * (i + 1), 0.05, 5 + i % 7));
+        }
+        return loans;
+    }
+
+    @Test
+    public void testPagination() {
+        UUID lender = UUID.randomUUID();
+        List<Loan> loans = testLoans(lender);
+
+        for (LoanSort sort : LoanSort.values()) {
+            LoanQuery query = new LoanQuery(null, null, null, false, sort, TEST_PAGE_SIZE);
+
+            // walk every page using the cursor of the previous page
+            List<Loan> seen = new ArrayList<>();
+            LoanPage page = LoanQueryEngine.collect(query, loans, null, 1);
+            while (true) {
+                assertTrue(page.rows.size() <= TEST_PAGE_SIZE, "Page is larger than the page size");
+                seen.addAll(page.rows);
+                if (page.getCursor() == null) break;
+                page = LoanQueryEngine.collect(query, loans, page.getCursor(), page.number + 1);
+            }
+
+            List<Loan> expected = new ArrayList<>(loans);
+            expected.sort(sort.comparator());
+            assertEquals(expected, seen, "Pages should cover every loan exactly once in order (" + sort + ")");
+            assertEquals((TEST_LOANS + TEST_PAGE_SIZE - 1) / TEST_PAGE_SIZE, page.number, "Incorrect page count");
+        }
+    }
+
+    @Test
+    public void testFilter() {
+        UUID lender = UUID.randomUUID();
+        List<Loan> loans = testLoans(lender);
+
+        LoanQuery query = new LoanQuery(lender, null, null, false, LoanSort.BALANCE, TEST_LOANS);
+        LoanPage page = LoanQueryEngine.collect(query, loans, null, 1);
+
+        assertEquals((TEST_LOANS + 1) / 2, page.rows.size(), "Only loans from the lender should be included");
+        assertFalse(page.hasMore, "All results should fit on one page");
+        page.rows.forEach(loan -> assertEquals(lender, loan.lender, "Loan from another lender was included"));
+        for (int i = 1; i < page.rows.size(); ++i) {
+            assertTrue(page.rows.get(i - 1).getRemainingAmount().compareTo(page.rows.get(i).getRemainingAmount()) >= 0,
+                    "Loans should be sorted by balance, largest first");
+        }
+    }
+
+    @Test
+    public void testCursorSnapshot() {
+        List<Loan> loans = testLoans(UUID.randomUUID());
+        LoanQuery query = new LoanQuery(null, null, null, false, LoanSort.BALANCE, TEST_PAGE_SIZE);
+        List<Loan> expected = new ArrayList<>(loans);
+        expected.sort(LoanSort.BALANCE.comparator());
+
+        LoanPage first = LoanQueryEngine.collect(query, loans, null, 1);
+        assertEquals(expected.subList(0, TEST_PAGE_SIZE), first.rows, "Incorrect first page");
+
+        // paying off the last row moves it to the end of the order
+        Loan last = first.rows.get(TEST_PAGE_SIZE - 1);
+        last.recordPayment(new Payment(last.getRemainingAmount().doubleValue(), 0));
+        assertTrue(last.isPaidOff(), "The loan should be paid off");
+
+        LoanPage second = LoanQueryEngine.collect(query, loans, first.getCursor(), 2);
+        assertEquals(expected.subList(TEST_PAGE_SIZE, 2 * TEST_PAGE_SIZE), second.rows,
+                "The next page should continue from where the cursor was taken");
+    }
+}
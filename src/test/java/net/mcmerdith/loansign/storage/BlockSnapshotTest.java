@@ -0,0 +1,58 @@
+package net.mcmerdith.loansign.storage;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockSnapshotTest {
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 2500; ++i) loans.add(new Loan(UUID.randomUUID(), UUID.randomUUID(), 100 + i, 0.05, 7));
+
+        Path folder = Files.createTempDirectory("loansign-snapshot");
+        Path file = folder.resolve("loans.snapshot");
+        BlockSnapshot.write(file, loans, 1000, ForkJoinPool.commonPool());
+        assertTrue(BlockSnapshot.isSnapshot(file), "The snapshot should be recognized");
+
+        List<Loan> read = BlockSnapshot.read(file, ForkJoinPool.commonPool());
+        assertEquals(loans.size(), read.size(), "Every loan should be read back");
+        for (int i = 0; i < loans.size(); ++i) {
+            assertEquals(loans.get(i).loanID, read.get(i).loanID, "Loans should keep their order across blocks");
+            assertEquals(0, loans.get(i).getRemainingAmount().compareTo(read.get(i).getRemainingAmount()), "Balances should match");
+        }
+
+        // plain JSON is not a snapshot
+        Path plain = folder.resolve("loans.json");
+        Files.writeString(plain, "[]");
+        assertFalse(BlockSnapshot.isSnapshot(plain), "Plain files should not be recognized");
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) loans.add(new Loan(UUID.randomUUID(), UUID.randomUUID(), 100, 0.05, 7));
+
+        Path file = Files.createTempDirectory("loansign-snapshot").resolve("loans.snapshot");
+        BlockSnapshot.write(file, loans, 10, ForkJoinPool.commonPool());
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length - 7));
+
+        try {
+            BlockSnapshot.read(file, ForkJoinPool.commonPool());
+            fail("A truncated snapshot should not load");
+        } catch (IOException expected) {
+            // an interrupted write is detected instead of loading part of the loans
+        }
+    }
+}
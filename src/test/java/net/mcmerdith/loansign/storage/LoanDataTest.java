@@ -0,0 +1,82 @@
+package net.mcmerdith.loansign.storage;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanDataTest {
+    /**
+     * A store that loads a fixed set of loans and counts saves
+     */
+    private static class TestStore implements DataStore {
+        private final List<Loan> loans;
+        private int saves = 0;
+
+        TestStore(List<Loan> loans) {
+            this.loans = loans;
+        }
+
+        @Override
+        public boolean load(LoanData data) {
+            if (loans == null) return false;
+            data.setLoans(loans);
+            return true;
+        }
+
+        @Override
+        public boolean save(LoanData data) {
+            ++saves;
+            return true;
+        }
+    }
+
+    /**
+     * Only the ready future is covered, the tasks started after loading need a running server
+     */
+    @Test
+    public void testReadyAfterLoad() {
+        Loan loan = new Loan(UUID.randomUUID(), UUID.randomUUID(), 100, 0.05, 7);
+        LoanData data = new LoanData();
+        data.enable(new TestStore(List.of(loan)));
+
+        assertTrue(data.awaitReady(5000), "The ready future should complete once loaded");
+        assertTrue(data.isReady(), "Data should stay ready");
+        assertSame(loan, data.getLoan(loan.loanID), "Loaded loan should be tracked");
+        assertEquals(1, data.getLoansFor(loan.borrower).size(), "Loaded loan should be indexed");
+    }
+
+    @Test
+    public void testFirstLoad() throws IOException {
+        // a new install has no data file yet
+        File folder = Files.createTempDirectory("loansign-data").toFile();
+        LoanData data = new LoanData();
+        data.enable(new FlatFileDataStore(folder, false, 1000));
+
+        assertTrue(data.awaitReady(5000), "A missing data file should load as an empty book");
+        assertTrue(data.getAllLoans().isEmpty(), "A new install should have no loans");
+    }
+
+    @Test
+    public void testFailedLoad() {
+        TestStore store = new TestStore(null);
+        LoanData data = new LoanData();
+        data.enable(store);
+
+        assertThrows(ExecutionException.class, () -> data.getReadyFuture().get(5, TimeUnit.SECONDS), "A failed load should fail the ready future");
+        assertFalse(data.isReady(), "Data should not be ready after a failed load");
+        assertFalse(data.awaitReady(0), "Waiting should not report a failed load as ready");
+
+        // saving would overwrite the stored loans with an empty book
+        data.disable();
+        assertEquals(0, store.saves, "Data that failed to load must not be saved");
+    }
+}
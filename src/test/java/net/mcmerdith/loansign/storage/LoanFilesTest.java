@@ -0,0 +1,60 @@
+package net.mcmerdith.loansign.storage;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanFilesTest {
+    @Test
+    public void testStreamBothFormats() throws IOException {
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 2500; ++i) loans.add(new Loan(UUID.randomUUID(), UUID.randomUUID(), 100 + i, 0.05, 7));
+
+        Path folder = Files.createTempDirectory("loansign-files");
+        for (boolean compress : new boolean[]{false, true}) {
+            Path file = folder.resolve(compress ? "loans.snapshot" : "loans.json");
+            try (LoanFiles.LoanWriter writer = LoanFiles.newWriter(file, compress, 100, ForkJoinPool.commonPool())) {
+                for (Loan loan : loans) writer.write(loan);
+                writer.commit();
+            }
+            assertEquals(compress, LoanFiles.isSnapshot(file), "The format should be detected");
+            assertFalse(Files.exists(folder.resolve(file.getFileName() + ".tmp")), "The temporary file should be moved");
+
+            List<Loan> read = new ArrayList<>();
+            LoanFiles.forEach(file, read::add);
+            assertEquals(loans.size(), read.size(), "Every loan should be read back");
+            for (int i = 0; i < loans.size(); ++i) {
+                assertEquals(loans.get(i).loanID, read.get(i).loanID, "Loans should keep their order");
+            }
+        }
+
+        // the block snapshot reader agrees with the streamed snapshot
+        assertEquals(loans.size(), BlockSnapshot.read(folder.resolve("loans.snapshot"), ForkJoinPool.commonPool()).size());
+    }
+
+    @Test
+    public void testUncommittedWrite() throws IOException {
+        Path file = Files.createTempDirectory("loansign-files").resolve("loans.json");
+        Files.writeString(file, "[]");
+
+        try (LoanFiles.LoanWriter writer = LoanFiles.newWriter(file, false, 0, ForkJoinPool.commonPool())) {
+            writer.write(new Loan(UUID.randomUUID(), UUID.randomUUID(), 100, 0.05, 7));
+        }
+
+        // an interrupted rewrite leaves the old file alone
+        assertEquals("[]", Files.readString(file), "The file should not be replaced");
+        assertFalse(Files.exists(file.resolveSibling("loans.json.tmp")), "The temporary file should be removed");
+        List<Loan> read = new ArrayList<>();
+        LoanFiles.forEach(file, read::add);
+        assertTrue(read.isEmpty());
+    }
+}
@@ -0,0 +1,59 @@
+package net.mcmerdith.loansign.storage;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanIndexTest {
+    @Test
+    public void testMerge() {
+        UUID lender = UUID.randomUUID();
+        UUID borrower = UUID.randomUUID();
+        Loan first = new Loan(lender, borrower, 100, 0.05, 3);
+        Loan second = new Loan(lender, borrower, 100, 0.05, 1);
+        Loan other = new Loan(UUID.randomUUID(), UUID.randomUUID(), 100, 0.05, 2);
+
+        LoanIndex left = new LoanIndex();
+        left.add(first);
+        LoanIndex right = new LoanIndex();
+        right.add(second);
+        right.add(other);
+
+        left.merge(right);
+        assertSame(second, left.getLoan(second.loanID), "Merged loans should be found by ID");
+        assertEquals(2, left.getLoansFrom(lender).size(), "Loans from the same lender should be combined");
+        assertEquals(2, left.getLoansFor(borrower).size(), "Loans to the same borrower should be combined");
+        assertEquals(List.of(second, other, first), left.getDueBefore(Instant.now().plus(7, ChronoUnit.DAYS)), "Due dates should be merged in order");
+
+        left.remove(second);
+        assertEquals(1, left.getLoansFrom(lender).size(), "Removed loans should leave the merged sets");
+    }
+
+    @Test
+    public void testParallelBuild() {
+        // large enough to be split across several tasks
+        List<Loan> loans = new ArrayList<>();
+        UUID lender = UUID.randomUUID();
+        for (int i = 0; i < 10_000; ++i) loans.add(new Loan(lender, UUID.randomUUID(), 100, 0.05, 1 + i % 60));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        LoanIndex index = LoanIndex.build(loans, pool);
+        pool.shutdown();
+        assertEquals(loans.size(), index.getLoansFrom(lender).size(), "Every loan should be indexed");
+        loans.forEach(loan -> assertSame(loan, index.getLoan(loan.loanID)));
+
+        List<Loan> due = index.getDueBefore(Instant.now().plus(365, ChronoUnit.DAYS));
+        List<Loan> sorted = new ArrayList<>(loans);
+        sorted.sort(Comparator.comparing(Loan::getDueDate).thenComparing(loan -> loan.loanID));
+        assertEquals(sorted, due, "Loans should be ordered by due date");
+    }
+}
@@ -0,0 +1,81 @@
+package net.mcmerdith.loansign.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import net.mcmerdith.loansign.model.Loan;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoanVerifierTest {
+    private static final Gson gson = new Gson();
+
+    /**
+     * Save and load loans, optionally editing one on disk
+     */
+    private static List<Loan> reload(List<Loan> loans, int edited, String property, Number value) {
+        LoanVerifier.seal(loans);
+        List<Loan> loaded = new ArrayList<>();
+        for (int i = 0; i < loans.size(); ++i) {
+            JsonObject json = gson.toJsonTree(loans.get(i)).getAsJsonObject();
+            if (i == edited) json.addProperty(property, value);
+            loaded.add(gson.fromJson(json, Loan.class));
+        }
+        return loaded;
+    }
+
+    private static List<Loan> createLoans(int count) {
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < count; ++i) loans.add(new Loan(UUID.randomUUID(), UUID.randomUUID(), 100 + i, 0.05, 7));
+        return loans;
+    }
+
+    @Test
+    public void testProblems() {
+        List<Loan> loans = createLoans(10000);
+        assertTrue(LoanVerifier.verify(reload(loans, -1, null, null), ForkJoinPool.commonPool()).problems().isEmpty(),
+                "Saved loans should verify");
+
+        // a valid value changed on disk breaks the checksum
+        LoanVerifier.Report edited = LoanVerifier.verify(reload(loans, 5000, "rate", 0.5), ForkJoinPool.commonPool());
+        assertEquals(1, edited.problems().size(), "The edited loan should fail");
+        assertEquals("checksum mismatch", edited.problems().get(0).reason(), "The checksum should not match");
+
+        // impossible values are reported even without a checksum
+        List<Loan> impossible = reload(loans, 7, "currentPeriod", 99);
+        LoanVerifier.Report invalid = LoanVerifier.verify(impossible, ForkJoinPool.commonPool());
+        assertEquals(1, invalid.problems().size(), "The impossible loan should fail");
+        assertSame(impossible.get(7), invalid.problems().get(0).loan(), "The impossible loan should be reported");
+
+        // the first of two loans with the same ID is kept
+        List<Loan> duplicated = reload(loans, -1, null, null);
+        duplicated.add(gson.fromJson(gson.toJson(duplicated.get(3)), Loan.class));
+        LoanVerifier.Report duplicates = LoanVerifier.verify(duplicated, ForkJoinPool.commonPool());
+        assertEquals(1, duplicates.problems().size(), "One duplicate should fail");
+        assertSame(duplicated.get(duplicated.size() - 1), duplicates.problems().get(0).loan(), "The later duplicate should be reported");
+    }
+
+    @Test
+    public void testQuarantineOnLoad() throws IOException {
+        File quarantine = Files.createTempDirectory("loansign-verify").resolve("quarantine.ndjson").toFile();
+        LoanData data = new LoanData();
+        data.setVerifier(new LoanVerifier(quarantine, true));
+
+        List<Loan> loans = reload(createLoans(100), 42, "loanAmount", -1);
+        data.setLoans(loans);
+
+        assertEquals(loans.size() - 1, data.getAllLoans().size(), "The bad loan should not be loaded");
+        assertNull(data.getLoan(loans.get(42).loanID), "The bad loan should not be indexed");
+        List<String> lines = Files.readAllLines(quarantine.toPath());
+        assertEquals(1, lines.size(), "The bad loan should be quarantined");
+        assertTrue(lines.get(0).contains(loans.get(42).loanID.toString()), "The quarantine should keep the loan");
+    }
+}
@@ -0,0 +1,84 @@
+package net.mcmerdith.loansign.storage;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedFileDataStoreTest {
+    private static List<Loan> createLoans(int count, UUID lender) {
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            loans.add(new Loan(lender, UUID.randomUUID(), 100 + i, 0.05, 1 + i % 30));
+        }
+        return loans;
+    }
+
+    private static int countShards(File folder) {
+        return Objects.requireNonNull(new File(folder, "loans").list((dir, name) -> name.endsWith(".json"))).length;
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        File folder = Files.createTempDirectory("loansign-sharded").toFile();
+        UUID lender = UUID.randomUUID();
+        List<Loan> loans = createLoans(200, lender);
+        LoanData data = new LoanData();
+        data.setLoans(loans);
+
+        assertTrue(new ShardedFileDataStore(folder, 8, 2).save(data), "Loans should be written");
+        assertEquals(8, countShards(folder), "Each shard should have a file");
+
+        // the shards are loaded in parallel and their indexes merged
+        LoanData loaded = new LoanData();
+        assertTrue(new ShardedFileDataStore(folder, 8, 2).load(loaded), "Loans should be read");
+        assertEquals(loans.size(), loaded.getAllLoans().size(), "Every loan should be loaded once");
+        assertEquals(loans.size(), loaded.getLoansFrom(lender).size(), "Lenders should be indexed across shards");
+        for (Loan loan : loans) {
+            Loan copy = loaded.getLoan(loan.loanID);
+            assertNotNull(copy, "Loans should be indexed by ID");
+            assertEquals(loan.getRemainingAmount(), copy.getRemainingAmount(), "Amounts should be recalculated on load");
+            assertEquals(1, loaded.getLoansFor(loan.borrower).size(), "Borrowers should be indexed across shards");
+        }
+    }
+
+    @Test
+    public void testReshard() throws IOException {
+        File folder = Files.createTempDirectory("loansign-sharded").toFile();
+        LoanData data = new LoanData();
+        data.setLoans(createLoans(50, UUID.randomUUID()));
+        assertTrue(new ShardedFileDataStore(folder, 8, 0).save(data));
+
+        // lowering the shard count removes the extra files
+        assertTrue(new ShardedFileDataStore(folder, 3, 0).save(data));
+        assertEquals(3, countShards(folder), "Shards past the new count should be removed");
+
+        LoanData loaded = new LoanData();
+        assertTrue(new ShardedFileDataStore(folder, 3, 0).load(loaded));
+        assertEquals(50, loaded.getAllLoans().size(), "No loans should be lost when resharding");
+        try (var files = Files.list(new File(folder, "loans").toPath())) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")), "Shards should be written in place of their temporary files");
+        }
+    }
+
+    @Test
+    public void testMigrate() throws IOException {
+        File folder = Files.createTempDirectory("loansign-sharded").toFile();
+        LoanData data = new LoanData();
+        data.setLoans(createLoans(20, UUID.randomUUID()));
+        assertTrue(new FlatFileDataStore(folder, false, 1000).save(data));
+
+        // a folder without shards is loaded from the single data file
+        LoanData loaded = new LoanData();
+        assertTrue(new ShardedFileDataStore(folder, 4, 0).load(loaded));
+        assertEquals(20, loaded.getAllLoans().size(), "Loans should be migrated from loans.json");
+    }
+}
@@ -0,0 +1,144 @@
+package net.mcmerdith.loansign.storage;
+
+import net.mcmerdith.loansign.model.Loan;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedDataStoreTest {
+    private static SharedDataStore createStore(File folder, String node) {
+        return new SharedDataStore(folder, node, 4, Duration.ofSeconds(5), Duration.ofSeconds(30));
+    }
+
+    @Test
+    public void testCompareAndSet() throws IOException {
+        File folder = Files.createTempDirectory("loansign-shared").toFile();
+        SharedDataStore storeA = createStore(folder, "a");
+        SharedDataStore storeB = createStore(folder, "b");
+        LoanData dataA = new LoanData();
+        LoanData dataB = new LoanData();
+        assertTrue(storeA.load(dataA), "Empty store should load");
+
+        // a new loan is written as version 1
+        Loan loan = new Loan(UUID.randomUUID(), UUID.randomUUID(), 100, 0.05, 7);
+        dataA.addLoan(loan);
+        assertTrue(storeA.commit(loan), "New loan should be written");
+        assertEquals(1L, loan.getVersion(), "First write should be version 1");
+        assertFalse(loan.isDirty(), "Written loan should be clean");
+
+        assertTrue(storeB.load(dataB), "Shared store should load");
+        Loan copy = dataB.getLoan(loan.loanID);
+        assertNotNull(copy, "Loan should be visible to other servers");
+        assertEquals(1L, copy.getVersion(), "Loaded loan should keep its version");
+
+        // a write based on a stale version must be rejected
+        loan.extend(1);
+        assertTrue(storeA.commit(loan), "Current version should be written");
+        copy.extend(2);
+        assertFalse(storeB.commit(copy), "Stale version should be rejected");
+        assertTrue(copy.isDirty(), "Rejected changes should not be marked as written");
+
+        // the change log refreshes only the changed loan
+        assertEquals(1, storeB.readChanges(dataB), "Changed loan should be refreshed");
+        assertEquals(2L, dataB.getLoan(loan.loanID).getVersion(), "Refreshed loan should have the new version");
+        assertEquals(0, storeB.readChanges(dataB), "Changes should only be read once");
+        assertEquals(0, storeA.readChanges(dataA), "Own changes should be ignored");
+
+        // deletes propagate through the change log
+        storeA.delete(List.of(loan));
+        assertEquals(1, storeB.readChanges(dataB), "Deleted loan should be removed");
+        assertNull(dataB.getLoan(loan.loanID), "Deleted loan should not be tracked");
+    }
+
+    @Test
+    public void testLeases() throws IOException {
+        File folder = Files.createTempDirectory("loansign-shared").toFile();
+        SharedDataStore storeA = createStore(folder, "a");
+        SharedDataStore storeB = createStore(folder, "b");
+
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 64; ++i) loans.add(new Loan(UUID.randomUUID(), UUID.randomUUID(), 100, 0.05, 7));
+
+        // the first server takes every shard until the second one joins
+        storeA.renewLeases();
+        for (Loan loan : loans) assertTrue(storeA.isCollector(loan), "A lone server should collect every loan");
+
+        storeB.renewLeases();
+        storeA.renewLeases();
+        storeB.renewLeases();
+
+        // every loan is collected by exactly one server
+        int collectedByA = 0;
+        for (Loan loan : loans) {
+            assertTrue(storeA.isCollector(loan) ^ storeB.isCollector(loan), "Each loan should have exactly one collector");
+            if (storeA.isCollector(loan)) ++collectedByA;
+        }
+        assertTrue(collectedByA > 0 && collectedByA < loans.size(), "Collection should be split between servers");
+
+        storeA.close();
+        storeB.close();
+    }
+
+    @Test
+    public void testChangeLogRotation() throws IOException {
+        File folder = Files.createTempDirectory("loansign-shared").toFile();
+        // rotate after every few entries
+        SharedDataStore storeA = new SharedDataStore(folder, "a", 4, Duration.ofSeconds(5), Duration.ofSeconds(30), 100);
+        SharedDataStore storeB = new SharedDataStore(folder, "b", 4, Duration.ofSeconds(5), Duration.ofSeconds(30), 100);
+        LoanData dataA = new LoanData();
+        LoanData dataB = new LoanData();
+        assertTrue(storeA.load(dataA), "Empty store should load");
+        assertTrue(storeB.load(dataB), "Empty store should load");
+
+        // one rotation is read through changes.log.old
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < 6; ++i) {
+            Loan loan = new Loan(UUID.randomUUID(), UUID.randomUUID(), 100, 0.05, 7);
+            loans.add(loan);
+            dataA.addLoan(loan);
+            assertTrue(storeA.commit(loan), "New loan should be written");
+        }
+        assertTrue(new File(folder, "changes.log.old").exists(), "The change log should have been rotated");
+        assertEquals(loans.size(), storeB.readChanges(dataB), "Every loan should be read across a rotation");
+
+        // falling further behind rescans the loan folder
+        for (int i = 0; i < 30; ++i) {
+            Loan loan = loans.get(i % loans.size());
+            loan.extend(1);
+            assertTrue(storeA.commit(loan), "Changed loan should be written");
+        }
+        storeA.delete(List.of(loans.get(0)));
+        assertEquals(loans.size(), storeB.readChanges(dataB), "Every changed or deleted loan should be refreshed");
+        assertNull(dataB.getLoan(loans.get(0).loanID), "Deleted loan should be removed by the rescan");
+        for (Loan loan : loans.subList(1, loans.size())) {
+            assertEquals(loan.getVersion(), dataB.getLoan(loan.loanID).getVersion(), "Rescanned loans should be current");
+        }
+        assertEquals(0, storeB.readChanges(dataB), "Changes should only be read once");
+    }
+
+    @Test
+    public void testChangesDuringWrite() throws IOException {
+        File folder = Files.createTempDirectory("loansign-shared").toFile();
+        SharedDataStore store = createStore(folder, "a");
+        assertTrue(store.load(new LoanData()), "Empty store should load");
+
+        Loan loan = new Loan(UUID.randomUUID(), UUID.randomUUID(), 100, 0.05, 7);
+        long copied = loan.getChanges();
+        // changed after the copy was taken, but before it was written
+        loan.extend(1);
+        loan.markWritten(0, copied);
+        assertTrue(loan.isDirty(), "Changes after the copy should still be written");
+
+        assertTrue(store.commit(loan), "Loan should be written");
+        assertFalse(loan.isDirty(), "Written loan should be clean");
+        assertTrue(store.commit(loan), "Writing a clean loan should succeed");
+    }
+}
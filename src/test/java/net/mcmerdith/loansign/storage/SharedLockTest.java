@@ -0,0 +1,50 @@
+package net.mcmerdith.loansign.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedLockTest {
+    @Test
+    public void testStaleLock() throws IOException, TimeoutException {
+        Path folder = Files.createTempDirectory("loansign-lock");
+        Path path = folder.resolve("loan.json.lock");
+
+        // a held lock is waited for
+        try (SharedLock ignored = SharedLock.acquire(path, Duration.ofSeconds(1))) {
+            assertThrows(TimeoutException.class, () -> SharedLock.acquire(path, Duration.ofMillis(50)), "A held lock should not be taken");
+        }
+        assertFalse(Files.exists(path), "Closing should remove the lock");
+
+        // a lock left behind by a crashed server is broken
+        Files.createFile(path);
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofMinutes(5))));
+        try (SharedLock ignored = SharedLock.acquire(path, Duration.ofSeconds(1))) {
+            assertTrue(Files.exists(path), "The stale lock should be replaced");
+            try (var files = Files.list(folder)) {
+                assertEquals(1, files.count(), "The broken lock should be removed");
+            }
+        }
+    }
+
+    @Test
+    public void testBrokenLockIsNotReleased() throws IOException, TimeoutException {
+        Path path = Files.createTempDirectory("loansign-lock").resolve("loan.json.lock");
+
+        SharedLock stale = SharedLock.acquire(path, Duration.ofSeconds(1));
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofMinutes(5))));
+        try (SharedLock ignored = SharedLock.acquire(path, Duration.ofSeconds(1))) {
+            // the old holder wakes up after its lock was broken
+            stale.close();
+            assertTrue(Files.exists(path), "Closing a broken lock should not release the new holder");
+        }
+    }
+}
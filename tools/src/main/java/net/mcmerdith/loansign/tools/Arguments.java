@@ -0,0 +1,69 @@
+package net.mcmerdith.loansign.tools;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line arguments, positional arguments followed by {@code --name value} options
+ */
+class Arguments {
+    private final List<String> positional = new ArrayList<>();
+    private final Map<String, String> options = new HashMap<>();
+
+    /**
+     * @param args The arguments after the tool command
+     * @throws IllegalArgumentException If an option has no value
+     */
+    Arguments(@NotNull String[] args) {
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].startsWith("--")) {
+                if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[i]);
+                options.put(args[i].substring(2).toLowerCase(), args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+    }
+
+    /**
+     * @param index The position
+     * @param name  The name shown if it is missing
+     * @return The positional argument
+     * @throws IllegalArgumentException If there is no argument at the position
+     */
+    @NotNull
+    String get(int index, @NotNull String name) {
+        if (index >= positional.size()) throw new IllegalArgumentException("Missing " + name);
+        return positional.get(index);
+    }
+
+    /**
+     * @param name The option name, without the leading dashes
+     * @return The option value, or null if it was not given
+     */
+    @Nullable
+    String option(@NotNull String name) {
+        return options.get(name);
+    }
+
+    /**
+     * @param name         The option name, without the leading dashes
+     * @param defaultValue The value if the option was not given
+     * @return The option value
+     * @throws IllegalArgumentException If the value is not a number
+     */
+    int intOption(@NotNull String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number");
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package net.mcmerdith.loansign.tools;
+
+import com.google.gson.JsonParseException;
+import net.mcmerdith.loansign.export.LoanStatus;
+import net.mcmerdith.loansign.model.Loan;
+import net.mcmerdith.loansign.storage.LoanArchive;
+import net.mcmerdith.loansign.storage.LoanFiles;
+import net.mcmerdith.loansign.storage.LoanVerifier;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Inspect, migrate, compact and repair loan data files without a server
+ * <p>Loans are streamed one at a time, so files larger than the heap can be processed.
+ * Files are read in either format and written as plain JSON or a compressed snapshot, the same
+ * as the {@code storage.compression} setting of the plugin.</p>
+ */
+public class LoanTool {
+    private static final String USAGE = """
+            Usage: java -jar LoanSign-tools.jar <command> [options]
+
+              stats <file>                   Count loans by status and total their balances
+              convert <in> <out>             Rewrite a loan file, usually in the other format
+              compact <in> <out>             Drop archivable loans and fold old payments
+                  --retention-days N           Days a finished loan is kept (default 30)
+                  --keep-payments N            Recent payments kept per loan, 0 to keep all (default 0)
+                  --archive FILE               Append dropped loans to this archive (archive.ndjson.gz)
+              repair <in> <out>              Drop loans that fail verification or have duplicate IDs
+                  --rejected FILE              Write dropped loans to this file
+              bench <file>                   Time reading and writing a loan file
+                  --iterations N               Number of runs (default 3)
+
+            Commands that write a file also take:
+                  --format json|snapshot       Output format (default: same as the input)
+                  --block-size N               Loans per compressed block (default 1000)
+
+            Stop the server before changing its loan files.""";
+
+    /**
+     * Loans collected before being appended to the archive
+     */
+    private static final int ARCHIVE_BATCH = 1000;
+
+    public static void main(String[] args) {
+        if (args.length == 0 || args[0].equals("help")) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        Arguments arguments;
+        try {
+            arguments = new Arguments(Arrays.copyOfRange(args, 1, args.length));
+            switch (args[0].toLowerCase()) {
+                case "stats" -> stats(arguments);
+                case "convert" -> convert(arguments);
+                case "compact" -> compact(arguments);
+                case "repair" -> repair(arguments);
+                case "bench" -> bench(arguments);
+                default -> throw new IllegalArgumentException("Unknown command " + args[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Failed: " + e.getMessage());
+            System.exit(1);
+        } catch (JsonParseException e) {
+            System.err.println("Failed: malformed loan data: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * stats (file)
+     */
+    private static void stats(Arguments args) throws IOException {
+        Path file = Path.of(args.get(0, "file"));
+        Instant now = Instant.now();
+        Map<LoanStatus, Integer> counts = new EnumMap<>(LoanStatus.class);
+        long[] totals = new long[3];
+        BigDecimal[] amounts = {BigDecimal.ZERO, BigDecimal.ZERO};
+
+        long start = System.nanoTime();
+        LoanFiles.forEach(file, loan -> {
+            counts.merge(LoanStatus.of(loan, now), 1, Integer::sum);
+            ++totals[0];
+            totals[1] += loan.getPayments().size();
+            if (LoanVerifier.check(loan) != null) ++totals[2];
+            amounts[0] = amounts[0].add(loan.getLoanAmount());
+            amounts[1] = amounts[1].add(loan.getRemainingAmount());
+        });
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        System.out.println(file + " (" + (LoanFiles.isSnapshot(file) ? "snapshot" : "json") + ", " + Files.size(file) + " bytes)");
+        System.out.println("Loans: " + totals[0] + " read in " + elapsed.toMillis() + "ms");
+        for (LoanStatus status : LoanStatus.values()) {
+            System.out.println("  " + status.name().toLowerCase() + ": " + counts.getOrDefault(status, 0));
+        }
+        System.out.println("Payments: " + totals[1]);
+        System.out.println("Lent: " + amounts[0].toPlainString());
+        System.out.println("Outstanding: " + amounts[1].toPlainString());
+        System.out.println("Failing verification: " + totals[2] + (totals[2] > 0 ? " (use repair)" : ""));
+    }
+
+    /**
+     * convert (in) (out)
+     */
+    private static void convert(Arguments args) throws IOException {
+        Path in = Path.of(args.get(0, "input file"));
+        Path out = Path.of(args.get(1, "output file"));
+
+        long[] written = {0};
+        rewrite(in, out, args, (loan, writer) -> {
+            writer.write(loan);
+            ++written[0];
+        });
+        System.out.println("Wrote " + written[0] + " loans to " + out);
+    }
+
+    /**
+     * compact (in) (out) [--retention-days N] [--keep-payments N] [--archive FILE]
+     * <p>Dropped loans are held in a pending file next to the archive and only appended once
+     * the output is committed, so a failed run never archives loans that are still in the data</p>
+     */
+    private static void compact(Arguments args) throws IOException {
+        Path in = Path.of(args.get(0, "input file"));
+        Path out = Path.of(args.get(1, "output file"));
+        Duration retention = Duration.ofDays(Math.max(0, args.intOption("retention-days", 30)));
+        int keepPayments = Math.max(0, args.intOption("keep-payments", 0));
+        String archivePath = args.option("archive");
+        Path archiveFile = archivePath == null ? null : Path.of(archivePath).toAbsolutePath();
+        Path pending = archiveFile == null ? null
+                : Files.createTempFile(archiveFile.getParent(), archiveFile.getFileName().toString(), ".pending");
+
+        Instant now = Instant.now();
+        long[] counts = new long[3];
+        try (LoanFiles.LoanWriter dropped = pending == null ? null : LoanFiles.newWriter(pending, false, 0, ForkJoinPool.commonPool())) {
+            rewrite(in, out, args, (loan, writer) -> {
+                if (loan.isArchivable(now, retention)) {
+                    ++counts[0];
+                    if (dropped != null) dropped.write(loan);
+                    return;
+                }
+                if (keepPayments > 0 && loan.compactPayments(keepPayments)) {
+                    loan.seal();
+                    ++counts[1];
+                }
+                writer.write(loan);
+                ++counts[2];
+            }, () -> {
+                if (dropped != null) dropped.commit();
+            });
+        } catch (IOException | RuntimeException e) {
+            // the output was not replaced, so the dropped loans are still in the data
+            if (pending != null) Files.deleteIfExists(pending);
+            throw e;
+        }
+
+        if (pending != null) archivePending(new LoanArchive(archiveFile.toFile()), pending);
+
+        System.out.println("Dropped " + counts[0] + " archivable loans" + (archivePath == null ? "" : " to " + archivePath));
+        System.out.println("Compacted payments of " + counts[1] + " loans");
+        System.out.println("Wrote " + counts[2] + " loans to " + out);
+    }
+
+    /**
+     * Append the loans of a pending file to an archive, then delete the file
+     * <p>If appending fails the pending file is kept, so the loans can still be recovered</p>
+     */
+    private static void archivePending(LoanArchive archive, Path pending) throws IOException {
+        List<Loan> batch = new ArrayList<>(ARCHIVE_BATCH);
+        try {
+            LoanFiles.forEach(pending, loan -> {
+                batch.add(loan);
+                if (batch.size() >= ARCHIVE_BATCH) appendArchive(archive, batch);
+            });
+            appendArchive(archive, batch);
+        } catch (IOException | UncheckedIOException e) {
+            throw new IOException("Failed to write archive, the dropped loans are kept in " + pending, e);
+        }
+        Files.delete(pending);
+    }
+
+    private static void appendArchive(LoanArchive archive, List<Loan> batch) {
+        if (batch.isEmpty()) return;
+        if (!archive.append(batch)) throw new UncheckedIOException(new IOException("Failed to write archive"));
+        batch.clear();
+    }
+
+    /**
+     * repair (in) (out) [--rejected FILE]
+     * <p>Only the IDs of written loans are kept in memory, to find duplicates</p>
+     */
+    private static void repair(Arguments args) throws IOException {
+        Path in = Path.of(args.get(0, "input file"));
+        Path out = Path.of(args.get(1, "output file"));
+        String rejectedPath = args.option("rejected");
+
+        Set<UUID> seen = new HashSet<>();
+        long[] counts = new long[2];
+        LoanFiles.LoanWriter rejected = rejectedPath == null ? null
+                : LoanFiles.newWriter(Path.of(rejectedPath), false, 0, ForkJoinPool.commonPool());
+        try (rejected) {
+            rewrite(in, out, args, (loan, writer) -> {
+                String reason = LoanVerifier.check(loan);
+                if (reason == null && !seen.add(loan.loanID)) reason = "duplicate loan ID";
+                if (reason == null) {
+                    writer.write(loan);
+                    ++counts[0];
+                    return;
+                }
+
+                System.out.println("Dropped " + loan.loanID + ": " + reason);
+                if (rejected != null) rejected.write(loan);
+                ++counts[1];
+            });
+            if (rejected != null) rejected.commit();
+        }
+
+        System.out.println("Wrote " + counts[0] + " loans to " + out + ", dropped " + counts[1]
+                + (rejected == null || counts[1] == 0 ? "" : " to " + rejectedPath));
+    }
+
+    /**
+     * bench (file) [--iterations N]
+     */
+    private static void bench(Arguments args) throws IOException {
+        Path file = Path.of(args.get(0, "file"));
+        int iterations = Math.max(1, args.intOption("iterations", 3));
+        int blockSize = args.intOption("block-size", 1000);
+        long bytes = Files.size(file);
+        System.out.println(file + " (" + (LoanFiles.isSnapshot(file) ? "snapshot" : "json") + ", " + bytes + " bytes)");
+
+        Path json = Files.createTempFile("loans", ".json");
+        Path snapshot = Files.createTempFile("loans", ".snapshot");
+        try {
+            for (int i = 1; i <= iterations; ++i) {
+                long[] loans = {0};
+                long start = System.nanoTime();
+                LoanFiles.forEach(file, loan -> ++loans[0]);
+                report(i, "read", loans[0], System.nanoTime() - start, bytes);
+
+                for (Path target : List.of(json, snapshot)) {
+                    boolean compress = target == snapshot;
+                    start = System.nanoTime();
+                    try (LoanFiles.LoanWriter writer = LoanFiles.newWriter(target, compress, blockSize, ForkJoinPool.commonPool())) {
+                        LoanFiles.forEach(file, loan -> write(writer, loan));
+                        writer.commit();
+                    }
+                    report(i, "read + write " + (compress ? "snapshot" : "json"), loans[0], System.nanoTime() - start, Files.size(target));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(json);
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    private static void report(int iteration, String operation, long loans, long nanos, long bytes) {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        System.out.printf("#%d %-26s %,d loans in %dms (%,.0f loans/s, %.1f MB, %.1f MB/s)%n",
+                iteration, operation, loans, nanos / 1_000_000, loans / seconds, bytes / 1e6, bytes / 1e6 / seconds);
+    }
+
+    /**
+     * Handles one loan while a file is rewritten
+     */
+    private interface LoanStep {
+        void accept(@NotNull Loan loan, @NotNull LoanFiles.LoanWriter writer) throws IOException;
+    }
+
+    /**
+     * Work that may fail with an I/O error
+     */
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    private static void rewrite(Path in, Path out, Arguments args, LoanStep step) throws IOException {
+        rewrite(in, out, args, step, () -> {
+        });
+    }
+
+    /**
+     * Stream every loan of a file through a step into a new file
+     * <p>The output replaces its file only if every loan was handled</p>
+     *
+     * @param finish Run after the last loan, before the output is committed
+     */
+    private static void rewrite(Path in, Path out, Arguments args, LoanStep step, IoAction finish) throws IOException {
+        if (Files.exists(out) && Files.isSameFile(in, out)) throw new IllegalArgumentException("The output must be a different file");
+
+        String format = args.option("format");
+        boolean compress;
+        if (format == null) {
+            compress = LoanFiles.isSnapshot(in);
+        } else if (format.equalsIgnoreCase("json") || format.equalsIgnoreCase("snapshot")) {
+            compress = format.equalsIgnoreCase("snapshot");
+        } else {
+            throw new IllegalArgumentException("--format must be json or snapshot");
+        }
+
+        try (LoanFiles.LoanWriter writer = LoanFiles.newWriter(out, compress, args.intOption("block-size", 1000), ForkJoinPool.commonPool())) {
+            LoanFiles.forEach(in, loan -> {
+                try {
+                    step.accept(loan, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            finish.run();
+            writer.commit();
+        }
+    }
+
+    private static void write(LoanFiles.LoanWriter writer, Loan loan) {
+        try {
+            writer.write(loan);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}